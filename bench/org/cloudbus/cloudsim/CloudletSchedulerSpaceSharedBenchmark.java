@@ -0,0 +1,93 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CloudletSchedulerSpaceShared#updateVmProcessing(double, List)} on a VM with a
+ * long waiting list. In each invocation, the running cloudlets finish and are replaced by waiting
+ * ones.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudletSchedulerSpaceShared
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CloudletSchedulerSpaceSharedBenchmark {
+
+	/** The number of PEs of the VM. */
+	private static final int PES = 4;
+
+	/** The MIPS of each PE of the VM. */
+	private static final double MIPS = 1000;
+
+	/** The number of waiting cloudlets. */
+	@Param({ "10000" })
+	public int waiting;
+
+	/** The scheduler. */
+	private CloudletSchedulerSpaceShared scheduler;
+
+	/** The MIPS share of the VM. */
+	private final List<Double> mipsShare = new ArrayList<Double>();
+
+	/**
+	 * Creates a scheduler running one cloudlet of one second per PE, with the waiting cloudlets
+	 * queued behind them.
+	 */
+	@Setup(Level.Invocation)
+	public void setUp() {
+		Log.disable();
+		mipsShare.clear();
+		for (int i = 0; i < PES; i++) {
+			mipsShare.add(MIPS);
+		}
+
+		scheduler = new CloudletSchedulerSpaceShared();
+		scheduler.updateVmProcessing(0, mipsShare);
+		UtilizationModel utilizationModel = new UtilizationModelFull();
+		for (int i = 0; i < PES + waiting; i++) {
+			Cloudlet cloudlet = new Cloudlet(i, (long) MIPS, 1, 0, 0, Long.MAX_VALUE, utilizationModel,
+					utilizationModel, utilizationModel);
+			cloudlet.setResourceParameter(0, 0);
+			scheduler.cloudletSubmit(cloudlet);
+		}
+	}
+
+	/**
+	 * Updates the processing when the running cloudlets finish.
+	 *
+	 * @return the time of the next event of the scheduler
+	 */
+	@Benchmark
+	public double updateVmProcessing() {
+		return scheduler.updateVmProcessing(1, mipsShare);
+	}
+
+}
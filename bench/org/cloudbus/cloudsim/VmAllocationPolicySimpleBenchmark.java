@@ -0,0 +1,97 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link VmAllocationPolicySimple#allocateHostForVm(Vm)} over a large number of hosts,
+ * half of which already run a VM. Each operation allocates a VM and deallocates it.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see VmAllocationPolicySimple
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VmAllocationPolicySimpleBenchmark {
+
+	/** The number of PEs of each host. */
+	private static final int PES = 4;
+
+	/** The number of hosts. */
+	@Param({ "10000" })
+	public int hosts;
+
+	/** The allocation policy. */
+	private VmAllocationPolicySimple policy;
+
+	/** The VM allocated by the benchmark. */
+	private Vm vm;
+
+	/**
+	 * Creates the hosts and allocates a VM to half of them.
+	 */
+	@Setup
+	public void setUp() {
+		Log.disable();
+		List<Host> hostList = new ArrayList<Host>();
+		for (int i = 0; i < hosts; i++) {
+			List<Pe> peList = new ArrayList<Pe>();
+			for (int j = 0; j < PES; j++) {
+				peList.add(new Pe(j, new PeProvisionerSimple(1000)));
+			}
+			hostList.add(new Host(i, new RamProvisionerSimple(16384), new BwProvisionerSimple(100000),
+					1000000, peList, new VmSchedulerTimeShared(peList)));
+		}
+		policy = new VmAllocationPolicySimple(hostList);
+
+		Random random = new Random(42);
+		for (int i = 0; i < hosts / 2; i++) {
+			Vm running = new Vm(i + 1, 0, 1000, 1 + random.nextInt(PES), 1024, 1000, 10000, "Xen",
+					new CloudletSchedulerSpaceShared());
+			policy.allocateHostForVm(running, hostList.get(random.nextInt(hosts)));
+		}
+		vm = new Vm(0, 0, 1000, 1, 1024, 1000, 10000, "Xen", new CloudletSchedulerSpaceShared());
+	}
+
+	/**
+	 * Allocates a host for the VM and deallocates it.
+	 *
+	 * @return whether the VM was allocated
+	 */
+	@Benchmark
+	public boolean allocateHostForVm() {
+		boolean allocated = policy.allocateHostForVm(vm);
+		policy.deallocateHostForVm(vm);
+		return allocated;
+	}
+
+}
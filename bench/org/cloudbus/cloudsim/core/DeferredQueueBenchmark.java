@@ -0,0 +1,88 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DeferredQueue#addEvent(SimEvent)} when the events do not arrive in temporal
+ * order, which makes the queue walk back from the tail of the destination to find their place.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see DeferredQueue
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DeferredQueueBenchmark {
+
+	/** The number of events added by each invocation. */
+	private static final int EVENTS = 10000;
+
+	/** The number of destination entities. */
+	@Param({ "1", "100" })
+	public int destinations;
+
+	/** The fraction of the events that arrive out of order. */
+	@Param({ "0.1", "1.0" })
+	public double disorder;
+
+	/** The queue. */
+	private final DeferredQueue deferred = new DeferredQueue();
+
+	/** The events, in the order in which they are added. */
+	private final SimEvent[] events = new SimEvent[EVENTS];
+
+	/**
+	 * Creates the events. An out of order event has a random time in the past of the events
+	 * already added.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		for (int i = 0; i < EVENTS; i++) {
+			double time = random.nextDouble() < disorder ? random.nextDouble() * i : i;
+			int destination = random.nextInt(destinations);
+			events[i] = new SimEvent(SimEvent.SEND, time, 0, destination, i % 10, null);
+		}
+	}
+
+	/**
+	 * Adds all the events to an empty queue.
+	 *
+	 * @return the size of the queue
+	 */
+	@Benchmark
+	@OperationsPerInvocation(EVENTS)
+	public int addEvent() {
+		deferred.clear();
+		for (SimEvent event : events) {
+			deferred.addEvent(event);
+		}
+		return deferred.size();
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of sending and delivering an event. Each invocation runs a simulation in which
+ * an entity sends itself a {@link CloudSimTags#VM_DATACENTER_EVENT} a fixed number of times,
+ * either with the event pool of the context or without it, and either waiting for the next event
+ * (direct delivery) or not (delivery through the deferred queue).
+ * <p>
+ * Run it with the GC profiler (<tt>-prof gc</tt>) to get the allocation rate per event in
+ * <tt>gc.alloc.rate.norm</tt>.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventDispatchBenchmark {
+
+	/** The number of events of each simulation. */
+	private static final int EVENTS = 100000;
+
+	/** Whether the processed events are reused. */
+	@Param({ "true", "false" })
+	public boolean pooling;
+
+	/** Whether the entity waits for its next event. */
+	@Param({ "true", "false" })
+	public boolean waiting;
+
+	/**
+	 * Runs a simulation delivering {@link #EVENTS} events.
+	 *
+	 * @return the last clock value
+	 */
+	@Benchmark
+	@OperationsPerInvocation(EVENTS)
+	public double dispatch() {
+		SimulationContext context = new SimulationContext();
+		context.setLogDisabled(Boolean.TRUE);
+		CloudSim.setContext(context);
+		try {
+			context.init(0, null, false, new FutureQueueHeap());
+			if (!pooling) {
+				context.setPooledTags();
+			}
+			new Ticker("Ticker", EVENTS, waiting);
+			return context.startSimulation();
+		} finally {
+			CloudSim.setContext(null);
+		}
+	}
+
+	/**
+	 * An entity that sends itself a fixed number of events.
+	 */
+	private static class Ticker extends SimEntity {
+
+		/** The number of events still to be sent. */
+		private int remaining;
+
+		/** Whether the entity waits for its next event. */
+		private final boolean waiting;
+
+		/**
+		 * Creates a new Ticker object.
+		 *
+		 * @param name the name of the entity
+		 * @param events the number of events to send
+		 * @param waiting whether the entity waits for its next event
+		 */
+		public Ticker(String name, int events, boolean waiting) {
+			super(name);
+			remaining = events;
+			this.waiting = waiting;
+		}
+
+		@Override
+		public void startEntity() {
+			tick();
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			tick();
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+
+		/**
+		 * Sends the next event, if any.
+		 */
+		private void tick() {
+			if (remaining-- > 0) {
+				schedule(getId(), 1, CloudSimTags.VM_DATACENTER_EVENT);
+				if (waiting) {
+					waitForEvent(CloudSim.SIM_ANY);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the future event queues with the classic hold model: each operation
+ * polls the first event and adds it back with a random increment of its time, so that the size of
+ * the queue stays constant.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FutureQueue
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FutureQueueBenchmark {
+
+	/** The number of precomputed time increments, a power of two. */
+	private static final int INCREMENTS = 1 << 16;
+
+	/** The implementation of the queue. */
+	@Param({ "heap", "calendar", "treeset" })
+	public String queue;
+
+	/** The number of events in the queue. */
+	@Param({ "1000", "100000" })
+	public int size;
+
+	/** The queue. */
+	private FutureQueue future;
+
+	/** The time increments, exponentially distributed. */
+	private final double[] increments = new double[INCREMENTS];
+
+	/** The index of the next increment. */
+	private int next = 0;
+
+	/**
+	 * Creates the queue and fills it.
+	 */
+	@Setup
+	public void setUp() {
+		if ("calendar".equals(queue)) {
+			future = new FutureQueueCalendar();
+		} else if ("treeset".equals(queue)) {
+			future = new FutureQueueTreeSet();
+		} else {
+			future = new FutureQueueHeap();
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < INCREMENTS; i++) {
+			increments[i] = -Math.log(1 - random.nextDouble());
+		}
+		for (int i = 0; i < size; i++) {
+			future.addEvent(new SimEvent(SimEvent.SEND, increments[i % INCREMENTS] * size, i % 100,
+					i % 100, i % 10, null));
+		}
+	}
+
+	/**
+	 * Polls the first event and adds it back later in time.
+	 *
+	 * @return the time of the polled event
+	 */
+	@Benchmark
+	public double hold() {
+		SimEvent event = future.pollFirst();
+		double time = event.eventTime();
+		event.reset(SimEvent.SEND, time + increments[next] * size, event.getSource(),
+				event.getDestination(), event.getTag(), null);
+		next = (next + 1) & (INCREMENTS - 1);
+		future.addEvent(event);
+		return time;
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.examples;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+
+/**
+ * Runs end-to-end simulations of {@link SyntheticFederation}s of increasing size and prints, for
+ * each size step, the wall-clock time of building and running the simulation, the number of
+ * processed events per second, the peak heap usage and the time spent in garbage collection.
+ * <p>
+ * The default steps go from 1,000 cloudlets on 100 hosts to 1,000,000 cloudlets on 100,000 hosts,
+ * with 10 brokers of 2 datacenters and one VM per host. Other steps can be given as arguments of
+ * the form <tt>brokers x datacentersPerBroker x hostsPerDatacenter x vmsPerBroker x
+ * cloudletsPerBroker</tt>, e.g. <tt>10x2x50x100x1000</tt>. Each step runs in its own simulation
+ * context with the log disabled, and the results are printed as comma-separated values.
+ * <p>
+ * The largest default steps need a large heap, e.g. <tt>-Xmx8g</tt>.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see SyntheticFederation
+ */
+public class ScalabilityDriver {
+
+	/** The seed of the generated federations. */
+	private static final long SEED = 42;
+
+	/** The default steps: brokers, datacenters, hosts, VMs and cloudlets per broker or datacenter. */
+	private static final int[][] DEFAULT_STEPS = {
+			{ 10, 2, 5, 10, 100 },
+			{ 10, 2, 50, 100, 1000 },
+			{ 10, 2, 500, 1000, 10000 },
+			{ 10, 2, 5000, 10000, 100000 } };
+
+	/**
+	 * Runs the size steps.
+	 *
+	 * @param args the steps, as <tt>BxDxHxVxC</tt>; the default steps if there are none
+	 * @throws Exception if a scenario cannot be created
+	 */
+	public static void main(String[] args) throws Exception {
+		List<int[]> steps = new ArrayList<int[]>();
+		if (args.length == 0) {
+			for (int[] step : DEFAULT_STEPS) {
+				steps.add(step);
+			}
+		} else {
+			for (String arg : args) {
+				steps.add(parseStep(arg));
+			}
+		}
+
+		System.out.println("brokers,datacenters,hosts,vms,cloudlets,events,setup_ms,run_ms,"
+				+ "events_per_s,peak_heap_mb,gc_ms,gc_count");
+		for (int[] step : steps) {
+			runStep(step);
+		}
+	}
+
+	/**
+	 * Builds and runs the federation of one size step, and prints its measures.
+	 *
+	 * @param step the brokers, datacenters per broker, hosts per datacenter, VMs per broker and
+	 *            cloudlets per broker
+	 * @throws Exception if the scenario cannot be created
+	 */
+	private static void runStep(int[] step) throws Exception {
+		SyntheticFederation federation = new SyntheticFederation(step[0], step[1], step[2], step[3],
+				step[4]);
+
+		System.gc();
+		List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+		long gcTime = -totalGcTime();
+		long gcCount = -totalGcCount();
+
+		SimulationContext context = new SimulationContext();
+		context.setLogDisabled(Boolean.TRUE);
+		CloudSim.setContext(context);
+		long setupTime;
+		long runTime;
+		try {
+			long start = System.nanoTime();
+			federation.createScenario(0, SEED);
+			setupTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			context.startSimulation();
+			runTime = System.nanoTime() - start;
+		} finally {
+			CloudSim.setContext(null);
+		}
+
+		gcTime += totalGcTime();
+		gcCount += totalGcCount();
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			peakHeap += pool.getPeakUsage().getUsed();
+		}
+
+		long events = context.getNumProcessedEvents();
+		double eventsPerSecond = runTime > 0 ? events / (runTime / 1e9) : 0;
+		System.out.println(step[0] + "," + step[0] * step[1] + "," + federation.getNumHosts() + ","
+				+ federation.getNumVms() + "," + federation.getNumCloudlets() + "," + events + ","
+				+ setupTime / 1000000 + "," + runTime / 1000000 + ","
+				+ Math.round(eventsPerSecond) + "," + peakHeap / (1024 * 1024) + "," + gcTime
+				+ "," + gcCount);
+	}
+
+	/**
+	 * Parses a size step.
+	 *
+	 * @param arg the step, as <tt>BxDxHxVxC</tt>
+	 * @return the five sizes of the step
+	 * @throws IllegalArgumentException if the step is not made of five integers
+	 */
+	private static int[] parseStep(String arg) {
+		String[] parts = arg.split("x");
+		if (parts.length != 5) {
+			throw new IllegalArgumentException("A step must be given as BxDxHxVxC: " + arg);
+		}
+		int[] step = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			step[i] = Integer.parseInt(parts[i].trim());
+		}
+		return step;
+	}
+
+	/**
+	 * Gets the total time spent in garbage collection since the start of the JVM.
+	 *
+	 * @return the time in milliseconds
+	 */
+	private static long totalGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Gets the total number of garbage collections since the start of the JVM.
+	 *
+	 * @return the number of collections
+	 */
+	private static long totalGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+}
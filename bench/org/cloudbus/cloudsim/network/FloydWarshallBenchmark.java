@@ -0,0 +1,98 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FloydWarshall_Float#allPairsShortestPaths(float[][])} on a random sparse
+ * topology, as done when the delay matrix of a network topology is built.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FloydWarshall_Float
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FloydWarshallBenchmark {
+
+	/** The average number of links of each node. */
+	private static final int DEGREE = 4;
+
+	/** The number of nodes of the topology. */
+	@Param({ "100", "200" })
+	public int nodes;
+
+	/** The adjacency matrix of the topology. */
+	private float[][] adjacency;
+
+	/** The algorithm. */
+	private final FloydWarshall_Float floydWarshall = new FloydWarshall_Float();
+
+	/**
+	 * Creates a connected random topology.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		adjacency = new float[nodes][nodes];
+		for (int i = 1; i < nodes; i++) {
+			// a link to a previous node keeps the topology connected
+			link(i, random.nextInt(i), random);
+		}
+		for (int i = 0; i < nodes * (DEGREE - 1); i++) {
+			int src = random.nextInt(nodes);
+			int dest = random.nextInt(nodes);
+			if (src != dest) {
+				link(src, dest, random);
+			}
+		}
+		floydWarshall.initialize(nodes);
+	}
+
+	/**
+	 * Adds an undirected link with a random latency.
+	 *
+	 * @param src the source node
+	 * @param dest the destination node
+	 * @param random the random generator
+	 */
+	private void link(int src, int dest, Random random) {
+		float latency = 1 + random.nextInt(100);
+		adjacency[src][dest] = latency;
+		adjacency[dest][src] = latency;
+	}
+
+	/**
+	 * Computes the delays between all the pairs of nodes.
+	 *
+	 * @return the delay matrix
+	 */
+	@Benchmark
+	public float[][] allPairsShortestPaths() {
+		return floydWarshall.allPairsShortestPaths(adjacency);
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudbus.cloudsim.CloudletSchedulerDynamicWorkload;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.VmSchedulerTimeSharedOverSubscription;
+import org.cloudbus.cloudsim.power.models.PowerModel;
+import org.cloudbus.cloudsim.power.models.PowerModelSpecPowerHpProLiantMl110G4Xeon3040;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PowerVmAllocationPolicyMigrationAbstract#optimizeAllocation(List)} through
+ * {@link PowerVmAllocationPolicyMigrationStaticThreshold}, on a datacenter where part of the hosts
+ * are over-utilized and part of them are under-utilized.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see PowerVmAllocationPolicyMigrationAbstract
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PowerVmAllocationPolicyMigrationBenchmark {
+
+	/** The number of PEs of each host. */
+	private static final int PES = 2;
+
+	/** The MIPS of each PE of the hosts. */
+	private static final double MIPS = 2500;
+
+	/** The utilization threshold of the hosts. */
+	private static final double THRESHOLD = 0.8;
+
+	/** The number of hosts. */
+	@Param({ "100", "1000" })
+	public int hosts;
+
+	/** The allocation policy. */
+	private PowerVmAllocationPolicyMigrationStaticThreshold policy;
+
+	/** The VMs. */
+	private final List<PowerVm> vmList = new ArrayList<PowerVm>();
+
+	/**
+	 * Creates the hosts and places between one and three VMs on each of them. The history of the
+	 * policy grows with each optimisation, so the datacenter is created again for each iteration.
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		Log.disable();
+		PowerModel powerModel = new PowerModelSpecPowerHpProLiantMl110G4Xeon3040();
+		List<PowerHost> hostList = new ArrayList<PowerHost>();
+		for (int i = 0; i < hosts; i++) {
+			List<Pe> peList = new ArrayList<Pe>();
+			for (int j = 0; j < PES; j++) {
+				peList.add(new Pe(j, new PeProvisionerSimple(MIPS)));
+			}
+			hostList.add(new PowerHostUtilizationHistory(i, new RamProvisionerSimple(8192),
+					new BwProvisionerSimple(1000000), 1000000, peList,
+					new VmSchedulerTimeSharedOverSubscription(peList), powerModel));
+		}
+		policy = new PowerVmAllocationPolicyMigrationStaticThreshold(hostList,
+				new PowerVmSelectionPolicyMinimumMigrationTime(), THRESHOLD);
+
+		Random random = new Random(42);
+		vmList.clear();
+		for (PowerHost host : hostList) {
+			int vms = 1 + random.nextInt(3);
+			for (int i = 0; i < vms; i++) {
+				double mips = 500 + random.nextInt(3) * 500;
+				PowerVm vm = new PowerVm(vmList.size(), 0, mips, 1, 1024, 1000, 2500, 1, "Xen",
+						new CloudletSchedulerDynamicWorkload(mips, 1), 300);
+				if (policy.allocateHostForVm(vm, host)) {
+					vmList.add(vm);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the migrations that relieve the over-utilized hosts and empty the under-utilized
+	 * ones.
+	 *
+	 * @return the migration map
+	 */
+	@Benchmark
+	public List<Map<String, Object>> optimizeAllocation() {
+		return policy.optimizeAllocation(vmList);
+	}
+
+}
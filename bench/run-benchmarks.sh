@@ -0,0 +1,39 @@
+#!/bin/sh
+#
+# Compiles the JMH benchmarks of the bench source root and runs them, writing the results in JSON
+# so that they can be compared between releases.
+#
+# Usage: bench/run-benchmarks.sh [results.json] [JMH options]
+#
+#   results.json  the result file, bench/results.json by default
+#   JMH options   passed to JMH, e.g. a benchmark regexp, -f 1 or -prof gc
+#
+# JMH_CLASSPATH must list the JMH jars: jmh-core, jmh-generator-annprocess and their dependencies
+# (jopt-simple and commons-math3), separated by ':'.
+
+set -e
+
+if [ -z "$JMH_CLASSPATH" ]; then
+	echo "JMH_CLASSPATH must list the jmh-core and jmh-generator-annprocess jars" >&2
+	exit 1
+fi
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+BUILD="$ROOT/bench/build"
+RESULTS=${1:-"$ROOT/bench/results.json"}
+if [ $# -gt 0 ]; then
+	shift
+fi
+
+CLASSPATH="$JMH_CLASSPATH"
+for jar in "$ROOT"/libs/*.jar; do
+	CLASSPATH="$CLASSPATH:$jar"
+done
+
+# only the simulator classes used by the benchmarks are compiled from the source path
+rm -rf "$BUILD"
+mkdir -p "$BUILD"
+javac -nowarn -encoding UTF-8 -d "$BUILD" -cp "$CLASSPATH" -sourcepath "$ROOT/src" \
+	$(find "$ROOT/bench" -name '*.java')
+
+java -cp "$BUILD:$CLASSPATH" org.openjdk.jmh.Main -rf json -rff "$RESULTS" "$@"
@@ -0,0 +1,25 @@
+#!/bin/sh
+#
+# Compiles and runs the end-to-end scalability driver, which simulates synthetic federations of
+# increasing size and prints, for each size step, the wall-clock time, the events per second, the
+# peak heap usage and the GC time as comma-separated values.
+#
+# Usage: bench/run-scalability.sh [BxDxHxVxC ...]
+#
+#   BxDxHxVxC  a size step: brokers, datacenters per broker, hosts per datacenter, VMs per broker
+#              and cloudlets per broker; the default steps go up to 1M cloudlets and 100k hosts
+#
+# JAVA_OPTS is passed to the JVM, e.g. JAVA_OPTS=-Xmx8g for the largest default steps.
+
+set -e
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+BUILD="$ROOT/bench/build"
+
+CLASSPATH="$ROOT/libs/*"
+
+mkdir -p "$BUILD"
+javac -nowarn -encoding UTF-8 -d "$BUILD" -cp "$CLASSPATH" -sourcepath "$ROOT/src:$ROOT/bench" \
+	"$ROOT/bench/org/cloudbus/cloudsim/examples/ScalabilityDriver.java"
+
+java $JAVA_OPTS -cp "$BUILD:$CLASSPATH" org.cloudbus.cloudsim.examples.ScalabilityDriver "$@"
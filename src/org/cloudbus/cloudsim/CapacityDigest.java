@@ -0,0 +1,225 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CapacityDigest is a compact summary of the capacity of the VMs of a broker, that brokers gossip
+ * to each other to choose the partners most likely to run a cloudlet before its deadline (see
+ * {@link DatacenterBroker#setPartnerSelectionSize(int)}). The VMs are grouped by class, i.e. by
+ * MIPS per PE and number of PEs, and the digest keeps, for each class, the number of VMs, the
+ * free PEs, the backlog of the VMs in MI and the earliest time at which one of them is available.
+ * <p>
+ * A digest is not changed once it has been sent, so it can be shared by the brokers that receive
+ * it.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see DatacenterBroker#setCapacityDigestPeriod(double)
+ */
+public class CapacityDigest {
+
+	/** The id of the broker. */
+	private final int brokerId;
+
+	/** The simulation time at which the digest was made. */
+	private final double time;
+
+	/** The VM classes. */
+	private final List<VmClass> vmClasses;
+
+	/**
+	 * Creates an empty digest of a broker.
+	 *
+	 * @param brokerId the id of the broker
+	 * @param time the current simulation time
+	 * @pre time >= 0
+	 * @post $none
+	 */
+	public CapacityDigest(int brokerId, double time) {
+		this.brokerId = brokerId;
+		this.time = time;
+		vmClasses = new ArrayList<VmClass>();
+	}
+
+	/**
+	 * Adds a VM of the broker to the digest. A VM reserved for a partner cloudlet has no free PE.
+	 *
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public void addVm(Vm vm) {
+		CloudletScheduler scheduler = vm.getCloudletScheduler();
+		int freePes = scheduler.getCloudletPartnerWaitingForExec() == null ? scheduler
+				.getNumberOfFreePes() : 0;
+		double backlog = scheduler.getRemainingLength();
+		double availableTime = time;
+		if (freePes == 0) {
+			availableTime += backlog / (vm.getMips() * vm.getNumberOfPes());
+		}
+
+		VmClass vmClass = null;
+		for (VmClass c : vmClasses) {
+			if (c.mips == vm.getMips() && c.pes == vm.getNumberOfPes()) {
+				vmClass = c;
+				break;
+			}
+		}
+		if (vmClass == null) {
+			vmClass = new VmClass(vm.getMips(), vm.getNumberOfPes(), availableTime);
+			vmClasses.add(vmClass);
+		}
+		vmClass.vms++;
+		vmClass.freePes += freePes;
+		vmClass.backlog += backlog;
+		vmClass.availableTime = Math.min(vmClass.availableTime, availableTime);
+	}
+
+	/**
+	 * Estimates the time the broker would take to run a cloudlet, from the digest: the time until
+	 * the earliest available VM that has enough PEs, plus the execution time on that VM.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param currentTime the current simulation time
+	 * @return the estimated time, {@link Double#POSITIVE_INFINITY} if no VM has enough PEs
+	 * @pre cloudlet != null
+	 * @post $none
+	 */
+	public double estimateFinishTime(Cloudlet cloudlet, double currentTime) {
+		double best = Double.POSITIVE_INFINITY;
+		for (VmClass c : vmClasses) {
+			if (c.pes >= cloudlet.getNumberOfPes()) {
+				double wait = Math.max(0, c.availableTime - currentTime);
+				best = Math.min(best, wait + cloudlet.getCloudletLength() / c.mips);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Gets the id of the broker.
+	 *
+	 * @return the broker id
+	 */
+	public int getBrokerId() {
+		return brokerId;
+	}
+
+	/**
+	 * Gets the simulation time at which the digest was made.
+	 *
+	 * @return the time
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the number of VM classes of the broker.
+	 *
+	 * @return the number of VM classes
+	 */
+	public int getNumberOfVmClasses() {
+		return vmClasses.size();
+	}
+
+	/**
+	 * Gets the number of VMs of the broker.
+	 *
+	 * @return the number of VMs
+	 */
+	public int getNumberOfVms() {
+		int vms = 0;
+		for (VmClass c : vmClasses) {
+			vms += c.vms;
+		}
+		return vms;
+	}
+
+	/**
+	 * Gets the number of free PEs of the VMs of the broker.
+	 *
+	 * @return the number of free PEs
+	 */
+	public int getFreePes() {
+		int freePes = 0;
+		for (VmClass c : vmClasses) {
+			freePes += c.freePes;
+		}
+		return freePes;
+	}
+
+	/**
+	 * Gets the backlog of the VMs of the broker.
+	 *
+	 * @return the length of the cloudlets still to run, in MI
+	 */
+	public double getBacklog() {
+		double backlog = 0;
+		for (VmClass c : vmClasses) {
+			backlog += c.backlog;
+		}
+		return backlog;
+	}
+
+	/**
+	 * Gets the earliest time at which a VM of the broker is available.
+	 *
+	 * @return the earliest available time, {@link Double#POSITIVE_INFINITY} if the broker has no
+	 *         VM
+	 */
+	public double getEarliestAvailableTime() {
+		double availableTime = Double.POSITIVE_INFINITY;
+		for (VmClass c : vmClasses) {
+			availableTime = Math.min(availableTime, c.availableTime);
+		}
+		return availableTime;
+	}
+
+	/**
+	 * The summary of the VMs of a class.
+	 */
+	private static class VmClass {
+
+		/** The MIPS per PE of the VMs. */
+		private final double mips;
+
+		/** The number of PEs of the VMs. */
+		private final int pes;
+
+		/** The number of VMs. */
+		private int vms;
+
+		/** The free PEs of the VMs. */
+		private int freePes;
+
+		/** The backlog of the VMs, in MI. */
+		private double backlog;
+
+		/** The earliest time at which one of the VMs is available. */
+		private double availableTime;
+
+		/**
+		 * Creates a new VM class.
+		 *
+		 * @param mips the MIPS per PE
+		 * @param pes the number of PEs
+		 * @param availableTime the available time of the first VM
+		 */
+		VmClass(double mips, int pes, double availableTime) {
+			this.mips = mips;
+			this.pes = pes;
+			this.availableTime = availableTime;
+		}
+
+	}
+
+}
@@ -1489,4 +1489,28 @@ public class Cloudlet {
 		this.deadline = deadline;
 	}
 
+	/**
+	 * Creates a copy of this cloudlet, to be handed to another entity that must not share the
+	 * cloudlet, e.g. a partner that estimates it while this cloudlet's broker runs in another
+	 * partition. The copy has the id, user, VM, length, PEs, file sizes, deadline, utilization
+	 * models and required files of this cloudlet, but neither its status nor its execution
+	 * history, and it is a plain Cloudlet whatever the class of this cloudlet.
+	 * 
+	 * @return the copy
+	 * @pre $none
+	 * @post $result != null
+	 */
+	public Cloudlet copy() {
+		Cloudlet copy = new Cloudlet(getCloudletId(), getCloudletLength(), getNumberOfPes(),
+				getCloudletFileSize(), getCloudletOutputSize(), 0, getUtilizationModelCpu(),
+				getUtilizationModelRam(), getUtilizationModelBw(), false);
+		copy.userId = userId;
+		copy.vmId = vmId;
+		copy.deadline = deadline;
+		copy.classType = classType;
+		copy.netToS = netToS;
+		copy.requiredFiles.addAll(requiredFiles);
+		return copy;
+	}
+
 }
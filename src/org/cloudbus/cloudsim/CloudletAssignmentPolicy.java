@@ -0,0 +1,67 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.List;
+
+/**
+ * CloudletAssignmentPolicy is an abstract class that represents the policy a broker uses to
+ * choose the VM of each cloudlet that is not bound to a VM. The broker assigns its waiting
+ * cloudlets in rounds: it starts a round with the VMs created so far, asks the policy for the VM
+ * of each unbound cloudlet, and informs the policy of the VM of every cloudlet it submits, bound
+ * or not, and of every cloudlet that returns.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see DatacenterBroker#setCloudletAssignmentPolicy(CloudletAssignmentPolicy)
+ */
+public abstract class CloudletAssignmentPolicy {
+
+	/**
+	 * Starts a round of assignments.
+	 *
+	 * @param vms the VMs the cloudlets can be assigned to
+	 * @pre vms != null
+	 * @post $none
+	 */
+	public abstract void startAssignment(List<? extends Vm> vms);
+
+	/**
+	 * Selects the VM of a cloudlet that is not bound to a VM.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @return the VM, <tt>null</tt> if no VM can run the cloudlet
+	 * @pre cloudlet != null
+	 * @post $none
+	 */
+	public abstract Vm selectVm(Cloudlet cloudlet);
+
+	/**
+	 * Informs the policy that a cloudlet is submitted to a VM, whether it was selected by the
+	 * policy or bound to the VM.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param vm the VM
+	 * @pre cloudlet != null
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public abstract void cloudletAssigned(Cloudlet cloudlet, Vm vm);
+
+	/**
+	 * Informs the policy that a cloudlet has returned to the broker. This implementation does
+	 * nothing; a policy that tracks the work assigned to the VMs overrides it.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @pre cloudlet != null
+	 * @post $none
+	 */
+	public void cloudletReturned(Cloudlet cloudlet) {
+	}
+
+}
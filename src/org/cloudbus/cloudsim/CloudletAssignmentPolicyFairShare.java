@@ -0,0 +1,192 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * CloudletAssignmentPolicyFairShare assigns each cloudlet to the VM that would run out of work
+ * first: the VM whose backlog, i.e. the length of the cloudlets assigned to it and not returned
+ * yet, is the shortest relative to its capacity. The VMs thus receive work in proportion to their
+ * MIPS. The VMs are kept ordered by backlog, so each assignment takes a time logarithmic in the
+ * number of VMs.
+ * <p>
+ * The backlogs are kept by the policy across the rounds, from the cloudlets it is informed of,
+ * rather than read from the cloudlet schedulers of the VMs, so the work still in flight to the
+ * datacenters is counted and the VMs may run in another partition than the broker. They are only
+ * rebuilt when the VMs of a round change, the VMs kept from the previous round keeping their
+ * backlogs.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class CloudletAssignmentPolicyFairShare extends CloudletAssignmentPolicy {
+
+	/** The VMs, the one that would run out of work first first. */
+	private final TreeSet<Share> shares;
+
+	/** The share of each VM. */
+	private Map<Vm, Share> sharesByVm;
+
+	/** The VM and the length of each cloudlet assigned and not returned yet. */
+	private final Map<Cloudlet, Assignment> assignments;
+
+	/** The VMs of the round. */
+	private List<? extends Vm> vms;
+
+	/** The number of VMs of the round. */
+	private int vmCount;
+
+	/**
+	 * Creates a new CloudletAssignmentPolicyFairShare object.
+	 */
+	public CloudletAssignmentPolicyFairShare() {
+		shares = new TreeSet<Share>(SHARE_ORDER);
+		sharesByVm = new IdentityHashMap<Vm, Share>();
+		assignments = new IdentityHashMap<Cloudlet, Assignment>();
+	}
+
+	@Override
+	public void startAssignment(List<? extends Vm> vms) {
+		if (vms == this.vms && vms.size() == vmCount) {
+			return;
+		}
+		this.vms = vms;
+		vmCount = vms.size();
+
+		Map<Vm, Share> previous = sharesByVm;
+		shares.clear();
+		sharesByVm = new IdentityHashMap<Vm, Share>();
+		int order = 0;
+		for (Vm vm : vms) {
+			double capacity = vm.getMips() * vm.getNumberOfPes();
+			if (capacity <= 0) {
+				continue;
+			}
+			Share share = previous.get(vm);
+			share = new Share(vm, order++, capacity, share == null ? 0 : share.backlog);
+			shares.add(share);
+			sharesByVm.put(vm, share);
+		}
+	}
+
+	@Override
+	public Vm selectVm(Cloudlet cloudlet) {
+		if (shares.isEmpty()) {
+			return null;
+		}
+		return shares.first().vm;
+	}
+
+	@Override
+	public void cloudletAssigned(Cloudlet cloudlet, Vm vm) {
+		// the datacenter adds the file transfer to the length, so the assigned length is kept
+		Assignment assignment = new Assignment(vm, cloudlet.getCloudletTotalLength());
+		assignments.put(cloudlet, assignment);
+		changeBacklog(vm, assignment.length);
+	}
+
+	@Override
+	public void cloudletReturned(Cloudlet cloudlet) {
+		Assignment assignment = assignments.remove(cloudlet);
+		if (assignment != null) {
+			changeBacklog(assignment.vm, -assignment.length);
+		}
+	}
+
+	/**
+	 * Changes the backlog of a VM and its place in the order of the VMs.
+	 *
+	 * @param vm the VM
+	 * @param length the length to add to the backlog, in MI
+	 */
+	private void changeBacklog(Vm vm, double length) {
+		Share share = sharesByVm.get(vm);
+		if (share != null) {
+			shares.remove(share);
+			share.backlog += length;
+			shares.add(share);
+		}
+	}
+
+	/** The order of the VMs: the shortest backlog relative to the capacity first, then the oldest. */
+	private static final Comparator<Share> SHARE_ORDER = new Comparator<Share>() {
+
+		@Override
+		public int compare(Share share1, Share share2) {
+			int result = Double.compare(share1.backlog / share1.capacity, share2.backlog / share2.capacity);
+			if (result == 0) {
+				result = share1.order < share2.order ? -1 : (share1.order == share2.order ? 0 : 1);
+			}
+			return result;
+		}
+	};
+
+	/**
+	 * The backlog of a VM.
+	 */
+	private static class Share {
+
+		/** The VM. */
+		private final Vm vm;
+
+		/** The position of the VM in the round. */
+		private final int order;
+
+		/** The MIPS of all the PEs of the VM. */
+		private final double capacity;
+
+		/** The length of the cloudlets assigned to the VM and not returned yet, in MI. */
+		private double backlog;
+
+		/**
+		 * Creates the share of a VM.
+		 *
+		 * @param vm the VM
+		 * @param order the position of the VM in the round
+		 * @param capacity the MIPS of all the PEs of the VM
+		 * @param backlog the length of the cloudlets assigned to the VM and not returned yet
+		 */
+		Share(Vm vm, int order, double capacity, double backlog) {
+			this.vm = vm;
+			this.order = order;
+			this.capacity = capacity;
+			this.backlog = backlog;
+		}
+
+	}
+
+	/**
+	 * The assignment of a cloudlet to a VM.
+	 */
+	private static class Assignment {
+
+		/** The VM. */
+		private final Vm vm;
+
+		/** The length of the cloudlet when it was assigned, in MI. */
+		private final double length;
+
+		/**
+		 * Creates the assignment of a cloudlet.
+		 *
+		 * @param vm the VM
+		 * @param length the length of the cloudlet when it was assigned
+		 */
+		Assignment(Vm vm, double length) {
+			this.vm = vm;
+			this.length = length;
+		}
+
+	}
+
+}
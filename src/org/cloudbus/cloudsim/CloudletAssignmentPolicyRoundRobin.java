@@ -0,0 +1,55 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.List;
+
+/**
+ * CloudletAssignmentPolicyRoundRobin assigns the cloudlets to the VMs in turn. A round starts
+ * from the first VM, unless the VMs are the ones of the previous round, in which case it goes on
+ * with the turn of that round; the cloudlets arriving one at a time are then spread over the VMs
+ * too. Every submitted cloudlet, bound or not, moves the turn to the next VM. It is the default
+ * policy of {@link DatacenterBroker}.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class CloudletAssignmentPolicyRoundRobin extends CloudletAssignmentPolicy {
+
+	/** The VMs of the round. */
+	private List<? extends Vm> vms;
+
+	/** The number of VMs of the round. */
+	private int vmCount;
+
+	/** The index of the next VM. */
+	private int vmIndex;
+
+	@Override
+	public void startAssignment(List<? extends Vm> vms) {
+		if (vms != this.vms || vms.size() != vmCount) {
+			vmIndex = 0;
+		}
+		this.vms = vms;
+		vmCount = vms.size();
+	}
+
+	@Override
+	public Vm selectVm(Cloudlet cloudlet) {
+		if (vms.isEmpty()) {
+			return null;
+		}
+		return vms.get(vmIndex);
+	}
+
+	@Override
+	public void cloudletAssigned(Cloudlet cloudlet, Vm vm) {
+		vmIndex = (vmIndex + 1) % vms.size();
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * CloudletCompletionQueue collects, for a datacenter, the cloudlet schedulers of its VMs that have
+ * finished cloudlets to return, so that the datacenter returns them without
+ * polling every VM of every host. The schedulers push themselves to the queue when a cloudlet
+ * finishes (see {@link CloudletScheduler#cloudletFinished()}), and the datacenter takes them in
+ * the order they were pushed; a scheduler is in the queue at most once.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see Datacenter#checkCloudletCompletion()
+ */
+public class CloudletCompletionQueue {
+
+	/** The schedulers with finished cloudlets, in the order they were pushed. */
+	private final ArrayDeque<CloudletScheduler> finished;
+
+	/** The schedulers in {@link #finished}. */
+	private final Set<CloudletScheduler> finishedSet;
+
+	/**
+	 * Creates a new empty CloudletCompletionQueue object.
+	 */
+	public CloudletCompletionQueue() {
+		finished = new ArrayDeque<CloudletScheduler>();
+		finishedSet = Collections.newSetFromMap(new IdentityHashMap<CloudletScheduler, Boolean>());
+	}
+
+	/**
+	 * Adds a VM of the datacenter, whose scheduler then pushes itself to the queue.
+	 *
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public void add(Vm vm) {
+		vm.getCloudletScheduler().setCompletionQueue(this);
+	}
+
+	/**
+	 * Removes a VM of the datacenter. Its cloudlets not returned yet are no longer returned.
+	 *
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public void remove(Vm vm) {
+		CloudletScheduler scheduler = vm.getCloudletScheduler();
+		if (scheduler.getCompletionQueue() == this) {
+			scheduler.setCompletionQueue(null);
+		}
+		if (finishedSet.remove(scheduler)) {
+			finished.remove(scheduler);
+		}
+	}
+
+	/**
+	 * Pushes a scheduler that has a finished cloudlet.
+	 *
+	 * @param scheduler the cloudlet scheduler
+	 * @pre scheduler != null
+	 * @post $none
+	 */
+	public void cloudletFinished(CloudletScheduler scheduler) {
+		if (finishedSet.add(scheduler)) {
+			finished.add(scheduler);
+		}
+	}
+
+	/**
+	 * Takes the next scheduler that has finished cloudlets. The scheduler is pushed again by its
+	 * next finished cloudlet, so all its finished cloudlets have to be taken from it.
+	 *
+	 * @return the cloudlet scheduler, <tt>null</tt> if none
+	 */
+	public CloudletScheduler pollFinished() {
+		CloudletScheduler scheduler = finished.poll();
+		if (scheduler != null) {
+			finishedSet.remove(scheduler);
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Checks whether no scheduler has finished cloudlets to return.
+	 *
+	 * @return <tt>true</tt> if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return finished.isEmpty();
+	}
+
+}
@@ -32,6 +32,12 @@ public abstract class CloudletScheduler {
 	
 	private  Cloudlet cloudletPartnerWaitingForExec;
 
+	/** The index of the VMs of the datacenter to notify of changes, <tt>null</tt> if none. */
+	private VmPartnerIndex partnerIndex;
+
+	/** The queue of the datacenter to push finished cloudlets to, <tt>null</tt> if none. */
+	private CloudletCompletionQueue completionQueue;
+
 	/**
 	 * Creates a new CloudletScheduler object. This method must be invoked before starting the
 	 * actual simulation.
@@ -180,6 +186,110 @@ public abstract class CloudletScheduler {
 	 */
 	public abstract int runningCloudlets();
 
+	/**
+	 * Gets the number of PEs of the virtual machine that no cloudlet uses. By default, all the
+	 * PEs are free if no cloudlet runs, and none otherwise.
+	 * 
+	 * @return the number of free PEs
+	 * @pre $none
+	 * @post $result >= 0
+	 */
+	public int getNumberOfFreePes() {
+		if (runningCloudlets() > 0 || getCurrentMipsShare() == null) {
+			return 0;
+		}
+		int pes = 0;
+		for (Double mips : getCurrentMipsShare()) {
+			if (mips > 0) {
+				pes++;
+			}
+		}
+		return pes;
+	}
+
+	/**
+	 * Gets the length of the cloudlets of the virtual machine still to run, as of the last update
+	 * of their processing.
+	 * 
+	 * @return the remaining length in MI, 0 if the scheduler does not keep track of it
+	 * @pre $none
+	 * @post $result >= 0
+	 */
+	public double getRemainingLength() {
+		return 0;
+	}
+
+	/**
+	 * Gets the MIPS per PE a partner cloudlet would get on the free PEs of the virtual machine.
+	 * The index of the VMs of a datacenter selects the VM of a partner cloudlet from it (see
+	 * {@link VmPartnerIndex}), so a scheduler that overrides
+	 * {@link #estimatePartnerCloudlet(Cloudlet, double)} must override this method too, and call
+	 * {@link #partnerCapacityChanged()} whenever the result or its free PEs change.
+	 * 
+	 * @return the MIPS per PE, 0 if the scheduler does not run partner cloudlets
+	 * @pre $none
+	 * @post $result >= 0
+	 */
+	public double getPartnerMips() {
+		return 0;
+	}
+
+	/**
+	 * Notifies the index of the VMs of the datacenter, if any, that the free PEs, the MIPS per PE
+	 * or the reservation of the virtual machine for partner cloudlets changed.
+	 */
+	protected void partnerCapacityChanged() {
+		if (partnerIndex != null) {
+			partnerIndex.update(this);
+		}
+	}
+
+	/**
+	 * Gets the index of the VMs of the datacenter notified of the changes of this scheduler.
+	 * 
+	 * @return the index, <tt>null</tt> if none
+	 */
+	public VmPartnerIndex getPartnerIndex() {
+		return partnerIndex;
+	}
+
+	/**
+	 * Sets the index of the VMs of the datacenter notified of the changes of this scheduler.
+	 * 
+	 * @param partnerIndex the index, <tt>null</tt> if none
+	 */
+	protected void setPartnerIndex(VmPartnerIndex partnerIndex) {
+		this.partnerIndex = partnerIndex;
+	}
+
+	/**
+	 * Pushes this scheduler to the completion queue of the datacenter, if any. Must be called
+	 * whenever a cloudlet is added to the finished list, so that the datacenter returns it.
+	 */
+	protected void cloudletFinished() {
+		if (completionQueue != null) {
+			completionQueue.cloudletFinished(this);
+		}
+	}
+
+	/**
+	 * Gets the completion queue of the datacenter this scheduler pushes finished cloudlets to.
+	 * 
+	 * @return the completion queue, <tt>null</tt> if none
+	 */
+	public CloudletCompletionQueue getCompletionQueue() {
+		return completionQueue;
+	}
+
+	/**
+	 * Sets the completion queue of the datacenter this scheduler pushes finished cloudlets to.
+	 * 
+	 * @param completionQueue the completion queue, <tt>null</tt> if none
+	 */
+	protected void setCompletionQueue(CloudletCompletionQueue completionQueue) {
+		this.completionQueue = completionQueue;
+	}
+
 	/**
 	 * Returns one cloudlet to migrate to another vm.
 	 * 
@@ -318,5 +428,6 @@ public abstract class CloudletScheduler {
 	public void setCloudletPartnerWaitingForExec(
 			Cloudlet cloudletPartnerWaitingForExec) {
 		this.cloudletPartnerWaitingForExec = cloudletPartnerWaitingForExec;
+		partnerCapacityChanged();
 	}
 }
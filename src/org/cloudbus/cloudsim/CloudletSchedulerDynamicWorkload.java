@@ -153,6 +153,7 @@ public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShare
 		rcl.setCloudletStatus(Cloudlet.SUCCESS);
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
+		cloudletFinished();
 	}
 
 	/**
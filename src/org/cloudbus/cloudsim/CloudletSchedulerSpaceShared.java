@@ -47,6 +47,15 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	/** The used PEs. */
 	protected int usedPes;
 
+	/** The average MIPS of the PEs of the current MIPS share. */
+	private double currentCapacity;
+
+	/** The length of the cloudlets in the waiting list, in MI. */
+	private long waitingLength;
+
+	/** The remaining length of the cloudlets in the waiting list, in MI. */
+	private long waitingRemainingLength;
+
 	/**
 	 * Creates a new CloudletSchedulerSpaceShared object. This method must be invoked before
 	 * starting the actual simulation.
@@ -63,6 +72,9 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		cloudletPartnerSubmittedList = new ArrayList<ResCloudlet>();
 		usedPes = 0;
 		currentCpus = 0;
+		currentCapacity = 0;
+		waitingLength = 0;
+		waitingRemainingLength = 0;
 	}
 
 	/**
@@ -99,6 +111,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		// no more cloudlets in this scheduler
 		if (getCloudletExecList().size() == 0 && getCloudletWaitingList().size() == 0) {
 			setPreviousTime(currentTime);
+			partnerCapacityChanged();
 			return 0.0;
 		}
 
@@ -128,6 +141,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 						getCloudletExecList().add(rcl);
 						usedPes += rcl.getNumberOfPes();
 						toRemove.add(rcl);
+						removedFromWaitingList(rcl);
 						break;
 					}
 				}
@@ -136,6 +150,20 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		}
 
 		// estimate finish time of cloudlets in the execution queue
+		double nextEvent = getNextFinishTime(currentTime, capacity);
+		setPreviousTime(currentTime);
+		partnerCapacityChanged();
+		return nextEvent;
+	}
+
+	/**
+	 * Gets the earliest time at which a cloudlet in the execution queue finishes.
+	 * 
+	 * @param currentTime current simulation time
+	 * @param capacity the average MIPS of each PE
+	 * @return the earliest finish time, {@link Double#MAX_VALUE} if no cloudlet is running
+	 */
+	private double getNextFinishTime(double currentTime, double capacity) {
 		double nextEvent = Double.MAX_VALUE;
 		for (ResCloudlet rcl : getCloudletExecList()) {
 			double remainingLength = rcl.getRemainingCloudletLength();
@@ -147,10 +175,52 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 				nextEvent = estimatedFinishTime;
 			}
 		}
-		setPreviousTime(currentTime);
 		return nextEvent;
 	}
 
+	/**
+	 * Adds a cloudlet to the waiting list.
+	 * 
+	 * @param rcl the cloudlet
+	 */
+	private void addToWaitingList(ResCloudlet rcl) {
+		getCloudletWaitingList().add(rcl);
+		waitingLength += rcl.getCloudlet().getCloudletLength();
+		waitingRemainingLength += rcl.getRemainingCloudletLength();
+	}
+
+	/**
+	 * Accounts for a cloudlet removed from the waiting list. A waiting cloudlet makes no progress,
+	 * so its lengths are the ones it was added with.
+	 * 
+	 * @param rcl the cloudlet
+	 */
+	private void removedFromWaitingList(ResCloudlet rcl) {
+		waitingLength -= rcl.getCloudlet().getCloudletLength();
+		waitingRemainingLength -= rcl.getRemainingCloudletLength();
+	}
+
+	/**
+	 * Sets the current mips share, and the average MIPS of its PEs.
+	 * 
+	 * @param currentMipsShare the new current mips share
+	 */
+	@Override
+	protected void setCurrentMipsShare(List<Double> currentMipsShare) {
+		super.setCurrentMipsShare(currentMipsShare);
+		double capacity = 0.0;
+		int cpus = 0;
+		if (currentMipsShare != null) {
+			for (Double mips : currentMipsShare) {
+				capacity += mips;
+				if (mips > 0) {
+					cpus++;
+				}
+			}
+		}
+		currentCapacity = capacity / cpus;
+	}
+
 	/**
 	 * Cancels execution of a cloudlet.
 	 * 
@@ -195,6 +265,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 			if (rcl.getCloudletId() == cloudletId) {
 				rcl.setCloudletStatus(Cloudlet.CANCELED);
 				getCloudletWaitingList().remove(rcl);
+				removedFromWaitingList(rcl);
 				return rcl.getCloudlet();
 			}
 		}
@@ -252,6 +323,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		if (found) {
 			// moves to the paused list
 			ResCloudlet rgl = getCloudletWaitingList().remove(position);
+			removedFromWaitingList(rgl);
 			if (rgl.getRemainingCloudletLength() == 0) {
 				cloudletFinish(rgl);
 			} else {
@@ -278,6 +350,8 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
 		usedPes -= rcl.getNumberOfPes();
+		cloudletFinished();
+		partnerCapacityChanged();
 	}
 
 	/**
@@ -318,6 +392,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 
 				getCloudletExecList().add(rcl);
 				usedPes += rcl.getNumberOfPes();
+				partnerCapacityChanged();
 
 				// calculate the expected time for cloudlet completion
 				double capacity = 0.0;
@@ -343,7 +418,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 				size *= rcl.getNumberOfPes();
 				rcl.getCloudlet().setCloudletLength(size);
 
-				getCloudletWaitingList().add(rcl);
+				addToWaitingList(rcl);
 				return 0.0;
 			}
 
@@ -365,6 +440,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	@Override
 	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime, double estimatedFinishTime) {
+		ResCloudlet queued = null;
 		// it can go to the exec list
 		if ((currentCpus - usedPes) >= cloudlet.getNumberOfPes()) {
 			ResCloudlet rcl = new ResCloudlet(cloudlet);
@@ -376,9 +452,8 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 			usedPes += cloudlet.getNumberOfPes();
 		} else {
 			// no enough free PEs: go to the waiting queue
-			ResCloudlet rcl = new ResCloudlet(cloudlet);
-			rcl.setCloudletStatus(Cloudlet.QUEUED);
-			getCloudletWaitingList().add(rcl);
+			queued = new ResCloudlet(cloudlet);
+			queued.setCloudletStatus(Cloudlet.QUEUED);
 //			getCloudletPartnerSubmittedList().add(rcl);
 //			return 0.0;
 		}
@@ -402,6 +477,10 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		long length = cloudlet.getCloudletLength();
 		length += extraSize;
 		cloudlet.setCloudletLength(length);
+		if (queued != null) {
+			addToWaitingList(queued);
+		}
+		partnerCapacityChanged();
 		return cloudlet.getCloudletLength() / capacity;
 	}
 	
@@ -420,23 +499,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		if ((currentCpus - usedPes) >= cloudlet.getNumberOfPes()) {
 			// this Vm can process cloudlet
 			// calculate the expected time for cloudlet completion
-			double capacity = 0.0;
-			int cpus = 0;
-			for (Double mips : getCurrentMipsShare()) {
-				capacity += mips;
-				if (mips > 0) {
-					cpus++;
-				}
-			}
-			capacity /= cpus;
-			
-			// use the current capacity to estimate the extra amount of
-			// time to file transferring. It must be added to the cloudlet length
-			double extraSize = capacity * fileTransferTime;
-			long length = cloudlet.getCloudletLength();
-			length += extraSize;
-			cloudlet.setCloudletLength(length);
-			return cloudlet.getCloudletLength() / capacity;
+			return getLengthWithFileTransfer(cloudlet, fileTransferTime) / currentCapacity;
 		} else {// no enough free PEs
 			return 0.0;
 		}
@@ -566,6 +629,42 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		return getCloudletExecList().size();
 	}
 
+	/**
+	 * Gets the number of PEs of the virtual machine that no running cloudlet uses.
+	 * 
+	 * @return the number of free PEs
+	 */
+	@Override
+	public int getNumberOfFreePes() {
+		return Math.max(0, currentCpus - usedPes);
+	}
+
+	/**
+	 * Gets the MIPS per PE a partner cloudlet would get on the free PEs of the virtual machine:
+	 * the average MIPS of the PEs of the current MIPS share.
+	 * 
+	 * @return the MIPS per PE, 0 if the virtual machine has no MIPS share
+	 */
+	@Override
+	public double getPartnerMips() {
+		return currentCapacity > 0 ? currentCapacity : 0;
+	}
+
+	/**
+	 * Gets the length of the running and waiting cloudlets still to run, as of the last update of
+	 * their processing.
+	 * 
+	 * @return the remaining length in MI
+	 */
+	@Override
+	public double getRemainingLength() {
+		double length = waitingRemainingLength;
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			length += rcl.getRemainingCloudletLength();
+		}
+		return length;
+	}
+
 	/**
 	 * Returns one cloudlet to migrate to another vm.
 	 * 
@@ -579,6 +678,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		Cloudlet cl = rcl.getCloudlet();
 		usedPes -= cl.getNumberOfPes();
+		partnerCapacityChanged();
 		return cl;
 	}
 
@@ -601,6 +701,12 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	protected <T extends ResCloudlet> void cloudletWaitingList(List<T> cloudletWaitingList) {
 		this.cloudletWaitingList = cloudletWaitingList;
+		waitingLength = 0;
+		waitingRemainingLength = 0;
+		for (ResCloudlet rcl : cloudletWaitingList) {
+			waitingLength += rcl.getCloudlet().getCloudletLength();
+			waitingRemainingLength += rcl.getRemainingCloudletLength();
+		}
 	}
 
 	/**
@@ -699,6 +805,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		}
 		currentCpus = cpus;
 		capacity /= cpus; // average capacity of each cpu
+		partnerCapacityChanged();
 		return capacity;
 	}
 
@@ -749,56 +856,45 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		this.cloudletPartnerSubmittedList = cloudletPartnerSubmittedList;
 	}
 
+	/**
+	 * Estimates the time at which a cloudlet submitted to this scheduler would finish: its
+	 * processing time, plus the finish time of the earliest running cloudlet and the processing
+	 * time of the waiting cloudlets. The waiting cloudlets are accounted for by their total
+	 * length, kept up to date as they enter and leave the waiting list, so the estimate does not
+	 * depend on their number. The estimate neither changes the cloudlet nor updates the
+	 * processing of the running cloudlets, which the caller must do first.
+	 * 
+	 * @param cloudlet the cloudlet
+	 * @param fileTransferTime time required to move the required files from the SAN to the VM
+	 * @return the estimated finish time
+	 * @pre cloudlet != null
+	 * @post $none
+	 */
 	@Override
 	public double estimateCloudletFinishTime(Cloudlet cloudlet,
 			double fileTransferTime) {
-		double result  = 0;
-		double finishTimeofExecQeue = updateVmProcessing(CloudSim.clock(), getCurrentMipsShare());
-		double finishTimeofWaitingQeue = calFinishTimeOfWatingQueue();
-//		if ((currentCpus - usedPes) >= cloudlet.getNumberOfPes()) {
-			// this Vm can process cloudlet
-			// calculate the expected time for cloudlet completion
-			double capacity = 0.0;
-			int cpus = 0;
-			for (Double mips : getCurrentMipsShare()) {
-				capacity += mips;
-				if (mips > 0) {
-					cpus++;
-				}
-			}
-			capacity /= cpus;
-			// use the current capacity to estimate the extra amount of
-			// time to file transferring. It must be added to the cloudlet length
-			double extraSize = capacity * fileTransferTime;
-			long length = cloudlet.getCloudletLength();
-			length += extraSize;
-			cloudlet.setCloudletLength(length);
-			double finish_time =  cloudlet.getCloudletLength() / capacity;
-			result = finish_time + finishTimeofExecQeue + finishTimeofWaitingQeue;
-//		} else {// no enough free PEs
-			return result;
-//		}
-	}
-	
-	private long calFinishTimeOfWatingQueue(){
-		long total_time = 0;
-		for (ResCloudlet resCloudlet : cloudletWaitingList) {
-			Cloudlet cl  = resCloudlet.getCloudlet(); 
-			long length = cl.getCloudletLength();
-			int numofPes = cl.getNumberOfPes();
-			
-			double capacity = 0.0;
-			int cpus = 0;
-			for (Double mips : getCurrentMipsShare()) {
-				capacity += mips;
-				if (mips > 0) {
-					cpus++;
-				}
-			}
-			capacity /= cpus;
-			total_time += length/capacity;
+		double finishTimeofExecQeue = 0.0;
+		if (getCloudletExecList().size() != 0 || getCloudletWaitingList().size() != 0) {
+			finishTimeofExecQeue = getNextFinishTime(CloudSim.clock(), currentCapacity);
 		}
-		return total_time;
+		double finishTimeofWaitingQeue = waitingLength / currentCapacity;
+		double finish_time = getLengthWithFileTransfer(cloudlet, fileTransferTime) / currentCapacity;
+		return finish_time + finishTimeofExecQeue + finishTimeofWaitingQeue;
+	}
+
+	/**
+	 * Gets the length of a cloudlet plus the extra amount of MI the current capacity would
+	 * process while its required files are transferred, as {@link #cloudletSubmit(Cloudlet, double, double)}
+	 * sets it.
+	 * 
+	 * @param cloudlet the cloudlet
+	 * @param fileTransferTime time required to move the required files from the SAN to the VM
+	 * @return the length in MI
+	 */
+	private long getLengthWithFileTransfer(Cloudlet cloudlet, double fileTransferTime) {
+		long length = cloudlet.getCloudletLength();
+		length += currentCapacity * fileTransferTime;
+		return length;
 	}
 	
 
@@ -246,6 +246,7 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		rcl.setCloudletStatus(Cloudlet.SUCCESS);
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
+		cloudletFinished();
 	}
 
 	/**
@@ -417,6 +418,21 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		return getCloudletExecList().size();
 	}
 
+	/**
+	 * Gets the length of the running cloudlets still to run, as of the last update of their
+	 * processing.
+	 * 
+	 * @return the remaining length in MI
+	 */
+	@Override
+	public double getRemainingLength() {
+		double length = 0;
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			length += rcl.getRemainingCloudletLength();
+		}
+		return length;
+	}
+
 	/**
 	 * Returns one cloudlet to migrate to another vm.
 	 * 
@@ -0,0 +1,52 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+/**
+ * CloudletSource supplies the cloudlets of a broker one at a time, in the order of their arrival
+ * times, so that an open-loop workload does not have to be created before the simulation starts
+ * (see {@link DatacenterBroker#setCloudletSource(CloudletSource)}). The broker only takes a
+ * cloudlet from the source when its arrival time is reached, so only the cloudlets that arrived
+ * and are not finished yet are held in memory.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see org.cloudbus.cloudsim.util.WorkloadFileReader#getCloudletSource()
+ * @see org.cloudbus.cloudsim.util.SyntheticCloudletSource
+ */
+public interface CloudletSource {
+
+	/**
+	 * Checks whether the source has another cloudlet.
+	 *
+	 * @return <tt>true</tt> if {@link #next()} returns a cloudlet
+	 * @pre $none
+	 * @post $none
+	 */
+	boolean hasNext();
+
+	/**
+	 * Gets the arrival time of the next cloudlet. Arrival times never decrease.
+	 *
+	 * @return the simulation time at which the next cloudlet arrives
+	 * @pre hasNext()
+	 * @post $result >= 0
+	 */
+	double getNextArrivalTime();
+
+	/**
+	 * Takes the next cloudlet from the source.
+	 *
+	 * @return the cloudlet
+	 * @throws java.util.NoSuchElementException if the source has no more cloudlet
+	 * @pre hasNext()
+	 * @post $result != null
+	 */
+	Cloudlet next();
+
+}
@@ -9,11 +9,12 @@ package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
@@ -54,6 +55,21 @@ public class Datacenter extends SimEntity {
 	/** The scheduling interval. */
 	private double schedulingInterval;
 
+	/**
+	 * The VM reserved for each partner cloudlet whose estimate succeeded, by owner and cloudlet id
+	 * (see {@link #reservationKey(int, int)}).
+	 */
+	private final Map<Long, Vm> partnerReservations = new HashMap<Long, Vm>();
+
+	/** The number of changes of the cloudlet schedulers that can change a partner estimate. */
+	private long partnerEstimateVersion;
+
+	/** The index of the VMs that can run a partner cloudlet at once. */
+	private final VmPartnerIndex partnerIndex = new VmPartnerIndex();
+
+	/** The schedulers of the VMs that have finished cloudlets to return. */
+	private final CloudletCompletionQueue completionQueue = new CloudletCompletionQueue();
+
 	/**
 	 * Allocates a new PowerDatacenter object.
 	 * 
@@ -160,6 +176,11 @@ public class Datacenter extends SimEntity {
 				processCloudletSubmit(ev, true);
 				break;
 
+			// New Cloudlets arrive together
+			case CloudSimTags.CLOUDLET_SUBMIT_BATCH:
+				processCloudletSubmitBatch(ev, false);
+				break;
+
 			// Cancels a previously submitted Cloudlet
 			case CloudSimTags.CLOUDLET_CANCEL:
 				processCloudlet(ev, CloudSimTags.CLOUDLET_CANCEL);
@@ -215,6 +236,14 @@ public class Datacenter extends SimEntity {
 				processVmCreate(ev, true);
 				break;
 
+			case CloudSimTags.VM_CREATE_BATCH:
+				processVmCreateBatch(ev, false);
+				break;
+
+			case CloudSimTags.VM_CREATE_BATCH_ACK:
+				processVmCreateBatch(ev, true);
+				break;
+
 			case CloudSimTags.VM_DESTROY:
 				processVmDestroy(ev, false);
 				break;
@@ -266,6 +295,12 @@ public class Datacenter extends SimEntity {
 			case CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLET_FROM_VM:
 				processSubmitCancelWatingExec(ev);
 				break;
+			case CloudSimTags.PARTNER_ESTIMATE_BATCH:
+				processCloudletEstimateBatch(ev);
+				break;
+			case CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLETS_FROM_VM:
+				processSubmitCancelWatingExecBatch(ev);
+				break;
 			// other unknown tags are processed by this method
 			default:
 				processOtherEvent(ev);
@@ -344,7 +379,7 @@ public class Datacenter extends SimEntity {
 
 		/******
 		 * // DEBUG Log.printLine(super.get_name() + ".addMasterFile(): " + file.getName() +
-		 * " from " + CloudSim.getEntityName(sentFrom));
+		 * " from " + getContext().getEntityName(sentFrom));
 		 *******/
 
 		Object[] data = new Object[3];
@@ -465,20 +500,69 @@ public class Datacenter extends SimEntity {
 			} else {
 				data[2] = CloudSimTags.FALSE;
 			}
-			send(vm.getUserId(), CloudSim.getMinTimeBetweenEvents(), CloudSimTags.VM_CREATE_ACK, data);
+			send(vm.getUserId(), getContext().getMinTimeBetweenEvents(), CloudSimTags.VM_CREATE_ACK, data);
 		}
 
 		if (result) {
-			getVmList().add(vm);
+			vmCreated(vm);
+		}
 
-			if (vm.isBeingInstantiated()) {
-				vm.setBeingInstantiated(false);
+	}
+
+	/**
+	 * Process the event for an User/Broker who wants to create a list of VMs in this Datacenter.
+	 * The VMs are given to the allocation policy together (see
+	 * {@link VmAllocationPolicy#allocateHostForVm(List)}), so that it can place them jointly, and
+	 * the status of all of them is sent back in one event: the id of this datacenter, then the id
+	 * of each VM followed by {@link CloudSimTags#TRUE} or {@link CloudSimTags#FALSE}.
+	 * 
+	 * @param ev a Sim_event object whose data is the list of VMs
+	 * @param ack the ack
+	 * @pre ev != null
+	 * @post $none
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processVmCreateBatch(SimEvent ev, boolean ack) {
+		List<Vm> vms = (List<Vm>) ev.getData();
+		boolean[] results = getVmAllocationPolicy().allocateHostForVm(vms);
+
+		int[] data = new int[1 + 2 * vms.size()];
+		data[0] = getId();
+		for (int i = 0; i < vms.size(); i++) {
+			Vm vm = vms.get(i);
+			data[1 + 2 * i] = vm.getId();
+			if (results[i]) {
+				data[2 + 2 * i] = CloudSimTags.TRUE;
+				vmCreated(vm);
+			} else {
+				data[2 + 2 * i] = CloudSimTags.FALSE;
 			}
+		}
+
+		if (ack) {
+			send(ev.getSource(), getContext().getMinTimeBetweenEvents(), CloudSimTags.VM_CREATE_BATCH_ACK, data);
+		}
+	}
 
-			vm.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(vm).getVmScheduler()
-					.getAllocatedMipsForVm(vm));
+	/**
+	 * Registers a VM that has been allocated a host of this datacenter and starts its processing.
+	 * 
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	protected void vmCreated(Vm vm) {
+		getVmList().add(vm);
+		partnerIndex.add(vm);
+		completionQueue.add(vm);
+		partnerEstimatesChanged();
+
+		if (vm.isBeingInstantiated()) {
+			vm.setBeingInstantiated(false);
 		}
 
+		vm.updateVmProcessing(getContext().clock(), getVmAllocationPolicy().getHost(vm).getVmScheduler()
+				.getAllocatedMipsForVm(vm));
 	}
 
 	/**
@@ -504,7 +588,22 @@ public class Datacenter extends SimEntity {
 			sendNow(vm.getUserId(), CloudSimTags.VM_DESTROY_ACK, data);
 		}
 
+		vmDestroyed(vm);
+	}
+
+	/**
+	 * Unregisters a VM whose host has been deallocated, the counterpart of
+	 * {@link #vmCreated(Vm)}.
+	 * 
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	protected void vmDestroyed(Vm vm) {
 		getVmList().remove(vm);
+		partnerIndex.remove(vm);
+		completionQueue.remove(vm);
+		partnerEstimatesChanged();
 	}
 
 	/**
@@ -550,10 +649,11 @@ public class Datacenter extends SimEntity {
 
 		Log.formatLine(
 				"%.2f: Migration of VM #%d to Host #%d is completed",
-				CloudSim.clock(),
+				getContext().clock(),
 				vm.getId(),
 				host.getId());
 		vm.setInMigration(false);
+		partnerEstimatesChanged();
 	}
 
 	/**
@@ -619,6 +719,7 @@ public class Datacenter extends SimEntity {
 			default:
 				break;
 		}
+		partnerEstimatesChanged();
 
 	}
 
@@ -633,6 +734,7 @@ public class Datacenter extends SimEntity {
 	 */
 	protected void processCloudletMove(int[] receivedData, int type) {
 		updateCloudletProcessing();
+		partnerEstimatesChanged();
 
 		int[] array = receivedData;
 		int cloudletId = array[0];
@@ -701,13 +803,45 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
-		try {
-			// gets the Cloudlet object
-			Cloudlet cl = (Cloudlet) ev.getData();
+		submitCloudlet((Cloudlet) ev.getData(), ack, null);
+		checkCloudletCompletion();
+	}
+
+	/**
+	 * Processes the submission of a list of cloudlets in one pass. Each cloudlet is submitted as
+	 * by {@link #processCloudletSubmit(SimEvent, boolean)}, but the completion of the cloudlets is
+	 * checked once for the whole list, and a single update of the cloudlet processing is
+	 * scheduled for the cloudlets that are expected to finish at the same time.
+	 * 
+	 * @param ev the event holding the list of cloudlets
+	 * @param ack whether the sender asks for an ack of each cloudlet
+	 * @pre ev != null
+	 * @post $none
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processCloudletSubmitBatch(SimEvent ev, boolean ack) {
+		Set<Double> updates = new HashSet<Double>();
+		for (Cloudlet cl : (List<Cloudlet>) ev.getData()) {
+			submitCloudlet(cl, ack, updates);
+		}
+		checkCloudletCompletion();
+	}
 
+	/**
+	 * Submits a cloudlet to its VM if the VM can run it before its deadline, and to the partners
+	 * otherwise.
+	 * 
+	 * @param cl the cloudlet
+	 * @param ack an acknowledgement
+	 * @param updates the delays of the updates of the cloudlet processing already scheduled for
+	 *            the other cloudlets submitted with this one, or <tt>null</tt> if it is submitted
+	 *            on its own
+	 */
+	private void submitCloudlet(Cloudlet cl, boolean ack, Set<Double> updates) {
+		try {
 			// checks whether this Cloudlet has finished or not
 			if (cl.isFinished()) {
-				String name = CloudSim.getEntityName(cl.getUserId());
+				String name = getContext().getEntityName(cl.getUserId());
 				Log.printLine(getName() + ": Warning - Cloudlet #" + cl.getCloudletId() + " owned by " + name
 						+ " is already completed/finished.");
 				Log.printLine("Therefore, it is not being executed again");
@@ -754,6 +888,8 @@ public class Datacenter extends SimEntity {
 			 * else send to partner to execute
 			 * 		
 			 */
+			// bring the running cloudlets up to date, the estimate does not
+			scheduler.updateVmProcessing(getContext().clock(), scheduler.getCurrentMipsShare());
 			double estimatedFinishTime = scheduler.estimateCloudletFinishTime(cl, fileTransferTime);
 			estimatedFinishTime += fileTransferTime;
 //			if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime))
@@ -761,15 +897,18 @@ public class Datacenter extends SimEntity {
 				//exec in this vm
 				if(estimatedFinishTime <= cl.getDeadline()){
 					double estimatedFinishTimeWhenSubmit = scheduler.cloudletSubmit(cl, fileTransferTime,estimatedFinishTime);
+					partnerEstimatesChanged();
 					if (cl.getStatus() == Cloudlet.INEXEC) {
 						estimatedFinishTimeWhenSubmit += fileTransferTime;
-						send(getId(), estimatedFinishTimeWhenSubmit, CloudSimTags.VM_DATACENTER_EVENT);
-						Log.printLine(CloudSim.clock()+ " Cloudlet "+ cl.getCloudletId() + " is executing in " +getName() +" with estimate time" + estimatedFinishTime);
+						if (updates == null || updates.add(estimatedFinishTimeWhenSubmit)) {
+							send(getId(), estimatedFinishTimeWhenSubmit, CloudSimTags.VM_DATACENTER_EVENT);
+						}
+						Log.printLine(getContext().clock()+ " Cloudlet "+ cl.getCloudletId() + " is executing in " +getName() +" with estimate time" + estimatedFinishTime);
 					} 
 				} 
 				//send to partner execute
 				else{
-					Log.printLine(CloudSim.clock()+ " Cloudlet "+ cl.getCloudletId() + " is sending to parner to estimate"); 
+					Log.printLine(getContext().clock()+ " Cloudlet "+ cl.getCloudletId() + " is sending to parner to estimate"); 
 					send(getId(), 0, CloudSimTags.DATACENTER_SUBMIT_TO_PARTNER,cl);
 				}
 //			}
@@ -791,39 +930,69 @@ public class Datacenter extends SimEntity {
 			Log.printLine(getName() + ".processCloudletSubmit(): " + "Exception error.");
 			e.printStackTrace();
 		}
-
-		checkCloudletCompletion();
 	}
 	
 	protected void processCloudletEstimate(SimEvent e) {
 		Object[] data = (Object[]) e.getData();
-		Cloudlet cl = (Cloudlet) data[1];
+		Object[] estimate = estimatePartnerCloudlet((Cloudlet) data[1]);
+		Object[] reData = new Object[] {data[0], estimate[0], estimate[1], estimate[2], estimate[3]};
+		sendNow(e.getSource(), CloudSimTags.PARTNER_INTERNAL_ESTIMATE_RETURN, reData);
+	}
+
+	/**
+	 * Estimates a list of partner cloudlets and returns all the estimates in a single event. The
+	 * cloudlets are estimated in the order of the list, so a VM reserved for a cloudlet is not
+	 * offered to the next ones.
+	 * 
+	 * @param e the event holding the id of the broker that owns the cloudlets and the list of
+	 *            cloudlets
+	 * @see #estimatePartnerCloudlet(Cloudlet)
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processCloudletEstimateBatch(SimEvent e) {
+		Object[] data = (Object[]) e.getData();
+		List<Cloudlet> cloudlets = (List<Cloudlet>) data[1];
+		List<Object[]> estimates = new ArrayList<Object[]>(cloudlets.size());
+		for (Cloudlet cl : cloudlets) {
+			estimates.add(estimatePartnerCloudlet(cl));
+		}
+		sendNow(e.getSource(), CloudSimTags.PARTNER_INTERNAL_ESTIMATE_BATCH_RETURN, new Object[] {
+				data[0], estimates });
+	}
+
+	/**
+	 * Estimates the finish time of a partner cloudlet on the VMs of this datacenter, and reserves
+	 * the best VM if the cloudlet can finish before its deadline. The best VM, the fastest one that
+	 * can run the cloudlet at once, is found from the index of the VMs, so the cloudlet is only
+	 * estimated on that VM.
+	 * 
+	 * @param cl the partner cloudlet
+	 * @return the ResCloudlet holding the estimated finish time (0 if no VM can run the cloudlet),
+	 *         whether a VM has been reserved, the id of the best VM (-1 if there is none) and the
+	 *         state version of this datacenter after the estimate
+	 */
+	private Object[] estimatePartnerCloudlet(Cloudlet cl) {
 		Boolean result = false;
 		
 		double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
 		
-		List<Vm> vms = getVmList();
-		
 		double time = Double.MAX_VALUE;
-		
-		for (Vm vm: vms) {
-			CloudletScheduler scheduler = vm.getCloudletScheduler();
-			if(scheduler.getCloudletPartnerWaitingForExec() == null){
-				double esTime = scheduler.estimatePartnerCloudlet(cl, fileTransferTime);
-				Log.printLine(esTime);
-				if (esTime > 0.0 && esTime < time) {
-					time = esTime;
-					cl.setVmId(vm.getId());
-				}
+		Vm selectedVm = partnerIndex.select(cl.getNumberOfPes());
+		if (selectedVm != null) {
+			double esTime = selectedVm.getCloudletScheduler().estimatePartnerCloudlet(cl, fileTransferTime);
+			if (esTime > 0.0) {
+				time = esTime;
+			} else {
+				selectedVm = null;
 			}
 		}
 		//if can execute this task ontime
 		if(time <=  cl.getDeadline() && time != Double.MAX_VALUE){
 			result = true;
-			Vm vm  = getVmList().get(cl.getVmId());
-			vm.getCloudletScheduler().setCloudletPartnerWaitingForExec(cl);
+			selectedVm.getCloudletScheduler().setCloudletPartnerWaitingForExec(cl);
+			partnerReservations.put(reservationKey(cl.getUserId(), cl.getCloudletId()), selectedVm);
+			partnerEstimatesChanged();
 		}
-		Object[] reData;
 		ResCloudlet resCloudlet = new ResCloudlet(cl);
 		
 		if (time < Double.MAX_VALUE && time != 0) {
@@ -832,25 +1001,99 @@ public class Datacenter extends SimEntity {
 			resCloudlet.setFinishTime(0);
 		}
 
-		reData = new Object[] {data[0], resCloudlet, result};
-		sendNow(e.getSource(), CloudSimTags.PARTNER_INTERNAL_ESTIMATE_RETURN, reData);
+		// the VM is returned instead of being set in the cloudlet, which is only a copy
+		int vmId = selectedVm != null ? selectedVm.getId() : -1;
+		return new Object[] {resCloudlet, result, vmId, partnerEstimateVersion};
 	}
 	
 	/**
-	 * cancel waiting for executing of vm
-	 * @param ev
+	 * Cancels the reservation of a VM for a partner cloudlet. Only the reservation made for that
+	 * cloudlet is released, so a cancellation that arrives after the VM has been reserved by a
+	 * newer estimate leaves the newer reservation in place.
+	 * 
+	 * @param ev the event holding the ResCloudlet of the partner cloudlet
 	 */
 	private void processSubmitCancelWatingExec(SimEvent ev) {
 		ResCloudlet rCl = (ResCloudlet) ev.getData();
-		int vmID = rCl.getCloudlet().getVmId() ;
-		List<Vm> vms = getVmList();
-		Vm vm  = vms.get(vmID);
-		vm.getCloudletScheduler().setCloudletPartnerWaitingForExec(null);
-		Log.printLine(CloudSim.clock() + " canceled waiting exec on VM: #"+ vmID);
+		Vm vm = releasePartnerReservation(rCl.getUserId(), rCl.getCloudletId());
+		if (vm != null) {
+			Log.printLine(getContext().clock() + " canceled waiting exec on VM: #" + vm.getId());
+		}
+	}
+
+	/**
+	 * Cancels the reservations of VMs for a list of partner cloudlets.
+	 * 
+	 * @param ev the event holding the list of ResCloudlets of the partner cloudlets
+	 * @see #processSubmitCancelWatingExec(SimEvent)
+	 */
+	@SuppressWarnings("unchecked")
+	private void processSubmitCancelWatingExecBatch(SimEvent ev) {
+		List<ResCloudlet> rCls = (List<ResCloudlet>) ev.getData();
+		for (ResCloudlet rCl : rCls) {
+			Vm vm = releasePartnerReservation(rCl.getUserId(), rCl.getCloudletId());
+			if (vm != null) {
+				Log.printLine(getContext().clock() + " canceled waiting exec on VM: #" + vm.getId());
+			}
+		}
+	}
+
+	/**
+	 * Releases the VM reserved for a partner cloudlet, if any. The partners estimate copies of
+	 * the cloudlet (see {@link Cloudlet#copy()}), so the reservation is found by the ids of the
+	 * cloudlet rather than by the object the owner sends for execution.
+	 * 
+	 * @param userId the id of the broker that owns the cloudlet
+	 * @param cloudletId the id of the cloudlet
+	 * @return the VM that was reserved, or <tt>null</tt> if there was none
+	 */
+	private Vm releasePartnerReservation(int userId, int cloudletId) {
+		long key = reservationKey(userId, cloudletId);
+		Vm vm = partnerReservations.remove(key);
+		if (vm != null) {
+			Cloudlet waiting = vm.getCloudletScheduler().getCloudletPartnerWaitingForExec();
+			if (waiting != null && reservationKey(waiting.getUserId(), waiting.getCloudletId()) == key) {
+				vm.getCloudletScheduler().setCloudletPartnerWaitingForExec(null);
+				partnerEstimatesChanged();
+			}
+		}
+		return vm;
+	}
+
+	/**
+	 * Gets the key of the reservation of a VM for a partner cloudlet.
+	 * 
+	 * @param userId the id of the broker that owns the cloudlet
+	 * @param cloudletId the id of the cloudlet
+	 * @return the key
+	 */
+	private static long reservationKey(int userId, int cloudletId) {
+		return ((long) userId << 32) | (cloudletId & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Records a change of the cloudlet schedulers that can change the estimate of a partner
+	 * cloudlet: a cloudlet submitted, finished, cancelled, paused, resumed or moved, a VM created,
+	 * destroyed or migrated, or a VM reserved for a partner cloudlet or released.
+	 */
+	protected void partnerEstimatesChanged() {
+		partnerEstimateVersion++;
+	}
+
+	/**
+	 * Gets the state version of the cloudlet schedulers of this datacenter. It changes whenever
+	 * the estimate of a partner cloudlet can change, so an estimate made in the same version is
+	 * still valid.
+	 * 
+	 * @return the state version
+	 * @see PartnerEstimateCache
+	 */
+	public long getPartnerEstimateVersion() {
+		return partnerEstimateVersion;
 	}
 	
 	protected void processPartnerCloudlet(SimEvent ev) {
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Process partner cloudlet");
+		Log.printLine(getContext().clock() + ": " + getName() + ": Process partner cloudlet");
 		Object[] data = (Object[]) ev.getData();
 		Cloudlet cl = (Cloudlet)data[1];
 		
@@ -860,6 +1103,10 @@ public class Datacenter extends SimEntity {
 			sendNow(cl.getUserId(), CloudSimTags.PARTNER_EXEC_INTERNAL_RETURN, ret);
 		} 
 		
+		// the cloudlet is about to run, so its reservation is no longer needed; the cloudlet
+		// now belongs to the partner broker, so its owner is the sender
+		releasePartnerReservation((Integer) data[0], cl.getCloudletId());
+
 		// process this Cloudlet to this CloudResource
 		cl.setResourceParameter(getId(), getCharacteristics().getCostPerSecond(), getCharacteristics()
 				.getCostPerBw());
@@ -874,6 +1121,7 @@ public class Datacenter extends SimEntity {
 		Vm vm = host.getVm(vmId, userId);
 		CloudletScheduler scheduler = vm.getCloudletScheduler();
 		double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime,0);
+		partnerEstimatesChanged();
 
 		// if this cloudlet is in the exec queue
 		if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime) && cl.getStatus() == Cloudlet.INEXEC) {
@@ -927,7 +1175,7 @@ public class Datacenter extends SimEntity {
 		boolean status = false;
 		if (eventTime > 0.0) { // if this cloudlet is in the exec queue
 			status = true;
-			if (eventTime > CloudSim.clock()) {
+			if (eventTime > getContext().clock()) {
 				schedule(getId(), eventTime, CloudSimTags.VM_DATACENTER_EVENT);
 			}
 		}
@@ -999,47 +1247,46 @@ public class Datacenter extends SimEntity {
 		// if some time passed since last processing
 		// R: for term is to allow loop at simulation start. Otherwise, one initial
 		// simulation step is skipped and schedulers are not properly initialized
-		if (CloudSim.clock() < 0.111 || CloudSim.clock() > getLastProcessTime() + CloudSim.getMinTimeBetweenEvents()) {
+		if (getContext().clock() < 0.111 || getContext().clock() > getLastProcessTime() + getContext().getMinTimeBetweenEvents()) {
 			List<? extends Host> list = getVmAllocationPolicy().getHostList();
 			double smallerTime = Double.MAX_VALUE;
 			// for each host...
 			for (int i = 0; i < list.size(); i++) {
 				Host host = list.get(i);
 				// inform VMs to update processing
-				double time = host.updateVmsProcessing(CloudSim.clock());
+				double time = host.updateVmsProcessing(getContext().clock());
 				// what time do we expect that the next cloudlet will finish?
 				if (time < smallerTime) {
 					smallerTime = time;
 				}
 			}
 			// gurantees a minimal interval before scheduling the event
-			if (smallerTime < CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01) {
-				smallerTime = CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01;
+			if (smallerTime < getContext().clock() + getContext().getMinTimeBetweenEvents() + 0.01) {
+				smallerTime = getContext().clock() + getContext().getMinTimeBetweenEvents() + 0.01;
 			}
 			if (smallerTime != Double.MAX_VALUE) {
-				schedule(getId(), (smallerTime - CloudSim.clock()), CloudSimTags.VM_DATACENTER_EVENT);
+				schedule(getId(), (smallerTime - getContext().clock()), CloudSimTags.VM_DATACENTER_EVENT);
 			}
-			setLastProcessTime(CloudSim.clock());
+			setLastProcessTime(getContext().clock());
 		}
 	}
 
 	/**
 	 * Verifies if some cloudlet inside this PowerDatacenter already finished. If yes, send it to
-	 * the User/Broker
+	 * the User/Broker. Only the VMs that pushed finished cloudlets to the completion queue are
+	 * visited.
 	 * 
 	 * @pre $none
 	 * @post $none
 	 */
 	protected void checkCloudletCompletion() {
-		List<? extends Host> list = getVmAllocationPolicy().getHostList();
-		for (int i = 0; i < list.size(); i++) {
-			Host host = list.get(i);
-			for (Vm vm : host.getVmList()) {
-				while (vm.getCloudletScheduler().isFinishedCloudlets()) {
-					Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
-					if (cl != null) {
-						sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
-					}
+		CloudletScheduler scheduler;
+		while ((scheduler = completionQueue.pollFinished()) != null) {
+			while (scheduler.isFinishedCloudlets()) {
+				Cloudlet cl = scheduler.getNextFinishedCloudlet();
+				if (cl != null) {
+					sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+					partnerEstimatesChanged();
 				}
 			}
 		}
@@ -1187,9 +1434,9 @@ public class Datacenter extends SimEntity {
 		// this resource should register to regional GIS.
 		// However, if not specified, then register to system GIS (the
 		// default CloudInformationService) entity.
-		int gisID = CloudSim.getEntityId(regionalCisName);
+		int gisID = getContext().getEntityId(regionalCisName);
 		if (gisID == -1) {
-			gisID = CloudSim.getCloudInfoServiceEntityId();
+			gisID = getContext().getCloudInfoServiceEntityId();
 		}
 
 		// send the registration to GIS
@@ -10,17 +10,20 @@ package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.lists.CloudletList;
 import org.cloudbus.cloudsim.lists.VmList;
+import org.cloudbus.cloudsim.util.IntObjectMap;
+import org.cloudbus.cloudsim.util.MathUtil;
 
 
 
@@ -33,16 +36,49 @@ import org.cloudbus.cloudsim.lists.VmList;
  * @since CloudSim Toolkit 1.0
  */
 public class DatacenterBroker extends SimEntity {
+
+	/** The default number of cloudlets whose partner estimation can be in progress at once. */
+	public static final int DEFAULT_PARTNER_ESTIMATE_WINDOW = 1;
+
+	/** The partner estimate batch delay that disables batching. */
+	public static final double NO_PARTNER_ESTIMATE_BATCHING = -1;
+
+	/** The partner estimate cache time to live that disables the cache. */
+	public static final double NO_PARTNER_ESTIMATE_CACHE = -1;
+
+	/** The capacity digest period that disables the capacity digests. */
+	public static final double NO_CAPACITY_DIGEST = -1;
+
+	/** The default number of partners a broker publishes its capacity digest to. */
+	public static final int DEFAULT_CAPACITY_DIGEST_FANOUT = 2;
+
+	/** The number of periods after which a capacity digest is too old to select a partner. */
+	public static final int CAPACITY_DIGEST_MAX_AGE = 3;
+
+	/** The partner estimate timeout that disables the timeout. */
+	public static final double NO_PARTNER_ESTIMATE_TIMEOUT = -1;
+
+	/** The partner estimate decision margin that disables the early decision. */
+	public static final double NO_PARTNER_ESTIMATE_EARLY_DECISION = -1;
 	
 	/** The vm list. */
 	protected List<? extends Vm> vmList;
 
+	/** The vms of the vm list, by vm id. */
+	protected IntObjectMap<Vm> vmIndex;
+
 	/** The vms created list. */
 	protected List<? extends Vm> vmsCreatedList;
 
+	/** The vms of the vms created list, by vm id. */
+	protected IntObjectMap<Vm> vmsCreatedIndex;
+
 	/** The cloudlet list. */
 	protected List<? extends Cloudlet> cloudletList;
 
+	/** The cloudlets of the cloudlet list, by cloudlet id. */
+	protected IntObjectMap<Cloudlet> cloudletIndex;
+
 	/** The cloudlet submitted list. */
 	protected List<? extends Cloudlet> cloudletSubmittedList;
 
@@ -90,6 +126,89 @@ public class DatacenterBroker extends SimEntity {
 	
 	protected List<? extends Cloudlet> cloudletWaitingForEstimate;
 
+	/** The number of cloudlets sent to a partner broker for execution. */
+	protected int partnerOffloads;
+
+	/** The number of cloudlets whose partner estimation can be in progress at once. */
+	protected int partnerEstimateWindow;
+
+	/**
+	 * The time during which the cloudlets to estimate are accumulated before being sent to the
+	 * partners in one batch; negative if each cloudlet is sent on its own.
+	 */
+	protected double partnerEstimateBatchDelay;
+
+	/** Whether a batch of cloudlets to estimate is scheduled to be sent. */
+	protected boolean partnerEstimateFlushPending;
+
+	/** The estimates of partner cloudlets by the datacenters, <tt>null</tt> if not cached. */
+	protected PartnerEstimateCache partnerEstimateCache;
+
+	/** The time between two publications of the capacity digest, negative if not published. */
+	protected double capacityDigestPeriod;
+
+	/** The number of partners the capacity digest is published to. */
+	protected int capacityDigestFanout;
+
+	/** Whether the next publication of the capacity digest is scheduled. */
+	protected boolean capacityDigestPending;
+
+	/** The time of the last event processed by this broker that is not about capacity digests. */
+	protected double lastActivityTime;
+
+	/** The latest capacity digest known of each partner, by broker id. */
+	protected Map<Integer, CapacityDigest> partnerDigests;
+
+	/** The random generator that chooses the partners to publish the capacity digest to. */
+	protected Random capacityDigestRandom;
+
+	/** The number of partners each cloudlet is sent to for estimation, 0 for all of them. */
+	protected int partnerSelectionSize;
+
+	/** The number of estimations of a cloudlet requested to a partner. */
+	protected long partnerEstimateRequests;
+
+	/** The time a broker waits for the estimates of a cloudlet, negative if it waits for all. */
+	protected double partnerEstimateTimeout;
+
+	/**
+	 * The margin before the deadline of a cloudlet with which an estimate is good enough to send
+	 * the cloudlet without waiting for the other partners; negative if they are always waited for.
+	 */
+	protected double partnerEstimateDecisionMargin;
+
+	/** The time each cloudlet in partner estimation was handed to this broker, by cloudlet id. */
+	protected Map<Integer, Double> partnerEstimateRequestTimes;
+
+	/** The time taken to decide where each cloudlet estimated by the partners is executed. */
+	protected List<Double> offloadDecisionLatencies;
+
+	/** The number of partner estimations decided by the timeout. */
+	protected int partnerEstimateTimeouts;
+
+	/** The number of partner estimations decided before all the partners answered. */
+	protected int partnerEarlyDecisions;
+
+	/** The policy that chooses the VM of each cloudlet not bound to a VM. */
+	protected CloudletAssignmentPolicy cloudletAssignmentPolicy;
+
+	/** Whether the cloudlets are sent to each datacenter in one event. */
+	protected boolean cloudletSubmitBatching;
+
+	/** Whether the VMs are sent to each datacenter in one event. */
+	protected boolean vmCreateBatching;
+
+	/** Whether the returned cloudlets are kept in the cloudlet submitted and received lists. */
+	protected boolean retainReturnedCloudlets;
+
+	/** The number of cloudlets returned to this broker. */
+	protected int cloudletsReturned;
+
+	/** The source the cloudlets arriving during the simulation are taken from. */
+	protected CloudletSource cloudletSource;
+
+	/** Whether the arrival of the next cloudlet of the source is scheduled. */
+	protected boolean cloudletArrivalPending;
 
 	/**
 	 * Created a new DatacenterBroker object.
@@ -110,6 +229,30 @@ public class DatacenterBroker extends SimEntity {
 		setCloudletReceivedList(new ArrayList<Cloudlet>());
 
 		cloudletsSubmitted = 0;
+		partnerOffloads = 0;
+		setPartnerEstimateWindow(DEFAULT_PARTNER_ESTIMATE_WINDOW);
+		setPartnerEstimateBatchDelay(NO_PARTNER_ESTIMATE_BATCHING);
+		setPartnerEstimateCacheTtl(NO_PARTNER_ESTIMATE_CACHE);
+		setCapacityDigestPeriod(NO_CAPACITY_DIGEST);
+		setCapacityDigestFanout(DEFAULT_CAPACITY_DIGEST_FANOUT);
+		setPartnerSelectionSize(0);
+		capacityDigestPending = false;
+		partnerDigests = new HashMap<Integer, CapacityDigest>();
+		capacityDigestRandom = new Random(getId());
+		partnerEstimateRequests = 0;
+		partnerEstimateFlushPending = false;
+		setPartnerEstimateTimeout(NO_PARTNER_ESTIMATE_TIMEOUT);
+		setPartnerEstimateDecisionMargin(NO_PARTNER_ESTIMATE_EARLY_DECISION);
+		partnerEstimateRequestTimes = new HashMap<Integer, Double>();
+		offloadDecisionLatencies = new ArrayList<Double>();
+		partnerEstimateTimeouts = 0;
+		partnerEarlyDecisions = 0;
+		setCloudletAssignmentPolicy(new CloudletAssignmentPolicyRoundRobin());
+		setCloudletSubmitBatching(false);
+		setVmCreateBatching(false);
+		setRetainReturnedCloudlets(true);
+		cloudletsReturned = 0;
+		cloudletArrivalPending = false;
 		setVmsRequested(0);
 		setVmsAcks(0);
 		setVmsDestroyed(0);
@@ -123,7 +266,7 @@ public class DatacenterBroker extends SimEntity {
 		setBrokerIdsList(new ArrayList<Integer>());
 		setEstimateCloudletofParnerMap(new HashMap<Integer, EstimationCloudletOfPartner>());
 		setCloudletEstimating(new ArrayList<Cloudlet>());
-		setCloudletWaitingForEstimate(new ArrayList<Cloudlet>());
+		setCloudletWaitingForEstimate(new LinkedList<Cloudlet>());
 		
 	}
 
@@ -146,6 +289,7 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	public void submitVmList(List<? extends Vm> list) {
 		getVmList().addAll(list);
+		indexVms(vmIndex, list);
 	}
 
 	/**
@@ -157,6 +301,7 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	public void submitCloudletList(List<? extends Cloudlet> list) {
 		getCloudletList().addAll(list);
+		indexCloudlets(cloudletIndex, list);
 	}
 
 	/**
@@ -169,7 +314,7 @@ public class DatacenterBroker extends SimEntity {
 	 * @post $none
 	 */
 	public void bindCloudletToVm(int cloudletId, int vmId) {
-		CloudletList.getById(getCloudletList(), cloudletId).setVmId(vmId);
+		CloudletList.getById(getCloudletList(), cloudletIndex, cloudletId).setVmId(vmId);
 	}
 
 	/**
@@ -181,6 +326,13 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	@Override
 	public void processEvent(SimEvent ev) {
+		if (ev.getTag() != CloudSimTags.CAPACITY_DIGEST_TICK && ev.getTag() != CloudSimTags.CAPACITY_DIGEST) {
+			lastActivityTime = getContext().clock();
+			if (getCapacityDigestPeriod() > 0 && !capacityDigestPending) {
+				capacityDigestPending = true;
+				send(getId(), getCapacityDigestPeriod(), CloudSimTags.CAPACITY_DIGEST_TICK);
+			}
+		}
 		switch (ev.getTag()) {
 		// Resource characteristics request
 			case CloudSimTags.RESOURCE_CHARACTERISTICS_REQUEST:
@@ -194,6 +346,10 @@ public class DatacenterBroker extends SimEntity {
 			case CloudSimTags.VM_CREATE_ACK:
 				processVmCreate(ev);
 				break;
+			// Creation answer for a list of VMs
+			case CloudSimTags.VM_CREATE_BATCH_ACK:
+				processVmCreateBatch(ev);
+				break;
 			// A finished cloudlet returned
 			case CloudSimTags.CLOUDLET_RETURN:
 				processCloudletReturn(ev);
@@ -233,6 +389,35 @@ public class DatacenterBroker extends SimEntity {
 			case CloudSimTags.CANCEL_PARTNER_WAITING_EXEC:
 				processPartnerCancelWaitingExec(ev);
 				break;
+			// batched partner estimation
+			case CloudSimTags.PARTNER_ESTIMATE_BATCH:
+				processPartnerCloudletEstimateBatch(ev);
+				break;
+			case CloudSimTags.PARTNER_INTERNAL_ESTIMATE_BATCH_RETURN:
+				processPartnerCloudletInternalEstimateBatchReturn(ev);
+				break;
+			case CloudSimTags.PARTNER_ESTIMATE_BATCH_FLUSH:
+				processPartnerEstimateBatchFlush(ev);
+				break;
+			case CloudSimTags.PARTNER_ESTIMATE_BATCH_RETURN:
+				processReturnEstimateBatchFromPartner(ev);
+				break;
+			case CloudSimTags.CANCEL_PARTNER_WAITING_EXEC_BATCH:
+				processPartnerCancelWaitingExecBatch(ev);
+				break;
+			// capacity digests gossip
+			case CloudSimTags.CAPACITY_DIGEST_TICK:
+				processCapacityDigestTick(ev);
+				break;
+			case CloudSimTags.CAPACITY_DIGEST:
+				processCapacityDigest(ev);
+				break;
+			case CloudSimTags.PARTNER_ESTIMATE_DECISION_TIMEOUT:
+				processPartnerEstimateDecisionTimeout(ev);
+				break;
+			case CloudSimTags.CLOUDLET_ARRIVAL:
+				processCloudletArrival(ev);
+				break;
 			// other unknown tags are processed by this method
 			default:
 				processOtherEvent(ev);
@@ -241,11 +426,35 @@ public class DatacenterBroker extends SimEntity {
 	}
 
 	private void processPartnerCancelWaitingExec(SimEvent ev) {
-		ResCloudlet rCl = (ResCloudlet) ev.getData();	
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Received partner cancel waiting exec cloudlet from Broker #" + ev.getSource());
-		int vmId = rCl.getCloudlet().getVmId();
+		Object[] data = (Object[]) ev.getData();
+		ResCloudlet rCl = (ResCloudlet) data[0];
+		int datacenterId = (Integer) data[1];
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received partner cancel waiting exec cloudlet from Broker #" + ev.getSource());
 		
-		sendNow(getVmsToDatacentersMap().get(vmId), CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLET_FROM_VM, rCl);
+		// the datacenter releases the reservation only if it is still held for this cloudlet
+		sendNow(datacenterId, CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLET_FROM_VM, rCl);
+	}
+
+	/**
+	 * Processes the cancellation by a partner of the VMs reserved for a list of its cloudlets.
+	 * The cancellations are forwarded to the datacenters in one event per datacenter.
+	 * 
+	 * @param ev the event holding the list of ResCloudlets and ids of the datacenters of the
+	 *            reserved VMs
+	 */
+	@SuppressWarnings("unchecked")
+	private void processPartnerCancelWaitingExecBatch(SimEvent ev) {
+		List<Object[]> cancels = (List<Object[]>) ev.getData();
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received partner cancel waiting exec of "
+				+ cancels.size() + " cloudlets from Broker #" + ev.getSource());
+
+		Map<Integer, List<ResCloudlet>> datacenterCancels = new HashMap<Integer, List<ResCloudlet>>();
+		for (Object[] data : cancels) {
+			addToDestination(datacenterCancels, (Integer) data[1], (ResCloudlet) data[0]);
+		}
+		for (Map.Entry<Integer, List<ResCloudlet>> entry : datacenterCancels.entrySet()) {
+			sendNow(entry.getKey(), CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLETS_FROM_VM, entry.getValue());
+		}
 	}
 
 	/**
@@ -273,15 +482,20 @@ public class DatacenterBroker extends SimEntity {
 	 * @post $none
 	 */
 	protected void processResourceCharacteristicsRequest(SimEvent ev) {
-//		setDatacenterIdsList(CloudSim.getCloudResourceList());
+//		setDatacenterIdsList(getContext().getCloudResourceList());
 		setDatacenterIdsList(getTmpDatacenterIdsList());
 		setDatacenterCharacteristicsList(new HashMap<Integer, DatacenterCharacteristics>());
-		Log.printLine(CloudSim.clock()+ " " + getName()+ " BrokerIdsList: "+CloudSim.getBrokerIdsList());
-		setBrokerIdsList(CloudSim.getBrokerIdsList());
+		Log.printLine(getContext().clock()+ " " + getName()+ " BrokerIdsList: "+getContext().getBrokerIdsList());
+		setBrokerIdsList(getContext().getBrokerIdsList());
 
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Cloud Resource List received with "
+		Log.printLine(getContext().clock() + ": " + getName() + ": Cloud Resource List received with "
 				+ getDatacenterIdsList().size() + " resource(s)");
 		for (Integer datacenterId : getDatacenterIdsList()) {
+			// the VMs and the cloudlet schedulers of the datacenters are read directly
+			if (!getContext().isSameProcess(getId(), datacenterId)) {
+				throw new IllegalStateException(getName() + ": the datacenter #" + datacenterId
+						+ " must be in the same partition as its broker.");
+			}
 			sendNow(datacenterId, CloudSimTags.RESOURCE_CHARACTERISTICS, getId());
 		}
 	}
@@ -295,23 +509,60 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected void processVmCreate(SimEvent ev) {
 		int[] data = (int[]) ev.getData();
-		int datacenterId = data[0];
-		int vmId = data[1];
-		int result = data[2];
+		vmCreateAcked(data[0], data[1], data[2]);
+		incrementVmsAcks();
+		vmCreateAcksReceived();
+	}
+
+	/**
+	 * Process the ack received due to a request for the creation of a list of VMs: the id of the
+	 * datacenter, then the id of each VM followed by its result.
+	 * 
+	 * @param ev a SimEvent object
+	 * @pre ev != null
+	 * @post $none
+	 */
+	protected void processVmCreateBatch(SimEvent ev) {
+		int[] data = (int[]) ev.getData();
+		for (int i = 1; i + 1 < data.length; i += 2) {
+			vmCreateAcked(data[0], data[i], data[i + 1]);
+			incrementVmsAcks();
+		}
+		vmCreateAcksReceived();
+	}
 
+	/**
+	 * Records the result of the creation of a VM.
+	 * 
+	 * @param datacenterId the id of the datacenter
+	 * @param vmId the id of the VM
+	 * @param result {@link CloudSimTags#TRUE} if the VM has been created
+	 * @pre $none
+	 * @post $none
+	 */
+	protected void vmCreateAcked(int datacenterId, int vmId, int result) {
 		if (result == CloudSimTags.TRUE) {
 			getVmsToDatacentersMap().put(vmId, datacenterId);
-			getVmsCreatedList().add(VmList.getById(getVmList(), vmId));
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": VM #" + vmId
+			Vm vm = VmList.getById(getVmList(), vmIndex, vmId);
+			getVmsCreatedList().add(vm);
+			indexVms(vmsCreatedIndex, Collections.singletonList(vm));
+			Log.printLine(getContext().clock() + ": " + getName() + ": VM #" + vmId
 					+ " has been created in Datacenter #" + datacenterId + ", Host #"
-					+ VmList.getById(getVmsCreatedList(), vmId).getHost().getId());
+					+ VmList.getById(getVmsCreatedList(), vmsCreatedIndex, vmId).getHost().getId());
 		} else {
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": Creation of VM #" + vmId
+			Log.printLine(getContext().clock() + ": " + getName() + ": Creation of VM #" + vmId
 					+ " failed in Datacenter #" + datacenterId);
 		}
+	}
 
-		incrementVmsAcks();
-
+	/**
+	 * Submits the cloudlets once the VMs have been created, or tries the next datacenter once all
+	 * the acks of the VM creations requested to a datacenter have been received.
+	 * 
+	 * @pre $none
+	 * @post $none
+	 */
+	protected void vmCreateAcksReceived() {
 		// all the requested VMs have been created
 		if (getVmsCreatedList().size() == getVmList().size() - getVmsDestroyed()) {
 			submitCloudlets();
@@ -330,7 +581,7 @@ public class DatacenterBroker extends SimEntity {
 				if (getVmsCreatedList().size() > 0) { // if some vm were created
 					submitCloudlets();
 				} else { // no vms created. abort
-					Log.printLine(CloudSim.clock() + ": " + getName()
+					Log.printLine(getContext().clock() + ": " + getName()
 							+ ": none of the required VMs could be created. Aborting");
 					finishExecution();
 				}
@@ -347,12 +598,18 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected void processCloudletReturn(SimEvent ev) {
 		Cloudlet cloudlet = (Cloudlet) ev.getData();
-		getCloudletReceivedList().add(cloudlet);
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Cloudlet " + cloudlet.getCloudletId()
+		if (isRetainReturnedCloudlets()) {
+			getCloudletReceivedList().add(cloudlet);
+		} else {
+			getCloudletSubmittedList().remove(cloudlet);
+		}
+		cloudletsReturned++;
+		Log.printLine(getContext().clock() + ": " + getName() + ": Cloudlet " + cloudlet.getCloudletId()
 				+ " received");
+		getCloudletAssignmentPolicy().cloudletReturned(cloudlet);
 		cloudletsSubmitted--;
-		if (getCloudletList().size() == 0 && cloudletsSubmitted == 0) { // all cloudlets executed
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": All Cloudlets executed. Finishing...");
+		if (getCloudletList().size() == 0 && cloudletsSubmitted == 0 && !cloudletArrivalPending) { // all cloudlets executed
+			Log.printLine(getContext().clock() + ": " + getName() + ": All Cloudlets executed. Finishing...");
 			clearDatacenters();
 			finishExecution();
 		} else { // some cloudlets haven't finished yet
@@ -365,6 +622,48 @@ public class DatacenterBroker extends SimEntity {
 		}
 	}
 
+	/**
+	 * Processes the arrival of the next cloudlet of the source: takes from the source all the
+	 * cloudlets arrived by now, submits them if the VMs are created and schedules the next
+	 * arrival. Only the arrived cloudlets are submitted; the cloudlets arrived while the VMs are
+	 * being created, and the ones postponed, wait in the cloudlet list.
+	 * 
+	 * @param ev a SimEvent object
+	 * @pre ev != null
+	 * @post $none
+	 */
+	protected void processCloudletArrival(SimEvent ev) {
+		double clock = getContext().clock();
+		List<Cloudlet> arrived = new ArrayList<Cloudlet>();
+		// the event is the arrival of the next cloudlet, whatever rounding its delay got
+		do {
+			Cloudlet cloudlet = cloudletSource.next();
+			cloudlet.setUserId(getId());
+			arrived.add(cloudlet);
+		} while (cloudletSource.hasNext() && cloudletSource.getNextArrivalTime() <= clock);
+		scheduleCloudletArrival();
+
+		if (getVmsRequested() == getVmsAcks() && getVmsCreatedList().size() > 0) {
+			arrived = submitCloudlets(arrived);
+		}
+		getCloudletList().addAll(arrived);
+		indexCloudlets(cloudletIndex, arrived);
+	}
+
+	/**
+	 * Schedules the arrival of the next cloudlet of the source, if any.
+	 * 
+	 * @pre cloudletSource != null
+	 * @post $none
+	 */
+	protected void scheduleCloudletArrival() {
+		cloudletArrivalPending = cloudletSource.hasNext();
+		if (cloudletArrivalPending) {
+			double delay = Math.max(0, cloudletSource.getNextArrivalTime() - getContext().clock());
+			schedule(getId(), delay, CloudSimTags.CLOUDLET_ARRIVAL);
+		}
+	}
+
 	/**
 	 * Overrides this method when making a new and different type of Broker. This method is called
 	 * by {@link #body()} for incoming unknown tags.
@@ -393,15 +692,27 @@ public class DatacenterBroker extends SimEntity {
 	protected void createVmsInDatacenter(int datacenterId) {
 		// send as much vms as possible for this datacenter before trying the next one
 		int requestedVms = 0;
-		String datacenterName = CloudSim.getEntityName(datacenterId);
+		String datacenterName = getContext().getEntityName(datacenterId);
+		// the vms to send in one event, if they are sent in a batch
+		List<Vm> batch = null;
+		if (isVmCreateBatching()) {
+			batch = new ArrayList<Vm>();
+		}
 		for (Vm vm : getVmList()) {
 			if (!getVmsToDatacentersMap().containsKey(vm.getId())) {
-				Log.printLine(CloudSim.clock() + ": " + getName() + ": Trying to Create VM #" + vm.getId()
+				Log.printLine(getContext().clock() + ": " + getName() + ": Trying to Create VM #" + vm.getId()
 						+ " in " + datacenterName + "#" + datacenterId);
-				sendNow(datacenterId, CloudSimTags.VM_CREATE_ACK, vm);
+				if (batch == null) {
+					sendNow(datacenterId, CloudSimTags.VM_CREATE_ACK, vm);
+				} else {
+					batch.add(vm);
+				}
 				requestedVms++;
 			}
 		}
+		if (batch != null && !batch.isEmpty()) {
+			sendNow(datacenterId, CloudSimTags.VM_CREATE_BATCH_ACK, batch);
+		}
 
 		getDatacenterRequestedIdsList().add(datacenterId);
 
@@ -410,60 +721,196 @@ public class DatacenterBroker extends SimEntity {
 	}
 
 	/**
-	 * Submit cloudlets to the created VMs.
+	 * Submit cloudlets to the created VMs. The cloudlets not bound to a VM are assigned by the
+	 * {@link #getCloudletAssignmentPolicy() cloudlet assignment policy}, and the cloudlets whose VM
+	 * is not available keep waiting.
 	 * 
 	 * @pre $none
 	 * @post $none
 	 */
 	protected void submitCloudlets() {
+		List<Cloudlet> postponed = submitCloudlets(getCloudletList());
+
+		// only the postponed cloudlets are still waiting
+		getCloudletList().clear();
+		getCloudletList().addAll(postponed);
+		cloudletIndex.clear();
+		indexCloudlets(cloudletIndex, postponed);
+	}
+
+	/**
+	 * Submit some cloudlets to the created VMs, as {@link #submitCloudlets()} does for the
+	 * cloudlet list.
+	 * 
+	 * @param cloudlets the cloudlets to submit
+	 * @return the cloudlets postponed because their VM is not available
+	 * @pre cloudlets != null
+	 * @post $none
+	 */
+	protected List<Cloudlet> submitCloudlets(List<? extends Cloudlet> cloudlets) {
 		Log.printLine(this.getName() + " submit Cloudlet");
-		int vmIndex = 0;
-		for (Cloudlet cloudlet : getCloudletList()) {
+		CloudletAssignmentPolicy policy = getCloudletAssignmentPolicy();
+		policy.startAssignment(getVmsCreatedList());
+		List<Cloudlet> postponed = new ArrayList<Cloudlet>();
+		// the cloudlets to send to each datacenter, if they are sent in batches
+		Map<Integer, List<Cloudlet>> batches = null;
+		if (isCloudletSubmitBatching()) {
+			batches = new HashMap<Integer, List<Cloudlet>>();
+		}
+		for (Cloudlet cloudlet : cloudlets) {
 			Vm vm;
-			
-			vm = getFirstVmCanExecute(cloudlet);
 			// if user didn't bind this cloudlet and it has not been executed yet
 			if (cloudlet.getVmId() == -1) {
-				vm = getVmsCreatedList().get(vmIndex);
+				vm = policy.selectVm(cloudlet);
+				if (vm == null) {
+					Log.printLine(getContext().clock() + ": " + getName() + ": Postponing execution of cloudlet "
+							+ cloudlet.getCloudletId() + ": no VM available");
+					postponed.add(cloudlet);
+					continue;
+				}
 			} else { // submit to the specific vm
-				vm = VmList.getById(getVmsCreatedList(), cloudlet.getVmId());
+				vm = VmList.getById(getVmsCreatedList(), vmsCreatedIndex, cloudlet.getVmId());
 				if (vm == null) { // vm was not created
-					Log.printLine(CloudSim.clock() + ": " + getName() + ": Postponing execution of cloudlet "
+					Log.printLine(getContext().clock() + ": " + getName() + ": Postponing execution of cloudlet "
 							+ cloudlet.getCloudletId() + ": bount VM not available");
+					postponed.add(cloudlet);
 					continue;
 				}
 			}
 			
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": Sending cloudlet "
+			Log.printLine(getContext().clock() + ": " + getName() + ": Sending cloudlet "
 					+ cloudlet.getCloudletId() + " to VM #" + vm.getId());
 			cloudlet.setVmId(vm.getId());
+			policy.cloudletAssigned(cloudlet, vm);
 			
-			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
-//			sendNow(getId(), CloudSimTags.PARTNER_EXEC, cloudlet);
+			int datacenterId = getVmsToDatacentersMap().get(vm.getId());
+			if (batches == null) {
+				sendNow(datacenterId, CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+			} else {
+				addToDestination(batches, datacenterId, cloudlet);
+			}
 			cloudletsSubmitted++;
-			vmIndex = (vmIndex + 1) % getVmsCreatedList().size();
 			getCloudletSubmittedList().add(cloudlet);
 		}
+		if (batches != null) {
+			for (Map.Entry<Integer, List<Cloudlet>> entry : batches.entrySet()) {
+				sendNow(entry.getKey(), CloudSimTags.CLOUDLET_SUBMIT_BATCH, entry.getValue());
+			}
+		}
+		return postponed;
+	}
+
+	/**
+	 * Adds VMs to an index by VM id. A VM whose id is already in the index is not added, so that
+	 * the index finds the same VM as a search of the list.
+	 * 
+	 * @param index the index
+	 * @param list the VMs
+	 * @pre index != null
+	 * @pre list != null
+	 * @post $none
+	 */
+	protected static void indexVms(IntObjectMap<Vm> index, List<? extends Vm> list) {
+		for (Vm vm : list) {
+			if (!index.containsKey(vm.getId())) {
+				index.put(vm.getId(), vm);
+			}
+		}
+	}
+
+	/**
+	 * Adds cloudlets to an index by cloudlet id. A cloudlet whose id is already in the index is not
+	 * added, so that the index finds the same cloudlet as a search of the list.
+	 * 
+	 * @param index the index
+	 * @param list the cloudlets
+	 * @pre index != null
+	 * @pre list != null
+	 * @post $none
+	 */
+	protected static void indexCloudlets(IntObjectMap<Cloudlet> index, List<? extends Cloudlet> list) {
+		for (Cloudlet cloudlet : list) {
+			if (!index.containsKey(cloudlet.getCloudletId())) {
+				index.put(cloudlet.getCloudletId(), cloudlet);
+			}
+		}
+	}
 
-		// remove submitted cloudlets from waiting list
-		for (Cloudlet cloudlet : getCloudletSubmittedList()) {
-			getCloudletList().remove(cloudlet);
+	protected void processPartnerCloudletEstimate(SimEvent ev) {
+		Cloudlet cloudlet = (Cloudlet) ev.getData();
+		EstimationCloudletObserve eco = registerPartnerEstimate(ev.getSource(), cloudlet);
+		schedulePartnerEstimateTimeout(ev.getSource(), Collections.singletonList(eco), false);
+		if(getDatacenterIdsList().size() == 0 ){
+			Log.printLine(getName()+ " has no datacenter, can not estimate");
+		}
+		for (int i: getDatacenterIdsList()) {
+			if (isPartnerEstimateCached(i, cloudlet)) {
+				receiveInternalEstimate(ev.getSource(), i, new ResCloudlet(cloudlet), false, -1, null, null);
+			} else {
+				Object[] data = {ev.getSource(), cloudlet};
+				sendNow(i, CloudSimTags.PARTNER_ESTIMATE, data);
+			}
 		}
 	}
 	
-	private Vm getFirstVmCanExecute(Cloudlet cloudlet) {
-		return null;
+	/**
+	 * Processes a list of cloudlets that a partner asks this broker to estimate. The list is sent
+	 * to each datacenter of this broker in a single event, and the datacenters answer with the
+	 * estimates of all the cloudlets in a single event.
+	 * 
+	 * @param ev the event holding the list of cloudlets
+	 * @see #processPartnerCloudletEstimate(SimEvent)
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processPartnerCloudletEstimateBatch(SimEvent ev) {
+		List<Cloudlet> cloudlets = (List<Cloudlet>) ev.getData();
+		if (getDatacenterIdsList().size() == 0) {
+			Log.printLine(getName() + " has no datacenter, can not estimate");
+		}
+
+		// the cloudlets that each datacenter has to estimate
+		Map<Integer, List<Cloudlet>> queries = new HashMap<Integer, List<Cloudlet>>();
+		List<Object[]> finished = new ArrayList<Object[]>();
+		List<EstimationCloudletObserve> estimations = new ArrayList<EstimationCloudletObserve>();
+		for (Cloudlet cloudlet : cloudlets) {
+			estimations.add(registerPartnerEstimate(ev.getSource(), cloudlet));
+			for (int i : getDatacenterIdsList()) {
+				if (isPartnerEstimateCached(i, cloudlet)) {
+					receiveInternalEstimate(ev.getSource(), i, new ResCloudlet(cloudlet), false, -1,
+							null, finished);
+				} else {
+					addToDestination(queries, i, cloudlet);
+				}
+			}
+		}
+		for (int i : getDatacenterIdsList()) {
+			List<Cloudlet> query = queries.get(i);
+			if (query != null) {
+				Object[] data = { ev.getSource(), query };
+				sendNow(i, CloudSimTags.PARTNER_ESTIMATE_BATCH, data);
+			}
+		}
+		if (!finished.isEmpty()) {
+			sendNow(ev.getSource(), CloudSimTags.PARTNER_ESTIMATE_BATCH_RETURN, finished);
+		}
+		schedulePartnerEstimateTimeout(ev.getSource(), estimations, true);
 	}
 
-	protected void processPartnerCloudletEstimate(SimEvent ev) {
+	/**
+	 * Registers the estimation of a partner cloudlet by the datacenters of this broker.
+	 * 
+	 * @param partnerId the id of the broker that owns the cloudlet
+	 * @param cloudlet the cloudlet
+	 * @return the estimation
+	 */
+	private EstimationCloudletObserve registerPartnerEstimate(int partnerId, Cloudlet cloudlet) {
 		Map<Integer, Map<Integer, EstimationCloudletObserve>> estimateCloudletMap = getEstimateCloudletMap();
-		if (!estimateCloudletMap.containsKey(ev.getSource())) {
+		if (!estimateCloudletMap.containsKey(partnerId)) {
 			Map<Integer, EstimationCloudletObserve> cloudletList = new HashMap<Integer, EstimationCloudletObserve>();
-			estimateCloudletMap.put(ev.getSource(), cloudletList);
+			estimateCloudletMap.put(partnerId, cloudletList);
 		}
 		
-		Map<Integer, EstimationCloudletObserve> cloudletList = estimateCloudletMap.get(ev.getSource());
-		Cloudlet cloudlet = (Cloudlet) ev.getData();
+		Map<Integer, EstimationCloudletObserve> cloudletList = estimateCloudletMap.get(partnerId);
 		
 		List<Integer> datacenterIDs = new LinkedList<Integer>();
 		for (Integer integer : getDatacenterIdsList()) {
@@ -473,75 +920,234 @@ public class DatacenterBroker extends SimEntity {
 		ResCloudlet resCloudlet = new ResCloudlet(cloudlet);
 		resCloudlet.setFinishTime(Double.MAX_VALUE);
 		
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Received partner estimate cloudlet #"+resCloudlet.getCloudletId());
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received partner estimate cloudlet #"+resCloudlet.getCloudletId());
 		EstimationCloudletObserve eco = new EstimationCloudletObserve(resCloudlet, datacenterIDs);
 		
 		cloudletList.put(new Integer(cloudlet.getCloudletId()), eco);
-		if(datacenterIDs.size() == 0 ){
-			Log.printLine(getName()+ " has no datacenter, can not estimate");
+		return eco;
+	}
+
+	/**
+	 * Schedules the timeout of the estimations of partner cloudlets by the datacenters of this
+	 * broker, if the estimations have a timeout.
+	 * 
+	 * @param partnerId the id of the broker that owns the cloudlets
+	 * @param estimations the estimations
+	 * @param batch whether the partner asked for the estimations in a batch
+	 * @see #processPartnerEstimateTimeout(SimEvent)
+	 */
+	private void schedulePartnerEstimateTimeout(int partnerId, List<EstimationCloudletObserve> estimations,
+			boolean batch) {
+		if (getPartnerEstimateTimeout() >= 0) {
+			Object[] data = { partnerId, estimations, batch };
+			send(getId(), getPartnerEstimateTimeout(), CloudSimTags.PARTNER_ESTIMATE_TIMEOUT, data);
 		}
-		for (int i: datacenterIDs) {
-			Object[] data = {ev.getSource(), cloudlet};
-			sendNow(i, CloudSimTags.PARTNER_ESTIMATE, data);
+	}
+
+	/**
+	 * Checks whether a datacenter of this broker is known, from the partner estimate cache, to be
+	 * unable to run a partner cloudlet before its deadline.
+	 * 
+	 * @param datacenterId the id of the datacenter
+	 * @param cloudlet the partner cloudlet
+	 * @return <tt>true</tt> if the datacenter does not have to be queried
+	 * @pre the datacenter runs in the same partition as this broker
+	 */
+	private boolean isPartnerEstimateCached(int datacenterId, Cloudlet cloudlet) {
+		if (partnerEstimateCache == null) {
+			return false;
+		}
+		Datacenter datacenter = (Datacenter) getContext().getEntity(datacenterId);
+		return partnerEstimateCache.isRejected(cloudlet, datacenterId,
+				datacenter.getPartnerEstimateVersion(), getContext().clock());
+	}
+
+	/**
+	 * Adds to the partner estimate cache the estimate of a datacenter of this broker that did
+	 * not reserve a VM.
+	 * 
+	 * @param datacenterId the id of the datacenter
+	 * @param resCloudlet the estimated ResCloudlet
+	 * @param result whether the datacenter reserved a VM
+	 * @param version the state version of the datacenter when it estimated the cloudlet
+	 */
+	private void cachePartnerEstimate(int datacenterId, ResCloudlet resCloudlet, boolean result,
+			long version) {
+		if (partnerEstimateCache != null && !result) {
+			partnerEstimateCache.put(resCloudlet.getCloudlet(), datacenterId,
+					resCloudlet.getClouddletFinishTime(), version, getContext().clock());
 		}
-		
-//		Object[] timeoutData = {ev.getSource(), cloudlet.getCloudletId()};
-//		send(getId(), 30, CloudSimTags.PARTNER_ESTIMATE_TIMEOUT, timeoutData);
 	}
 	
 	protected void processPartnerCloudletInternalEstimateReturn(SimEvent ev) {
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Received internal estimate from datacenter #" 
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received internal estimate from datacenter #" 
 						+ ev.getSource());
 		Log.printLine(getDatacenterIdsList());
 		Object[] data = (Object[]) ev.getData();
-		Boolean result = (Boolean)data[2];
-		int partnerID = (int)data[0];
-		ResCloudlet resCloudlet = (ResCloudlet) data[1];
+		cachePartnerEstimate(ev.getSource(), (ResCloudlet) data[1], (Boolean) data[2], (Long) data[4]);
+		receiveInternalEstimate((Integer) data[0], ev.getSource(), (ResCloudlet) data[1],
+				(Boolean) data[2], (Integer) data[3], null, null);
+	}
+
+	/**
+	 * Processes the estimates by a datacenter of this broker of a list of partner cloudlets. The
+	 * reservations to cancel are sent in one event per datacenter, and the estimations that are
+	 * over are returned to the partner in a single event.
+	 * 
+	 * @param ev the event holding the id of the partner and the list of estimates, each one made
+	 *            of the estimated ResCloudlet, whether a VM has been reserved, the VM id and the
+	 *            state version of the datacenter
+	 * @see #processPartnerCloudletInternalEstimateReturn(SimEvent)
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processPartnerCloudletInternalEstimateBatchReturn(SimEvent ev) {
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received internal estimates from datacenter #" 
+						+ ev.getSource());
+		Object[] data = (Object[]) ev.getData();
+		int partnerID = (Integer) data[0];
+		List<Object[]> estimates = (List<Object[]>) data[1];
+
+		Map<Integer, List<ResCloudlet>> cancels = new HashMap<Integer, List<ResCloudlet>>();
+		List<Object[]> finished = new ArrayList<Object[]>();
+		for (Object[] estimate : estimates) {
+			cachePartnerEstimate(ev.getSource(), (ResCloudlet) estimate[0], (Boolean) estimate[1],
+					(Long) estimate[3]);
+			receiveInternalEstimate(partnerID, ev.getSource(), (ResCloudlet) estimate[0],
+					(Boolean) estimate[1], (Integer) estimate[2], cancels, finished);
+		}
+		for (Map.Entry<Integer, List<ResCloudlet>> entry : cancels.entrySet()) {
+			sendNow(entry.getKey(), CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLETS_FROM_VM, entry.getValue());
+		}
+		if (!finished.isEmpty()) {
+			sendNow(partnerID, CloudSimTags.PARTNER_ESTIMATE_BATCH_RETURN, finished);
+		}
+	}
+
+	/**
+	 * Processes the estimate by a datacenter of this broker of a partner cloudlet. The
+	 * reservation that is no longer needed is cancelled and, once all the datacenters have
+	 * answered, the best estimate is returned to the partner.
+	 * 
+	 * @param partnerID the id of the broker that owns the cloudlet
+	 * @param datacenterId the id of the datacenter
+	 * @param resCloudlet the estimated ResCloudlet
+	 * @param result whether the datacenter reserved a VM for the cloudlet
+	 * @param vmId the id of the best VM of the datacenter, -1 if there is none
+	 * @param cancels the cancellations to send per datacenter, or <tt>null</tt> to send them at
+	 *            once
+	 * @param finished the estimates to return to the partner, or <tt>null</tt> to return them at
+	 *            once
+	 */
+	private void receiveInternalEstimate(int partnerID, int datacenterId, ResCloudlet resCloudlet,
+			boolean result, int vmId, Map<Integer, List<ResCloudlet>> cancels, List<Object[]> finished) {
 		int cloudletID = resCloudlet.getCloudlet().getCloudletId();
 		
 		Map<Integer, EstimationCloudletObserve> partnerCloudletList = getEstimateCloudletMap().get(partnerID);
 		
-		if (partnerCloudletList.containsKey(cloudletID)) {
+		if (partnerCloudletList != null && partnerCloudletList.containsKey(cloudletID)) {
 			EstimationCloudletObserve eco = partnerCloudletList.get(cloudletID);
-			int datacenterCancelExecId = eco.receiveEstimateResult(ev.getSource(), resCloudlet,result);
-			if(datacenterCancelExecId != -1 ){
-				sendNow(datacenterCancelExecId, CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLET_FROM_VM,resCloudlet );
+			int datacenterCancelExecId = eco.receiveEstimateResult(datacenterId, resCloudlet, result, vmId);
+			// a datacenter that did not reserve a VM has nothing to cancel
+			if (datacenterCancelExecId != -1 && (datacenterCancelExecId != datacenterId || result)) {
+				cancelReservation(datacenterCancelExecId, resCloudlet, cancels);
 			}
 			
 			if (eco.isFinished()) {
-				// send result to partner
-				sendNow(partnerID, CloudSimTags.PARTNER_ESTIMATE_RETURN, eco.getResCloudlet());
+				// send result to partner, with the VM and datacenter reserved for the cloudlet
+				Object[] reData = { eco.getResCloudlet(), eco.getVmIdOfCurrentExecVm(),
+						eco.getDatacenterIdOFCurrrentExecVm() };
+				if (finished == null) {
+					sendNow(partnerID, CloudSimTags.PARTNER_ESTIMATE_RETURN, reData);
+				} else {
+					finished.add(reData);
+				}
 				// remove partner estimation cloudlet 
 				partnerCloudletList.remove(cloudletID);
 			}
-			
-		
+		} else if (result) {
+			// the estimation is over, so the reservation is not needed
+			cancelReservation(datacenterId, resCloudlet, cancels);
+		}
+	}
+
+	/**
+	 * Asks a datacenter of this broker to release the VM it reserved for a partner cloudlet.
+	 * 
+	 * @param datacenterId the id of the datacenter
+	 * @param resCloudlet the partner cloudlet
+	 * @param cancels the cancellations to send per datacenter, or <tt>null</tt> to send it at once
+	 */
+	private void cancelReservation(int datacenterId, ResCloudlet resCloudlet,
+			Map<Integer, List<ResCloudlet>> cancels) {
+		if (cancels == null) {
+			sendNow(datacenterId, CloudSimTags.CANCEL_WAITING_EXEC_CLOUDLET_FROM_VM, resCloudlet);
+		} else {
+			addToDestination(cancels, datacenterId, resCloudlet);
 		}
 	}
+
+	/**
+	 * Adds an item to the ones grouped by destination, to be sent in a single event.
+	 * 
+	 * @param items the items per destination
+	 * @param destination the id of the destination entity
+	 * @param item the item
+	 */
+	private static <T> void addToDestination(Map<Integer, List<T>> items, int destination, T item) {
+		List<T> list = items.get(destination);
+		if (list == null) {
+			list = new ArrayList<T>();
+			items.put(destination, list);
+		}
+		list.add(item);
+	}
 	
+	/**
+	 * Processes the timeout of estimations of partner cloudlets by the datacenters of this
+	 * broker. The partner receives the best estimate of the datacenters that answered for each
+	 * cloudlet still in estimation, and the VMs the other datacenters reserve later are released
+	 * as their estimates arrive.
+	 * 
+	 * @param ev the event holding the id of the partner, the estimations and whether the partner
+	 *            asked for them in a batch
+	 */
+	@SuppressWarnings("unchecked")
 	protected void processPartnerEstimateTimeout(SimEvent ev) {
 		Object[] data = (Object[]) ev.getData();
-		int partnerId = (int)data[0];
-		int cloudletId = (int)data[1];
+		int partnerId = (Integer) data[0];
+		List<EstimationCloudletObserve> estimations = (List<EstimationCloudletObserve>) data[1];
+		boolean batch = (Boolean) data[2];
 		
-		if (getEstimateCloudletMap().containsKey(partnerId)) {
-			Map<Integer, EstimationCloudletObserve> partnerCloudletList = getEstimateCloudletMap().get(partnerId);
-			
-			if (partnerCloudletList.containsKey(cloudletId)) {
-//				Log.printLine(CloudSim.clock() + ": " + getName() + ": Partner estimate timeout!");
-				
-				EstimationCloudletObserve eco = partnerCloudletList.get(cloudletId);
-				// send result to partner
-//				sendNow(partnerId, CloudSimTags.PARTNER_ESTIMATE_RETURN, eco.getResCloudlet());
-				
+		Map<Integer, EstimationCloudletObserve> partnerCloudletList = getEstimateCloudletMap().get(partnerId);
+		if (partnerCloudletList == null) {
+			return;
+		}
+		List<Object[]> finished = new ArrayList<Object[]>();
+		for (EstimationCloudletObserve eco : estimations) {
+			Integer cloudletId = eco.getResCloudlet().getCloudletId();
+			if (partnerCloudletList.get(cloudletId) == eco) {
+				Log.printLine(getContext().clock() + ": " + getName() + ": Partner estimate timeout for cloudlet #" + cloudletId);
+				Object[] reData = { eco.getResCloudlet(), eco.getVmIdOfCurrentExecVm(),
+						eco.getDatacenterIdOFCurrrentExecVm() };
+				finished.add(reData);
 				// remove partner estimation cloudlet
-				partnerCloudletList.remove(eco);
+				partnerCloudletList.remove(cloudletId);
+			}
+		}
+		if (finished.isEmpty()) {
+			return;
+		}
+		if (batch) {
+			sendNow(partnerId, CloudSimTags.PARTNER_ESTIMATE_BATCH_RETURN, finished);
+		} else {
+			for (Object[] reData : finished) {
+				sendNow(partnerId, CloudSimTags.PARTNER_ESTIMATE_RETURN, reData);
 			}
 		}
 	}
 	
 	protected void processPartnerCloudlet(SimEvent ev) {
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Received partner exec cloudlet from Broker #" + ev.getSource());
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received partner exec cloudlet from Broker #" + ev.getSource());
 		
 		Cloudlet cloudlet = (Cloudlet) ev.getData();
 		cloudlet.setUserId(getId());
@@ -553,7 +1159,7 @@ public class DatacenterBroker extends SimEntity {
 	}
 	
 	protected void processPartnerExecInternalReturn(SimEvent ev) {
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Received exec result from datacenter #" + ev.getSource());
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received exec result from datacenter #" + ev.getSource());
 		Object[] data = (Object[]) ev.getData();
 		
 		int partnerId = (int)data[0];
@@ -565,105 +1171,501 @@ public class DatacenterBroker extends SimEntity {
 	}
 	private void processPartnerExecReturn(SimEvent ev) {
 		//TODO
-		Log.printLine(CloudSim.clock()+ " Partner returned exec result");
+		Log.printLine(getContext().clock()+ " Partner returned exec result");
 		Object[]  data =  (Object[])ev.getData();
 		int result = (int) data[0];
 		String msg  = (String)data[1];
 		Cloudlet cl = (Cloudlet)data[2];
  
 		if(result == 1){
-			Log.printLine(CloudSim.clock() + " Cloudlet: #"+ cl.getCloudletId()+" has been exec from Broker: #" +CloudSim.getEntityName(ev.getSource())+"#"+ev.getSource());
+			Log.printLine(getContext().clock() + " Cloudlet: #"+ cl.getCloudletId()+" has been exec from Broker: #" +getContext().getEntityName(ev.getSource())+"#"+ev.getSource());
 		} 
 		else {
-			Log.printLine(CloudSim.clock() + " Cloudlet: #"+ cl.getCloudletId()+" has been failed exec from Broker:"+ CloudSim.getEntityName(ev.getSource())+"#"+ev.getSource());
+			Log.printLine(getContext().clock() + " Cloudlet: #"+ cl.getCloudletId()+" has been failed exec from Broker:"+ getContext().getEntityName(ev.getSource())+"#"+ev.getSource());
 		}
 		
 	}
 	
 	/**
-	 *	process send data to all partner to estimate time process 
-	 * @param ev
+	 * Processes a cloudlet that a datacenter of this broker cannot run before its deadline. Its
+	 * estimation by the partners starts at once if fewer than {@link #getPartnerEstimateWindow()}
+	 * estimations are in progress; otherwise the cloudlet waits for one of them to finish. When
+	 * the estimations are batched, the cloudlet waits for the next batch instead.
+	 * 
+	 * @param ev the event holding the cloudlet
 	 */
 	protected void processSentTaskToPartnerEstimate(SimEvent ev) {
 		Cloudlet cl = (Cloudlet) ev.getData();
+		partnerEstimateRequestTimes.put(cl.getCloudletId(), getContext().clock());
 		
-		if(getCloudletEstimating().size() == 0){
-			ResCloudlet rCl = new ResCloudlet(cl); 
-			List<Integer> partnerIdsList  = new ArrayList<Integer>();
-			for( Integer partnerIds : this.getBrokerIdsList()){
-				if(partnerIds != getId()){
-					Log.printLine(CloudSim.clock()+ ": "+ getName()+": #"+ getId() +" Cloudlet #"+ cl.getCloudletId()+ " have been send to broker #"+partnerIds);
-					//send to partner
-					send(partnerIds, 0, CloudSimTags.PARTNER_ESTIMATE, cl);
-					//add to requested list
-					partnerIdsList.add(partnerIds);
-				}
-			}
-			EstimationCloudletOfPartner esOfPatner = new EstimationCloudletOfPartner(rCl, partnerIdsList);
-			getEstimateCloudletofParnerMap().put(rCl.getCloudletId(), esOfPatner);
-			getCloudletEstimating().add(cl);
+		if (isPartnerEstimateBatching()) {
+			getCloudletWaitingForEstimate().add(cl);
+			schedulePartnerEstimateFlush();
+		} else if (getEstimateCloudletofParnerMap().size() < getPartnerEstimateWindow()) {
+			startPartnerEstimate(cl);
 		} else {
 			getCloudletWaitingForEstimate().add(cl);
-			Log.printLine(CloudSim.clock()+ " "+ getName()+" another task is estimating, added Cloulet #"+cl.getCloudletId()+"to waiting estimate list");
+			Log.printLine(getContext().clock()+ " "+ getName()+" another task is estimating, added Cloulet #"+cl.getCloudletId()+"to waiting estimate list");
 		}
 	}
+
 	/**
-	 *  Process result estimate form partner ID 
-	 *  If all estimate has been received send execute to partner have best execute time to execute 
-	 * @param ev
+	 * Sends a cloudlet to the partners to estimate its finish time (see
+	 * {@link #selectPartners(Cloudlet)}). The estimation is keyed by the cloudlet id until all
+	 * these partners have answered.
+	 * 
+	 * @param cl the cloudlet
 	 */
-	protected void processReturnEstimateFromParner(SimEvent ev) {
-		ResCloudlet rCl =(ResCloudlet) ev.getData();
-		Integer clouletId = rCl.getCloudletId();
-		Integer partnerId =  ev.getSource();
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Received estimate result from Broker #" + ev.getSource()+ " with estimate time: "+rCl.getClouddletFinishTime());
-		EstimationCloudletOfPartner partnerCloudletEstimateList = getEstimateCloudletofParnerMap().get(clouletId);
-		if (partnerCloudletEstimateList.getPartnerIdsList().contains(partnerId)) {
-			int partnerCancelWaitingExec = partnerCloudletEstimateList.receiveEstimateResult(partnerId, rCl);
-			if(partnerCancelWaitingExec != -1){
-				sendNow(partnerId, CloudSimTags.CANCEL_PARTNER_WAITING_EXEC, rCl);
-			}
-			if (partnerCloudletEstimateList.isFinished()) {
-				// send result to partner
-				ResCloudlet resCloudlet = partnerCloudletEstimateList.getResCloudlet();
-				if(resCloudlet.getClouddletFinishTime() < resCloudlet.getCloudlet().getDeadline()){
-					sendNow(partnerId, CloudSimTags.PARTNER_EXEC, partnerCloudletEstimateList.getResCloudlet().getCloudlet());
-				} else {
-					Log.printLine(CloudSim.clock()+ " can not send cloudlet #"+resCloudlet.getCloudletId()+ " to any where, timeout");
-				}
-				getCloudletEstimating().remove(resCloudlet.getCloudlet());
-			}
-			
+	protected void startPartnerEstimate(Cloudlet cl) {
+		ResCloudlet rCl = new ResCloudlet(cl); 
+		List<Integer> partnerIdsList = selectPartners(cl);
+		for( Integer partnerIds : partnerIdsList){
+			Log.printLine(getContext().clock()+ ": "+ getName()+": #"+ getId() +" Cloudlet #"+ cl.getCloudletId()+ " have been send to broker #"+partnerIds);
+			// send a copy to each partner, which may run in another partition
+			send(partnerIds, 0, CloudSimTags.PARTNER_ESTIMATE, cl.copy());
+			partnerEstimateRequests++;
 		}
-		
-		if(getCloudletWaitingForEstimate().size() != 0 ){
-				Cloudlet estimateCloudlet = getCloudletWaitingForEstimate().get(0);
-				ResCloudlet resCloudlet  = new ResCloudlet(estimateCloudlet);
-				Log.printLine(CloudSim.clock()+ " get cloudlet from waiting list cloulet #"+estimateCloudlet.getCloudletId()+" send to " + "estimate");
-				sendNow(getId(), CloudSimTags.PARTNER_ESTIMATE_SENT,estimateCloudlet);
-				getCloudletWaitingForEstimate().remove(estimateCloudlet);
+		if (partnerIdsList.isEmpty()) {
+			Log.printLine(getContext().clock() + " " + getName() + " has no partner, can not estimate cloudlet #" + cl.getCloudletId());
+			partnerEstimateRequestTimes.remove(cl.getCloudletId());
+			return;
 		}
+		EstimationCloudletOfPartner esOfPatner = registerEstimate(rCl, partnerIdsList);
+		schedulePartnerEstimateDecisionTimeout(Collections.singletonList(esOfPatner));
 	}
-	
+
 	/**
-	 * Destroy the virtual machines running in datacenters.
+	 * Registers the estimation of a cloudlet of this broker by some partners.
 	 * 
-	 * @pre $none
-	 * @post $none
+	 * @param rCl the cloudlet
+	 * @param partnerIdsList the ids of the partners the cloudlet is sent to
+	 * @return the estimation
 	 */
-	protected void clearDatacenters() {
-		for (Vm vm : getVmsCreatedList()) {
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": Destroying VM #" + vm.getId());
-			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.VM_DESTROY, vm);
-		}
-
-		getVmsCreatedList().clear();
+	private EstimationCloudletOfPartner registerEstimate(ResCloudlet rCl, List<Integer> partnerIdsList) {
+		EstimationCloudletOfPartner esOfPatner = new EstimationCloudletOfPartner(rCl, partnerIdsList);
+		getEstimateCloudletofParnerMap().put(rCl.getCloudletId(), esOfPatner);
+		getCloudletEstimating().add(rCl.getCloudlet());
+		return esOfPatner;
 	}
 
 	/**
-	 * Send an internal event communicating the end of the simulation.
+	 * Schedules the decision of estimations of cloudlets of this broker after the
+	 * {@link #getPartnerEstimateTimeout() timeout}, if the estimations have a timeout.
 	 * 
-	 * @pre $none
+	 * @param estimations the estimations
+	 * @see #processPartnerEstimateDecisionTimeout(SimEvent)
+	 */
+	private void schedulePartnerEstimateDecisionTimeout(List<EstimationCloudletOfPartner> estimations) {
+		if (getPartnerEstimateTimeout() >= 0 && !estimations.isEmpty()) {
+			send(getId(), getPartnerEstimateTimeout(), CloudSimTags.PARTNER_ESTIMATE_DECISION_TIMEOUT,
+					estimations);
+		}
+	}
+
+	/**
+	 * Starts the estimation of the waiting cloudlets, in their arrival order, while the window of
+	 * estimations in progress is not full. When the estimations are batched, the next batch is
+	 * scheduled instead.
+	 */
+	protected void startWaitingEstimates() {
+		if (isPartnerEstimateBatching()) {
+			schedulePartnerEstimateFlush();
+			return;
+		}
+		while (getCloudletWaitingForEstimate().size() != 0
+				&& getEstimateCloudletofParnerMap().size() < getPartnerEstimateWindow()) {
+			Cloudlet estimateCloudlet = getCloudletWaitingForEstimate().remove(0);
+			Log.printLine(getContext().clock()+ " get cloudlet from waiting list cloulet #"+estimateCloudlet.getCloudletId()+" send to " + "estimate");
+			startPartnerEstimate(estimateCloudlet);
+		}
+	}
+
+	/**
+	 * Schedules the sending of the next batch of waiting cloudlets to the partners, unless one is
+	 * already scheduled, no cloudlet is waiting or the window of estimations in progress is full.
+	 */
+	protected void schedulePartnerEstimateFlush() {
+		if (!partnerEstimateFlushPending && getCloudletWaitingForEstimate().size() != 0
+				&& getEstimateCloudletofParnerMap().size() < getPartnerEstimateWindow()) {
+			partnerEstimateFlushPending = true;
+			send(getId(), getPartnerEstimateBatchDelay(), CloudSimTags.PARTNER_ESTIMATE_BATCH_FLUSH);
+		}
+	}
+
+	/**
+	 * Sends the waiting cloudlets, in their arrival order and up to the free room of the window
+	 * of estimations in progress, to all the partners in one batch per partner.
+	 * 
+	 * @param ev the flush event
+	 */
+	protected void processPartnerEstimateBatchFlush(SimEvent ev) {
+		partnerEstimateFlushPending = false;
+		List<Cloudlet> batch = new ArrayList<Cloudlet>();
+		while (getCloudletWaitingForEstimate().size() != 0
+				&& getEstimateCloudletofParnerMap().size() + batch.size() < getPartnerEstimateWindow()) {
+			batch.add(getCloudletWaitingForEstimate().remove(0));
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		// the cloudlets to send to each partner
+		Map<Integer, List<Cloudlet>> batches = new HashMap<Integer, List<Cloudlet>>();
+		List<EstimationCloudletOfPartner> estimations = new ArrayList<EstimationCloudletOfPartner>();
+		for (Cloudlet cl : batch) {
+			List<Integer> partnerIdsList = selectPartners(cl);
+			if (partnerIdsList.isEmpty()) {
+				Log.printLine(getContext().clock() + " " + getName() + " has no partner, can not estimate cloudlet #" + cl.getCloudletId());
+				partnerEstimateRequestTimes.remove(cl.getCloudletId());
+				continue;
+			}
+			estimations.add(registerEstimate(new ResCloudlet(cl), partnerIdsList));
+			// send a copy to each partner, which may run in another partition
+			for (Integer partnerId : partnerIdsList) {
+				addToDestination(batches, partnerId, cl.copy());
+			}
+		}
+		for (Integer partnerId : getBrokerIdsList()) {
+			List<Cloudlet> partnerBatch = batches.get(partnerId);
+			if (partnerBatch != null) {
+				Log.printLine(getContext().clock() + ": " + getName() + ": #" + getId() + " " + partnerBatch.size()
+						+ " cloudlets have been send to broker #" + partnerId);
+				sendNow(partnerId, CloudSimTags.PARTNER_ESTIMATE_BATCH, partnerBatch);
+				partnerEstimateRequests += partnerBatch.size();
+			}
+		}
+		schedulePartnerEstimateDecisionTimeout(estimations);
+	}
+
+	/**
+	 * Selects the partners a cloudlet is sent to for estimation. All the partners are selected if
+	 * the {@link #getPartnerSelectionSize() selection size} is 0. Otherwise, the partners are
+	 * ranked by the finish time of the cloudlet estimated from their latest capacity digest, and
+	 * the first ones are selected; the partners whose digest is unknown or older than
+	 * {@link #CAPACITY_DIGEST_MAX_AGE} periods rank after the ones that can run the cloudlet, and
+	 * the ties are broken at random.
+	 * 
+	 * @param cl the cloudlet
+	 * @return the ids of the selected partners
+	 */
+	protected List<Integer> selectPartners(Cloudlet cl) {
+		List<Integer> partnerIdsList = new ArrayList<Integer>();
+		for (Integer partnerId : getBrokerIdsList()) {
+			if (partnerId != getId()) {
+				partnerIdsList.add(partnerId);
+			}
+		}
+		if (getPartnerSelectionSize() <= 0 || partnerIdsList.size() <= getPartnerSelectionSize()) {
+			return partnerIdsList;
+		}
+
+		double currentTime = getContext().clock();
+		double maxAge = CAPACITY_DIGEST_MAX_AGE * getCapacityDigestPeriod();
+		final Map<Integer, Double> scores = new HashMap<Integer, Double>();
+		for (Integer partnerId : partnerIdsList) {
+			CapacityDigest digest = partnerDigests.get(partnerId);
+			if (digest == null || (maxAge > 0 && currentTime - digest.getTime() > maxAge)) {
+				scores.put(partnerId, Double.MAX_VALUE);
+			} else {
+				scores.put(partnerId, digest.estimateFinishTime(cl, currentTime));
+			}
+		}
+		// partners that rank equally are chosen at random, so they share the cloudlets
+		Collections.shuffle(partnerIdsList, capacityDigestRandom);
+		Collections.sort(partnerIdsList, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer partner1, Integer partner2) {
+				return Double.compare(scores.get(partner1), scores.get(partner2));
+			}
+		});
+		return new ArrayList<Integer>(partnerIdsList.subList(0, getPartnerSelectionSize()));
+	}
+
+	/**
+	 * Publishes the capacity digest of this broker, with the latest digests it knows of the
+	 * other brokers, to {@link #getCapacityDigestFanout()} random partners, which answer with
+	 * their own. The publication is repeated every {@link #getCapacityDigestPeriod()} while this
+	 * broker processes other events, and starts again with its next event otherwise.
+	 * 
+	 * @param ev the tick event
+	 */
+	protected void processCapacityDigestTick(SimEvent ev) {
+		capacityDigestPending = false;
+		List<Integer> partnerIdsList = new ArrayList<Integer>();
+		for (Integer partnerId : getBrokerIdsList()) {
+			if (partnerId != getId()) {
+				partnerIdsList.add(partnerId);
+			}
+		}
+		Object[] data = { getCapacityDigests(), Boolean.TRUE };
+		for (int i = 0; i < getCapacityDigestFanout() && !partnerIdsList.isEmpty(); i++) {
+			int partnerId = partnerIdsList.remove(capacityDigestRandom.nextInt(partnerIdsList.size()));
+			sendNow(partnerId, CloudSimTags.CAPACITY_DIGEST, data);
+		}
+
+		if (getContext().clock() - lastActivityTime < getCapacityDigestPeriod()) {
+			capacityDigestPending = true;
+			send(getId(), getCapacityDigestPeriod(), CloudSimTags.CAPACITY_DIGEST_TICK);
+		}
+	}
+
+	/**
+	 * Processes the capacity digests published by a partner, keeping the latest digest of each
+	 * broker, and answers with the digests of this broker if the partner asks for them.
+	 * 
+	 * @param ev the event holding the list of digests and whether an answer is expected
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processCapacityDigest(SimEvent ev) {
+		Object[] data = (Object[]) ev.getData();
+		for (CapacityDigest digest : (List<CapacityDigest>) data[0]) {
+			if (digest.getBrokerId() != getId()) {
+				CapacityDigest known = partnerDigests.get(digest.getBrokerId());
+				if (known == null || known.getTime() < digest.getTime()) {
+					partnerDigests.put(digest.getBrokerId(), digest);
+				}
+			}
+		}
+		if ((Boolean) data[1]) {
+			Object[] reply = { getCapacityDigests(), Boolean.FALSE };
+			sendNow(ev.getSource(), CloudSimTags.CAPACITY_DIGEST, reply);
+		}
+	}
+
+	/**
+	 * Gets the capacity digest of this broker, followed by the latest digests it knows of the
+	 * other brokers.
+	 * 
+	 * @return the digests
+	 */
+	protected List<CapacityDigest> getCapacityDigests() {
+		CapacityDigest digest = new CapacityDigest(getId(), getContext().clock());
+		for (Vm vm : getVmsCreatedList()) {
+			digest.addVm(vm);
+		}
+		List<CapacityDigest> digests = new ArrayList<CapacityDigest>(partnerDigests.size() + 1);
+		digests.add(digest);
+		digests.addAll(partnerDigests.values());
+		return digests;
+	}
+
+	/**
+	 * Processes the estimate of a partner for a cloudlet of this broker. The VM the partner
+	 * reserved is cancelled unless the partner becomes the best one, in which case the
+	 * reservation of the previous best partner is cancelled. Once all the partners have answered,
+	 * or as soon as the best estimate meets the deadline with the
+	 * {@link #getPartnerEstimateDecisionMargin() decision margin}, the cloudlet is sent for
+	 * execution to the best partner if it can meet the deadline, and the next waiting cloudlets
+	 * are estimated.
+	 * 
+	 * @param ev the event holding the estimated ResCloudlet, the reserved VM id and the id of its
+	 *            datacenter, -1 if the partner reserved no VM
+	 */
+	protected void processReturnEstimateFromParner(SimEvent ev) {
+		if (receivePartnerEstimate(ev.getSource(), (Object[]) ev.getData(), null)) {
+			startWaitingEstimates();
+		}
+	}
+
+	/**
+	 * Processes the estimates of a partner for a list of cloudlets of this broker. The
+	 * reservations to cancel are sent in one event per partner.
+	 * 
+	 * @param ev the event holding the list of estimates, each one made of the estimated
+	 *            ResCloudlet, the reserved VM id and the id of its datacenter
+	 * @see #processReturnEstimateFromParner(SimEvent)
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processReturnEstimateBatchFromPartner(SimEvent ev) {
+		List<Object[]> estimates = (List<Object[]>) ev.getData();
+		Map<Integer, List<Object[]>> cancels = new HashMap<Integer, List<Object[]>>();
+		boolean finished = false;
+		for (Object[] data : estimates) {
+			finished |= receivePartnerEstimate(ev.getSource(), data, cancels);
+		}
+		for (Map.Entry<Integer, List<Object[]>> entry : cancels.entrySet()) {
+			sendNow(entry.getKey(), CloudSimTags.CANCEL_PARTNER_WAITING_EXEC_BATCH, entry.getValue());
+		}
+		if (finished) {
+			startWaitingEstimates();
+		}
+	}
+
+	/**
+	 * Processes the estimate of a partner for a cloudlet of this broker.
+	 * 
+	 * @param partnerId the id of the partner
+	 * @param data the estimated ResCloudlet, the reserved VM id and the id of its datacenter
+	 * @param cancels the cancellations to send per partner, or <tt>null</tt> to send them at once
+	 * @return whether the estimation of the cloudlet is over
+	 */
+	private boolean receivePartnerEstimate(int partnerId, Object[] data, Map<Integer, List<Object[]>> cancels) {
+		ResCloudlet rCl = (ResCloudlet) data[0];
+		int vmId = (Integer) data[1];
+		int datacenterId = (Integer) data[2];
+		Integer clouletId = rCl.getCloudletId();
+		Log.printLine(getContext().clock() + ": " + getName() + ": Received estimate result from Broker #" + partnerId+ " with estimate time: "+rCl.getClouddletFinishTime());
+		EstimationCloudletOfPartner partnerCloudletEstimateList = getEstimateCloudletofParnerMap().get(clouletId);
+		if (partnerCloudletEstimateList == null
+				|| !partnerCloudletEstimateList.getPartnerIdsList().contains(partnerId)) {
+			// the estimation of this cloudlet is over
+			cancelPartnerReservation(partnerId, datacenterId, rCl, cancels);
+			return false;
+		}
+
+		int bestDatacenterId = partnerCloudletEstimateList.getCurrentBestDatacenterId();
+		int partnerCancelWaitingExec = partnerCloudletEstimateList.receiveEstimateResult(partnerId, rCl, vmId, datacenterId);
+		if (partnerCancelWaitingExec == partnerId) {
+			cancelPartnerReservation(partnerId, datacenterId, rCl, cancels);
+		} else if (partnerCancelWaitingExec != -1) {
+			cancelPartnerReservation(partnerCancelWaitingExec, bestDatacenterId, rCl, cancels);
+		}
+
+		if (partnerCloudletEstimateList.isFinished()) {
+			decidePartnerEstimate(partnerCloudletEstimateList, cancels);
+			return true;
+		}
+		if (isGoodEnough(partnerCloudletEstimateList)) {
+			Log.printLine(getContext().clock() + ": " + getName() + ": Estimate of cloudlet #" + clouletId
+					+ " meets the deadline, not waiting for the other partners");
+			partnerEarlyDecisions++;
+			decidePartnerEstimate(partnerCloudletEstimateList, cancels);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the best estimate of a cloudlet meets its deadline with the
+	 * {@link #getPartnerEstimateDecisionMargin() decision margin}.
+	 * 
+	 * @param estimation the estimation of the cloudlet
+	 * @return <tt>true</tt> if the cloudlet can be sent without waiting for the other partners
+	 */
+	private boolean isGoodEnough(EstimationCloudletOfPartner estimation) {
+		if (getPartnerEstimateDecisionMargin() < 0 || estimation.getCurrentBestDatacenterId() == -1) {
+			return false;
+		}
+		ResCloudlet resCloudlet = estimation.getResCloudlet();
+		return resCloudlet.getClouddletFinishTime() + getPartnerEstimateDecisionMargin() < resCloudlet
+				.getCloudlet().getDeadline();
+	}
+
+	/**
+	 * Ends the estimation of a cloudlet of this broker: the cloudlet is sent for execution to the
+	 * best partner if it can meet the deadline, and the reservation of that partner is cancelled
+	 * otherwise. The partners that have not answered yet have their reservations cancelled when
+	 * their estimates arrive.
+	 * 
+	 * @param estimation the estimation of the cloudlet
+	 * @param cancels the cancellations to send per partner, or <tt>null</tt> to send them at once
+	 */
+	private void decidePartnerEstimate(EstimationCloudletOfPartner estimation,
+			Map<Integer, List<Object[]>> cancels) {
+		ResCloudlet resCloudlet = estimation.getResCloudlet();
+		getEstimateCloudletofParnerMap().remove(resCloudlet.getCloudletId());
+		int bestPartnerId = estimation.getCurrentBestPartnerId();
+		if (estimation.getCurrentBestDatacenterId() != -1
+				&& resCloudlet.getClouddletFinishTime() < resCloudlet.getCloudlet().getDeadline()) {
+			// send the cloudlet to the best partner, on the VM it reserved
+			resCloudlet.getCloudlet().setVmId(estimation.getCurrentBestVmId());
+			sendNow(bestPartnerId, CloudSimTags.PARTNER_EXEC, resCloudlet.getCloudlet());
+			partnerOffloads++;
+		} else {
+			Log.printLine(getContext().clock()+ " can not send cloudlet #"+resCloudlet.getCloudletId()+ " to any where, timeout");
+			cancelPartnerReservation(bestPartnerId, estimation.getCurrentBestDatacenterId(), resCloudlet, cancels);
+		}
+		getCloudletEstimating().remove(resCloudlet.getCloudlet());
+		Double requestTime = partnerEstimateRequestTimes.remove(resCloudlet.getCloudletId());
+		if (requestTime != null) {
+			offloadDecisionLatencies.add(getContext().clock() - requestTime);
+		}
+	}
+
+	/**
+	 * Processes the timeout of estimations of cloudlets of this broker. The estimations still in
+	 * progress are decided on the estimates received so far, and the next waiting cloudlets are
+	 * estimated.
+	 * 
+	 * @param ev the event holding the list of estimations
+	 * @see #setPartnerEstimateTimeout(double)
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processPartnerEstimateDecisionTimeout(SimEvent ev) {
+		List<EstimationCloudletOfPartner> estimations = (List<EstimationCloudletOfPartner>) ev.getData();
+		Map<Integer, List<Object[]>> cancels = new HashMap<Integer, List<Object[]>>();
+		boolean decided = false;
+		for (EstimationCloudletOfPartner estimation : estimations) {
+			Integer cloudletId = estimation.getResCloudlet().getCloudletId();
+			if (getEstimateCloudletofParnerMap().get(cloudletId) == estimation) {
+				Log.printLine(getContext().clock() + ": " + getName() + ": Partner estimate of cloudlet #"
+						+ cloudletId + " timed out");
+				partnerEstimateTimeouts++;
+				decidePartnerEstimate(estimation, cancels);
+				decided = true;
+			}
+		}
+		for (Map.Entry<Integer, List<Object[]>> entry : cancels.entrySet()) {
+			sendNow(entry.getKey(), CloudSimTags.CANCEL_PARTNER_WAITING_EXEC_BATCH, entry.getValue());
+		}
+		if (decided) {
+			startWaitingEstimates();
+		}
+	}
+
+	/**
+	 * Asks a partner to release the VM it reserved for a cloudlet of this broker.
+	 * 
+	 * @param partnerId the id of the partner broker
+	 * @param datacenterId the id of the datacenter of the reserved VM, -1 if there is none
+	 * @param rCl the cloudlet
+	 */
+	protected void cancelPartnerReservation(int partnerId, int datacenterId, ResCloudlet rCl) {
+		cancelPartnerReservation(partnerId, datacenterId, rCl, null);
+	}
+
+	/**
+	 * Asks a partner to release the VM it reserved for a cloudlet of this broker, either at once
+	 * or together with the other cancellations sent to that partner.
+	 * 
+	 * @param partnerId the id of the partner broker
+	 * @param datacenterId the id of the datacenter of the reserved VM, -1 if there is none
+	 * @param rCl the cloudlet
+	 * @param cancels the cancellations to send per partner, or <tt>null</tt> to send it at once
+	 */
+	private void cancelPartnerReservation(int partnerId, int datacenterId, ResCloudlet rCl,
+			Map<Integer, List<Object[]>> cancels) {
+		if (partnerId != -1 && datacenterId != -1) {
+			Object[] data = { rCl, datacenterId };
+			if (cancels == null) {
+				sendNow(partnerId, CloudSimTags.CANCEL_PARTNER_WAITING_EXEC, data);
+			} else {
+				addToDestination(cancels, partnerId, data);
+			}
+		}
+	}
+	
+	/**
+	 * Destroy the virtual machines running in datacenters.
+	 * 
+	 * @pre $none
+	 * @post $none
+	 */
+	protected void clearDatacenters() {
+		for (Vm vm : getVmsCreatedList()) {
+			Log.printLine(getContext().clock() + ": " + getName() + ": Destroying VM #" + vm.getId());
+			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.VM_DESTROY, vm);
+		}
+
+		getVmsCreatedList().clear();
+		vmsCreatedIndex.clear();
+	}
+
+	/**
+	 * Send an internal event communicating the end of the simulation.
+	 * 
+	 * @pre $none
 	 * @post $none
 	 */
 	protected void finishExecution() {
@@ -687,10 +1689,14 @@ public class DatacenterBroker extends SimEntity {
 	public void startEntity() {
 		Log.printLine(getName() + " is starting...");
 		schedule(getId(), 0, CloudSimTags.RESOURCE_CHARACTERISTICS_REQUEST);
+		if (getCloudletSource() != null) {
+			scheduleCloudletArrival();
+		}
 	}
 
 	/**
-	 * Gets the vm list.
+	 * Gets the vm list. The list is indexed by vm id; a vm added to the list directly is indexed
+	 * when it is first looked up.
 	 * 
 	 * @param <T> the generic type
 	 * @return the vm list
@@ -708,10 +1714,13 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected <T extends Vm> void setVmList(List<T> vmList) {
 		this.vmList = vmList;
+		vmIndex = new IntObjectMap<Vm>(vmList.size());
+		indexVms(vmIndex, vmList);
 	}
 
 	/**
-	 * Gets the cloudlet list.
+	 * Gets the cloudlet list. The list is indexed by cloudlet id; a cloudlet added to the list
+	 * directly is indexed when it is first looked up.
 	 * 
 	 * @param <T> the generic type
 	 * @return the cloudlet list
@@ -729,6 +1738,8 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected <T extends Cloudlet> void setCloudletList(List<T> cloudletList) {
 		this.cloudletList = cloudletList;
+		cloudletIndex = new IntObjectMap<Cloudlet>(cloudletList.size());
+		indexCloudlets(cloudletIndex, cloudletList);
 	}
 
 	/**
@@ -792,6 +1803,436 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected <T extends Vm> void setVmsCreatedList(List<T> vmsCreatedList) {
 		this.vmsCreatedList = vmsCreatedList;
+		vmsCreatedIndex = new IntObjectMap<Vm>(vmsCreatedList.size());
+		indexVms(vmsCreatedIndex, vmsCreatedList);
+	}
+
+	/**
+	 * Gets the number of cloudlets sent to a partner broker for execution.
+	 * 
+	 * @return the number of partner offloads
+	 */
+	public int getPartnerOffloads() {
+		return partnerOffloads;
+	}
+
+	/**
+	 * Gets the number of cloudlets whose partner estimation can be in progress at once.
+	 * 
+	 * @return the estimation window
+	 */
+	public int getPartnerEstimateWindow() {
+		return partnerEstimateWindow;
+	}
+
+	/**
+	 * Sets the number of cloudlets whose partner estimation can be in progress at once. The
+	 * estimations of different cloudlets then overlap, and each partner may hold a VM reserved for
+	 * each of them.
+	 * 
+	 * @param partnerEstimateWindow the estimation window
+	 * @throws IllegalArgumentException if the window is not positive
+	 * @pre partnerEstimateWindow > 0
+	 * @post $none
+	 */
+	public void setPartnerEstimateWindow(int partnerEstimateWindow) {
+		if (partnerEstimateWindow <= 0) {
+			throw new IllegalArgumentException("The partner estimate window must be positive.");
+		}
+		this.partnerEstimateWindow = partnerEstimateWindow;
+	}
+
+	/**
+	 * Gets the time during which the cloudlets to estimate are accumulated before being sent to
+	 * the partners in one batch.
+	 * 
+	 * @return the batch delay, negative if the estimations are not batched
+	 */
+	public double getPartnerEstimateBatchDelay() {
+		return partnerEstimateBatchDelay;
+	}
+
+	/**
+	 * Sets the time during which the cloudlets to estimate are accumulated before being sent to
+	 * the partners in one batch. Each partner then receives one event per batch, and answers with
+	 * one event per batch once all its datacenters have answered. A delay of 0 batches the
+	 * cloudlets that arrive at the same simulation time. At most
+	 * {@link #getPartnerEstimateWindow()} cloudlets are estimated at once, so the window bounds
+	 * the size of a batch.
+	 * 
+	 * @param partnerEstimateBatchDelay the batch delay, or
+	 *            {@link #NO_PARTNER_ESTIMATE_BATCHING} to send each cloudlet on its own
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateBatchDelay(double partnerEstimateBatchDelay) {
+		this.partnerEstimateBatchDelay = partnerEstimateBatchDelay;
+	}
+
+	/**
+	 * Checks whether the cloudlets to estimate are sent to the partners in batches.
+	 * 
+	 * @return <tt>true</tt> if the estimations are batched
+	 */
+	public boolean isPartnerEstimateBatching() {
+		return partnerEstimateBatchDelay >= 0;
+	}
+
+	/**
+	 * Gets the estimates of partner cloudlets by the datacenters of this broker that are reused
+	 * instead of querying the datacenters again, with the numbers of hits and misses.
+	 * 
+	 * @return the partner estimate cache, <tt>null</tt> if the estimates are not cached
+	 */
+	public PartnerEstimateCache getPartnerEstimateCache() {
+		return partnerEstimateCache;
+	}
+
+	/**
+	 * Sets the time during which the estimates of partner cloudlets by the datacenters of this
+	 * broker are reused. A datacenter known to be unable to run a cloudlet before its deadline is
+	 * not queried again for a cloudlet of the same shape, as long as its cloudlet schedulers have
+	 * not changed. The datacenters of the broker must run in the partition of the broker.
+	 * 
+	 * @param partnerEstimateCacheTtl the time to live of the cached estimates, 0 for the
+	 *            simulation time at which they were made, or {@link #NO_PARTNER_ESTIMATE_CACHE}
+	 *            to query the datacenters for every cloudlet
+	 * @see PartnerEstimateCache
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateCacheTtl(double partnerEstimateCacheTtl) {
+		if (partnerEstimateCacheTtl < 0) {
+			partnerEstimateCache = null;
+		} else if (partnerEstimateCache == null) {
+			partnerEstimateCache = new PartnerEstimateCache(partnerEstimateCacheTtl);
+		} else {
+			partnerEstimateCache.setTimeToLive(partnerEstimateCacheTtl);
+		}
+	}
+
+	/**
+	 * Gets the time between two publications of the capacity digest of this broker.
+	 * 
+	 * @return the period, negative if the digest is not published
+	 */
+	public double getCapacityDigestPeriod() {
+		return capacityDigestPeriod;
+	}
+
+	/**
+	 * Sets the time between two publications of the capacity digest of this broker. The digest
+	 * summarizes the free PEs, the backlog and the earliest available time of the VMs of the
+	 * broker by VM class, and is gossiped to the partners so that they can send their cloudlets to
+	 * the most promising partners only (see {@link #setPartnerSelectionSize(int)}). The VMs of the
+	 * broker must run in the partition of the broker.
+	 * 
+	 * @param capacityDigestPeriod the period, or {@link #NO_CAPACITY_DIGEST} not to publish the
+	 *            digest
+	 * @throws IllegalArgumentException if the period is 0
+	 * @see CapacityDigest
+	 * @pre capacityDigestPeriod != 0
+	 * @post $none
+	 */
+	public void setCapacityDigestPeriod(double capacityDigestPeriod) {
+		if (capacityDigestPeriod == 0) {
+			throw new IllegalArgumentException("The capacity digest period can't be 0.");
+		}
+		this.capacityDigestPeriod = capacityDigestPeriod;
+	}
+
+	/**
+	 * Gets the number of partners the capacity digest of this broker is published to.
+	 * 
+	 * @return the fanout
+	 */
+	public int getCapacityDigestFanout() {
+		return capacityDigestFanout;
+	}
+
+	/**
+	 * Sets the number of partners the capacity digest of this broker is published to at each
+	 * period. The digests of the other brokers are forwarded with it, so they reach the whole
+	 * federation in a number of periods that grows with the logarithm of its size.
+	 * 
+	 * @param capacityDigestFanout the fanout
+	 * @throws IllegalArgumentException if the fanout is not positive
+	 * @pre capacityDigestFanout > 0
+	 * @post $none
+	 */
+	public void setCapacityDigestFanout(int capacityDigestFanout) {
+		if (capacityDigestFanout <= 0) {
+			throw new IllegalArgumentException("The capacity digest fanout must be positive.");
+		}
+		this.capacityDigestFanout = capacityDigestFanout;
+	}
+
+	/**
+	 * Gets the latest capacity digest known of each partner.
+	 * 
+	 * @return the digests, by broker id
+	 */
+	public Map<Integer, CapacityDigest> getPartnerDigests() {
+		return Collections.unmodifiableMap(partnerDigests);
+	}
+
+	/**
+	 * Gets the number of partners each cloudlet is sent to for estimation.
+	 * 
+	 * @return the selection size, 0 for all the partners
+	 */
+	public int getPartnerSelectionSize() {
+		return partnerSelectionSize;
+	}
+
+	/**
+	 * Sets the number of partners each cloudlet is sent to for estimation. The partners are chosen
+	 * from their capacity digests, so the cost of an estimation does not grow with the size of the
+	 * federation.
+	 * 
+	 * @param partnerSelectionSize the selection size, 0 for all the partners
+	 * @throws IllegalArgumentException if the selection size is negative
+	 * @see #selectPartners(Cloudlet)
+	 * @pre partnerSelectionSize >= 0
+	 * @post $none
+	 */
+	public void setPartnerSelectionSize(int partnerSelectionSize) {
+		if (partnerSelectionSize < 0) {
+			throw new IllegalArgumentException("The partner selection size can't be negative.");
+		}
+		this.partnerSelectionSize = partnerSelectionSize;
+	}
+
+	/**
+	 * Gets the number of estimations of a cloudlet this broker requested to a partner.
+	 * 
+	 * @return the number of partner estimate requests
+	 */
+	public long getPartnerEstimateRequests() {
+		return partnerEstimateRequests;
+	}
+
+	/**
+	 * Gets the time this broker waits for the estimates of a cloudlet by the partners.
+	 * 
+	 * @return the timeout, negative if the broker waits for all the partners
+	 */
+	public double getPartnerEstimateTimeout() {
+		return partnerEstimateTimeout;
+	}
+
+	/**
+	 * Sets the time this broker waits for the estimates of a cloudlet by the partners. When it
+	 * expires, the cloudlet is sent to the best partner that answered if it can meet the deadline,
+	 * so a slow partner does not stall the estimation of the waiting cloudlets. The same time
+	 * bounds the wait of this broker for its datacenters when it estimates the cloudlets of a
+	 * partner.
+	 * 
+	 * @param partnerEstimateTimeout the timeout, or {@link #NO_PARTNER_ESTIMATE_TIMEOUT} to wait
+	 *            for all the partners
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateTimeout(double partnerEstimateTimeout) {
+		this.partnerEstimateTimeout = partnerEstimateTimeout;
+	}
+
+	/**
+	 * Gets the margin before the deadline of a cloudlet with which an estimate is good enough to
+	 * send the cloudlet without waiting for the other partners.
+	 * 
+	 * @return the decision margin, negative if all the partners are waited for
+	 */
+	public double getPartnerEstimateDecisionMargin() {
+		return partnerEstimateDecisionMargin;
+	}
+
+	/**
+	 * Sets the margin before the deadline of a cloudlet with which an estimate is good enough to
+	 * send the cloudlet without waiting for the other partners. A margin of 0 sends the cloudlet
+	 * to the first partner that can meet the deadline.
+	 * 
+	 * @param partnerEstimateDecisionMargin the decision margin, or
+	 *            {@link #NO_PARTNER_ESTIMATE_EARLY_DECISION} to wait for all the partners
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateDecisionMargin(double partnerEstimateDecisionMargin) {
+		this.partnerEstimateDecisionMargin = partnerEstimateDecisionMargin;
+	}
+
+	/**
+	 * Gets the number of partner estimations decided by the timeout.
+	 * 
+	 * @return the number of partner estimate timeouts
+	 */
+	public int getPartnerEstimateTimeouts() {
+		return partnerEstimateTimeouts;
+	}
+
+	/**
+	 * Gets the number of partner estimations decided before all the partners answered, because an
+	 * estimate met the deadline with the decision margin.
+	 * 
+	 * @return the number of early decisions
+	 */
+	public int getPartnerEarlyDecisions() {
+		return partnerEarlyDecisions;
+	}
+
+	/**
+	 * Gets the time taken to decide where each cloudlet estimated by the partners is executed,
+	 * from the time the cloudlet was handed to this broker for estimation, including the time it
+	 * waited for the estimation window.
+	 * 
+	 * @return the offload decision latencies, in decision order
+	 */
+	public List<Double> getOffloadDecisionLatencies() {
+		return Collections.unmodifiableList(offloadDecisionLatencies);
+	}
+
+	/**
+	 * Gets a percentile of the time taken to decide where the cloudlets estimated by the partners
+	 * are executed.
+	 * 
+	 * @param percentile the percentile, e.g. 99 for the tail latency
+	 * @return the latency percentile, 0 if no cloudlet was decided
+	 * @see #getOffloadDecisionLatencies()
+	 * @pre percentile > 0 && percentile <= 100
+	 * @post $none
+	 */
+	public double getOffloadDecisionLatencyPercentile(double percentile) {
+		if (offloadDecisionLatencies.isEmpty()) {
+			return 0;
+		}
+		return MathUtil.getStatistics(offloadDecisionLatencies).getPercentile(percentile);
+	}
+
+	/**
+	 * Gets the policy that chooses the VM of each cloudlet not bound to a VM.
+	 * 
+	 * @return the cloudlet assignment policy
+	 */
+	public CloudletAssignmentPolicy getCloudletAssignmentPolicy() {
+		return cloudletAssignmentPolicy;
+	}
+
+	/**
+	 * Sets the policy that chooses the VM of each cloudlet not bound to a VM.
+	 * 
+	 * @param cloudletAssignmentPolicy the cloudlet assignment policy
+	 * @throws IllegalArgumentException if the policy is <tt>null</tt>
+	 * @see CloudletAssignmentPolicyRoundRobin
+	 * @see CloudletAssignmentPolicyFairShare
+	 * @pre cloudletAssignmentPolicy != null
+	 * @post $none
+	 */
+	public void setCloudletAssignmentPolicy(CloudletAssignmentPolicy cloudletAssignmentPolicy) {
+		if (cloudletAssignmentPolicy == null) {
+			throw new IllegalArgumentException("The cloudlet assignment policy can't be null.");
+		}
+		this.cloudletAssignmentPolicy = cloudletAssignmentPolicy;
+	}
+
+	/**
+	 * Checks whether the cloudlets are sent to each datacenter in one event.
+	 * 
+	 * @return <tt>true</tt> if the cloudlets are submitted in batches
+	 */
+	public boolean isCloudletSubmitBatching() {
+		return cloudletSubmitBatching;
+	}
+
+	/**
+	 * Sets whether the cloudlets are sent to each datacenter in one event. The datacenter then
+	 * submits the cloudlets of the event in one pass, in the order they were assigned.
+	 * 
+	 * @param cloudletSubmitBatching <tt>true</tt> to submit the cloudlets in batches
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setCloudletSubmitBatching(boolean cloudletSubmitBatching) {
+		this.cloudletSubmitBatching = cloudletSubmitBatching;
+	}
+
+	/**
+	 * Checks whether the VMs are sent to each datacenter in one event.
+	 * 
+	 * @return <tt>true</tt> if the VMs are created in batches
+	 */
+	public boolean isVmCreateBatching() {
+		return vmCreateBatching;
+	}
+
+	/**
+	 * Sets whether the VMs are sent to each datacenter in one event. The datacenter then gives
+	 * them to its allocation policy together and answers with one ack for all of them.
+	 * 
+	 * @param vmCreateBatching <tt>true</tt> to create the VMs in batches
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setVmCreateBatching(boolean vmCreateBatching) {
+		this.vmCreateBatching = vmCreateBatching;
+	}
+
+	/**
+	 * Checks whether the returned cloudlets are kept in the cloudlet submitted and received lists.
+	 * 
+	 * @return <tt>true</tt> if the returned cloudlets are kept
+	 */
+	public boolean isRetainReturnedCloudlets() {
+		return retainReturnedCloudlets;
+	}
+
+	/**
+	 * Sets whether the returned cloudlets are kept in the cloudlet submitted and received lists.
+	 * If not, a returned cloudlet is removed from the submitted list and not added to the
+	 * received list, so that with a {@link #setCloudletSource(CloudletSource) cloudlet source}
+	 * only the cloudlets in flight are held in memory; the returned cloudlets are then only
+	 * counted (see {@link #getCloudletsReturned()}).
+	 * 
+	 * @param retainReturnedCloudlets <tt>false</tt> to drop the returned cloudlets
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setRetainReturnedCloudlets(boolean retainReturnedCloudlets) {
+		this.retainReturnedCloudlets = retainReturnedCloudlets;
+	}
+
+	/**
+	 * Gets the number of cloudlets returned to this broker, whether they are retained or not.
+	 * 
+	 * @return the number of returned cloudlets
+	 */
+	public int getCloudletsReturned() {
+		return cloudletsReturned;
+	}
+
+	/**
+	 * Gets the source the cloudlets arriving during the simulation are taken from.
+	 * 
+	 * @return the cloudlet source, <tt>null</tt> if the broker only runs the cloudlets submitted
+	 *         before the simulation
+	 */
+	public CloudletSource getCloudletSource() {
+		return cloudletSource;
+	}
+
+	/**
+	 * Sets the source the cloudlets arriving during the simulation are taken from. Each cloudlet is
+	 * taken from the source at its arrival time, given to the broker and submitted as the cloudlets
+	 * of {@link #submitCloudletList(List)} are; the broker does not finish before the source is
+	 * exhausted. The source must be set before the simulation starts.
+	 * 
+	 * @param cloudletSource the cloudlet source, <tt>null</tt> for none
+	 * @see org.cloudbus.cloudsim.util.WorkloadFileReader#getCloudletSource()
+	 * @see org.cloudbus.cloudsim.util.SyntheticCloudletSource
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setCloudletSource(CloudletSource cloudletSource) {
+		this.cloudletSource = cloudletSource;
 	}
 
 	/**
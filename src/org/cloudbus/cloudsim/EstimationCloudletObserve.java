@@ -6,11 +6,13 @@ public class EstimationCloudletObserve {
 	private List<Integer> datacenterList;
 	private ResCloudlet resCloudlet;
 	private int datacenterIdOFCurrrentExecVm;
+	private int vmIdOfCurrentExecVm;
 	
 	public EstimationCloudletObserve(ResCloudlet resCloudlet, List<Integer> datacenterList) {
 		this.datacenterList = datacenterList;
 		this.resCloudlet = resCloudlet;
 		this.setDatacenterIdOFCurrrentExecVm(-1);
+		this.setVmIdOfCurrentExecVm(-1);
 	}
 	
 	public List<Integer> getDatacenterList() {
@@ -29,7 +31,7 @@ public class EstimationCloudletObserve {
 		this.resCloudlet = resCloudlet;
 	}
 	//if resturn datacenterID that will be cancel exec;
-	public int receiveEstimateResult(int datacenterID, ResCloudlet reResCloudlet,Boolean result) {
+	public int receiveEstimateResult(int datacenterID, ResCloudlet reResCloudlet, Boolean result, int vmId) {
 		int DatacenterCancelExec = datacenterID;
 		int totalDatacenter = datacenterList.size();
 		for (int i = 0; i < totalDatacenter; i++) {
@@ -43,16 +45,16 @@ public class EstimationCloudletObserve {
 			double bestFinishTime = resCloudlet.getClouddletFinishTime();
 			if (finishTime > 0 && finishTime < bestFinishTime) {
 				DatacenterCancelExec = getDatacenterIdOFCurrrentExecVm();
-				setNewVmToExce(datacenterID,finishTime,reResCloudlet);
+				setNewVmToExce(datacenterID, finishTime, vmId);
 			}
 		}
 		return DatacenterCancelExec;
 	}
 	
-	private void setNewVmToExce(int datacenterID,double finishTime, ResCloudlet reResCloudlet) {
+	private void setNewVmToExce(int datacenterID, double finishTime, int vmId) {
 		setDatacenterIdOFCurrrentExecVm(datacenterID);
+		setVmIdOfCurrentExecVm(vmId);
 		resCloudlet.setFinishTime(finishTime);
-		resCloudlet.getCloudlet().setVmId(reResCloudlet.getCloudlet().getVmId()); 
 	}
 
 	public boolean isFinished() {
@@ -66,4 +68,12 @@ public class EstimationCloudletObserve {
 	public void setDatacenterIdOFCurrrentExecVm(int datacenterIdOFCurrrentExecVm) {
 		this.datacenterIdOFCurrrentExecVm = datacenterIdOFCurrrentExecVm;
 	}
+
+	public int getVmIdOfCurrentExecVm() {
+		return vmIdOfCurrentExecVm;
+	}
+
+	public void setVmIdOfCurrentExecVm(int vmIdOfCurrentExecVm) {
+		this.vmIdOfCurrentExecVm = vmIdOfCurrentExecVm;
+	}
 }
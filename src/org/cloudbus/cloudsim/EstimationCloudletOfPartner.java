@@ -7,6 +7,8 @@ public class EstimationCloudletOfPartner {
 	private ResCloudlet resCloudlet;
 	private List<Integer> partnerIdsList;
 	private int currentBestPartnerId;
+	private int currentBestVmId;
+	private int currentBestDatacenterId;
 	
 	public EstimationCloudletOfPartner(ResCloudlet resCloudlet,
 			List<Integer> partnerIdsList) {
@@ -14,9 +16,11 @@ public class EstimationCloudletOfPartner {
 		this.resCloudlet = resCloudlet;
 		this.partnerIdsList = partnerIdsList;
 		this.currentBestPartnerId = -1;
+		this.currentBestVmId = -1;
+		this.currentBestDatacenterId = -1;
 	}
 	
-	public int receiveEstimateResult(int partnerId, ResCloudlet reResCloudlet) {
+	public int receiveEstimateResult(int partnerId, ResCloudlet reResCloudlet, int vmId, int datacenterId) {
 		int partner_cancel_waiting_exec = partnerId; 
 		int totalPartnerId = partnerIdsList.size();
 		for (int i = 0; i < totalPartnerId; i++) {
@@ -31,8 +35,9 @@ public class EstimationCloudletOfPartner {
 		if (bestFinishTime == -1 ||(finishTime > 0 && finishTime < bestFinishTime)){
 			partner_cancel_waiting_exec = getCurrentBestPartnerId();
 			setCurrentBestPartnerId(partnerId);
+			setCurrentBestVmId(vmId);
+			setCurrentBestDatacenterId(datacenterId);
 			resCloudlet.setFinishTime(finishTime);
-			resCloudlet.getCloudlet().setVmId(reResCloudlet.getCloudlet().getVmId());
 			Log.printLine("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"+bestFinishTime);
 			Log.printLine("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"+resCloudlet.getClouddletFinishTime());
 		}
@@ -67,6 +72,22 @@ public class EstimationCloudletOfPartner {
 	public void setCurrentBestPartnerId(int currentBestPartnerId) {
 		this.currentBestPartnerId = currentBestPartnerId;
 	}
+
+	public int getCurrentBestVmId() {
+		return currentBestVmId;
+	}
+
+	public void setCurrentBestVmId(int currentBestVmId) {
+		this.currentBestVmId = currentBestVmId;
+	}
+
+	public int getCurrentBestDatacenterId() {
+		return currentBestDatacenterId;
+	}
+
+	public void setCurrentBestDatacenterId(int currentBestDatacenterId) {
+		this.currentBestDatacenterId = currentBestDatacenterId;
+	}
 	
 	
 	
@@ -12,6 +12,7 @@ import java.util.List;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.lists.PeList;
+import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
 import org.cloudbus.cloudsim.provisioners.RamProvisioner;
 
@@ -44,6 +45,9 @@ public class Host {
 	/** The vm list. */
 	private final List<? extends Vm> vmList = new ArrayList<Vm>();
 
+	/** The vms of the vm list, by user id and vm id. */
+	private final VmTable<Vm> vmIndex = new VmTable<Vm>();
+
 	/** The pe list. */
 	private List<? extends Pe> peList;
 
@@ -132,7 +136,7 @@ public class Host {
 				System.exit(0);
 			}
 
-			getVmScheduler().getVmsMigratingIn().add(vm.getUid());
+			getVmScheduler().getVmsMigratingIn().add(vm.getHandle());
 			if (!getVmScheduler().allocatePesForVm(vm, vm.getCurrentRequestedMips())) {
 				Log.printLine("[VmScheduler.addMigratingInVm] Allocation of VM #" + vm.getId() + " to Host #"
 						+ getId() + " failed by MIPS");
@@ -143,6 +147,7 @@ public class Host {
 
 			getVmsMigratingIn().add(vm);
 			getVmList().add(vm);
+			getVmIndex().put(vm, vm);
 			updateVmsProcessing(CloudSim.clock());
 			vm.getHost().updateVmsProcessing(CloudSim.clock());
 		}
@@ -156,8 +161,10 @@ public class Host {
 	public void removeMigratingInVm(Vm vm) {
 		vmDeallocate(vm);
 		getVmsMigratingIn().remove(vm);
-		getVmList().remove(vm);
-		getVmScheduler().getVmsMigratingIn().remove(vm.getUid());
+		if (getVmList().remove(vm)) {
+			getVmIndex().remove(vm);
+		}
+		getVmScheduler().getVmsMigratingIn().remove(Integer.valueOf(vm.getHandle()));
 		vm.setInMigration(false);
 	}
 
@@ -166,11 +173,12 @@ public class Host {
 	 */
 	public void reallocateMigratingInVms() {
 		for (Vm vm : getVmsMigratingIn()) {
-			if (!getVmList().contains(vm)) {
+			if (getVmIndex().get(vm) != vm) {
 				getVmList().add(vm);
+				getVmIndex().put(vm, vm);
 			}
-			if (!getVmScheduler().getVmsMigratingIn().contains(vm.getUid())) {
-				getVmScheduler().getVmsMigratingIn().add(vm.getUid());
+			if (!getVmScheduler().isVmMigratingIn(vm.getHandle())) {
+				getVmScheduler().getVmsMigratingIn().add(vm.getHandle());
 			}
 			getRamProvisioner().allocateRamForVm(vm, vm.getCurrentRequestedRam());
 			getBwProvisioner().allocateBwForVm(vm, vm.getCurrentRequestedBw());
@@ -230,6 +238,7 @@ public class Host {
 
 		setStorage(getStorage() - vm.getSize());
 		getVmList().add(vm);
+		getVmIndex().put(vm, vm);
 		vm.setHost(this);
 		return true;
 	}
@@ -244,7 +253,9 @@ public class Host {
 	public void vmDestroy(Vm vm) {
 		if (vm != null) {
 			vmDeallocate(vm);
-			getVmList().remove(vm);
+			if (getVmList().remove(vm)) {
+				getVmIndex().remove(vm);
+			}
 			vm.setHost(null);
 		}
 	}
@@ -262,6 +273,7 @@ public class Host {
 			setStorage(getStorage() + vm.getSize());
 		}
 		getVmList().clear();
+		getVmIndex().clear();
 	}
 
 	/**
@@ -295,12 +307,7 @@ public class Host {
 	 * @post $none
 	 */
 	public Vm getVm(int vmId, int userId) {
-		for (Vm vm : getVmList()) {
-			if (vm.getId() == vmId && vm.getUserId() == userId) {
-				return vm;
-			}
-		}
-		return null;
+		return VmList.getByIdAndUserId(getVmList(), getVmIndex(), vmId, userId);
 	}
 
 	/**
@@ -531,6 +538,17 @@ public class Host {
 		return (List<T>) vmList;
 	}
 
+	/**
+	 * Gets the index of the vm list by user id and vm id, used by {@link #getVm(int, int)}. It is
+	 * kept in sync by the methods of the host that add and remove vms; a vm added to the vm list
+	 * directly is indexed when it is first looked up.
+	 * 
+	 * @return the vm index
+	 */
+	protected VmTable<Vm> getVmIndex() {
+		return vmIndex;
+	}
+
 	/**
 	 * Sets the storage.
 	 * 
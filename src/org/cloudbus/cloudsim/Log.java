@@ -11,9 +11,15 @@ package org.cloudbus.cloudsim;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 /**
  * The Log class used for performing loggin of the simulation process. It provides the ability to
  * substitute the output stream by any OutputStream subclass.
+ * <p>
+ * The output stream and the disable output flag can also be set for a single
+ * {@link org.cloudbus.cloudsim.core.SimulationContext}, in which case they override the ones set
+ * in this class for the threads using that context.
  * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.0
@@ -125,6 +131,10 @@ public class Log {
 	 * @return the output
 	 */
 	public static OutputStream getOutput() {
+		OutputStream contextOutput = CloudSim.getContext().getLogOutput();
+		if (contextOutput != null) {
+			return contextOutput;
+		}
 		if (output == null) {
 			setOutput(System.out);
 		}
@@ -146,6 +156,10 @@ public class Log {
 	 * @return true, if is disable
 	 */
 	public static boolean isDisabled() {
+		Boolean contextDisabled = CloudSim.getContext().getLogDisabled();
+		if (contextDisabled != null) {
+			return contextDisabled.booleanValue();
+		}
 		return disabled;
 	}
 
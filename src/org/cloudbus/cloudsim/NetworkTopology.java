@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.network.DelayMatrix_Float;
 import org.cloudbus.cloudsim.network.GraphReaderBrite;
 import org.cloudbus.cloudsim.network.TopologicalGraph;
@@ -29,6 +30,9 @@ import org.cloudbus.cloudsim.network.TopologicalNode;
  * Nevertheless, each CloudSim entity must be mapped to one (and only one) BRITE node to allow
  * proper work of the network simulation. Each BRITE node can be mapped to only one entity at a
  * time.
+ * <p>
+ * Each {@link org.cloudbus.cloudsim.core.SimulationContext} has its own topology. The static
+ * methods of this class act on the topology of the context of the calling thread.
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
@@ -36,17 +40,36 @@ import org.cloudbus.cloudsim.network.TopologicalNode;
  */
 public class NetworkTopology {
 
-	protected static int nextIdx = 0;
+	protected int nextIdx = 0;
+
+	private boolean networkEnabled = false;
 
-	private static boolean networkEnabled = false;
+	protected DelayMatrix_Float delayMatrix = null;
 
-	protected static DelayMatrix_Float delayMatrix = null;
+	protected double[][] bwMatrix = null;
 
-	protected static double[][] bwMatrix = null;
+	protected TopologicalGraph graph = null;
 
-	protected static TopologicalGraph graph = null;
+	protected Map<Integer, Integer> map = null;
 
-	protected static Map<Integer, Integer> map = null;
+	/**
+	 * Gets the network topology of the simulation context of the calling thread.
+	 * 
+	 * @return the network topology
+	 */
+	private static NetworkTopology getInstance() {
+		return CloudSim.getContext().getNetworkTopology();
+	}
+
+	/**
+	 * Builds the network topology of the context of the calling thread from a BRITE file.
+	 * 
+	 * @param fileName name of the BRITE file
+	 * @see #build(String)
+	 */
+	public static void buildNetworkTopology(String fileName) {
+		getInstance().build(fileName);
+	}
 
 	/**
 	 * Creates the network topology if file exists and if file can be succesfully parsed. File is
@@ -56,7 +79,7 @@ public class NetworkTopology {
 	 * @pre fileName != null
 	 * @post $none
 	 */
-	public static void buildNetworkTopology(String fileName) {
+	public void build(String fileName) {
 		Log.printLine("Topology file: " + fileName);
 
 		// try to find the file
@@ -77,7 +100,7 @@ public class NetworkTopology {
 	/**
 	 * Generates the matrices used internally to set latency and bandwidth between elements
 	 */
-	private static void generateMatrices() {
+	private void generateMatrices() {
 		// creates the delay matrix
 		delayMatrix = new DelayMatrix_Float(graph, false);
 
@@ -87,6 +110,19 @@ public class NetworkTopology {
 		networkEnabled = true;
 	}
 
+	/**
+	 * Adds a new link in the network topology of the context of the calling thread.
+	 * 
+	 * @param srcId ID of the link's source
+	 * @param destId ID of the link's destination
+	 * @param bw Link's bandwidth
+	 * @param lat link's latency
+	 * @see #link(int, int, double, double)
+	 */
+	public static void addLink(int srcId, int destId, double bw, double lat) {
+		getInstance().link(srcId, destId, bw, lat);
+	}
+
 	/**
 	 * Adds a new link in the network topology
 	 * 
@@ -98,7 +134,7 @@ public class NetworkTopology {
 	 * @pre destId > 0
 	 * @post $none
 	 */
-	public static void addLink(int srcId, int destId, double bw, double lat) {
+	public void link(int srcId, int destId, double bw, double lat) {
 
 		if (graph == null) {
 			graph = new TopologicalGraph();
@@ -161,6 +197,18 @@ public class NetworkTopology {
 		return mtx;
 	}
 
+	/**
+	 * Maps a CloudSim entity to a node in the network topology of the context of the calling
+	 * thread.
+	 * 
+	 * @param cloudSimEntityID ID of the entity being mapped
+	 * @param briteID ID of the BRITE node that corresponds to the CloudSim entity
+	 * @see #mapEntity(int, int)
+	 */
+	public static void mapNode(int cloudSimEntityID, int briteID) {
+		getInstance().mapEntity(cloudSimEntityID, briteID);
+	}
+
 	/**
 	 * Maps a CloudSim entity to a node in the network topology
 	 * 
@@ -170,7 +218,7 @@ public class NetworkTopology {
 	 * @pre briteID >= 0
 	 * @post $none
 	 */
-	public static void mapNode(int cloudSimEntityID, int briteID) {
+	public void mapEntity(int cloudSimEntityID, int briteID) {
 		if (networkEnabled) {
 			try {
 				// this CloudSim entity was already mapped?
@@ -191,6 +239,16 @@ public class NetworkTopology {
 		}
 	}
 
+	/**
+	 * Unmaps a CloudSim entity in the network topology of the context of the calling thread.
+	 * 
+	 * @param cloudSimEntityID ID of the entity being unmapped
+	 * @see #unmapEntity(int)
+	 */
+	public static void unmapNode(int cloudSimEntityID) {
+		getInstance().unmapEntity(cloudSimEntityID);
+	}
+
 	/**
 	 * Unmaps a previously mapped CloudSim entity to a node in the network topology
 	 * 
@@ -198,7 +256,7 @@ public class NetworkTopology {
 	 * @pre cloudSimEntityID >= 0
 	 * @post $none
 	 */
-	public static void unmapNode(int cloudSimEntityID) {
+	public void unmapEntity(int cloudSimEntityID) {
 		if (networkEnabled) {
 			try {
 				map.remove(cloudSimEntityID);
@@ -208,6 +266,19 @@ public class NetworkTopology {
 		}
 	}
 
+	/**
+	 * Calculates the delay between two nodes of the network topology of the context of the calling
+	 * thread.
+	 * 
+	 * @param srcID ID of the source node
+	 * @param destID ID of the destination node
+	 * @return communication delay between the two nodes
+	 * @see #delay(int, int)
+	 */
+	public static double getDelay(int srcID, int destID) {
+		return getInstance().delay(srcID, destID);
+	}
+
 	/**
 	 * Calculates the delay between two nodes
 	 * 
@@ -218,7 +289,7 @@ public class NetworkTopology {
 	 * @pre destID >= 0
 	 * @post $none
 	 */
-	public static double getDelay(int srcID, int destID) {
+	public double delay(int srcID, int destID) {
 		if (networkEnabled) {
 			try {
 				// add the network latency
@@ -232,6 +303,16 @@ public class NetworkTopology {
 		return 0.0;
 	}
 
+	/**
+	 * Checks whether the network topology of the context of the calling thread is working.
+	 * 
+	 * @return $true if network simulation is ok. $false otherwise
+	 * @see #isEnabled()
+	 */
+	public static boolean isNetworkEnabled() {
+		return getInstance().isEnabled();
+	}
+
 	/**
 	 * This method returns true if network simulation is working. If there were some problem during
 	 * creation of network (e.g., during parsing of BRITE file) that does not allow a proper
@@ -241,7 +322,7 @@ public class NetworkTopology {
 	 * @pre $none
 	 * @post $none
 	 */
-	public static boolean isNetworkEnabled() {
+	public boolean isEnabled() {
 		return networkEnabled;
 	}
 
@@ -0,0 +1,262 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PartnerEstimateCache remembers, for a broker, the partner estimates its datacenters answered
+ * without reserving a VM, keyed by the shape of the cloudlet (length, PEs and required files) and
+ * the datacenter. A datacenter that could not run a cloudlet before its deadline cannot run a
+ * cloudlet of the same shape with an earlier or equal deadline either, as long as the state of
+ * its cloudlet schedulers has not changed, so such a request can be answered without querying the
+ * datacenter again.
+ * <p>
+ * An entry is valid while the datacenter is in the state it was estimated in (see
+ * {@link Datacenter#getPartnerEstimateVersion()}) and for at most a time to live. Estimates that
+ * reserved a VM are not cached, since a new request must reserve a VM of its own.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see DatacenterBroker#setPartnerEstimateCacheTtl(double)
+ */
+public class PartnerEstimateCache {
+
+	/** The entries, by cloudlet shape and datacenter. */
+	private final Map<Key, Entry> entries;
+
+	/** The time during which an entry is valid. */
+	private double timeToLive;
+
+	/** The number of lookups answered by the cache. */
+	private long hits;
+
+	/** The number of lookups that had to query the datacenter. */
+	private long misses;
+
+	/**
+	 * Creates a new PartnerEstimateCache object.
+	 *
+	 * @param timeToLive the time during which an entry is valid; 0 for the simulation time at which
+	 *            it was added only
+	 * @pre timeToLive >= 0
+	 * @post $none
+	 */
+	public PartnerEstimateCache(double timeToLive) {
+		entries = new HashMap<Key, Entry>();
+		setTimeToLive(timeToLive);
+	}
+
+	/**
+	 * Checks whether a datacenter is known to be unable to run a cloudlet before its deadline,
+	 * and counts the lookup as a hit or a miss. Expired and outdated entries are removed.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param datacenterId the id of the datacenter
+	 * @param version the current state version of the datacenter
+	 * @param time the current simulation time
+	 * @return <tt>true</tt> if the datacenter does not have to be queried
+	 * @pre cloudlet != null
+	 * @post $none
+	 */
+	public boolean isRejected(Cloudlet cloudlet, int datacenterId, long version, double time) {
+		Key key = new Key(cloudlet, datacenterId);
+		Entry entry = entries.get(key);
+		if (entry != null && (entry.version != version || time - entry.time > timeToLive)) {
+			entries.remove(key);
+			entry = null;
+		}
+		if (entry != null && (entry.finishTime == 0 || entry.finishTime > cloudlet.getDeadline())) {
+			hits++;
+			return true;
+		}
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Adds the estimate of a cloudlet by a datacenter that did not reserve a VM for it.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param datacenterId the id of the datacenter
+	 * @param finishTime the best estimated time of the datacenter, 0 if no VM can run the cloudlet
+	 * @param version the state version of the datacenter when it estimated the cloudlet
+	 * @param time the current simulation time
+	 * @pre cloudlet != null
+	 * @post $none
+	 */
+	public void put(Cloudlet cloudlet, int datacenterId, double finishTime, long version, double time) {
+		Key key = new Key(cloudlet, datacenterId);
+		if (!key.requiredFiles.isEmpty()) {
+			// the cloudlet may change its files later
+			key.requiredFiles = new ArrayList<String>(key.requiredFiles);
+		}
+		entries.put(key, new Entry(finishTime, version, time));
+	}
+
+	/**
+	 * Removes all the entries. The statistics are kept.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the number of entries, including the ones not yet found outdated.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of lookups answered by the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that had to query the datacenter.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the ratio of the lookups answered by the cache.
+	 *
+	 * @return the hit ratio, 0 if there was no lookup
+	 */
+	public double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Resets the numbers of hits and misses.
+	 */
+	public void resetStatistics() {
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Gets the time during which an entry is valid.
+	 *
+	 * @return the time to live
+	 */
+	public double getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Sets the time during which an entry is valid.
+	 *
+	 * @param timeToLive the time to live
+	 * @throws IllegalArgumentException if the time to live is negative
+	 * @pre timeToLive >= 0
+	 * @post $none
+	 */
+	public void setTimeToLive(double timeToLive) {
+		if (timeToLive < 0) {
+			throw new IllegalArgumentException("The time to live can't be negative.");
+		}
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * The shape of a cloudlet and a datacenter.
+	 */
+	private static class Key {
+
+		/** The length of the cloudlet. */
+		private final long length;
+
+		/** The PEs of the cloudlet. */
+		private final int pes;
+
+		/** The files required by the cloudlet. */
+		private List<String> requiredFiles;
+
+		/** The id of the datacenter. */
+		private final int datacenterId;
+
+		/**
+		 * Creates the key of a cloudlet and a datacenter.
+		 *
+		 * @param cloudlet the cloudlet
+		 * @param datacenterId the id of the datacenter
+		 */
+		Key(Cloudlet cloudlet, int datacenterId) {
+			length = cloudlet.getCloudletLength();
+			pes = cloudlet.getNumberOfPes();
+			List<String> files = cloudlet.getRequiredFiles();
+			requiredFiles = files != null ? files : Collections.<String> emptyList();
+			this.datacenterId = datacenterId;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = (int) (length ^ (length >>> 32));
+			hash = 31 * hash + pes;
+			hash = 31 * hash + datacenterId;
+			return 31 * hash + requiredFiles.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return length == other.length && pes == other.pes && datacenterId == other.datacenterId
+					&& requiredFiles.equals(other.requiredFiles);
+		}
+
+	}
+
+	/**
+	 * The estimate of a datacenter for a cloudlet shape.
+	 */
+	private static class Entry {
+
+		/** The best estimated time, 0 if no VM can run the cloudlet. */
+		private final double finishTime;
+
+		/** The state version of the datacenter. */
+		private final long version;
+
+		/** The simulation time at which the entry was added. */
+		private final double time;
+
+		/**
+		 * Creates a new entry.
+		 *
+		 * @param finishTime the best estimated time
+		 * @param version the state version of the datacenter
+		 * @param time the simulation time
+		 */
+		Entry(double finishTime, long version, double time) {
+			this.finishTime = finishTime;
+			this.version = version;
+			this.time = time;
+		}
+
+	}
+
+}
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 /**
  * Vm represents a VM: it runs inside a Host, sharing hostList with other VMs. It processes
  * cloudlets. This processing happens according to a policy, defined by the CloudletScheduler. Each
@@ -31,6 +33,9 @@ public class Vm {
 	/** The uid. */
 	private String uid;
 
+	/** The handle. */
+	private final int handle;
+
 	/** The size. */
 	private long size;
 
@@ -111,6 +116,7 @@ public class Vm {
 		setId(id);
 		setUserId(userId);
 		setUid(getUid(userId, id));
+		handle = CloudSim.getContext().newVmHandle();
 		setMips(mips);
 		setNumberOfPes(numberOfPes);
 		setRam(ram);
@@ -251,6 +257,18 @@ public class Vm {
 		return uid;
 	}
 
+	/**
+	 * Gets the handle of the VM: a number unique among the VMs created in the same simulation
+	 * context, allocated when the VM is created. Unlike the uid, it is a primitive key, used by the
+	 * tables of the hosts and of their PEs.
+	 * 
+	 * @return the handle
+	 * @see org.cloudbus.cloudsim.core.SimulationContext#newVmHandle()
+	 */
+	public int getHandle() {
+		return handle;
+	}
+
 	/**
 	 * Generate unique string identificator of the VM.
 	 * 
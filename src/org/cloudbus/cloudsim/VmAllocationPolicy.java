@@ -57,6 +57,23 @@ public abstract class VmAllocationPolicy {
 	 */
 	public abstract boolean allocateHostForVm(Vm vm, Host host);
 
+	/**
+	 * Allocates hosts for a batch of VMs. This implementation allocates the VMs one by one, in the
+	 * order of the list; a policy that places the VMs jointly overrides it.
+	 *
+	 * @param vmList the VMs
+	 * @return whether a host could be allocated to each VM, in the order of the list
+	 * @pre vmList != null
+	 * @post $result.length == vmList.size()
+	 */
+	public boolean[] allocateHostForVm(List<? extends Vm> vmList) {
+		boolean[] result = new boolean[vmList.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = allocateHostForVm(vmList.get(i));
+		}
+		return result;
+	}
+
 	/**
 	 * Optimize allocation of the VMs according to current utilization.
 	 * 
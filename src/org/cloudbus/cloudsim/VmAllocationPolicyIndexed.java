@@ -0,0 +1,141 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.util.IndexedIntHeap;
+
+/**
+ * VmAllocationPolicyIndexed is a {@link VmAllocationPolicySimple} that finds the host with less
+ * PEs in use through a max-heap of the hosts by number of free PEs, instead of scanning the free
+ * PEs of all the hosts. The heap is updated when a VM is allocated or deallocated, so placing a VM
+ * takes O(log n) time for n hosts when the first host tried accepts it. The hosts are tried in the
+ * same order as by {@link VmAllocationPolicySimple}, so both policies place the VMs on the same
+ * hosts.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class VmAllocationPolicyIndexed extends VmAllocationPolicySimple {
+
+	/** The indices of the hosts in the host list, by host. */
+	private final Map<Host, Integer> hostIndices;
+
+	/** The indices of the hosts, by number of free pes. */
+	private final IndexedIntHeap freePesHeap;
+
+	/**
+	 * Creates the new VmAllocationPolicyIndexed object.
+	 *
+	 * @param list the list
+	 * @pre $none
+	 * @post $none
+	 */
+	public VmAllocationPolicyIndexed(List<? extends Host> list) {
+		super(list);
+
+		hostIndices = new IdentityHashMap<Host, Integer>();
+		freePesHeap = new IndexedIntHeap(getHostList().size());
+		for (int i = 0; i < getHostList().size(); i++) {
+			hostIndices.put(getHostList().get(i), i);
+			freePesHeap.put(i, getFreePes().get(i));
+		}
+	}
+
+	/**
+	 * Allocates a host for a given VM. The hosts are tried from the one with the most free PEs
+	 * until one can create the VM.
+	 *
+	 * @param vm VM specification
+	 * @return $true if the host could be allocated; $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public boolean allocateHostForVm(Vm vm) {
+		if (getVmTable().containsKey(vm)) { // if this vm was already created
+			return false;
+		}
+
+		boolean result = false;
+		List<Integer> tried = new ArrayList<Integer>();
+		while (!freePesHeap.isEmpty()) {
+			// we want the host with less pes in use
+			int idx = freePesHeap.poll();
+			tried.add(idx);
+			if (getHostList().get(idx).vmCreate(vm)) { // if vm were succesfully created in the host
+				allocated(vm, idx);
+				result = true;
+				break;
+			}
+		}
+
+		for (int idx : tried) {
+			freePesHeap.put(idx, getFreePes().get(idx));
+		}
+		return result;
+	}
+
+	/**
+	 * Releases the host used by a VM.
+	 *
+	 * @param vm the vm
+	 * @pre $none
+	 * @post none
+	 */
+	@Override
+	public void deallocateHostForVm(Vm vm) {
+		Host host = getVmTable().remove(vm);
+		Integer pes = getUsedPes().remove(vm.getHandle());
+		if (host != null) {
+			host.vmDestroy(vm);
+			int idx = hostIndices.get(host);
+			getFreePes().set(idx, getFreePes().get(idx) + pes);
+			freePesHeap.put(idx, getFreePes().get(idx));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.VmAllocationPolicy#allocateHostForVm(org.cloudbus.cloudsim.Vm,
+	 * org.cloudbus.cloudsim.Host)
+	 */
+	@Override
+	public boolean allocateHostForVm(Vm vm, Host host) {
+		Integer idx = hostIndices.get(host);
+		if (idx == null || !host.vmCreate(vm)) {
+			return false;
+		}
+
+		allocated(vm, idx);
+		freePesHeap.put(idx, getFreePes().get(idx));
+		Log.formatLine(
+				"%.2f: VM #" + vm.getId() + " has been allocated to the host #" + host.getId(),
+				CloudSim.clock());
+		return true;
+	}
+
+	/**
+	 * Records that a VM has been created in a host. The heap is not updated.
+	 *
+	 * @param vm the vm
+	 * @param idx the index of the host in the host list
+	 */
+	private void allocated(Vm vm, int idx) {
+		int requiredPes = vm.getNumberOfPes();
+		getVmTable().put(vm, getHostList().get(idx));
+		getUsedPes().put(vm.getHandle(), requiredPes);
+		getFreePes().set(idx, getFreePes().get(idx) - requiredPes);
+	}
+
+}
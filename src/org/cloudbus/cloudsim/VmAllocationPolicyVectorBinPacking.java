@@ -0,0 +1,600 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * VmAllocationPolicyVectorBinPacking is a VmAllocationPolicy that places the VMs as vectors of
+ * demands, (MIPS, RAM, BW, storage), in hosts seen as vectors of residual capacities, each
+ * normalized by the largest capacity of a host of the datacenter. Only the hosts whose residual
+ * capacity covers the demand of a VM in every dimension are tried, so that the VM is not rejected
+ * by {@link Host#vmCreate(Vm)} for lack of RAM, BW or storage, and the host chosen among them is
+ * the one with the best score:
+ * <ul>
+ * <li>{@link #NORM}: the smallest norm of the residual capacity left once the VM is placed, i.e.
+ * the best fit, which packs the VMs densely;</li>
+ * <li>{@link #DOT_PRODUCT}: the largest dot product of the demand and the residual capacity, which
+ * places the VMs where the resources they need the most are the most available.</li>
+ * </ul>
+ * The hosts are indexed in a grid of their residual capacities, with a number of levels in each
+ * dimension. The search skips the cells that cannot cover the demand, and visits the other ones
+ * from the one with the best bound on the score of its hosts until no cell can have a better host,
+ * so most hosts are not scored. A batch of VMs (see {@link #allocateHostForVm(List)}) is placed
+ * from the largest VM to the smallest.
+ * <p>
+ * The grid is updated when the policy allocates or releases a host, but the capacity of a host
+ * can also change outside the policy, e.g. when a VM migrating in reserves it. The residual
+ * capacities of each host scored are therefore read again, and the search is made again once
+ * the hosts whose capacities changed are moved to their cells.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class VmAllocationPolicyVectorBinPacking extends VmAllocationPolicy {
+
+	/** The scoring by the norm of the residual capacity left, the smaller the better. */
+	public static final int NORM = 0;
+
+	/** The scoring by the dot product of the demand and the residual capacity, the larger the better. */
+	public static final int DOT_PRODUCT = 1;
+
+	/** The default number of levels of the grid in each dimension. */
+	public static final int DEFAULT_LEVELS = 4;
+
+	/** The number of dimensions: MIPS, RAM, BW and storage. */
+	private static final int DIMENSIONS = 4;
+
+	/** The scoring of the hosts. */
+	private final int scoring;
+
+	/** The number of levels of the grid in each dimension. */
+	private final int levels;
+
+	/** The largest capacity of a host in each dimension. */
+	private final double[] capacities;
+
+	/** The normalized residual capacities of each host. */
+	private final double[][] residuals;
+
+	/** The cell of the grid of each host. */
+	private final int[] hostCells;
+
+	/** The position of each host in the hosts of its cell. */
+	private final int[] hostPositions;
+
+	/** The hosts of each cell of the grid. */
+	private final int[][] cellHosts;
+
+	/** The number of hosts of each cell of the grid. */
+	private final int[] cellSizes;
+
+	/** The cells to visit during a search. */
+	private final int[] candidateCells;
+
+	/** The bounds on the cost of the hosts of the cells to visit during a search. */
+	private final double[] candidateBounds;
+
+	/** The hosts whose residual capacities changed outside the policy, found during a search. */
+	private final int[] staleHosts;
+
+	/** The number of hosts in {@link #staleHosts}. */
+	private int staleCount;
+
+	/** The indices of the hosts in the host list, by host. */
+	private final Map<Host, Integer> hostIndices;
+
+	/** The vm table. */
+	private final VmTable<Host> vmTable;
+
+	/** The number of times a host tried refused to create a VM. */
+	private int failedVmCreations;
+
+	/**
+	 * Creates the new VmAllocationPolicyVectorBinPacking object, scoring the hosts by
+	 * {@link #NORM} with {@link #DEFAULT_LEVELS} levels.
+	 *
+	 * @param list the list
+	 * @pre $none
+	 * @post $none
+	 */
+	public VmAllocationPolicyVectorBinPacking(List<? extends Host> list) {
+		this(list, NORM, DEFAULT_LEVELS);
+	}
+
+	/**
+	 * Creates the new VmAllocationPolicyVectorBinPacking object.
+	 *
+	 * @param list the list
+	 * @param scoring the scoring of the hosts, {@link #NORM} or {@link #DOT_PRODUCT}
+	 * @param levels the number of levels of the grid in each dimension
+	 * @throws IllegalArgumentException if the scoring is unknown or the number of levels is not
+	 *             between 1 and 16
+	 * @pre $none
+	 * @post $none
+	 */
+	public VmAllocationPolicyVectorBinPacking(List<? extends Host> list, int scoring, int levels) {
+		super(list);
+		if (scoring != NORM && scoring != DOT_PRODUCT) {
+			throw new IllegalArgumentException("Unknown scoring: " + scoring);
+		} else if (levels < 1 || levels > 16) {
+			throw new IllegalArgumentException("The number of levels must be between 1 and 16.");
+		}
+		this.scoring = scoring;
+		this.levels = levels;
+
+		int hosts = getHostList().size();
+		capacities = new double[DIMENSIONS];
+		hostIndices = new IdentityHashMap<Host, Integer>();
+		for (int i = 0; i < hosts; i++) {
+			Host host = getHostList().get(i);
+			hostIndices.put(host, i);
+			capacities[0] = Math.max(capacities[0], host.getTotalMips());
+			capacities[1] = Math.max(capacities[1], host.getRamProvisioner().getRam());
+			capacities[2] = Math.max(capacities[2], host.getBwProvisioner().getBw());
+			capacities[3] = Math.max(capacities[3], host.getStorage());
+		}
+		for (int k = 0; k < DIMENSIONS; k++) {
+			if (capacities[k] <= 0) {
+				capacities[k] = 1;
+			}
+		}
+
+		int cells = 1;
+		for (int k = 0; k < DIMENSIONS; k++) {
+			cells *= levels;
+		}
+		cellHosts = new int[cells][];
+		cellSizes = new int[cells];
+		candidateCells = new int[cells];
+		candidateBounds = new double[cells];
+
+		residuals = new double[hosts][DIMENSIONS];
+		staleHosts = new int[hosts];
+		hostCells = new int[hosts];
+		hostPositions = new int[hosts];
+		Arrays.fill(hostCells, -1);
+		for (int i = 0; i < hosts; i++) {
+			updateHost(i);
+		}
+
+		vmTable = new VmTable<Host>();
+		failedVmCreations = 0;
+	}
+
+	/**
+	 * Allocates a host for a given VM: the host with the best score among the hosts whose residual
+	 * capacity covers the demand of the VM.
+	 *
+	 * @param vm VM specification
+	 * @return $true if the host could be allocated; $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public boolean allocateHostForVm(Vm vm) {
+		if (getVmTable().containsKey(vm)) { // if this vm was already created
+			return false;
+		}
+
+		double[] demand = getDemand(vm);
+		BitSet refused = null;
+		while (true) {
+			int idx = findHost(vm, demand, refused);
+			if (idx < 0) {
+				return false;
+			}
+			Host host = getHostList().get(idx);
+			if (host.vmCreate(vm)) {
+				getVmTable().put(vm, host);
+				updateHost(idx);
+				return true;
+			}
+			failedVmCreations++;
+			if (refused == null) {
+				refused = new BitSet(getHostList().size());
+			}
+			refused.set(idx);
+		}
+	}
+
+	/**
+	 * Allocates hosts for a batch of VMs, from the VM with the largest normalized demand to the
+	 * smallest, so that the small VMs fill the capacity left by the large ones.
+	 *
+	 * @param vmList the VMs
+	 * @return whether a host could be allocated to each VM, in the order of the list
+	 * @pre vmList != null
+	 * @post $result.length == vmList.size()
+	 */
+	@Override
+	public boolean[] allocateHostForVm(List<? extends Vm> vmList) {
+		int count = vmList.size();
+		final double[] sizes = new double[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			double[] demand = getDemand(vmList.get(i));
+			for (int k = 0; k < DIMENSIONS; k++) {
+				sizes[i] += demand[k];
+			}
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(sizes[b], sizes[a]);
+			}
+		});
+
+		boolean[] result = new boolean[count];
+		for (int i : order) {
+			result[i] = allocateHostForVm(vmList.get(i));
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.VmAllocationPolicy#allocateHostForVm(org.cloudbus.cloudsim.Vm,
+	 * org.cloudbus.cloudsim.Host)
+	 */
+	@Override
+	public boolean allocateHostForVm(Vm vm, Host host) {
+		Integer idx = hostIndices.get(host);
+		if (idx == null || !host.vmCreate(vm)) {
+			return false;
+		}
+
+		getVmTable().put(vm, host);
+		updateHost(idx);
+		Log.formatLine(
+				"%.2f: VM #" + vm.getId() + " has been allocated to the host #" + host.getId(),
+				CloudSim.clock());
+		return true;
+	}
+
+	/**
+	 * Releases the host used by a VM.
+	 *
+	 * @param vm the vm
+	 * @pre $none
+	 * @post none
+	 */
+	@Override
+	public void deallocateHostForVm(Vm vm) {
+		Host host = getVmTable().remove(vm);
+		if (host != null) {
+			host.vmDestroy(vm);
+			updateHost(hostIndices.get(host));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see cloudsim.VmAllocationPolicy#optimizeAllocation(double, cloudsim.VmList, double)
+	 */
+	@Override
+	public List<Map<String, Object>> optimizeAllocation(List<? extends Vm> vmList) {
+		return null;
+	}
+
+	/**
+	 * Gets the host that is executing the given VM belonging to the given user.
+	 *
+	 * @param vm the vm
+	 * @return the Host with the given vmID and userID; $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Host getHost(Vm vm) {
+		return getVmTable().get(vm);
+	}
+
+	/**
+	 * Gets the host that is executing the given VM belonging to the given user.
+	 *
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the Host with the given vmID and userID; $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Host getHost(int vmId, int userId) {
+		return getVmTable().get(vmId, userId);
+	}
+
+	/**
+	 * Gets the vm table.
+	 *
+	 * @return the vm table
+	 */
+	public VmTable<Host> getVmTable() {
+		return vmTable;
+	}
+
+	/**
+	 * Gets the scoring of the hosts.
+	 *
+	 * @return {@link #NORM} or {@link #DOT_PRODUCT}
+	 */
+	public int getScoring() {
+		return scoring;
+	}
+
+	/**
+	 * Gets the number of levels of the grid in each dimension.
+	 *
+	 * @return the number of levels
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Gets the number of times a host chosen by the policy refused to create a VM.
+	 *
+	 * @return the number of failed VM creations
+	 */
+	public int getFailedVmCreations() {
+		return failedVmCreations;
+	}
+
+	/**
+	 * Gets the normalized demand of a VM.
+	 *
+	 * @param vm the vm
+	 * @return the demands of the VM in MIPS, RAM, BW and storage
+	 */
+	protected double[] getDemand(Vm vm) {
+		double[] demand = new double[DIMENSIONS];
+		demand[0] = vm.getCurrentRequestedTotalMips() / capacities[0];
+		demand[1] = vm.getCurrentRequestedRam() / capacities[1];
+		demand[2] = vm.getCurrentRequestedBw() / capacities[2];
+		demand[3] = vm.getSize() / capacities[3];
+		return demand;
+	}
+
+	/**
+	 * Finds the host with the best score that can create a VM. The search is made again as long
+	 * as it finds hosts in the wrong cell of the grid.
+	 *
+	 * @param vm the vm
+	 * @param demand the normalized demand of the VM
+	 * @param refused the hosts that refused to create the VM, <tt>null</tt> if none
+	 * @return the index of the host in the host list, -1 if none
+	 */
+	private int findHost(Vm vm, double[] demand, BitSet refused) {
+		while (true) {
+			staleCount = 0;
+			int best = searchHost(vm, demand, refused);
+			if (staleCount == 0) {
+				return best;
+			}
+			for (int i = 0; i < staleCount; i++) {
+				placeHost(staleHosts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Searches the grid for the host with the best score that can create a VM. The hosts scored
+	 * whose residual capacities changed outside the policy are scored on their current capacities
+	 * and added to {@link #staleHosts}, as they cannot be moved to their cells during the search.
+	 *
+	 * @param vm the vm
+	 * @param demand the normalized demand of the VM
+	 * @param refused the hosts that refused to create the VM, <tt>null</tt> if none
+	 * @return the index of the host in the host list, -1 if none
+	 */
+	private int searchHost(Vm vm, double[] demand, BitSet refused) {
+		int candidates = 0;
+		for (int cell = 0; cell < cellSizes.length; cell++) {
+			if (cellSizes[cell] > 0) {
+				double bound = getCellBound(cell, demand);
+				if (bound < Double.POSITIVE_INFINITY) {
+					candidateCells[candidates] = cell;
+					candidateBounds[candidates] = bound;
+					candidates++;
+				}
+			}
+		}
+
+		int best = -1;
+		double bestCost = Double.POSITIVE_INFINITY;
+		while (candidates > 0) {
+			int next = 0;
+			for (int i = 1; i < candidates; i++) {
+				if (candidateBounds[i] < candidateBounds[next]) {
+					next = i;
+				}
+			}
+			// no host of the remaining cells can be better
+			if (candidateBounds[next] > bestCost) {
+				break;
+			}
+
+			int cell = candidateCells[next];
+			for (int j = 0; j < cellSizes[cell]; j++) {
+				int idx = cellHosts[cell][j];
+				if (refused != null && refused.get(idx)) {
+					continue;
+				}
+				if (readResiduals(idx)) {
+					staleHosts[staleCount++] = idx;
+				}
+				double cost = getCost(idx, demand);
+				if ((cost < bestCost || (cost == bestCost && idx < best)) && isSuitable(idx, vm)) {
+					best = idx;
+					bestCost = cost;
+				}
+			}
+
+			candidates--;
+			candidateCells[next] = candidateCells[candidates];
+			candidateBounds[next] = candidateBounds[candidates];
+		}
+		return best;
+	}
+
+	/**
+	 * Checks whether a host has the capacity to create a VM. Unlike
+	 * {@link Host#isSuitableForVm(Vm)}, the check compares the available capacities of the host
+	 * with the demand of the VM without trying to allocate them.
+	 *
+	 * @param idx the index of the host in the host list
+	 * @param vm the vm
+	 * @return <tt>true</tt> if the host is suitable
+	 */
+	private boolean isSuitable(int idx, Vm vm) {
+		Host host = getHostList().get(idx);
+		return host.getStorage() >= vm.getSize()
+				&& host.getRamProvisioner().getAvailableRam() >= vm.getCurrentRequestedRam()
+				&& host.getBwProvisioner().getAvailableBw() >= vm.getCurrentRequestedBw()
+				&& host.getVmScheduler().getPeCapacity() >= vm.getCurrentRequestedMaxMips()
+				&& host.getVmScheduler().getAvailableMips() >= vm.getCurrentRequestedTotalMips();
+	}
+
+	/**
+	 * Gets the cost of placing a VM in a host, the smaller the better.
+	 *
+	 * @param idx the index of the host in the host list
+	 * @param demand the normalized demand of the VM
+	 * @return the cost, {@link Double#POSITIVE_INFINITY} if the host cannot cover the demand
+	 */
+	private double getCost(int idx, double[] demand) {
+		double[] residual = residuals[idx];
+		double cost = 0;
+		for (int k = 0; k < DIMENSIONS; k++) {
+			if (residual[k] < demand[k]) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if (scoring == NORM) {
+				double left = residual[k] - demand[k];
+				cost += left * left;
+			} else {
+				cost -= residual[k] * demand[k];
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * Gets a lower bound on the cost of placing a VM in the hosts of a cell.
+	 *
+	 * @param cell the cell
+	 * @param demand the normalized demand of the VM
+	 * @return the bound, {@link Double#POSITIVE_INFINITY} if no host of the cell can cover the
+	 *         demand
+	 */
+	private double getCellBound(int cell, double[] demand) {
+		double bound = 0;
+		for (int k = 0; k < DIMENSIONS; k++) {
+			int level = cell % levels;
+			cell /= levels;
+			double lower = (double) level / levels;
+			double upper = level == levels - 1 ? 1 : (double) (level + 1) / levels;
+			if (level < levels - 1 && upper < demand[k]) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if (scoring == NORM) {
+				double left = Math.max(0, lower - demand[k]);
+				bound += left * left;
+			} else {
+				bound -= upper * demand[k];
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * Reads the residual capacities of a host and moves it to the cell of the grid they fall in.
+	 *
+	 * @param idx the index of the host in the host list
+	 */
+	private void updateHost(int idx) {
+		readResiduals(idx);
+		placeHost(idx);
+	}
+
+	/**
+	 * Reads the normalized residual capacities of a host.
+	 *
+	 * @param idx the index of the host in the host list
+	 * @return <tt>true</tt> if they changed since they were last read
+	 */
+	private boolean readResiduals(int idx) {
+		Host host = getHostList().get(idx);
+		double[] residual = residuals[idx];
+		boolean changed = setResidual(residual, 0, host.getVmScheduler().getAvailableMips());
+		changed |= setResidual(residual, 1, host.getRamProvisioner().getAvailableRam());
+		changed |= setResidual(residual, 2, host.getBwProvisioner().getAvailableBw());
+		changed |= setResidual(residual, 3, host.getStorage());
+		return changed;
+	}
+
+	/**
+	 * Sets a residual capacity of a host, normalized by the largest capacity.
+	 *
+	 * @param residual the normalized residual capacities of the host
+	 * @param k the dimension
+	 * @param available the available capacity of the host in the dimension
+	 * @return <tt>true</tt> if the residual capacity changed
+	 */
+	private boolean setResidual(double[] residual, int k, double available) {
+		double value = Math.min(1, Math.max(0, available / capacities[k]));
+		if (value == residual[k]) {
+			return false;
+		}
+		residual[k] = value;
+		return true;
+	}
+
+	/**
+	 * Moves a host to the cell of the grid its residual capacities fall in.
+	 *
+	 * @param idx the index of the host in the host list
+	 */
+	private void placeHost(int idx) {
+		double[] residual = residuals[idx];
+		int cell = 0;
+		for (int k = DIMENSIONS - 1; k >= 0; k--) {
+			int level = Math.min(levels - 1, (int) (residual[k] * levels));
+			cell = cell * levels + level;
+		}
+		if (cell == hostCells[idx]) {
+			return;
+		}
+
+		int previous = hostCells[idx];
+		if (previous >= 0) {
+			int last = cellHosts[previous][--cellSizes[previous]];
+			cellHosts[previous][hostPositions[idx]] = last;
+			hostPositions[last] = hostPositions[idx];
+		}
+		if (cellHosts[cell] == null) {
+			cellHosts[cell] = new int[4];
+		} else if (cellSizes[cell] == cellHosts[cell].length) {
+			cellHosts[cell] = Arrays.copyOf(cellHosts[cell], cellSizes[cell] * 2);
+		}
+		cellHosts[cell][cellSizes[cell]] = idx;
+		hostPositions[idx] = cellSizes[cell];
+		cellSizes[cell]++;
+		hostCells[idx] = cell;
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * VmPartnerIndex indexes the VMs of a datacenter that can run a partner cloudlet at once, so that
+ * the datacenter finds the best VM for a partner cloudlet without estimating the cloudlet on each
+ * of its VMs. The VMs are grouped by number of free PEs and, within a group, ordered by the MIPS
+ * per PE their scheduler offers to a partner cloudlet, the fastest first, and then by the order in
+ * which they were added. A VM reserved for a partner cloudlet, or without free PE, is not indexed.
+ * <p>
+ * The cloudlet schedulers of the indexed VMs notify the index whenever their free PEs, their MIPS
+ * or their reservation change (see {@link CloudletScheduler#partnerCapacityChanged()}), so the
+ * index is always up to date. Selecting a VM takes a time logarithmic in the number of VMs for
+ * each distinct number of free PEs.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see Datacenter
+ */
+public class VmPartnerIndex {
+
+	/** The indexed VMs, by number of free PEs. */
+	private final TreeMap<Integer, TreeSet<Entry>> entriesByFreePes;
+
+	/** The entries of all the VMs, indexed or not, by cloudlet scheduler. */
+	private final Map<CloudletScheduler, Entry> entries;
+
+	/** The order given to the next VM added. */
+	private long nextOrder;
+
+	/**
+	 * Creates a new empty VmPartnerIndex object.
+	 */
+	public VmPartnerIndex() {
+		entriesByFreePes = new TreeMap<Integer, TreeSet<Entry>>();
+		entries = new IdentityHashMap<CloudletScheduler, Entry>();
+		nextOrder = 0;
+	}
+
+	/**
+	 * Adds a VM of the datacenter. The VM is indexed as soon as its scheduler can run a partner
+	 * cloudlet.
+	 *
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public void add(Vm vm) {
+		CloudletScheduler scheduler = vm.getCloudletScheduler();
+		if (entries.containsKey(scheduler)) {
+			return;
+		}
+		entries.put(scheduler, new Entry(vm, nextOrder++));
+		scheduler.setPartnerIndex(this);
+		update(scheduler);
+	}
+
+	/**
+	 * Removes a VM of the datacenter.
+	 *
+	 * @param vm the VM
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public void remove(Vm vm) {
+		CloudletScheduler scheduler = vm.getCloudletScheduler();
+		Entry entry = entries.remove(scheduler);
+		if (entry != null) {
+			unindex(entry);
+			if (scheduler.getPartnerIndex() == this) {
+				scheduler.setPartnerIndex(null);
+			}
+		}
+	}
+
+	/**
+	 * Updates the VM of a cloudlet scheduler after its free PEs, its MIPS or its reservation
+	 * changed.
+	 *
+	 * @param scheduler the cloudlet scheduler
+	 * @pre scheduler != null
+	 * @post $none
+	 */
+	public void update(CloudletScheduler scheduler) {
+		Entry entry = entries.get(scheduler);
+		if (entry == null) {
+			return;
+		}
+		int freePes = 0;
+		double mips = scheduler.getPartnerMips();
+		if (scheduler.getCloudletPartnerWaitingForExec() == null && mips > 0) {
+			freePes = scheduler.getNumberOfFreePes();
+		}
+		if (freePes == entry.freePes && (freePes == 0 || mips == entry.mips)) {
+			return;
+		}
+		unindex(entry);
+		entry.freePes = freePes;
+		entry.mips = mips;
+		if (freePes > 0) {
+			TreeSet<Entry> group = entriesByFreePes.get(freePes);
+			if (group == null) {
+				group = new TreeSet<Entry>(ENTRY_ORDER);
+				entriesByFreePes.put(freePes, group);
+			}
+			group.add(entry);
+		}
+	}
+
+	/**
+	 * Selects the VM a partner cloudlet runs the fastest on: the indexed VM with enough free PEs
+	 * whose scheduler offers the most MIPS per PE, the one added first among equal ones.
+	 *
+	 * @param pes the number of PEs of the cloudlet
+	 * @return the VM, <tt>null</tt> if no VM can run the cloudlet at once
+	 * @pre $none
+	 * @post $none
+	 */
+	public Vm select(int pes) {
+		Entry best = null;
+		for (TreeSet<Entry> group : entriesByFreePes.tailMap(Math.max(pes, 1)).values()) {
+			Entry first = group.first();
+			if (best == null || ENTRY_ORDER.compare(first, best) < 0) {
+				best = first;
+			}
+		}
+		return best != null ? best.vm : null;
+	}
+
+	/**
+	 * Gets the number of VMs that can run a partner cloudlet at once.
+	 *
+	 * @return the number of indexed VMs
+	 */
+	public int size() {
+		int size = 0;
+		for (TreeSet<Entry> group : entriesByFreePes.values()) {
+			size += group.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Removes an entry from its group, if it is indexed.
+	 *
+	 * @param entry the entry
+	 */
+	private void unindex(Entry entry) {
+		if (entry.freePes > 0) {
+			TreeSet<Entry> group = entriesByFreePes.get(entry.freePes);
+			group.remove(entry);
+			if (group.isEmpty()) {
+				entriesByFreePes.remove(entry.freePes);
+			}
+			entry.freePes = 0;
+		}
+	}
+
+	/** The order of the VMs within a group: the most MIPS per PE first, then the oldest. */
+	private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+
+		@Override
+		public int compare(Entry entry1, Entry entry2) {
+			int result = Double.compare(entry2.mips, entry1.mips);
+			if (result == 0) {
+				result = entry1.order < entry2.order ? -1 : (entry1.order == entry2.order ? 0 : 1);
+			}
+			return result;
+		}
+	};
+
+	/**
+	 * The state of a VM in the index.
+	 */
+	private static class Entry {
+
+		/** The VM. */
+		private final Vm vm;
+
+		/** The order in which the VM was added. */
+		private final long order;
+
+		/** The free PEs of the VM when it was indexed, 0 if it is not indexed. */
+		private int freePes;
+
+		/** The MIPS per PE of the VM when it was indexed. */
+		private double mips;
+
+		/**
+		 * Creates the entry of a VM.
+		 *
+		 * @param vm the VM
+		 * @param order the order in which the VM was added
+		 */
+		Entry(Vm vm, long order) {
+			this.vm = vm;
+			this.order = order;
+		}
+
+	}
+
+}
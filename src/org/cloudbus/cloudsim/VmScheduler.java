@@ -8,11 +8,10 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.cloudbus.cloudsim.lists.PeList;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * VmScheduler is an abstract class that represents the policy used by a VMM to share processing
@@ -27,20 +26,20 @@ public abstract class VmScheduler {
 	/** The peList. */
 	private List<? extends Pe> peList;
 
-	/** The map of VMs to PEs. */
-	private Map<String, List<Pe>> peMap;
+	/** The map of VMs to PEs, by VM handle. */
+	private IntObjectMap<List<Pe>> peMap;
 
-	/** The MIPS that are currently allocated to the VMs. */
-	private Map<String, List<Double>> mipsMap;
+	/** The MIPS that are currently allocated to the VMs, by VM handle. */
+	private IntObjectMap<List<Double>> mipsMap;
 
 	/** The total available mips. */
 	private double availableMips;
 
-	/** The VMs migrating in. */
-	private List<String> vmsMigratingIn;
+	/** The handles of the VMs migrating in. */
+	private List<Integer> vmsMigratingIn;
 
-	/** The VMs migrating out. */
-	private List<String> vmsMigratingOut;
+	/** The handles of the VMs migrating out. */
+	private List<Integer> vmsMigratingOut;
 
 	/**
 	 * Creates a new HostAllocationPolicy.
@@ -51,11 +50,11 @@ public abstract class VmScheduler {
 	 */
 	public VmScheduler(List<? extends Pe> pelist) {
 		setPeList(pelist);
-		setPeMap(new HashMap<String, List<Pe>>());
-		setMipsMap(new HashMap<String, List<Double>>());
+		setPeMap(new IntObjectMap<List<Pe>>());
+		setMipsMap(new IntObjectMap<List<Double>>());
 		setAvailableMips(PeList.getTotalMips(getPeList()));
-		setVmsMigratingIn(new ArrayList<String>());
-		setVmsMigratingOut(new ArrayList<String>());
+		setVmsMigratingIn(new ArrayList<Integer>());
+		setVmsMigratingOut(new ArrayList<Integer>());
 	}
 
 	/**
@@ -99,7 +98,7 @@ public abstract class VmScheduler {
 	 * @return the pes allocated for vm
 	 */
 	public List<Pe> getPesAllocatedForVM(Vm vm) {
-		return getPeMap().get(vm.getUid());
+		return getPeMap().get(vm.getHandle());
 	}
 
 	/**
@@ -111,7 +110,7 @@ public abstract class VmScheduler {
 	 * @post $none
 	 */
 	public List<Double> getAllocatedMipsForVm(Vm vm) {
-		return getMipsMap().get(vm.getUid());
+		return getMipsMap().get(vm.getHandle());
 	}
 
 	/**
@@ -190,9 +189,9 @@ public abstract class VmScheduler {
 	/**
 	 * Gets the mips map.
 	 * 
-	 * @return the mips map
+	 * @return the mips map, by VM handle
 	 */
-	protected Map<String, List<Double>> getMipsMap() {
+	protected IntObjectMap<List<Double>> getMipsMap() {
 		return mipsMap;
 	}
 
@@ -201,7 +200,7 @@ public abstract class VmScheduler {
 	 * 
 	 * @param mipsMap the mips map
 	 */
-	protected void setMipsMap(Map<String, List<Double>> mipsMap) {
+	protected void setMipsMap(IntObjectMap<List<Double>> mipsMap) {
 		this.mipsMap = mipsMap;
 	}
 
@@ -226,9 +225,9 @@ public abstract class VmScheduler {
 	/**
 	 * Gets the vms in migration.
 	 * 
-	 * @return the vms in migration
+	 * @return the handles of the vms in migration
 	 */
-	public List<String> getVmsMigratingOut() {
+	public List<Integer> getVmsMigratingOut() {
 		return vmsMigratingOut;
 	}
 
@@ -237,16 +236,16 @@ public abstract class VmScheduler {
 	 * 
 	 * @param vmsInMigration the new vms migrating out
 	 */
-	protected void setVmsMigratingOut(List<String> vmsInMigration) {
+	protected void setVmsMigratingOut(List<Integer> vmsInMigration) {
 		vmsMigratingOut = vmsInMigration;
 	}
 
 	/**
 	 * Gets the vms migrating in.
 	 * 
-	 * @return the vms migrating in
+	 * @return the handles of the vms migrating in
 	 */
-	public List<String> getVmsMigratingIn() {
+	public List<Integer> getVmsMigratingIn() {
 		return vmsMigratingIn;
 	}
 
@@ -255,16 +254,52 @@ public abstract class VmScheduler {
 	 * 
 	 * @param vmsMigratingIn the new vms migrating in
 	 */
-	protected void setVmsMigratingIn(List<String> vmsMigratingIn) {
+	protected void setVmsMigratingIn(List<Integer> vmsMigratingIn) {
 		this.vmsMigratingIn = vmsMigratingIn;
 	}
 
+	/**
+	 * Checks whether a VM is migrating in, without boxing its handle.
+	 * 
+	 * @param vmHandle the handle of the VM
+	 * @return <tt>true</tt> if the VM is migrating in
+	 */
+	public boolean isVmMigratingIn(int vmHandle) {
+		return containsHandle(getVmsMigratingIn(), vmHandle);
+	}
+
+	/**
+	 * Checks whether a VM is migrating out, without boxing its handle.
+	 * 
+	 * @param vmHandle the handle of the VM
+	 * @return <tt>true</tt> if the VM is migrating out
+	 */
+	public boolean isVmMigratingOut(int vmHandle) {
+		return containsHandle(getVmsMigratingOut(), vmHandle);
+	}
+
+	/**
+	 * Checks whether a list of VM handles contains a handle.
+	 * 
+	 * @param handles the handles
+	 * @param vmHandle the handle
+	 * @return <tt>true</tt> if the list contains the handle
+	 */
+	private static boolean containsHandle(List<Integer> handles, int vmHandle) {
+		for (int i = 0; i < handles.size(); i++) {
+			if (handles.get(i).intValue() == vmHandle) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Gets the pe map.
 	 * 
-	 * @return the pe map
+	 * @return the pe map, by VM handle
 	 */
-	public Map<String, List<Pe>> getPeMap() {
+	public IntObjectMap<List<Pe>> getPeMap() {
 		return peMap;
 	}
 
@@ -273,7 +308,7 @@ public abstract class VmScheduler {
 	 * 
 	 * @param peMap the pe map
 	 */
-	protected void setPeMap(Map<String, List<Pe>> peMap) {
+	protected void setPeMap(IntObjectMap<List<Pe>> peMap) {
 		this.peMap = peMap;
 	}
 
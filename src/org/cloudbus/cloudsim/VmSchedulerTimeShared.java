@@ -8,14 +8,13 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import org.cloudbus.cloudsim.lists.PeList;
 import org.cloudbus.cloudsim.provisioners.PeProvisioner;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * VmSchedulerTimeShared is a VMM allocation policy that allocates one or more Pe to a VM, and
@@ -28,8 +27,8 @@ import org.cloudbus.cloudsim.provisioners.PeProvisioner;
  */
 public class VmSchedulerTimeShared extends VmScheduler {
 
-	/** The mips map requested. */
-	private Map<String, List<Double>> mipsMapRequested;
+	/** The mips map requested, by VM handle. */
+	private IntObjectMap<List<Double>> mipsMapRequested;
 
 	/** The pes in use. */
 	private int pesInUse;
@@ -41,7 +40,7 @@ public class VmSchedulerTimeShared extends VmScheduler {
 	 */
 	public VmSchedulerTimeShared(List<? extends Pe> pelist) {
 		super(pelist);
-		setMipsMapRequested(new HashMap<String, List<Double>>());
+		setMipsMapRequested(new IntObjectMap<List<Double>>());
 	}
 
 	/*
@@ -54,15 +53,15 @@ public class VmSchedulerTimeShared extends VmScheduler {
 		 * TODO: add the same to RAM and BW provisioners
 		 */
 		if (vm.isInMigration()) {
-			if (!getVmsMigratingIn().contains(vm.getUid()) && !getVmsMigratingOut().contains(vm.getUid())) {
-				getVmsMigratingOut().add(vm.getUid());
+			if (!isVmMigratingIn(vm.getHandle()) && !isVmMigratingOut(vm.getHandle())) {
+				getVmsMigratingOut().add(vm.getHandle());
 			}
 		} else {
-			if (getVmsMigratingOut().contains(vm.getUid())) {
-				getVmsMigratingOut().remove(vm.getUid());
+			if (isVmMigratingOut(vm.getHandle())) {
+				getVmsMigratingOut().remove(Integer.valueOf(vm.getHandle()));
 			}
 		}
-		boolean result = allocatePesForVm(vm.getUid(), mipsShareRequested);
+		boolean result = allocatePesForVm(vm.getHandle(), mipsShareRequested);
 		updatePeProvisioning();
 		return result;
 	}
@@ -70,11 +69,11 @@ public class VmSchedulerTimeShared extends VmScheduler {
 	/**
 	 * Allocate pes for vm.
 	 * 
-	 * @param vmUid the vm uid
+	 * @param vmHandle the vm handle
 	 * @param mipsShareRequested the mips share requested
 	 * @return true, if successful
 	 */
-	protected boolean allocatePesForVm(String vmUid, List<Double> mipsShareRequested) {
+	protected boolean allocatePesForVm(int vmHandle, List<Double> mipsShareRequested) {
 		double totalRequestedMips = 0;
 		double peMips = getPeCapacity();
 		for (Double mips : mipsShareRequested) {
@@ -90,27 +89,27 @@ public class VmSchedulerTimeShared extends VmScheduler {
 			return false;
 		}
 
-		getMipsMapRequested().put(vmUid, mipsShareRequested);
+		getMipsMapRequested().put(vmHandle, mipsShareRequested);
 		setPesInUse(getPesInUse() + mipsShareRequested.size());
 
-		if (getVmsMigratingIn().contains(vmUid)) {
+		if (isVmMigratingIn(vmHandle)) {
 			// the destination host only experience 10% of the migrating VM's MIPS
 			totalRequestedMips *= 0.1;
 		}
 
 		List<Double> mipsShareAllocated = new ArrayList<Double>();
 		for (Double mipsRequested : mipsShareRequested) {
-			if (getVmsMigratingOut().contains(vmUid)) {
+			if (isVmMigratingOut(vmHandle)) {
 				// performance degradation due to migration = 10% MIPS
 				mipsRequested *= 0.9;
-			} else if (getVmsMigratingIn().contains(vmUid)) {
+			} else if (isVmMigratingIn(vmHandle)) {
 				// the destination host only experience 10% of the migrating VM's MIPS
 				mipsRequested *= 0.1;
 			}
 			mipsShareAllocated.add(mipsRequested);
 		}
 
-		getMipsMap().put(vmUid, mipsShareAllocated);
+		getMipsMap().put(vmHandle, mipsShareAllocated);
 		setAvailableMips(getAvailableMips() - totalRequestedMips);
 
 		return true;
@@ -130,26 +129,28 @@ public class VmSchedulerTimeShared extends VmScheduler {
 		PeProvisioner peProvisioner = pe.getPeProvisioner();
 		double availableMips = peProvisioner.getAvailableMips();
 
-		for (Map.Entry<String, List<Double>> entry : getMipsMap().entrySet()) {
-			String vmUid = entry.getKey();
-			getPeMap().put(vmUid, new LinkedList<Pe>());
+		IntObjectMap<List<Double>> mipsMap = getMipsMap();
+		for (int i = 0; i < mipsMap.size(); i++) {
+			int vmHandle = mipsMap.keyAt(i);
+			List<Pe> pes = new LinkedList<Pe>();
+			getPeMap().put(vmHandle, pes);
 
-			for (double mips : entry.getValue()) {
+			for (double mips : mipsMap.valueAt(i)) {
 				while (mips >= 0.1) {
 					if (availableMips >= mips) {
-						peProvisioner.allocateMipsForVm(vmUid, mips);
-						getPeMap().get(vmUid).add(pe);
+						peProvisioner.allocateMipsForVm(vmHandle, mips);
+						pes.add(pe);
 						availableMips -= mips;
 						break;
 					} else {
-						peProvisioner.allocateMipsForVm(vmUid, availableMips);
-						getPeMap().get(vmUid).add(pe);
+						peProvisioner.allocateMipsForVm(vmHandle, availableMips);
+						pes.add(pe);
 						mips -= availableMips;
 						if (mips <= 0.1) {
 							break;
 						}
 						if (!peIterator.hasNext()) {
-							Log.printLine("There is no enough MIPS (" + mips + ") to accommodate VM " + vmUid);
+							Log.printLine("There is no enough MIPS (" + mips + ") to accommodate VM #" + vmHandle);
 							// System.exit(0);
 						}
 						pe = peIterator.next();
@@ -167,7 +168,7 @@ public class VmSchedulerTimeShared extends VmScheduler {
 	 */
 	@Override
 	public void deallocatePesForVm(Vm vm) {
-		getMipsMapRequested().remove(vm.getUid());
+		getMipsMapRequested().remove(vm.getHandle());
 		setPesInUse(0);
 		getMipsMap().clear();
 		setAvailableMips(PeList.getTotalMips(getPeList()));
@@ -176,8 +177,9 @@ public class VmSchedulerTimeShared extends VmScheduler {
 			pe.getPeProvisioner().deallocateMipsForVm(vm);
 		}
 
-		for (Map.Entry<String, List<Double>> entry : getMipsMapRequested().entrySet()) {
-			allocatePesForVm(entry.getKey(), entry.getValue());
+		IntObjectMap<List<Double>> mipsMapRequested = getMipsMapRequested();
+		for (int i = 0; i < mipsMapRequested.size(); i++) {
+			allocatePesForVm(mipsMapRequested.keyAt(i), mipsMapRequested.valueAt(i));
 		}
 
 		updatePeProvisioning();
@@ -228,9 +230,9 @@ public class VmSchedulerTimeShared extends VmScheduler {
 	/**
 	 * Gets the mips map requested.
 	 * 
-	 * @return the mips map requested
+	 * @return the mips map requested, by VM handle
 	 */
-	protected Map<String, List<Double>> getMipsMapRequested() {
+	protected IntObjectMap<List<Double>> getMipsMapRequested() {
 		return mipsMapRequested;
 	}
 
@@ -239,7 +241,7 @@ public class VmSchedulerTimeShared extends VmScheduler {
 	 * 
 	 * @param mipsMapRequested the mips map requested
 	 */
-	protected void setMipsMapRequested(Map<String, List<Double>> mipsMapRequested) {
+	protected void setMipsMapRequested(IntObjectMap<List<Double>> mipsMapRequested) {
 		this.mipsMapRequested = mipsMapRequested;
 	}
 
@@ -0,0 +1,141 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import org.cloudbus.cloudsim.util.IntObjectMap;
+
+/**
+ * VmTable maps the VMs of a datacenter to values, e.g. their hosts, by user id and VM id. Unlike
+ * a map keyed by {@link Vm#getUid()}, it can be looked up with the ids of a VM, as in
+ * {@link VmAllocationPolicy#getHost(int, int)}, without building a string.
+ *
+ * @param <V> the type of the values
+ * @since CloudSim Toolkit 3.0
+ * @see VmAllocationPolicySimple#getVmTable()
+ */
+public class VmTable<V> {
+
+	/** The values of the VMs, by user id and then by VM id. */
+	private final IntObjectMap<IntObjectMap<V>> users;
+
+	/** The number of VMs. */
+	private int size;
+
+	/**
+	 * Creates a new empty VmTable object.
+	 */
+	public VmTable() {
+		users = new IntObjectMap<IntObjectMap<V>>();
+		size = 0;
+	}
+
+	/**
+	 * Gets the value of a VM.
+	 *
+	 * @param vm the VM
+	 * @return the value, <tt>null</tt> if the VM is not mapped
+	 * @pre vm != null
+	 */
+	public V get(Vm vm) {
+		return get(vm.getId(), vm.getUserId());
+	}
+
+	/**
+	 * Gets the value of a VM.
+	 *
+	 * @param vmId the id of the VM
+	 * @param userId the id of the user of the VM
+	 * @return the value, <tt>null</tt> if the VM is not mapped
+	 */
+	public V get(int vmId, int userId) {
+		IntObjectMap<V> vms = users.get(userId);
+		return vms == null ? null : vms.get(vmId);
+	}
+
+	/**
+	 * Checks whether a VM is mapped.
+	 *
+	 * @param vm the VM
+	 * @return <tt>true</tt> if the VM is mapped
+	 * @pre vm != null
+	 */
+	public boolean containsKey(Vm vm) {
+		IntObjectMap<V> vms = users.get(vm.getUserId());
+		return vms != null && vms.containsKey(vm.getId());
+	}
+
+	/**
+	 * Maps a VM to a value.
+	 *
+	 * @param vm the VM
+	 * @param value the value
+	 * @return the previous value of the VM, <tt>null</tt> if none
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public V put(Vm vm, V value) {
+		IntObjectMap<V> vms = users.get(vm.getUserId());
+		if (vms == null) {
+			vms = new IntObjectMap<V>();
+			users.put(vm.getUserId(), vms);
+		}
+		int before = vms.size();
+		V previous = vms.put(vm.getId(), value);
+		size += vms.size() - before;
+		return previous;
+	}
+
+	/**
+	 * Removes the value of a VM.
+	 *
+	 * @param vm the VM
+	 * @return the value of the VM, <tt>null</tt> if the VM was not mapped
+	 * @pre vm != null
+	 * @post $none
+	 */
+	public V remove(Vm vm) {
+		IntObjectMap<V> vms = users.get(vm.getUserId());
+		if (vms == null || !vms.containsKey(vm.getId())) {
+			return null;
+		}
+		V value = vms.remove(vm.getId());
+		size--;
+		if (vms.isEmpty()) {
+			users.remove(vm.getUserId());
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the number of VMs mapped.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether no VM is mapped.
+	 *
+	 * @return <tt>true</tt> if the table is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all the VMs.
+	 */
+	public void clear() {
+		users.clear();
+		size = 0;
+	}
+
+}
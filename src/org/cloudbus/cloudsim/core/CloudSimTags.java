@@ -290,6 +290,48 @@ public class CloudSimTags {
 	public static final int CANCEL_WAITING_EXEC_CLOUDLET_FROM_VM = BASE + 60;
 	
 	public static final int CANCEL_PARTNER_WAITING_EXEC = BASE + 61;
+
+	/** Asks a partner broker, or a datacenter, to estimate a list of cloudlets. */
+	public static final int PARTNER_ESTIMATE_BATCH = BASE + 62;
+
+	/** Returns to a broker the estimates of a list of its cloudlets by a partner broker. */
+	public static final int PARTNER_ESTIMATE_BATCH_RETURN = BASE + 63;
+
+	/** Returns to a broker the estimates of a list of partner cloudlets by its datacenter. */
+	public static final int PARTNER_INTERNAL_ESTIMATE_BATCH_RETURN = BASE + 64;
+
+	/** Sends the partner cloudlets accumulated by a broker for estimation. */
+	public static final int PARTNER_ESTIMATE_BATCH_FLUSH = BASE + 65;
+
+	/** Asks a partner broker to release the VMs reserved for a list of cloudlets. */
+	public static final int CANCEL_PARTNER_WAITING_EXEC_BATCH = BASE + 66;
+
+	/** Asks a datacenter to release the VMs reserved for a list of partner cloudlets. */
+	public static final int CANCEL_WAITING_EXEC_CLOUDLETS_FROM_VM = BASE + 67;
+
+	/** Makes a broker publish its capacity digest to some partners. */
+	public static final int CAPACITY_DIGEST_TICK = BASE + 68;
+
+	/** Sends capacity digests of brokers to a partner broker. */
+	public static final int CAPACITY_DIGEST = BASE + 69;
+
+	/** Makes a broker decide the partner estimations still in progress after its timeout. */
+	public static final int PARTNER_ESTIMATE_DECISION_TIMEOUT = BASE + 70;
+
+	/** Submits a list of cloudlets to a datacenter in one event. */
+	public static final int CLOUDLET_SUBMIT_BATCH = BASE + 71;
+
+	/** Makes a broker take the cloudlets of its source that arrived. */
+	public static final int CLOUDLET_ARRIVAL = BASE + 72;
+
+	/** Creates a list of VMs in a datacenter in one event. */
+	public static final int VM_CREATE_BATCH = BASE + 73;
+
+	/**
+	 * Creates a list of VMs in a datacenter in one event, with one acknowledgement for all of
+	 * them. This tag is used both for the request and for the acknowledgement.
+	 */
+	public static final int VM_CREATE_BATCH_ACK = BASE + 74;
 	
 	
 	
@@ -8,15 +8,24 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link Simulation}. The events are
+ * partitioned by destination entity, and the events of each entity are further indexed by tag.
+ * Therefore, looking up the events of an entity costs O(events of that entity) and, when the
+ * predicate is a {@link PredicateType}, O(1).
+ * <p>
+ * The events of each destination are kept in temporal order. Events with the same time are kept
+ * in the order in which they were added.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
@@ -24,65 +33,427 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The events of each destination entity, indexed by the entity id. */
+	private EntityEvents[] entityEvents = new EntityEvents[16];
 
-	/** The max time. */
-	private double maxTime = -1;
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	/** The sequence number of the next event added. */
+	private long sequence = 0;
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
-		// The event has to be inserted as the last of all events
-		// with the same event_time(). Yes, this matters.
-		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
-			list.add(newEvent);
-			maxTime = eventTime;
-			return;
+		int destination = newEvent.getDestination();
+		if (destination >= entityEvents.length) {
+			EntityEvents[] newEntityEvents = new EntityEvents[Math.max(destination + 1, entityEvents.length * 2)];
+			System.arraycopy(entityEvents, 0, newEntityEvents, 0, entityEvents.length);
+			entityEvents = newEntityEvents;
+		}
+
+		EntityEvents events = entityEvents[destination];
+		if (events == null) {
+			events = new EntityEvents();
+			entityEvents[destination] = events;
 		}
 
-		ListIterator<SimEvent> iterator = list.listIterator();
-		SimEvent event;
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if (event.eventTime() > eventTime) {
-				iterator.previous();
-				iterator.add(newEvent);
-				return;
+		events.add(new Node(newEvent, sequence++));
+		size++;
+	}
+
+	/**
+	 * Counts the events of a destination entity that match a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the number of matching events
+	 */
+	public int count(int destination, Predicate p) {
+		EntityEvents events = getEntityEvents(destination);
+		if (events == null) {
+			return 0;
+		}
+
+		if (p instanceof PredicateAny) {
+			return events.size;
+		}
+
+		if (p instanceof PredicateType) {
+			PredicateType predicate = (PredicateType) p;
+			int count = 0;
+			for (int i = 0; i < predicate.getNumberOfTags(); i++) {
+				if (!isRepeatedTag(predicate, i)) {
+					TagEvents tagEvents = events.byTag.get(predicate.getTag(i));
+					if (tagEvents != null) {
+						count += tagEvents.size;
+					}
+				}
 			}
+			return count;
 		}
 
-		list.add(newEvent);
+		int count = 0;
+		for (Node node = events.head; node != null; node = node.next) {
+			if (p.match(node.event)) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Finds the first event of a destination entity that matches a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent findFirst(int destination, Predicate p) {
+		Node node = findFirstNode(destination, p);
+		if (node == null) {
+			return null;
+		}
+		return node.event;
+	}
+
+	/**
+	 * Removes and returns the first event of a destination entity that matches a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent select(int destination, Predicate p) {
+		Node node = findFirstNode(destination, p);
+		if (node == null) {
+			return null;
+		}
+
+		getEntityEvents(destination).remove(node);
+		size--;
+		return node.event;
+	}
+
+	/**
+	 * Returns an iterator to the events in the queue. The events are returned grouped by
+	 * destination entity, and in temporal order for each entity. Removal through the iterator is
+	 * not supported.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int destination = -1;
+
+			private Node next = advance(null);
+
+			private Node advance(Node current) {
+				if (current != null && current.next != null) {
+					return current.next;
+				}
+				while (++destination < entityEvents.length) {
+					if (entityEvents[destination] != null && entityEvents[destination].head != null) {
+						return entityEvents[destination].head;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Node current = next;
+				next = advance(current);
+				return current.event;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use DeferredQueue.select(int, Predicate) instead.");
+			}
+		};
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		entityEvents = new EntityEvents[16];
+		size = 0;
+	}
+
+	/**
+	 * Gets the events of a destination entity.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the events, or <tt>null</tt> if the entity never had deferred events
+	 */
+	private EntityEvents getEntityEvents(int destination) {
+		if (destination < 0 || destination >= entityEvents.length) {
+			return null;
+		}
+		return entityEvents[destination];
+	}
+
+	/**
+	 * Finds the node of the first event of a destination entity that matches a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the node, or <tt>null</tt> if no event matches
+	 */
+	private Node findFirstNode(int destination, Predicate p) {
+		EntityEvents events = getEntityEvents(destination);
+		if (events == null) {
+			return null;
+		}
+
+		if (p instanceof PredicateAny) {
+			return events.head;
+		}
+
+		if (p instanceof PredicateType) {
+			// the first matching event is the earliest head among the lists of the tags
+			PredicateType predicate = (PredicateType) p;
+			Node first = null;
+			for (int i = 0; i < predicate.getNumberOfTags(); i++) {
+				TagEvents tagEvents = events.byTag.get(predicate.getTag(i));
+				if (tagEvents != null && tagEvents.head != null
+						&& (first == null || tagEvents.head.isBefore(first))) {
+					first = tagEvents.head;
+				}
+			}
+			return first;
+		}
+
+		for (Node node = events.head; node != null; node = node.next) {
+			if (p.match(node.event)) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the tag at a given index of a predicate also appears at a lower index.
+	 *
+	 * @param predicate the predicate
+	 * @param index the index of the tag
+	 * @return true, if the tag is repeated
+	 */
+	private static boolean isRepeatedTag(PredicateType predicate, int index) {
+		for (int i = 0; i < index; i++) {
+			if (predicate.getTag(i) == predicate.getTag(index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The deferred events of one destination entity. The nodes are linked twice: once in the list
+	 * of all the events of the entity and once in the list of the events with the same tag.
+	 */
+	private static final class EntityEvents {
+
+		/** The first event of the entity. */
+		private Node head;
+
+		/** The last event of the entity. */
+		private Node tail;
+
+		/** The number of events of the entity. */
+		private int size;
+
+		/** The events of the entity, by tag. */
+		private final Map<Integer, TagEvents> byTag = new HashMap<Integer, TagEvents>();
+
+		/**
+		 * Adds a node, after all the nodes with the same or an earlier time.
+		 *
+		 * @param node the node
+		 */
+		private void add(Node node) {
+			double time = node.event.eventTime();
+
+			Node previous = tail;
+			while (previous != null && previous.event.eventTime() > time) {
+				previous = previous.previous;
+			}
+			node.previous = previous;
+			node.next = previous == null ? head : previous.next;
+			if (node.previous == null) {
+				head = node;
+			} else {
+				node.previous.next = node;
+			}
+			if (node.next == null) {
+				tail = node;
+			} else {
+				node.next.previous = node;
+			}
+			size++;
+
+			int tag = node.event.getTag();
+			TagEvents tagEvents = byTag.get(tag);
+			if (tagEvents == null) {
+				tagEvents = new TagEvents();
+				byTag.put(tag, tagEvents);
+			}
+			tagEvents.add(node);
+		}
+
+		/**
+		 * Removes a node.
+		 *
+		 * @param node the node
+		 */
+		private void remove(Node node) {
+			if (node.previous == null) {
+				head = node.next;
+			} else {
+				node.previous.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.previous;
+			} else {
+				node.next.previous = node.previous;
+			}
+			size--;
+
+			byTag.get(node.event.getTag()).remove(node);
+		}
+	}
+
+	/**
+	 * The deferred events of one destination entity with the same tag.
+	 */
+	private static final class TagEvents {
+
+		/** The first event with the tag. */
+		private Node head;
+
+		/** The last event with the tag. */
+		private Node tail;
+
+		/** The number of events with the tag. */
+		private int size;
+
+		/**
+		 * Adds a node, after all the nodes with the same or an earlier time.
+		 *
+		 * @param node the node
+		 */
+		private void add(Node node) {
+			double time = node.event.eventTime();
+
+			Node previous = tail;
+			while (previous != null && previous.event.eventTime() > time) {
+				previous = previous.previousWithTag;
+			}
+			node.previousWithTag = previous;
+			node.nextWithTag = previous == null ? head : previous.nextWithTag;
+			if (node.previousWithTag == null) {
+				head = node;
+			} else {
+				node.previousWithTag.nextWithTag = node;
+			}
+			if (node.nextWithTag == null) {
+				tail = node;
+			} else {
+				node.nextWithTag.previousWithTag = node;
+			}
+			size++;
+		}
+
+		/**
+		 * Removes a node.
+		 *
+		 * @param node the node
+		 */
+		private void remove(Node node) {
+			if (node.previousWithTag == null) {
+				head = node.nextWithTag;
+			} else {
+				node.previousWithTag.nextWithTag = node.nextWithTag;
+			}
+			if (node.nextWithTag == null) {
+				tail = node.previousWithTag;
+			} else {
+				node.nextWithTag.previousWithTag = node.previousWithTag;
+			}
+			size--;
+		}
+	}
+
+	/**
+	 * A deferred event, linked in the lists of its destination entity.
+	 */
+	private static final class Node {
+
+		/** The event. */
+		private final SimEvent event;
+
+		/** The order in which the event was added to the queue. */
+		private final long sequence;
+
+		/** The previous event of the destination entity. */
+		private Node previous;
+
+		/** The next event of the destination entity. */
+		private Node next;
+
+		/** The previous event of the destination entity with the same tag. */
+		private Node previousWithTag;
+
+		/** The next event of the destination entity with the same tag. */
+		private Node nextWithTag;
+
+		/**
+		 * Creates a new node.
+		 *
+		 * @param event the event
+		 * @param sequence the order in which the event was added to the queue
+		 */
+		private Node(SimEvent event, long sequence) {
+			this.event = event;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Checks whether this node comes before another one in the list of their entity.
+		 *
+		 * @param other the other node
+		 * @return true, if this node comes first
+		 */
+		private boolean isBefore(Node other) {
+			if (event.eventTime() != other.event.eventTime()) {
+				return event.eventTime() < other.event.eventTime();
+			}
+			return sequence < other.sequence;
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -8,92 +8,391 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
- * 
+ * FutureQueue is an abstract class that represents the future event queue used by {@link CloudSim}.
+ * Implementations decide how the events are stored, but all of them must deliver the events in the
+ * same order: by event time and, for events with the same time, by the order in which they were
+ * added (events added with {@link #addEventFirst(SimEvent)} come before the others).
+ * <p>
+ * The ordering key of an event is assigned by this class when the event is added, so that every
+ * implementation breaks ties in the same way.
+ * <p>
+ * Removing an event does not remove it from the storage of the implementation. The event is marked
+ * as cancelled and skipped when it reaches the head of the queue, so removing costs O(1) whatever
+ * the storage. The cancelled events are purged once they outnumber the live ones. The live events
+ * are also indexed by source entity and tag, so that {@link #cancelAll(int, Predicate)} with a
+ * {@link PredicateType} only visits the events it cancels.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
- * @see Simulation
- * @see java.util.TreeSet
+ * @see CloudSim
+ * @see FutureQueueTreeSet
+ * @see FutureQueueHeap
+ * @see FutureQueueCalendar
  */
-public class FutureQueue {
+public abstract class FutureQueue {
 
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	/** The minimum number of cancelled events stored before they are purged. */
+	private static final int MIN_CANCELLED_TO_PURGE = 64;
 
-	/** The serial. */
+	/** The serial of the next event added to the tail of its time slot. */
 	private long serial = 0;
 
+	/** The serial of the next event added to the head of its time slot. */
+	private long firstSerial = Long.MIN_VALUE;
+
+	/** The number of live events in the queue. */
+	private int size = 0;
+
+	/** The number of cancelled events still stored by the implementation. */
+	private int cancelled = 0;
+
+	/** The most recently added live event of each source entity and tag. */
+	private final SourceTagIndex sourceTagIndex = new SourceTagIndex();
+
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
 		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
+		enqueue(newEvent);
 	}
 
 	/**
-	 * Add a new event to the head of the queue.
-	 * 
+	 * Add a new event to the head of the queue, i.e. before any other event with the same time.
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEventFirst(SimEvent newEvent) {
-		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+		newEvent.setSerial(firstSerial++);
+		enqueue(newEvent);
+	}
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent peekFirst() {
+		SimEvent first = peekStored();
+		while (first != null && first.isCancelled()) {
+			pollStored();
+			cancelled--;
+			first = peekStored();
+		}
+		return first;
+	}
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent pollFirst() {
+		SimEvent first = pollStored();
+		while (first != null && first.isCancelled()) {
+			cancelled--;
+			first = pollStored();
+		}
+		if (first != null) {
+			unindex(first);
+			first.setQueued(false);
+			size--;
+		}
+		return first;
+	}
+
+	/**
+	 * Returns the time of the first event of the queue.
+	 *
+	 * @return the time of the first event, or -1 if the queue is empty
+	 */
+	public double peekTime() {
+		SimEvent first = peekFirst();
+		if (first == null) {
+			return -1;
+		}
+		return first.eventTime();
 	}
 
 	/**
-	 * Returns an iterator to the queue.
-	 * 
+	 * Returns an iterator to the queue. The iterator is not required to return the events in
+	 * temporal order, and does not support removal.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
+		final Iterator<SimEvent> stored = storedIterator();
+		return new Iterator<SimEvent>() {
+
+			private SimEvent next = advance();
+
+			private SimEvent advance() {
+				while (stored.hasNext()) {
+					SimEvent event = stored.next();
+					if (!event.isCancelled()) {
+						return event;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				SimEvent current = next;
+				next = advance();
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use FutureQueue.remove(SimEvent) instead.");
+			}
+		};
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
-	 * @return the size
+	 *
+	 * @return the number of live events
 	 */
 	public int size() {
-		return sortedSet.size();
+		return size;
 	}
 
 	/**
-	 * Removes the event from the queue.
-	 * 
+	 * Removes the event from the queue. The event is marked as cancelled and will not be delivered.
+	 *
 	 * @param event the event
-	 * @return true, if successful
+	 * @return true, if the event was in the queue
 	 */
 	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
+		if (event == null || !event.isQueued()) {
+			return false;
+		}
+
+		unindex(event);
+		event.setQueued(false);
+		event.setCancelled(true);
+		size--;
+		cancelled++;
+
+		if (cancelled >= MIN_CANCELLED_TO_PURGE && cancelled > size) {
+			purgeCancelled();
+			cancelled = 0;
+		}
+		return true;
 	}
 
 	/**
 	 * Removes all the events from the queue.
-	 * 
+	 *
 	 * @param events the events
 	 * @return true, if successful
 	 */
 	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
+		boolean changed = false;
+		for (SimEvent event : events) {
+			changed |= remove(event);
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes the first event sent by an entity that matches a predicate.
+	 *
+	 * @param source the id of the source entity
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent cancel(int source, Predicate p) {
+		SimEvent first = null;
+		if (p instanceof PredicateType) {
+			PredicateType predicate = (PredicateType) p;
+			for (int i = 0; i < predicate.getNumberOfTags(); i++) {
+				SimEvent event = sourceTagIndex.get(source, predicate.getTag(i));
+				for (; event != null; event = event.getNextWithSourceTag()) {
+					if (p.match(event) && (first == null || event.compareTo(first) < 0)) {
+						first = event;
+					}
+				}
+			}
+		} else {
+			// the queue is not necessarily iterated in temporal order: look for the earliest match
+			Iterator<SimEvent> iterator = iterator();
+			while (iterator.hasNext()) {
+				SimEvent event = iterator.next();
+				if (event.getSource() == source && p.match(event)
+						&& (first == null || event.compareTo(first) < 0)) {
+					first = event;
+				}
+			}
+		}
+
+		if (first != null) {
+			remove(first);
+		}
+		return first;
+	}
+
+	/**
+	 * Removes all the events sent by an entity that match a predicate. When the predicate is a
+	 * {@link PredicateType}, only the events with the given tags are visited.
+	 *
+	 * @param source the id of the source entity
+	 * @param p the predicate
+	 * @return the number of removed events
+	 */
+	public int cancelAll(int source, Predicate p) {
+		List<SimEvent> toRemove = new ArrayList<SimEvent>();
+		if (p instanceof PredicateType) {
+			PredicateType predicate = (PredicateType) p;
+			for (int i = 0; i < predicate.getNumberOfTags(); i++) {
+				SimEvent event = sourceTagIndex.get(source, predicate.getTag(i));
+				for (; event != null; event = event.getNextWithSourceTag()) {
+					if (p.match(event)) {
+						toRemove.add(event);
+					}
+				}
+			}
+		} else {
+			Iterator<SimEvent> iterator = iterator();
+			while (iterator.hasNext()) {
+				SimEvent event = iterator.next();
+				if (event.getSource() == source && p.match(event)) {
+					toRemove.add(event);
+				}
+			}
+		}
+
+		int count = 0;
+		for (SimEvent event : toRemove) {
+			if (remove(event)) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		sortedSet.clear();
+		Iterator<SimEvent> iterator = storedIterator();
+		while (iterator.hasNext()) {
+			SimEvent event = iterator.next();
+			event.setQueued(false);
+			event.setPreviousWithSourceTag(null);
+			event.setNextWithSourceTag(null);
+		}
+		clearStored();
+		sourceTagIndex.clear();
+		size = 0;
+		cancelled = 0;
+	}
+
+	/**
+	 * Stores an event whose serial has already been set.
+	 *
+	 * @param event the event
+	 */
+	protected abstract void insert(SimEvent event);
+
+	/**
+	 * Returns the first stored event, cancelled or not, without removing it.
+	 *
+	 * @return the first stored event, or <tt>null</tt> if nothing is stored
+	 */
+	protected abstract SimEvent peekStored();
+
+	/**
+	 * Removes and returns the first stored event, cancelled or not.
+	 *
+	 * @return the first stored event, or <tt>null</tt> if nothing is stored
+	 */
+	protected abstract SimEvent pollStored();
+
+	/**
+	 * Returns an iterator to all the stored events, cancelled or not. The iterator is not required
+	 * to return the events in temporal order, nor to support removal.
+	 *
+	 * @return the iterator
+	 */
+	protected abstract Iterator<SimEvent> storedIterator();
+
+	/**
+	 * Removes from the storage all the events marked as cancelled.
+	 */
+	protected abstract void purgeCancelled();
+
+	/**
+	 * Removes all the stored events.
+	 */
+	protected abstract void clearStored();
+
+	/**
+	 * Marks an event as queued, adds it to the index and stores it.
+	 *
+	 * @param event the event
+	 */
+	private void enqueue(SimEvent event) {
+		if (event.isQueued()) {
+			throw new IllegalArgumentException("The event is already in the queue.");
+		}
+		event.setQueued(true);
+		event.setCancelled(false);
+
+		SimEvent head = sourceTagIndex.put(event.getSource(), event.getTag(), event);
+		event.setPreviousWithSourceTag(null);
+		event.setNextWithSourceTag(head);
+		if (head != null) {
+			head.setPreviousWithSourceTag(event);
+		}
+
+		size++;
+		insert(event);
+	}
+
+	/**
+	 * Removes a live event from the index.
+	 *
+	 * @param event the event
+	 */
+	private void unindex(SimEvent event) {
+		SimEvent previous = event.getPreviousWithSourceTag();
+		SimEvent next = event.getNextWithSourceTag();
+		if (previous != null) {
+			previous.setNextWithSourceTag(next);
+		} else if (next != null) {
+			sourceTagIndex.put(event.getSource(), event.getTag(), next);
+		} else {
+			sourceTagIndex.remove(event.getSource(), event.getTag());
+		}
+		if (next != null) {
+			next.setPreviousWithSourceTag(previous);
+		}
+		event.setPreviousWithSourceTag(null);
+		event.setNextWithSourceTag(null);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,427 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FutureQueueCalendar stores the future events in a calendar queue (R. Brown, "Calendar Queues: A
+ * Fast O(1) Priority Queue Implementation for the Simulation Event Set Problem", CACM, 1988). The
+ * time line is divided in "days" of a fixed width, and each day is mapped to one of the buckets of
+ * a "year". Each bucket keeps its events sorted, so adding and polling an event cost O(1) on
+ * average when the width matches the spacing of the events. The number of buckets and the width
+ * are recomputed whenever the queue doubles or halves its size.
+ * <p>
+ * This queue performs best when the events are spread evenly over time, as in simulations with
+ * many periodic events. For bursty workloads {@link FutureQueueHeap} is usually a better choice.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FutureQueue
+ */
+public class FutureQueueCalendar extends FutureQueue {
+
+	/** The minimum number of buckets. */
+	private static final int MIN_BUCKETS = 2;
+
+	/** The maximum number of events sampled to estimate the width of a bucket. */
+	private static final int WIDTH_SAMPLE_SIZE = 25;
+
+	/** The first node of each bucket. */
+	private Node[] heads;
+
+	/** The last node of each bucket. */
+	private Node[] tails;
+
+	/** The width of a bucket, in simulation time. */
+	private double width;
+
+	/** The number of events in the queue. */
+	private int size;
+
+	/** The bucket where the search for the next event starts. */
+	private int lastBucket;
+
+	/** The day currently mapped to {@link #lastBucket}. */
+	private long currentDay;
+
+	/** The time of the last event located at the head of the queue. */
+	private double lastTime;
+
+	/** The number of structural modifications, used to detect concurrent modifications. */
+	private int modCount;
+
+	/** Whether the queue is being rebuilt, which disables the automatic resizing. */
+	private boolean resizing;
+
+	/**
+	 * Creates a new calendar future queue.
+	 */
+	public FutureQueueCalendar() {
+		this(1.0);
+	}
+
+	/**
+	 * Creates a new calendar future queue.
+	 *
+	 * @param initialWidth the initial width of a bucket, in simulation time. It is only used until
+	 *            the queue is resized for the first time.
+	 * @pre initialWidth > 0
+	 */
+	public FutureQueueCalendar(double initialWidth) {
+		if (initialWidth <= 0) {
+			throw new IllegalArgumentException("The width of a bucket must be positive.");
+		}
+		setup(MIN_BUCKETS, initialWidth, 0.0);
+	}
+
+	@Override
+	protected void insert(SimEvent event) {
+		double time = event.eventTime();
+		if (time < lastTime) {
+			// an event before the current position of the calendar: restart the search from it
+			moveTo(time);
+		}
+		link(new Node(event));
+		size++;
+		modCount++;
+
+		if (!resizing && size > 2 * heads.length) {
+			resize(heads.length * 2);
+		}
+	}
+
+	@Override
+	protected SimEvent peekStored() {
+		if (size == 0) {
+			return null;
+		}
+		return heads[locateFirst()].event;
+	}
+
+	@Override
+	protected SimEvent pollStored() {
+		if (size == 0) {
+			return null;
+		}
+		int bucket = locateFirst();
+		Node node = heads[bucket];
+		unlink(bucket, node);
+		size--;
+		modCount++;
+
+		if (!resizing && heads.length > MIN_BUCKETS && size < heads.length / 2) {
+			resize(heads.length / 2);
+		}
+		return node.event;
+	}
+
+	@Override
+	protected void purgeCancelled() {
+		for (int bucket = 0; bucket < heads.length; bucket++) {
+			Node node = heads[bucket];
+			while (node != null) {
+				Node next = node.next;
+				if (node.event.isCancelled()) {
+					unlink(bucket, node);
+					size--;
+				}
+				node = next;
+			}
+		}
+		modCount++;
+
+		if (heads.length > MIN_BUCKETS && size < heads.length / 2) {
+			resize(Math.max(Integer.highestOneBit(Math.max(size, 1)) * 2, MIN_BUCKETS));
+		}
+	}
+
+	@Override
+	protected void clearStored() {
+		setup(MIN_BUCKETS, width, 0.0);
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns an iterator to the stored events. The events are returned bucket by bucket, not in
+	 * temporal order, and removal through the iterator is not supported.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	protected Iterator<SimEvent> storedIterator() {
+		return new Iterator<SimEvent>() {
+
+			private final int expectedModCount = modCount;
+
+			private int bucket = -1;
+
+			private Node next = advance(null);
+
+			private Node advance(Node current) {
+				if (current != null && current.next != null) {
+					return current.next;
+				}
+				while (++bucket < heads.length) {
+					if (heads[bucket] != null) {
+						return heads[bucket];
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Node current = next;
+				next = advance(current);
+				return current.event;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use FutureQueue.remove(SimEvent) instead.");
+			}
+		};
+	}
+
+	/**
+	 * Finds the bucket holding the first event of the queue, and moves the current position of the
+	 * calendar to it. The queue must not be empty.
+	 *
+	 * @return the index of the bucket
+	 */
+	private int locateFirst() {
+		int bucket = lastBucket;
+		long day = currentDay;
+		for (int i = 0; i < heads.length; i++) {
+			Node head = heads[bucket];
+			if (head != null && dayOf(head.event.eventTime()) <= day) {
+				lastBucket = bucket;
+				currentDay = day;
+				lastTime = head.event.eventTime();
+				return bucket;
+			}
+			bucket++;
+			day++;
+			if (bucket == heads.length) {
+				bucket = 0;
+			}
+		}
+
+		// no event in the whole year: jump directly to the earliest one
+		Node first = null;
+		for (Node head : heads) {
+			if (head != null && (first == null || head.event.compareTo(first.event) < 0)) {
+				first = head;
+			}
+		}
+		moveTo(first.event.eventTime());
+		return lastBucket;
+	}
+
+	/**
+	 * Moves the current position of the calendar to the day containing a given time.
+	 *
+	 * @param time the time
+	 */
+	private void moveTo(double time) {
+		lastTime = time;
+		currentDay = dayOf(time);
+		lastBucket = (int) (currentDay % heads.length);
+	}
+
+	/**
+	 * Gets the day of a given time, i.e. the number of bucket widths elapsed since time zero.
+	 *
+	 * @param time the time
+	 * @return the day
+	 */
+	private long dayOf(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	/**
+	 * Gets the bucket of a given time.
+	 *
+	 * @param time the time
+	 * @return the index of the bucket
+	 */
+	private int bucketOf(double time) {
+		return (int) (dayOf(time) % heads.length);
+	}
+
+	/**
+	 * Adds a node to its bucket, keeping the bucket sorted. The search starts from the tail of the
+	 * bucket, as new events are usually later than the ones already stored.
+	 *
+	 * @param node the node
+	 */
+	private void link(Node node) {
+		int bucket = bucketOf(node.event.eventTime());
+		Node after = tails[bucket];
+		while (after != null && after.event.compareTo(node.event) > 0) {
+			after = after.previous;
+		}
+
+		if (after == null) {
+			node.next = heads[bucket];
+			heads[bucket] = node;
+		} else {
+			node.next = after.next;
+			after.next = node;
+		}
+		node.previous = after;
+		if (node.next == null) {
+			tails[bucket] = node;
+		} else {
+			node.next.previous = node;
+		}
+	}
+
+	/**
+	 * Removes a node from its bucket.
+	 *
+	 * @param bucket the index of the bucket
+	 * @param node the node
+	 */
+	private void unlink(int bucket, Node node) {
+		if (node.previous == null) {
+			heads[bucket] = node.next;
+		} else {
+			node.previous.next = node.next;
+		}
+		if (node.next == null) {
+			tails[bucket] = node.previous;
+		} else {
+			node.next.previous = node.previous;
+		}
+		node.previous = null;
+		node.next = null;
+	}
+
+	/**
+	 * Initialises an empty calendar.
+	 *
+	 * @param buckets the number of buckets
+	 * @param newWidth the width of a bucket
+	 * @param startTime the time where the search for the next event starts
+	 */
+	private void setup(int buckets, double newWidth, double startTime) {
+		heads = new Node[buckets];
+		tails = new Node[buckets];
+		width = newWidth;
+		moveTo(startTime);
+	}
+
+	/**
+	 * Rebuilds the calendar with a new number of buckets, and a width estimated from the spacing
+	 * of the first events of the queue.
+	 *
+	 * @param buckets the new number of buckets
+	 */
+	private void resize(int buckets) {
+		resizing = true;
+
+		// sample the first events to estimate the new width
+		int samples = Math.min(size, WIDTH_SAMPLE_SIZE);
+		SimEvent[] sampled = new SimEvent[samples];
+		for (int i = 0; i < samples; i++) {
+			sampled[i] = pollStored();
+		}
+		double newWidth = estimateWidth(sampled);
+
+		Node[] oldHeads = heads;
+		setup(Math.max(buckets, MIN_BUCKETS), newWidth, samples > 0 ? sampled[0].eventTime() : lastTime);
+		for (Node head : oldHeads) {
+			Node node = head;
+			while (node != null) {
+				Node next = node.next;
+				node.previous = null;
+				node.next = null;
+				link(node);
+				node = next;
+			}
+		}
+		for (SimEvent event : sampled) {
+			link(new Node(event));
+		}
+		size += samples;
+		modCount++;
+
+		resizing = false;
+	}
+
+	/**
+	 * Estimates the width of a bucket as three times the average separation of a sample of
+	 * consecutive events, ignoring separations larger than twice the average.
+	 *
+	 * @param sampled the sampled events, in temporal order
+	 * @return the estimated width, or the current width if it cannot be estimated
+	 */
+	private double estimateWidth(SimEvent[] sampled) {
+		if (sampled.length < 2) {
+			return width;
+		}
+
+		double average = (sampled[sampled.length - 1].eventTime() - sampled[0].eventTime())
+				/ (sampled.length - 1);
+		double total = 0.0;
+		int count = 0;
+		for (int i = 1; i < sampled.length; i++) {
+			double separation = sampled[i].eventTime() - sampled[i - 1].eventTime();
+			if (separation <= 2 * average) {
+				total += separation;
+				count++;
+			}
+		}
+
+		if (count == 0 || total <= 0.0) {
+			return width;
+		}
+		return 3.0 * total / count;
+	}
+
+	/**
+	 * A node of the sorted list of a bucket.
+	 */
+	private static final class Node {
+
+		/** The event. */
+		private final SimEvent event;
+
+		/** The previous node of the bucket. */
+		private Node previous;
+
+		/** The next node of the bucket. */
+		private Node next;
+
+		/**
+		 * Creates a new node.
+		 *
+		 * @param event the event
+		 */
+		private Node(SimEvent event) {
+			this.event = event;
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FutureQueueHeap stores the future events in an array-backed 4-ary min-heap. Adding and polling
+ * an event cost O(log n) array moves, without allocating any tree node. A 4-ary heap is shallower
+ * than a binary one, and the children of a node share a cache line, which makes polling cheaper
+ * on large queues.
+ * <p>
+ * This is the default future queue of CloudSim.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FutureQueue
+ */
+public class FutureQueueHeap extends FutureQueue {
+
+	/** The number of children of each node. */
+	private static final int ARITY = 4;
+
+	/** The default initial capacity. */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/** The heap array. The children of the node <tt>i</tt> are at <tt>4i+1</tt> to <tt>4i+4</tt>. */
+	private SimEvent[] heap;
+
+	/** The number of events in the heap. */
+	private int size;
+
+	/** The number of structural modifications, used to detect concurrent modifications. */
+	private int modCount;
+
+	/**
+	 * Creates a new heap-based future queue.
+	 */
+	public FutureQueueHeap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new heap-based future queue.
+	 *
+	 * @param initialCapacity the number of events the queue can hold before growing
+	 * @pre initialCapacity > 0
+	 */
+	public FutureQueueHeap(int initialCapacity) {
+		if (initialCapacity <= 0) {
+			throw new IllegalArgumentException("The initial capacity must be positive.");
+		}
+		heap = new SimEvent[initialCapacity];
+	}
+
+	@Override
+	protected void insert(SimEvent event) {
+		if (size == heap.length) {
+			SimEvent[] newHeap = new SimEvent[heap.length * 2];
+			System.arraycopy(heap, 0, newHeap, 0, size);
+			heap = newHeap;
+		}
+		modCount++;
+		siftUp(size++, event);
+	}
+
+	@Override
+	protected SimEvent peekStored() {
+		if (size == 0) {
+			return null;
+		}
+		return heap[0];
+	}
+
+	@Override
+	protected SimEvent pollStored() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	protected void purgeCancelled() {
+		int live = 0;
+		for (int i = 0; i < size; i++) {
+			if (!heap[i].isCancelled()) {
+				heap[live++] = heap[i];
+			}
+		}
+		for (int i = live; i < size; i++) {
+			heap[i] = null;
+		}
+		size = live;
+		modCount++;
+
+		// rebuild the heap bottom-up
+		for (int i = (size - 2) / ARITY; i >= 0; i--) {
+			siftDown(i, heap[i]);
+		}
+	}
+
+	@Override
+	protected void clearStored() {
+		for (int i = 0; i < size; i++) {
+			heap[i] = null;
+		}
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns an iterator to the stored events. The events are returned in heap order, not in
+	 * temporal order, and removal through the iterator is not supported.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	protected Iterator<SimEvent> storedIterator() {
+		return new Iterator<SimEvent>() {
+
+			private int index = 0;
+
+			private final int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				return heap[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use FutureQueue.remove(SimEvent) instead.");
+			}
+		};
+	}
+
+	/**
+	 * Removes the event stored at a given position of the heap.
+	 *
+	 * @param index the position
+	 */
+	private void removeAt(int index) {
+		modCount++;
+		SimEvent last = heap[--size];
+		heap[size] = null;
+		if (index < size) {
+			siftDown(index, last);
+			if (heap[index] == last) {
+				siftUp(index, last);
+			}
+		}
+	}
+
+	/**
+	 * Moves an event up from a given position until its parent is not greater than it.
+	 *
+	 * @param index the position where the event is
+	 * @param event the event
+	 */
+	private void siftUp(int index, SimEvent event) {
+		while (index > 0) {
+			int parent = (index - 1) / ARITY;
+			SimEvent parentEvent = heap[parent];
+			if (event.compareTo(parentEvent) >= 0) {
+				break;
+			}
+			heap[index] = parentEvent;
+			index = parent;
+		}
+		heap[index] = event;
+	}
+
+	/**
+	 * Moves an event down from a given position until none of its children is smaller than it.
+	 *
+	 * @param index the position where the event is
+	 * @param event the event
+	 */
+	private void siftDown(int index, SimEvent event) {
+		while (true) {
+			int firstChild = index * ARITY + 1;
+			if (firstChild >= size) {
+				break;
+			}
+			int lastChild = Math.min(firstChild + ARITY, size);
+			int smallest = firstChild;
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (heap[child].compareTo(heap[smallest]) < 0) {
+					smallest = child;
+				}
+			}
+			if (heap[smallest].compareTo(event) >= 0) {
+				break;
+			}
+			heap[index] = heap[smallest];
+			index = smallest;
+		}
+		heap[index] = event;
+	}
+
+}
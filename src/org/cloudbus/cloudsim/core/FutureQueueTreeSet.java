@@ -0,0 +1,72 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * FutureQueueTreeSet stores the future events in a {@link TreeSet}. It was the only future queue
+ * of CloudSim up to version 3.0 and is kept for simulations that iterate over the queue and rely
+ * on the iteration following the temporal order of the events.
+ *
+ * @author Marcos Dias de Assuncao
+ * @since CloudSim Toolkit 1.0
+ * @see FutureQueue
+ * @see java.util.TreeSet
+ */
+public class FutureQueueTreeSet extends FutureQueue {
+
+	/** The sorted set. */
+	private final TreeSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+
+	@Override
+	protected void insert(SimEvent event) {
+		sortedSet.add(event);
+	}
+
+	@Override
+	protected SimEvent peekStored() {
+		if (sortedSet.isEmpty()) {
+			return null;
+		}
+		return sortedSet.first();
+	}
+
+	@Override
+	protected SimEvent pollStored() {
+		return sortedSet.pollFirst();
+	}
+
+	/**
+	 * Returns an iterator to the stored events. The events are returned in temporal order.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	protected Iterator<SimEvent> storedIterator() {
+		return sortedSet.iterator();
+	}
+
+	@Override
+	protected void purgeCancelled() {
+		Iterator<SimEvent> iterator = sortedSet.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isCancelled()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	protected void clearStored() {
+		sortedSet.clear();
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * LogicalProcess runs the entities of one partition of a parallel simulation. It has its own
+ * clock, future and deferred event queues and pool of processed events, and processes, in each
+ * window, the events of its entities whose time is before the end of the window.
+ * <p>
+ * The events sent to the entities of another logical process are buffered by destination, and
+ * delivered by the {@link SimulationContext} between two windows, when no logical process runs.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see SimulationContext#startSimulation(boolean)
+ */
+class LogicalProcess implements Callable<Void> {
+
+	/** The context running the simulation. */
+	private final SimulationContext context;
+
+	/** The index of the logical process. */
+	private final int index;
+
+	/** The entities of the logical process, in the order of their ids. */
+	private final List<SimEntity> entities = new ArrayList<SimEntity>();
+
+	/** The future event queue. */
+	private final FutureQueue future = new FutureQueueHeap();
+
+	/** The deferred event queue. */
+	private final DeferredQueue deferred = new DeferredQueue();
+
+	/** The processed events kept for reuse. */
+	private final Deque<SimEvent> eventPool = new ArrayDeque<SimEvent>();
+
+	/** The events sent to each logical process, to be added to the tail of their time slot. */
+	private final List<List<SimEvent>> outgoing;
+
+	/** The events sent to each logical process, to be added to the head of their time slot. */
+	private final List<List<SimEvent>> outgoingFirst;
+
+	/** The clock of the logical process. */
+	private double clock = 0;
+
+	/** The number of events processed by the logical process. */
+	private long processedEvents = 0;
+
+	/** The metrics of the logical process, <tt>null</tt> when they are disabled. */
+	private final SimulationMetrics metrics;
+
+	/** The end of the current window, exclusive. */
+	private double windowEnd;
+
+	/**
+	 * Creates a new LogicalProcess object.
+	 *
+	 * @param context the context running the simulation
+	 * @param index the index of the logical process
+	 * @param numProcesses the number of logical processes of the simulation
+	 */
+	LogicalProcess(SimulationContext context, int index, int numProcesses) {
+		this.context = context;
+		this.index = index;
+		metrics = context.getMetrics() != null ? new SimulationMetrics() : null;
+		outgoing = new ArrayList<List<SimEvent>>(numProcesses);
+		outgoingFirst = new ArrayList<List<SimEvent>>(numProcesses);
+		for (int i = 0; i < numProcesses; i++) {
+			outgoing.add(new ArrayList<SimEvent>());
+			outgoingFirst.add(new ArrayList<SimEvent>());
+		}
+	}
+
+	/**
+	 * Gets the index of the logical process.
+	 *
+	 * @return the index
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Adds an entity to the logical process.
+	 *
+	 * @param entity the entity
+	 */
+	void addEntity(SimEntity entity) {
+		entities.add(entity);
+	}
+
+	/**
+	 * Gets the future event queue.
+	 *
+	 * @return the future event queue
+	 */
+	FutureQueue getFuture() {
+		return future;
+	}
+
+	/**
+	 * Gets the deferred event queue.
+	 *
+	 * @return the deferred event queue
+	 */
+	DeferredQueue getDeferred() {
+		return deferred;
+	}
+
+	/**
+	 * Gets the processed events kept for reuse.
+	 *
+	 * @return the processed events
+	 */
+	Deque<SimEvent> getEventPool() {
+		return eventPool;
+	}
+
+	/**
+	 * Gets the clock of the logical process.
+	 *
+	 * @return the clock
+	 */
+	double getClock() {
+		return clock;
+	}
+
+	/**
+	 * Gets the number of events processed by the logical process.
+	 *
+	 * @return the number of processed events
+	 */
+	long getProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * Gets the metrics of the logical process.
+	 *
+	 * @return the metrics, or <tt>null</tt> if they are disabled
+	 */
+	SimulationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the end of the next window.
+	 *
+	 * @param windowEnd the end of the window, exclusive
+	 */
+	void setWindowEnd(double windowEnd) {
+		this.windowEnd = windowEnd;
+	}
+
+	/**
+	 * Buffers an event sent to an entity of another logical process.
+	 *
+	 * @param target the logical process of the destination
+	 * @param event the event
+	 * @param first whether the event goes to the head of its time slot
+	 */
+	void post(LogicalProcess target, SimEvent event, boolean first) {
+		if (first) {
+			outgoingFirst.get(target.index).add(event);
+		} else {
+			outgoing.get(target.index).add(event);
+		}
+	}
+
+	/**
+	 * Adds to the future event queue of the targets the events buffered by this logical process.
+	 * It must only be called when no logical process runs.
+	 *
+	 * @param processes the logical processes, by index
+	 */
+	void deliver(LogicalProcess[] processes) {
+		for (int i = 0; i < processes.length; i++) {
+			List<SimEvent> events = outgoing.get(i);
+			for (SimEvent event : events) {
+				processes[i].future.addEvent(event);
+			}
+			events.clear();
+
+			events = outgoingFirst.get(i);
+			for (SimEvent event : events) {
+				processes[i].future.addEventFirst(event);
+			}
+			events.clear();
+		}
+	}
+
+	/**
+	 * Runs the entities and processes the events of the logical process until the end of the
+	 * current window, with the context and this logical process bound to the calling thread.
+	 *
+	 * @return <tt>null</tt>
+	 */
+	@Override
+	public Void call() {
+		SimulationContext previous = CloudSim.exchangeContext(context);
+		context.bindProcess(this);
+		try {
+			while (true) {
+				for (SimEntity entity : entities) {
+					if (entity.getState() == SimEntity.RUNNABLE) {
+						entity.run();
+					}
+				}
+
+				if (context.isAbruptlyTerminated() || future.size() == 0
+						|| future.peekTime() >= windowEnd) {
+					break;
+				}
+
+				// process the events with the time of the first one
+				SimEvent first = future.pollFirst();
+				processEvent(first);
+				double time = first.eventTime();
+				while (future.size() > 0 && future.peekTime() == time) {
+					processEvent(future.pollFirst());
+				}
+			}
+			return null;
+		} finally {
+			context.bindProcess(null);
+			CloudSim.exchangeContext(previous);
+		}
+	}
+
+	/**
+	 * Processes an event of the logical process.
+	 *
+	 * @param e the event
+	 */
+	private void processEvent(SimEvent e) {
+		if (e.eventTime() < clock) {
+			throw new IllegalArgumentException("Past event detected.");
+		}
+		clock = e.eventTime();
+		processedEvents++;
+
+		if (e.getType() == SimEvent.CREATE) {
+			throw new IllegalStateException(
+					"Entities cannot be created while a parallel simulation is running.");
+		}
+		int tag = e.getTag();
+		int destination = e.getDestination();
+		context.dispatch(e, deferred);
+
+		if (metrics != null) {
+			metrics.eventProcessed(tag, destination, future.size() + 1, deferred.size());
+		}
+	}
+
+}
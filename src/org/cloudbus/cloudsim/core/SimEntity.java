@@ -42,6 +42,12 @@ public abstract class SimEntity implements Cloneable {
 	/** The entity's current state. */
 	private int state;
 
+	/** The predicate the entity is waiting for, or <tt>null</tt> to accept any event. */
+	private Predicate waitPredicate;
+
+	/** The simulation context the entity belongs to. */
+	private final SimulationContext context;
+
 	/**
 	 * Creates a new entity.
 	 * 
@@ -54,7 +60,8 @@ public abstract class SimEntity implements Cloneable {
 		this.name = name;
 		id = -1;
 		state = RUNNABLE;
-		CloudSim.addEntity(this);
+		context = CloudSim.getContext();
+		context.addEntity(this);
 	}
 
 	/**
@@ -75,6 +82,15 @@ public abstract class SimEntity implements Cloneable {
 		return id;
 	}
 
+	/**
+	 * Get the simulation context this entity belongs to.
+	 * 
+	 * @return the simulation context
+	 */
+	public SimulationContext getContext() {
+		return context;
+	}
+
 	// The schedule functions
 
 	/**
@@ -85,12 +101,13 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void schedule(int dest, double delay, int tag, Object data) {
-		if (!CloudSim.running()) {
-			return;
+	public SimEvent schedule(int dest, double delay, int tag, Object data) {
+		if (!context.running()) {
+			return null;
 		}
-		CloudSim.send(id, dest, delay, tag, data);
+		return context.send(id, dest, delay, tag, data);
 	}
 
 	/**
@@ -100,9 +117,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The unique id number of the destination entity
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void schedule(int dest, double delay, int tag) {
-		schedule(dest, delay, tag, null);
+	public SimEvent schedule(int dest, double delay, int tag) {
+		return schedule(dest, delay, tag, null);
 	}
 
 	/**
@@ -113,9 +131,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void schedule(String dest, double delay, int tag, Object data) {
-		schedule(CloudSim.getEntityId(dest), delay, tag, data);
+	public SimEvent schedule(String dest, double delay, int tag, Object data) {
+		return schedule(context.getEntityId(dest), delay, tag, data);
 	}
 
 	/**
@@ -125,9 +144,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The name of the port to send the event through
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void schedule(String dest, double delay, int tag) {
-		schedule(dest, delay, tag, null);
+	public SimEvent schedule(String dest, double delay, int tag) {
+		return schedule(dest, delay, tag, null);
 	}
 
 	/**
@@ -137,9 +157,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The unique id number of the destination entity
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleNow(int dest, int tag, Object data) {
-		schedule(dest, 0, tag, data);
+	public SimEvent scheduleNow(int dest, int tag, Object data) {
+		return schedule(dest, 0, tag, data);
 	}
 
 	/**
@@ -148,9 +169,10 @@ public abstract class SimEntity implements Cloneable {
 	 * 
 	 * @param dest The unique id number of the destination entity
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleNow(int dest, int tag) {
-		schedule(dest, 0, tag, null);
+	public SimEvent scheduleNow(int dest, int tag) {
+		return schedule(dest, 0, tag, null);
 	}
 
 	/**
@@ -160,9 +182,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The name of the port to send the event through
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleNow(String dest, int tag, Object data) {
-		schedule(CloudSim.getEntityId(dest), 0, tag, data);
+	public SimEvent scheduleNow(String dest, int tag, Object data) {
+		return schedule(context.getEntityId(dest), 0, tag, data);
 	}
 
 	/**
@@ -171,9 +194,10 @@ public abstract class SimEntity implements Cloneable {
 	 * 
 	 * @param dest The name of the port to send the event through
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleNow(String dest, int tag) {
-		schedule(dest, 0, tag, null);
+	public SimEvent scheduleNow(String dest, int tag) {
+		return schedule(dest, 0, tag, null);
 	}
 
 	/**
@@ -184,12 +208,13 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirst(int dest, double delay, int tag, Object data) {
-		if (!CloudSim.running()) {
-			return;
+	public SimEvent scheduleFirst(int dest, double delay, int tag, Object data) {
+		if (!context.running()) {
+			return null;
 		}
-		CloudSim.sendFirst(id, dest, delay, tag, data);
+		return context.sendFirst(id, dest, delay, tag, data);
 	}
 
 	/**
@@ -199,9 +224,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The unique id number of the destination entity
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirst(int dest, double delay, int tag) {
-		scheduleFirst(dest, delay, tag, null);
+	public SimEvent scheduleFirst(int dest, double delay, int tag) {
+		return scheduleFirst(dest, delay, tag, null);
 	}
 
 	/**
@@ -212,9 +238,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirst(String dest, double delay, int tag, Object data) {
-		scheduleFirst(CloudSim.getEntityId(dest), delay, tag, data);
+	public SimEvent scheduleFirst(String dest, double delay, int tag, Object data) {
+		return scheduleFirst(context.getEntityId(dest), delay, tag, data);
 	}
 
 	/**
@@ -224,9 +251,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The name of the port to send the event through
 	 * @param delay How long from the current simulation time the event should be sent
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirst(String dest, double delay, int tag) {
-		scheduleFirst(dest, delay, tag, null);
+	public SimEvent scheduleFirst(String dest, double delay, int tag) {
+		return scheduleFirst(dest, delay, tag, null);
 	}
 
 	/**
@@ -236,9 +264,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The unique id number of the destination entity
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirstNow(int dest, int tag, Object data) {
-		scheduleFirst(dest, 0, tag, data);
+	public SimEvent scheduleFirstNow(int dest, int tag, Object data) {
+		return scheduleFirst(dest, 0, tag, data);
 	}
 
 	/**
@@ -247,9 +276,10 @@ public abstract class SimEntity implements Cloneable {
 	 * 
 	 * @param dest The unique id number of the destination entity
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirstNow(int dest, int tag) {
-		scheduleFirst(dest, 0, tag, null);
+	public SimEvent scheduleFirstNow(int dest, int tag) {
+		return scheduleFirst(dest, 0, tag, null);
 	}
 
 	/**
@@ -259,9 +289,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param dest The name of the port to send the event through
 	 * @param tag An user-defined number representing the type of event.
 	 * @param data The data to be sent with the event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirstNow(String dest, int tag, Object data) {
-		scheduleFirst(CloudSim.getEntityId(dest), 0, tag, data);
+	public SimEvent scheduleFirstNow(String dest, int tag, Object data) {
+		return scheduleFirst(context.getEntityId(dest), 0, tag, data);
 	}
 
 	/**
@@ -270,9 +301,10 @@ public abstract class SimEntity implements Cloneable {
 	 * 
 	 * @param dest The name of the port to send the event through
 	 * @param tag An user-defined number representing the type of event.
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 */
-	public void scheduleFirstNow(String dest, int tag) {
-		scheduleFirst(dest, 0, tag, null);
+	public SimEvent scheduleFirstNow(String dest, int tag) {
+		return scheduleFirst(dest, 0, tag, null);
 	}
 
 	/**
@@ -284,10 +316,10 @@ public abstract class SimEntity implements Cloneable {
 		if (delay < 0) {
 			throw new IllegalArgumentException("Negative delay supplied.");
 		}
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return;
 		}
-		CloudSim.pause(id, delay);
+		context.pause(id, delay);
 	}
 
 	/**
@@ -297,7 +329,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @return The count of matching events
 	 */
 	public int numEventsWaiting(Predicate p) {
-		return CloudSim.waiting(id, p);
+		return context.waiting(id, p);
 	}
 
 	/**
@@ -306,7 +338,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @return The count of events
 	 */
 	public int numEventsWaiting() {
-		return CloudSim.waiting(id, CloudSim.SIM_ANY);
+		return context.waiting(id, CloudSim.SIM_ANY);
 	}
 
 	/**
@@ -316,11 +348,11 @@ public abstract class SimEntity implements Cloneable {
 	 * @return the simulation event
 	 */
 	public SimEvent selectEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return null;
 		}
 
-		return CloudSim.select(id, p);
+		return context.select(id, p);
 	}
 
 	/**
@@ -330,11 +362,25 @@ public abstract class SimEntity implements Cloneable {
 	 * @return The number of events cancelled (0 or 1)
 	 */
 	public SimEvent cancelEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return null;
 		}
 
-		return CloudSim.cancel(id, p);
+		return context.cancel(id, p);
+	}
+
+	/**
+	 * Cancel an event sent by this entity, if it has not been delivered yet.
+	 * 
+	 * @param ev the event returned by one of the <tt>schedule</tt> or <tt>send</tt> methods
+	 * @return true, if the event was cancelled
+	 */
+	public boolean cancelEvent(SimEvent ev) {
+		if (!context.running() || ev == null || ev.getSource() != id) {
+			return false;
+		}
+
+		return context.cancel(ev);
 	}
 
 	/**
@@ -345,7 +391,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @return the simulation event
 	 */
 	public SimEvent getNextEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return null;
 		}
 		if (numEventsWaiting(p) > 0) {
@@ -361,11 +407,11 @@ public abstract class SimEntity implements Cloneable {
 	 * @param p The predicate to match
 	 */
 	public void waitForEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return;
 		}
 
-		CloudSim.wait(id, p);
+		context.wait(id, p);
 		state = WAITING;
 	}
 
@@ -401,9 +447,17 @@ public abstract class SimEntity implements Cloneable {
 
 	public void run() {
 		SimEvent ev = evbuf != null ? evbuf : getNextEvent();
+		SimulationMetrics metrics = ev != null ? context.activeMetrics() : null;
 
 		while (ev != null) {
-			processEvent(ev);
+			if (metrics == null) {
+				processEvent(ev);
+			} else {
+				long start = System.nanoTime();
+				processEvent(ev);
+				metrics.addProcessingTime(id, System.nanoTime() - start);
+			}
+			context.recycle(ev);
 			if (state != RUNNABLE) {
 				break;
 			}
@@ -428,6 +482,7 @@ public abstract class SimEntity implements Cloneable {
 		SimEntity copy = (SimEntity) super.clone();
 		copy.setName(name);
 		copy.setEventBuffer(null);
+		copy.setWaitPredicate(null);
 		return copy;
 	}
 
@@ -501,6 +556,24 @@ public abstract class SimEntity implements Cloneable {
 		evbuf = e;
 	}
 
+	/**
+	 * Gets the predicate the entity is waiting for.
+	 * 
+	 * @return the predicate, or <tt>null</tt> if the entity accepts any event
+	 */
+	Predicate getWaitPredicate() {
+		return waitPredicate;
+	}
+
+	/**
+	 * Sets the predicate the entity is waiting for.
+	 * 
+	 * @param waitPredicate the predicate, or <tt>null</tt> to accept any event
+	 */
+	void setWaitPredicate(Predicate waitPredicate) {
+		this.waitPredicate = waitPredicate;
+	}
+
 	// --------------- EVENT / MESSAGE SEND WITH NETWORK DELAY METHODS ------------------
 
 	/**
@@ -512,14 +585,15 @@ public abstract class SimEntity implements Cloneable {
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
 	 * @param data A reference to data to be sent with the event
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityID > 0
 	 * @pre delay >= 0.0
 	 * @pre data != null
 	 * @post $none
 	 */
-	protected void send(int entityId, double delay, int cloudSimTag, Object data) {
+	protected SimEvent send(int entityId, double delay, int cloudSimTag, Object data) {
 		if (entityId < 0) {
-			return;
+			return null;
 		}
 
 		// if delay is -ve, then it doesn't make sense. So resets to 0.0
@@ -533,7 +607,7 @@ public abstract class SimEntity implements Cloneable {
 
 		if (entityId < 0) {
 			Log.printLine(getName() + ".send(): Error - " + "invalid entity id " + entityId);
-			return;
+			return null;
 		}
 
 		int srcId = getId();
@@ -541,7 +615,7 @@ public abstract class SimEntity implements Cloneable {
 			delay += getNetworkDelay(srcId, entityId);
 		}
 
-		schedule(entityId, delay, cloudSimTag, data);
+		return schedule(entityId, delay, cloudSimTag, data);
 	}
 
 	/**
@@ -552,12 +626,13 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay how long from the current simulation time the event should be sent. If delay is
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityID > 0
 	 * @pre delay >= 0.0
 	 * @post $none
 	 */
-	protected void send(int entityId, double delay, int cloudSimTag) {
-		send(entityId, delay, cloudSimTag, null);
+	protected SimEvent send(int entityId, double delay, int cloudSimTag) {
+		return send(entityId, delay, cloudSimTag, null);
 	}
 
 	/**
@@ -569,13 +644,14 @@ public abstract class SimEntity implements Cloneable {
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
 	 * @param data A reference to data to be sent with the event
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityName != null
 	 * @pre delay >= 0.0
 	 * @pre data != null
 	 * @post $none
 	 */
-	protected void send(String entityName, double delay, int cloudSimTag, Object data) {
-		send(CloudSim.getEntityId(entityName), delay, cloudSimTag, data);
+	protected SimEvent send(String entityName, double delay, int cloudSimTag, Object data) {
+		return send(context.getEntityId(entityName), delay, cloudSimTag, data);
 	}
 
 	/**
@@ -586,12 +662,13 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay how long from the current simulation time the event should be sent. If delay is
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityName != null
 	 * @pre delay >= 0.0
 	 * @post $none
 	 */
-	protected void send(String entityName, double delay, int cloudSimTag) {
-		send(entityName, delay, cloudSimTag, null);
+	protected SimEvent send(String entityName, double delay, int cloudSimTag) {
+		return send(entityName, delay, cloudSimTag, null);
 	}
 
 	/**
@@ -603,13 +680,14 @@ public abstract class SimEntity implements Cloneable {
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
 	 * @param data A reference to data to be sent with the event
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityID > 0
 	 * @pre delay >= 0.0
 	 * @pre data != null
 	 * @post $none
 	 */
-	protected void sendNow(int entityId, int cloudSimTag, Object data) {
-		send(entityId, 0, cloudSimTag, data);
+	protected SimEvent sendNow(int entityId, int cloudSimTag, Object data) {
+		return send(entityId, 0, cloudSimTag, data);
 	}
 
 	/**
@@ -620,12 +698,13 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay how long from the current simulation time the event should be sent. If delay is
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityID > 0
 	 * @pre delay >= 0.0
 	 * @post $none
 	 */
-	protected void sendNow(int entityId, int cloudSimTag) {
-		send(entityId, 0, cloudSimTag, null);
+	protected SimEvent sendNow(int entityId, int cloudSimTag) {
+		return send(entityId, 0, cloudSimTag, null);
 	}
 
 	/**
@@ -637,13 +716,14 @@ public abstract class SimEntity implements Cloneable {
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
 	 * @param data A reference to data to be sent with the event
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityName != null
 	 * @pre delay >= 0.0
 	 * @pre data != null
 	 * @post $none
 	 */
-	protected void sendNow(String entityName, int cloudSimTag, Object data) {
-		send(CloudSim.getEntityId(entityName), 0, cloudSimTag, data);
+	protected SimEvent sendNow(String entityName, int cloudSimTag, Object data) {
+		return send(context.getEntityId(entityName), 0, cloudSimTag, data);
 	}
 
 	/**
@@ -654,12 +734,13 @@ public abstract class SimEntity implements Cloneable {
 	 * @param delay how long from the current simulation time the event should be sent. If delay is
 	 *            a negative number, then it will be changed to 0
 	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @return the scheduled event, or <tt>null</tt> if none was scheduled
 	 * @pre entityName != null
 	 * @pre delay >= 0.0
 	 * @post $none
 	 */
-	protected void sendNow(String entityName, int cloudSimTag) {
-		send(entityName, 0, cloudSimTag, null);
+	protected SimEvent sendNow(String entityName, int cloudSimTag) {
+		return send(entityName, 0, cloudSimTag, null);
 	}
 
 	/**
@@ -673,8 +754,9 @@ public abstract class SimEntity implements Cloneable {
 	 * @pre dst >= 0
 	 */
 	private double getNetworkDelay(int src, int dst) {
-		if (NetworkTopology.isNetworkEnabled()) {
-			return NetworkTopology.getDelay(src, dst);
+		NetworkTopology networkTopology = context.getNetworkTopology();
+		if (networkTopology.isEnabled()) {
+			return networkTopology.delay(src, dst);
 		}
 		return 0.0;
 	}
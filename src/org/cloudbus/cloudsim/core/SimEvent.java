@@ -10,6 +10,11 @@ package org.cloudbus.cloudsim.core;
 
 /**
  * This class represents a simulation event which is passed between the entities in the simulation.
+ * <p>
+ * An event cannot be changed once it is in the future event queue, and the same instance is handed
+ * to the destination entity. The events with a tag pooled by the simulation context (see
+ * {@link SimulationContext#setPooledTags(int...)}) are reused once they have been processed, so
+ * references to them must not be kept after they are delivered.
  * 
  * @author Costas Simatos
  * @see Simulation
@@ -18,10 +23,10 @@ package org.cloudbus.cloudsim.core;
 public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	/** internal event type **/
-	private final int etype;
+	private int etype;
 
 	/** time at which event should occur **/
-	private final double time;
+	private double time;
 
 	/** time that the event was removed from the queue for service **/
 	private double endWaitingTime;
@@ -33,13 +38,24 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	private int entDst;
 
 	/** the user defined type of the event **/
-	private final int tag;
+	private int tag;
 
 	/** any data the event is carrying **/
-	private final Object data;
+	private Object data;
 
 	private long serial = -1;
 
+	/** whether the event is waiting in the future queue **/
+	private boolean queued;
+
+	/** whether the event was removed from the future queue before being delivered **/
+	private boolean cancelled;
+
+	/** the next and previous events in the future queue with the same source and tag **/
+	private SimEvent previousWithSourceTag;
+
+	private SimEvent nextWithSourceTag;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -82,10 +98,60 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		data = null;
 	}
 
+	/**
+	 * Reinitialises a processed event so that it can be sent again.
+	 * 
+	 * @param evtype the internal event type
+	 * @param time the time of the event
+	 * @param src the id of the source entity
+	 * @param dest the id of the destination entity
+	 * @param tag the tag
+	 * @param edata the data
+	 */
+	void reset(int evtype, double time, int src, int dest, int tag, Object edata) {
+		etype = evtype;
+		this.time = time;
+		endWaitingTime = 0;
+		entSrc = src;
+		entDst = dest;
+		this.tag = tag;
+		data = edata;
+		serial = -1;
+		cancelled = false;
+	}
+
 	protected void setSerial(long serial) {
 		this.serial = serial;
 	}
 
+	boolean isQueued() {
+		return queued;
+	}
+
+	void setQueued(boolean queued) {
+		this.queued = queued;
+	}
+
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	SimEvent getPreviousWithSourceTag() {
+		return previousWithSourceTag;
+	}
+
+	void setPreviousWithSourceTag(SimEvent previousWithSourceTag) {
+		this.previousWithSourceTag = previousWithSourceTag;
+	}
+
+	SimEvent getNextWithSourceTag() {
+		return nextWithSourceTag;
+	}
+
+	void setNextWithSourceTag(SimEvent nextWithSourceTag) {
+		this.nextWithSourceTag = nextWithSourceTag;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
@@ -159,6 +225,16 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		return time;
 	}
 
+	/**
+	 * Checks whether this event was cancelled before being delivered.
+	 * 
+	 * @return true, if the event was cancelled
+	 * @see SimEntity#cancelEvent(SimEvent)
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
 	/**
 	 * Get the simulation time that this event was removed from the queue for service.
 	 * 
@@ -220,6 +296,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @param s The unique id number of the entity
 	 */
 	public void setSource(int s) {
+		checkNotQueued();
 		entSrc = s;
 	}
 
@@ -229,6 +306,18 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @param d The unique id number of the entity
 	 */
 	public void setDestination(int d) {
+		checkNotQueued();
 		entDst = d;
 	}
+
+	/**
+	 * Checks that the event is not in the future event queue.
+	 * 
+	 * @throws IllegalStateException if the event is in the future event queue
+	 */
+	private void checkNotQueued() {
+		if (queued) {
+			throw new IllegalStateException("An event cannot be changed while it is in the future queue.");
+		}
+	}
 }
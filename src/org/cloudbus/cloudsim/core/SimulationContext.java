@@ -0,0 +1,1561 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.NetworkTopology;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * SimulationContext holds the state of one simulation: the entity registry, the future and
+ * deferred event queues, the clock and the network topology. Several contexts can exist in the
+ * same JVM, and each of them can run one simulation at a time.
+ * <p>
+ * The static methods of {@link CloudSim} are a facade over the context of the calling thread,
+ * which is a shared default context unless another one was set with
+ * {@link CloudSim#setContext(SimulationContext)}. Entities are registered in the context that is
+ * current when they are created, and keep a reference to it. While a context runs, it is the
+ * current context of the thread running it. A typical use of a separate context is:
+ *
+ * <pre>
+ * SimulationContext context = new SimulationContext();
+ * CloudSim.setContext(context);
+ * CloudSim.init(numUser, calendar, false);
+ * // create the datacenters, brokers, VMs and cloudlets
+ * CloudSim.startSimulation();
+ * CloudSim.setContext(null);
+ * </pre>
+ * <p>
+ * A context can also run its simulation in parallel, with the conservative synchronisation
+ * described in {@link #startSimulation(boolean)}.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim
+ * @see SimEntity#getContext()
+ */
+public class SimulationContext {
+
+	/** The Constant NOT_FOUND. */
+	private static final int NOT_FOUND = -1;
+
+	/** The tags of the internal events that are pooled by default. */
+	private static final int[] DEFAULT_POOLED_TAGS = { CloudSimTags.VM_DATACENTER_EVENT,
+			CloudSimTags.Network_Event_UP, CloudSimTags.Network_Event_send,
+			CloudSimTags.Network_Event_DOWN, CloudSimTags.Network_Event_Host };
+
+	/** The maximum number of processed events kept for reuse. */
+	private static final int MAX_POOLED_EVENTS = 1024;
+
+	/** The id of CIS entity. */
+	private int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	@SuppressWarnings("unused")
+	private int shutdownId = -1;
+
+	/** The CIS object. */
+	private CloudInformationService cis = null;
+
+	/** The trace flag. */
+	@SuppressWarnings("unused")
+	private boolean traceFlag = false;
+
+	/** The calendar. */
+	private Calendar calendar = null;
+
+	/** The termination time. */
+	private double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	private double minTimeBetweenEvents = 0.1;
+
+	/** The entities. */
+	private List<SimEntity> entities;
+
+	/** The future event queue. */
+	private FutureQueue future;
+
+	/** The deferred event queue. */
+	private DeferredQueue deferred;
+
+	/** The simulation clock. */
+	private double clock;
+
+	/** Flag for checking if the simulation is running. */
+	private boolean running;
+
+	/** The entities by name. */
+	private Map<String, SimEntity> entitiesByName;
+
+	/** The paused. */
+	private boolean paused = false;
+
+	/** The pause at. */
+	private long pauseAt = -1;
+
+	/** The abrupt terminate. */
+	private volatile boolean abruptTerminate = false;
+
+	/** The partition of the entities, by entity id, for a parallel run. */
+	private Map<Integer, Integer> partitions;
+
+	/** The logical processes of the running parallel simulation, or <tt>null</tt>. */
+	private LogicalProcess[] processes = null;
+
+	/** The logical process of each entity of the running parallel simulation, by entity id. */
+	private LogicalProcess[] processOfEntity = null;
+
+	/** The lookahead of the running parallel simulation. */
+	private double lookahead = 0;
+
+	/** The tags of the events that are reused once processed. */
+	private int[] pooledTags = DEFAULT_POOLED_TAGS;
+
+	/** The number of events processed since the initialisation. */
+	private long processedEvents = 0;
+
+	/** The metrics of the kernel, <tt>null</tt> when they are disabled. */
+	private SimulationMetrics metrics = null;
+
+	/** The processed events kept for reuse. */
+	private final Deque<SimEvent> eventPool = new ArrayDeque<SimEvent>();
+
+	/** The logical process run by the calling thread. */
+	private final ThreadLocal<LogicalProcess> currentProcess = new ThreadLocal<LogicalProcess>();
+
+	/** The network topology of the simulation. */
+	private final NetworkTopology networkTopology = new NetworkTopology();
+
+	/** The output of the log of this context, or <tt>null</tt> to use the one of {@link Log}. */
+	private OutputStream logOutput = null;
+
+	/** The disable log flag of this context, or <tt>null</tt> to use the one of {@link Log}. */
+	private Boolean logDisabled = null;
+
+	/** The handle of the next VM created in this context. */
+	private final AtomicInteger nextVmHandle = new AtomicInteger();
+
+	/**
+	 * Initialises all the common attributes.
+	 *
+	 * @param _calendar the _calendar
+	 * @param _traceFlag the _trace flag
+	 * @param numUser number of users
+	 * @param futureQueue the future event queue to be used by the simulation
+	 * @throws Exception This happens when creating this entity before initialising CloudSim package
+	 *             or this entity name is <tt>null</tt> or empty
+	 * @pre $none
+	 * @post $none
+	 */
+	private void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser,
+			FutureQueue futureQueue) throws Exception {
+		initialize(futureQueue);
+		// NOTE: the order for the below 3 lines are important
+		traceFlag = _traceFlag;
+
+		// Set the current Wall clock time as the starting time of
+		// simulation
+		if (_calendar == null) {
+			calendar = Calendar.getInstance();
+		} else {
+			calendar = _calendar;
+		}
+
+		// creates a CloudSimShutdown object, registered in this context
+		SimulationContext previous = CloudSim.exchangeContext(this);
+		try {
+			CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
+			shutdownId = shutdown.getId();
+		} finally {
+			CloudSim.exchangeContext(previous);
+		}
+	}
+
+	/**
+	 * Initialises the simulation parameters of this context. This method should be called before
+	 * creating any entities.
+	 *
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureQueue an empty future event queue
+	 * @see CloudSim#init(int, Calendar, boolean, FutureQueue)
+	 * @pre numUser >= 0
+	 * @pre futureQueue != null
+	 * @post $none
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag, FutureQueue futureQueue) {
+		if (futureQueue == null || futureQueue.size() > 0) {
+			throw new IllegalArgumentException("The future event queue must be an empty queue.");
+		}
+
+		try {
+			initCommonVariable(cal, traceFlag, numUser, futureQueue);
+
+			// create a GIS object, registered in this context
+			SimulationContext previous = CloudSim.exchangeContext(this);
+			try {
+				cis = new CloudInformationService("CloudInformationService");
+			} finally {
+				CloudSim.exchangeContext(previous);
+			}
+
+			// set all the above entity IDs
+			cisId = cis.getId();
+		} catch (IllegalArgumentException s) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(s.getMessage());
+		} catch (Exception e) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(e.getMessage());
+		}
+	}
+
+	/**
+	 * Initialises the simulation parameters of this context. This method should be called before
+	 * creating any entities.
+	 *
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param periodBetweenEvents - the minimal period between events. Events within shorter periods
+	 * after the last event are discarded.
+	 * @param futureQueue an empty future event queue
+	 * @see CloudSim#init(int, Calendar, boolean, double, FutureQueue)
+	 * @pre numUser >= 0
+	 * @pre futureQueue != null
+	 * @post $none
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag, double periodBetweenEvents,
+			FutureQueue futureQueue) {
+		if (periodBetweenEvents <= 0) {
+			throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
+		}
+
+		init(numUser, cal, traceFlag, futureQueue);
+		minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * Starts the execution of the simulation of this context. It waits for complete execution of
+	 * all entities.
+	 *
+	 * @return the last clock value
+	 * @throws NullPointerException This happens when the context has not been initialised
+	 * @see CloudSim#startSimulation()
+	 * @pre $none
+	 * @post $none
+	 */
+	public double startSimulation() throws NullPointerException {
+		return startSimulation(false);
+	}
+
+	/**
+	 * Starts the execution of the simulation of this context, serially or in parallel. It waits
+	 * for complete execution of all entities.
+	 * <p>
+	 * A parallel run uses conservative synchronisation. The entities are grouped into logical
+	 * processes by their partition (see {@link #setPartition(int, int)}), and each logical process
+	 * runs on its own thread with its own clock and event queues. The logical processes run in
+	 * windows separated by barriers: a window starts at the time of the earliest pending event and
+	 * lasts for the lookahead, which is the minimum delay of the network topology between two
+	 * entities of different partitions. An event sent to another partition always arrives after the
+	 * end of the current window, so it is delivered at the next barrier.
+	 * <p>
+	 * Sending an event to another partition with a delay smaller than the lookahead throws an
+	 * {@link IllegalStateException}, so entities must use the network delay of
+	 * {@link SimEntity#send(int, double, int, Object)} to talk across partitions. Entities cannot
+	 * be created while a parallel simulation is running. Events cancelled with
+	 * {@link #cancel(SimEvent)} must be sent to the same partition. The simulation runs serially
+	 * if it has a single partition or if the lookahead is not positive.
+	 * <p>
+	 * Entities of different partitions must not share mutable objects: a broker, which reads the
+	 * state of its datacenters directly, must be in their partition (see
+	 * {@link #isSameProcess(int, int)}), and the cloudlets a broker asks its partners to estimate
+	 * are sent as copies.
+	 * <p>
+	 * A parallel run is deterministic, but events with the same time may be delivered in a
+	 * different order than in a serial run.
+	 *
+	 * @param parallel <tt>true</tt> to run the simulation in parallel, <tt>false</tt> to run it
+	 *            serially
+	 * @return the last clock value
+	 * @throws NullPointerException This happens when the context has not been initialised
+	 * @see CloudSim#startSimulation(boolean)
+	 * @pre $none
+	 * @post $none
+	 */
+	public double startSimulation(boolean parallel) throws NullPointerException {
+		Log.printLine("Starting CloudSim version " + CloudSim.getVersion());
+		try {
+			double clock = parallel ? runParallel() : run();
+
+			// reset all the per-run variables
+			cisId = -1;
+			shutdownId = -1;
+			cis = null;
+			calendar = null;
+			traceFlag = false;
+
+			return clock;
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			throw new NullPointerException("CloudSim.startCloudSimulation() :"
+					+ " Error - you haven't initialized CloudSim.");
+		}
+	}
+
+	/**
+	 * Stops the simulation of this context.
+	 *
+	 * @throws NullPointerException if the simulation cannot be stopped
+	 * @see CloudSim#stopSimulation()
+	 */
+	public void stopSimulation() throws NullPointerException {
+		try {
+			runStop();
+		} catch (IllegalArgumentException e) {
+			throw new NullPointerException("CloudSim.stopCloudSimulation() : "
+					+ "Error - can't stop Cloud Simulation.");
+		}
+	}
+
+	/**
+	 * This method is called if one wants to terminate the simulation.
+	 *
+	 * @return true, if successful; false otherwise.
+	 */
+	public boolean terminateSimulation() {
+		running = false;
+		printMessage("Simulation: Reached termination time.");
+		return true;
+	}
+
+	/**
+	 * This method is called if one wants to terminate the simulation at a given time.
+	 *
+	 * @param time the time at which the simulation has to be terminated
+	 * @return true, if successful otherwise.
+	 */
+	public boolean terminateSimulation(double time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			terminateAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded.
+	 * @return the minimum time between events.
+	 */
+	public double getMinTimeBetweenEvents() {
+		return minTimeBetweenEvents;
+	}
+
+	/**
+	 * Gets a new copy of initial simulation Calendar.
+	 *
+	 * @return a new copy of Calendar object or if the context hasn't been initialized
+	 */
+	public Calendar getSimulationCalendar() {
+		// make a new copy
+		Calendar clone = calendar;
+		if (calendar != null) {
+			clone = (Calendar) calendar.clone();
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Gets the entity ID of <tt>CloudInformationService</tt>.
+	 *
+	 * @return the Entity ID or if it is not found
+	 * @pre $none
+	 * @post $result >= -1
+	 */
+	public int getCloudInfoServiceEntityId() {
+		return cisId;
+	}
+
+	/**
+	 * Gets the list of all Cloud resources registered in the <tt>CloudInformationService</tt>.
+	 *
+	 * @return A List containing CloudResource ID (as an Integer object) or if a CIS entity hasn't
+	 *         been created before
+	 */
+	public List<Integer> getCloudResourceList() {
+		if (cis == null) {
+			return null;
+		}
+
+		return cis.getList();
+	}
+
+	/**
+	 * Gets the network topology of this context.
+	 *
+	 * @return the network topology
+	 */
+	public NetworkTopology getNetworkTopology() {
+		return networkTopology;
+	}
+
+	/**
+	 * Gets the output of the log of this context.
+	 *
+	 * @return the output, or <tt>null</tt> if the one of {@link Log} is used
+	 */
+	public OutputStream getLogOutput() {
+		return logOutput;
+	}
+
+	/**
+	 * Sets the output of the log of this context.
+	 *
+	 * @param logOutput the output, or <tt>null</tt> to use the one of {@link Log}
+	 */
+	public void setLogOutput(OutputStream logOutput) {
+		this.logOutput = logOutput;
+	}
+
+	/**
+	 * Gets the disable log flag of this context.
+	 *
+	 * @return the flag, or <tt>null</tt> if the one of {@link Log} is used
+	 */
+	public Boolean getLogDisabled() {
+		return logDisabled;
+	}
+
+	/**
+	 * Sets the disable log flag of this context.
+	 *
+	 * @param logDisabled the flag, or <tt>null</tt> to use the one of {@link Log}
+	 */
+	public void setLogDisabled(Boolean logDisabled) {
+		this.logDisabled = logDisabled;
+	}
+
+	// ======== SIMULATION METHODS ===============//
+
+	/**
+	 * Initialise the simulation, using a given future event queue.
+	 *
+	 * @param futureQueue the future event queue
+	 */
+	protected void initialize(FutureQueue futureQueue) {
+		Log.printLine("Initialising...");
+		entities = new ArrayList<SimEntity>();
+		entitiesByName = new LinkedHashMap<String, SimEntity>();
+		future = futureQueue;
+		deferred = new DeferredQueue();
+		partitions = new HashMap<Integer, Integer>();
+		clock = 0;
+		processedEvents = 0;
+		if (metrics != null) {
+			metrics.reset();
+		}
+		running = false;
+	}
+
+	/**
+	 * Get the current simulation time.
+	 *
+	 * @return the simulation time
+	 */
+	public double clock() {
+		if (processes != null) {
+			LogicalProcess process = currentProcess.get();
+			if (process != null) {
+				return process.getClock();
+			}
+		}
+		return clock;
+	}
+
+	/**
+	 * Gets the number of events processed since the initialisation of the context, by all the
+	 * logical processes in a parallel run.
+	 *
+	 * @return the number of processed events
+	 */
+	public long getNumProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * Enables or disables the metrics of the kernel. The metrics are disabled by default; enabling
+	 * them again keeps the current counters.
+	 *
+	 * @param enabled whether the metrics are enabled
+	 * @see SimulationMetrics
+	 */
+	public void setMetricsEnabled(boolean enabled) {
+		if (!enabled) {
+			metrics = null;
+		} else if (metrics == null) {
+			metrics = new SimulationMetrics();
+		}
+	}
+
+	/**
+	 * Gets the metrics of the kernel.
+	 *
+	 * @return the metrics, or <tt>null</tt> if they are disabled
+	 */
+	public SimulationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Gets the metrics the calling thread counts in: those of its logical process in a parallel
+	 * run, otherwise those of the context.
+	 *
+	 * @return the metrics, or <tt>null</tt> if they are disabled
+	 */
+	SimulationMetrics activeMetrics() {
+		if (metrics != null && processes != null) {
+			LogicalProcess process = currentProcess.get();
+			if (process != null) {
+				return process.getMetrics();
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Adds the metrics of the logical processes to the metrics of the context. It must only be
+	 * called when no logical process runs.
+	 */
+	private void drainProcessMetrics() {
+		for (LogicalProcess process : processes) {
+			metrics.drain(process.getMetrics());
+		}
+	}
+
+	/**
+	 * Sets the partition of an entity for a parallel run. The entities without partition are in
+	 * partition 0.
+	 *
+	 * @param entityId the id of the entity
+	 * @param partition the partition
+	 * @see #startSimulation(boolean)
+	 * @pre entityId >= 0
+	 * @pre partition >= 0
+	 * @post $none
+	 */
+	public void setPartition(int entityId, int partition) {
+		if (partition < 0) {
+			throw new IllegalArgumentException("The partition can't be negative.");
+		}
+		partitions.put(entityId, partition);
+	}
+
+	/**
+	 * Gets the partition of an entity for a parallel run.
+	 *
+	 * @param entityId the id of the entity
+	 * @return the partition
+	 */
+	public int getPartition(int entityId) {
+		Integer partition = partitions.get(entityId);
+		if (partition == null) {
+			return 0;
+		}
+		return partition;
+	}
+
+	/**
+	 * Checks whether two entities run in the same logical process, i.e. whether the simulation
+	 * does not run in parallel or the entities are in the same partition. Only such entities can
+	 * read or change each other's state directly.
+	 *
+	 * @param entityId the id of an entity
+	 * @param otherId the id of the other entity
+	 * @return <tt>true</tt> if the entities run in the same logical process
+	 */
+	public boolean isSameProcess(int entityId, int otherId) {
+		return processes == null || getPartition(entityId) == getPartition(otherId);
+	}
+
+	/**
+	 * Allocates the handle of a new VM: a number unique among the VMs created in this context.
+	 * The handles are not reset by {@link #initialize}, so the VMs of successive simulations run
+	 * in the same context get increasing handles.
+	 *
+	 * @return the VM handle
+	 * @see org.cloudbus.cloudsim.Vm#getHandle()
+	 */
+	public int newVmHandle() {
+		return nextVmHandle.getAndIncrement();
+	}
+
+	/**
+	 * Get the current number of entities in the simulation.
+	 *
+	 * @return The number of entities
+	 */
+	public int getNumEntities() {
+		return entities.size();
+	}
+
+	/**
+	 * Get the entity with a given id.
+	 *
+	 * @param id the entity's unique id number
+	 * @return The entity, or if it could not be found
+	 */
+	public SimEntity getEntity(int id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * Get the entity with a given name.
+	 *
+	 * @param name The entity's name
+	 * @return The entity
+	 */
+	public SimEntity getEntity(String name) {
+		return entitiesByName.get(name);
+	}
+
+	/**
+	 * Get the id of an entity with a given name.
+	 *
+	 * @param name The entity's name
+	 * @return The entity's unique id number
+	 */
+	public int getEntityId(String name) {
+		SimEntity obj = entitiesByName.get(name);
+		if (obj == null) {
+			return NOT_FOUND;
+		} else {
+			return obj.getId();
+		}
+	}
+
+	/**
+	 * Gets name of the entity given its entity ID.
+	 *
+	 * @param entityID the entity ID
+	 * @return the Entity name or if this object does not have one
+	 * @pre entityID > 0
+	 * @post $none
+	 */
+	public String getEntityName(int entityID) {
+		try {
+			return getEntity(entityID).getName();
+		} catch (IllegalArgumentException e) {
+			return null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets name of the entity given its entity ID.
+	 *
+	 * @param entityID the entity ID
+	 * @return the Entity name or if this object does not have one
+	 * @pre entityID > 0
+	 * @post $none
+	 */
+	public String getEntityName(Integer entityID) {
+		if (entityID != null) {
+			return getEntityName(entityID.intValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a list of entities created for the simulation.
+	 *
+	 * @return the entity iterator
+	 */
+	public List<SimEntity> getEntityList() {
+		// create a new list to prevent the user from changing
+		// the list of entities used by Simulation
+		List<SimEntity> list = new LinkedList<SimEntity>();
+		list.addAll(entities);
+		return list;
+	}
+
+	// Public update methods
+
+	/**
+	 * Add a new entity to the simulation.
+	 *
+	 * @param e The new entity
+	 */
+	public void addEntity(SimEntity e) {
+		SimEvent evt;
+		if (processes != null) {
+			throw new IllegalStateException(
+					"Entities cannot be created while a parallel simulation is running.");
+		}
+		if (running) {
+			// Post an event to make this entity
+			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
+			future.addEvent(evt);
+		}
+		if (e.getId() == -1) { // Only add once!
+			int id = entities.size();
+			e.setId(id);
+			entities.add(e);
+			entitiesByName.put(e.getName(), e);
+		}
+	}
+
+	/**
+	 * Internal method used to add a new entity to the simulation when the simulation is running. It
+	 * should <b>not</b> be called from user simulations.
+	 *
+	 * @param e The new entity
+	 */
+	protected void addEntityDynamically(SimEntity e) {
+		if (e == null) {
+			throw new IllegalArgumentException("Adding null entity.");
+		} else {
+			printMessage("Adding: " + e.getName());
+		}
+		e.startEntity();
+	}
+
+	/**
+	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
+	 * called in simulations.
+	 *
+	 * @return true, if successful otherwise
+	 */
+	public boolean runClockTick() {
+		SimEntity ent;
+		boolean queue_empty;
+
+		int entities_size = entities.size();
+
+		for (int i = 0; i < entities_size; i++) {
+			ent = entities.get(i);
+			if (ent.getState() == SimEntity.RUNNABLE) {
+				ent.run();
+			}
+		}
+
+		// If there are more future events then deal with them
+		if (future.size() > 0) {
+			queue_empty = false;
+			SimEvent first = future.pollFirst();
+			processEvent(first);
+
+			// Process the next events as long as they are at the same time
+			double time = first.eventTime();
+			while (future.size() > 0 && future.peekTime() == time) {
+				processEvent(future.pollFirst());
+			}
+		} else {
+			queue_empty = true;
+			running = false;
+			printMessage("Simulation: No more future events");
+		}
+
+		return queue_empty;
+	}
+
+	/**
+	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
+	 */
+	public void runStop() {
+		printMessage("Simulation completed.");
+	}
+
+	/**
+	 * Used to hold an entity for some time.
+	 *
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void hold(int src, long delay) {
+		pause(src, delay);
+	}
+
+	/**
+	 * Used to pause an entity for some time.
+	 *
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void pause(int src, double delay) {
+		if (processes != null) {
+			LogicalProcess process = processOfEntity[src];
+			process.getFuture().addEvent(
+					new SimEvent(SimEvent.HOLD_DONE, process.getClock() + delay, src));
+		} else {
+			SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
+			future.addEvent(e);
+		}
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to send an event from one entity to another.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 * @return the event
+	 */
+	public SimEvent send(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+		if (processes != null) {
+			return sendParallel(src, dest, delay, tag, data, false);
+		}
+
+		SimEvent e = newEvent(eventPool, clock + delay, src, dest, tag, data);
+		future.addEvent(e);
+		return e;
+	}
+
+	/**
+	 * Used to send an event from one entity to another, with priority in the queue.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 * @return the event
+	 */
+	public SimEvent sendFirst(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+		if (processes != null) {
+			return sendParallel(src, dest, delay, tag, data, true);
+		}
+
+		SimEvent e = newEvent(eventPool, clock + delay, src, dest, tag, data);
+		future.addEventFirst(e);
+		return e;
+	}
+
+	/**
+	 * Sends an event during a parallel run. An event sent to another logical process is buffered
+	 * until the next barrier.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 * @param first whether the event goes to the head of its time slot
+	 * @return the event
+	 * @throws IllegalStateException if the event is sent to another logical process with a delay
+	 *             smaller than the lookahead
+	 */
+	private SimEvent sendParallel(int src, int dest, double delay, int tag, Object data, boolean first) {
+		LogicalProcess source = processOfEntity[src];
+		LogicalProcess target = dest < 0 ? source : processOfEntity[dest];
+		SimEvent e = newEvent(source.getEventPool(), source.getClock() + delay, src, dest, tag, data);
+		if (target == source) {
+			if (first) {
+				source.getFuture().addEventFirst(e);
+			} else {
+				source.getFuture().addEvent(e);
+			}
+		} else {
+			if (delay < lookahead) {
+				throw new IllegalStateException("The delay " + delay + " of the event sent from entity #"
+						+ src + " to entity #" + dest + " is smaller than the lookahead " + lookahead
+						+ " of the parallel simulation.");
+			}
+			source.post(target, e, first);
+		}
+		return e;
+	}
+
+	/**
+	 * Creates a send event, reusing a processed event if the tag is pooled.
+	 *
+	 * @param pool the processed events of the sender
+	 * @param time the time of the event
+	 * @param src the src
+	 * @param dest the dest
+	 * @param tag the tag
+	 * @param data the data
+	 * @return the event
+	 */
+	private SimEvent newEvent(Deque<SimEvent> pool, double time, int src, int dest, int tag, Object data) {
+		if (isPooledTag(tag)) {
+			SimEvent e = pool.pollFirst();
+			if (e != null) {
+				e.reset(SimEvent.SEND, time, src, dest, tag, data);
+				return e;
+			}
+		}
+		return new SimEvent(SimEvent.SEND, time, src, dest, tag, data);
+	}
+
+	/**
+	 * Keeps a processed event for reuse if its tag is pooled. It is called by the entities once
+	 * they have processed an event.
+	 *
+	 * @param ev the processed event
+	 */
+	void recycle(SimEvent ev) {
+		if (ev.getType() != SimEvent.SEND || ev.isQueued() || !isPooledTag(ev.getTag())) {
+			return;
+		}
+		Deque<SimEvent> pool = processes != null
+				? processOfEntity[ev.getDestination()].getEventPool() : eventPool;
+		if (pool.size() < MAX_POOLED_EVENTS) {
+			pool.addFirst(ev);
+		}
+	}
+
+	/**
+	 * Checks if the events with a tag are reused once processed.
+	 *
+	 * @param tag the tag
+	 * @return true, if the tag is pooled
+	 */
+	private boolean isPooledTag(int tag) {
+		for (int pooledTag : pooledTags) {
+			if (pooledTag == tag) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the tags of the events that are reused once processed by their destination, instead of
+	 * being allocated for each send. By default, the internal events of the datacenters and of the
+	 * network switches are pooled. An event with a pooled tag must not be referenced once it has
+	 * been processed: neither its handle returned by the send methods, nor the event received by
+	 * {@link SimEntity#processEvent(SimEvent)}.
+	 *
+	 * @param tags the pooled tags; no tags disable pooling
+	 * @pre tags != null
+	 * @post $none
+	 */
+	public void setPooledTags(int... tags) {
+		pooledTags = tags.clone();
+		eventPool.clear();
+	}
+
+	/**
+	 * Gets the tags of the events that are reused once processed.
+	 *
+	 * @return the pooled tags
+	 */
+	public int[] getPooledTags() {
+		return pooledTags.clone();
+	}
+
+	/**
+	 * Sets an entity's state to be waiting. Only events that satisfy the predicate will be passed
+	 * to the entity.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 */
+	public void wait(int src, Predicate p) {
+		entities.get(src).setState(SimEntity.WAITING);
+		if (p != CloudSim.SIM_ANY) {
+			// If a predicate has been used store it in order to check it
+			entities.get(src).setWaitPredicate(p);
+		}
+	}
+
+	/**
+	 * Checks if events for a specific entity are present in the deferred event queue.
+	 *
+	 * @param d the d
+	 * @param p the p
+	 * @return the int
+	 */
+	public int waiting(int d, Predicate p) {
+		if (processes != null) {
+			return processOfEntity[d].getDeferred().count(d, p);
+		}
+		return deferred.count(d, p);
+	}
+
+	/**
+	 * Selects an event matching a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
+	 */
+	public SimEvent select(int src, Predicate p) {
+		if (processes != null) {
+			return processOfEntity[src].getDeferred().select(src, p);
+		}
+		return deferred.select(src, p);
+	}
+
+	/**
+	 * Find first deferred event matching a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
+	 */
+	public SimEvent findFirstDeferred(int src, Predicate p) {
+		if (processes != null) {
+			return processOfEntity[src].getDeferred().findFirst(src, p);
+		}
+		return deferred.findFirst(src, p);
+	}
+
+	/**
+	 * Removes an event from the event queue.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		if (processes != null) {
+			return processOfEntity[src].getFuture().cancel(src, p);
+		}
+		return future.cancel(src, p);
+	}
+
+	/**
+	 * Removes all events that match a given predicate from the future event queue returns true if
+	 * at least one event has been cancelled; false otherwise.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return true, if successful
+	 */
+	public boolean cancelAll(int src, Predicate p) {
+		if (processes != null) {
+			return processOfEntity[src].getFuture().cancelAll(src, p) > 0;
+		}
+		return future.cancelAll(src, p) > 0;
+	}
+
+	/**
+	 * Removes an event from the future event queue. The event is marked as cancelled and will not
+	 * be delivered to its destination.
+	 *
+	 * @param ev the event returned when it was scheduled
+	 * @return true, if the event was still in the future event queue
+	 */
+	public boolean cancel(SimEvent ev) {
+		if (processes != null) {
+			// the events sent to another logical process are not in the queue of the source
+			LogicalProcess source = processOfEntity[ev.getSource()];
+			if (ev.getDestination() >= 0 && processOfEntity[ev.getDestination()] != source) {
+				return false;
+			}
+			return source.getFuture().remove(ev);
+		}
+		return future.remove(ev);
+	}
+
+	//
+	// Private internal methods
+	//
+
+	/**
+	 * Processes an event.
+	 *
+	 * @param e the e
+	 */
+	private void processEvent(SimEvent e) {
+		// Update the system's clock
+		if (e.eventTime() < clock) {
+			throw new IllegalArgumentException("Past event detected.");
+		}
+		clock = e.eventTime();
+		processedEvents++;
+		int tag = e.getTag();
+		int destination = e.getDestination();
+
+		// Ok now process it
+		if (e.getType() == SimEvent.CREATE) {
+			SimEntity newe = (SimEntity) e.getData();
+			addEntityDynamically(newe);
+		} else {
+			dispatch(e, deferred);
+		}
+
+		if (metrics != null) {
+			metrics.eventProcessed(tag, destination, future.size() + 1, deferred.size());
+		}
+	}
+
+	/**
+	 * Delivers an event other than a creation event to its destination entity, or stores it in a
+	 * deferred event queue.
+	 *
+	 * @param e the event
+	 * @param deferredQueue the deferred event queue of the destination
+	 */
+	void dispatch(SimEvent e, DeferredQueue deferredQueue) {
+		int dest, src;
+		SimEntity dest_ent;
+		switch (e.getType()) {
+			case SimEvent.ENULL:
+				throw new IllegalArgumentException("Event has a null type.");
+
+			case SimEvent.SEND:
+				// Check for matching wait
+				dest = e.getDestination();
+				if (dest < 0) {
+					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
+				} else {
+					int tag = e.getTag();
+					dest_ent = entities.get(dest);
+					if (dest_ent.getState() == SimEntity.WAITING) {
+						Predicate p = dest_ent.getWaitPredicate();
+						if ((p == null) || (tag == 9999) || (p.match(e))) {
+							// the event can't change any more, so it is handed over as it is
+							dest_ent.setEventBuffer(e);
+							dest_ent.setState(SimEntity.RUNNABLE);
+							dest_ent.setWaitPredicate(null);
+						} else {
+							deferredQueue.addEvent(e);
+						}
+					} else {
+						deferredQueue.addEvent(e);
+					}
+				}
+				break;
+
+			case SimEvent.HOLD_DONE:
+				src = e.getSource();
+				if (src < 0) {
+					throw new IllegalArgumentException("Null entity holding.");
+				} else {
+					entities.get(src).setState(SimEntity.RUNNABLE);
+				}
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Internal method used to start the simulation. This method should <b>not</b> be used by user
+	 * simulations.
+	 */
+	public void runStart() {
+		running = true;
+		if (metrics != null) {
+			metrics.setEntityNames(entities);
+			metrics.runStarted();
+		}
+		// Start all the entities
+		for (SimEntity ent : entities) {
+			ent.startEntity();
+		}
+
+		printMessage("Entities started.");
+	}
+
+	/**
+	 * Check if the simulation is still running. This method should be used by entities to check if
+	 * they should continue executing.
+	 *
+	 * @return if the simulation is still running, otherwise
+	 */
+	public boolean running() {
+		return running;
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation.
+	 *
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation() {
+		paused = true;
+		return paused;
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation at a given time.
+	 *
+	 * @param time the time at which the simulation has to be paused
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation(long time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			pauseAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * This method is called if one wants to resume the simulation that has previously been paused.
+	 *
+	 * @return if the simulation has been restarted or or otherwise.
+	 */
+	public boolean resumeSimulation() {
+		paused = false;
+
+		if (pauseAt <= clock) {
+			pauseAt = -1;
+		}
+
+		return !paused;
+	}
+
+	/**
+	 * Start the simulation running. This should be called after all the entities have been setup
+	 * and added. The context is the current context of the calling thread until the simulation
+	 * finishes.
+	 *
+	 * @return the double last clock value
+	 */
+	public double run() {
+		SimulationContext previous = CloudSim.exchangeContext(this);
+		try {
+			if (!running) {
+				runStart();
+			}
+			while (true) {
+				if (runClockTick() || abruptTerminate) {
+					break;
+				}
+
+				if (metrics != null && metrics.isReportDue()) {
+					metrics.report();
+				}
+
+				// this block allows termination of simulation at a specific time
+				if (terminateAt > 0.0 && clock >= terminateAt) {
+					terminateSimulation();
+					clock = terminateAt;
+					break;
+				}
+
+				if (pauseAt != -1
+						&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.peekTime())
+								|| future.size() == 0 && pauseAt <= clock)) {
+					pauseSimulation();
+					clock = pauseAt;
+				}
+
+				while (paused) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+
+			double clock = clock();
+
+			finishSimulation();
+			runStop();
+
+			return clock;
+		} finally {
+			CloudSim.exchangeContext(previous);
+		}
+	}
+
+	/**
+	 * Runs the simulation in parallel, as described in {@link #startSimulation(boolean)}. It runs
+	 * the simulation serially if it has a single partition or if the lookahead is not positive.
+	 * The context is the current context of the calling thread until the simulation finishes.
+	 *
+	 * @return the double last clock value
+	 */
+	public double runParallel() {
+		// number the partitions in increasing order
+		Map<Integer, Integer> indexes = new LinkedHashMap<Integer, Integer>();
+		int[] partitionOfEntity = new int[entities.size()];
+		for (int i = 0; i < entities.size(); i++) {
+			partitionOfEntity[i] = getPartition(i);
+			indexes.put(partitionOfEntity[i], null);
+		}
+		List<Integer> sorted = new ArrayList<Integer>(indexes.keySet());
+		Collections.sort(sorted);
+		for (int i = 0; i < sorted.size(); i++) {
+			indexes.put(sorted.get(i), i);
+		}
+
+		double minDelay = Double.MAX_VALUE;
+		for (int i = 0; i < partitionOfEntity.length; i++) {
+			for (int j = 0; j < partitionOfEntity.length; j++) {
+				if (partitionOfEntity[i] != partitionOfEntity[j]) {
+					double delay = networkTopology.isEnabled() ? networkTopology.delay(i, j) : 0.0;
+					minDelay = Math.min(minDelay, delay);
+				}
+			}
+		}
+
+		if (sorted.size() < 2 || minDelay <= 0) {
+			printMessage("Parallel simulation: lookahead is not positive or a single partition is "
+					+ "used, running serially.");
+			return run();
+		}
+
+		SimulationContext previous = CloudSim.exchangeContext(this);
+		ExecutorService executor = Executors.newFixedThreadPool(sorted.size());
+		try {
+			lookahead = minDelay;
+			processes = new LogicalProcess[sorted.size()];
+			for (int i = 0; i < processes.length; i++) {
+				processes[i] = new LogicalProcess(this, i, processes.length);
+			}
+			processOfEntity = new LogicalProcess[entities.size()];
+			for (int i = 0; i < entities.size(); i++) {
+				processOfEntity[i] = processes[indexes.get(partitionOfEntity[i])];
+				processOfEntity[i].addEntity(entities.get(i));
+			}
+			printMessage("Parallel simulation: " + processes.length + " logical processes, lookahead "
+					+ lookahead);
+
+			if (!running) {
+				runStart();
+			}
+			List<LogicalProcess> tasks = Arrays.asList(processes);
+			while (true) {
+				for (LogicalProcess process : processes) {
+					process.deliver(processes);
+				}
+
+				double next = -1;
+				for (LogicalProcess process : processes) {
+					double time = process.getFuture().peekTime();
+					if (time >= 0 && (next < 0 || time < next)) {
+						next = time;
+					}
+				}
+
+				if (next < 0) {
+					running = false;
+					printMessage("Simulation: No more future events");
+					break;
+				}
+				if (abruptTerminate) {
+					break;
+				}
+
+				// this block allows termination of simulation at a specific time
+				if (terminateAt > 0.0 && next >= terminateAt) {
+					terminateSimulation();
+					clock = terminateAt;
+					break;
+				}
+
+				if (pauseAt != -1 && clock <= pauseAt && pauseAt <= next) {
+					pauseSimulation();
+					clock = pauseAt;
+				}
+
+				while (paused) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+
+				for (LogicalProcess process : processes) {
+					process.setWindowEnd(next + lookahead);
+				}
+				runWindow(executor, tasks);
+				for (LogicalProcess process : processes) {
+					clock = Math.max(clock, process.getClock());
+				}
+
+				if (metrics != null && metrics.isReportDue()) {
+					drainProcessMetrics();
+					metrics.report();
+				}
+			}
+			for (LogicalProcess process : processes) {
+				processedEvents += process.getProcessedEvents();
+			}
+			if (metrics != null) {
+				drainProcessMetrics();
+			}
+
+			double clock = clock();
+
+			finishSimulation();
+			runStop();
+
+			return clock;
+		} finally {
+			executor.shutdown();
+			processes = null;
+			processOfEntity = null;
+			lookahead = 0;
+			CloudSim.exchangeContext(previous);
+		}
+	}
+
+	/**
+	 * Runs one window of all the logical processes and waits for all of them to finish it.
+	 *
+	 * @param executor the executor running the logical processes
+	 * @param tasks the logical processes
+	 */
+	private void runWindow(ExecutorService executor, List<LogicalProcess> tasks) {
+		try {
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the parallel simulation.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Binds a logical process to the calling thread, or unbinds it.
+	 *
+	 * @param process the logical process, or <tt>null</tt>
+	 */
+	void bindProcess(LogicalProcess process) {
+		if (process == null) {
+			currentProcess.remove();
+		} else {
+			currentProcess.set(process);
+		}
+	}
+
+	/**
+	 * Checks if the simulation has been abruptly terminated.
+	 *
+	 * @return true, if the simulation has been abruptly terminated
+	 */
+	boolean isAbruptlyTerminated() {
+		return abruptTerminate;
+	}
+
+	/**
+	 * Internal method that allows the entities to terminate. This method should <b>not</b> be used
+	 * in user simulations.
+	 */
+	public void finishSimulation() {
+		// Allow all entities to exit their body method
+		if (!abruptTerminate) {
+			for (SimEntity ent : entities) {
+				if (ent.getState() != SimEntity.FINISHED) {
+					ent.run();
+				}
+			}
+		}
+
+		for (SimEntity ent : entities) {
+			ent.shutdownEntity();
+		}
+
+		if (metrics != null) {
+			metrics.setEntityNames(entities);
+			metrics.runFinished();
+		}
+
+		// reset all the per-run variables
+		entities = null;
+		entitiesByName = null;
+		future = null;
+		deferred = null;
+		clock = 0L;
+		running = false;
+
+		partitions = null;
+		eventPool.clear();
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
+	/**
+	 * Abruptally terminate.
+	 */
+	public void abruptallyTerminate() {
+		abruptTerminate = true;
+	}
+
+	/**
+	 * Prints a message about the progress of the simulation.
+	 *
+	 * @param message the message
+	 */
+	private void printMessage(String message) {
+		Log.printLine(message);
+	}
+
+	/**
+	 * Checks if is paused.
+	 *
+	 * @return true, if is paused
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Gets the ids of the brokers of the simulation.
+	 *
+	 * @return the ids of the brokers
+	 */
+	public List<Integer> getBrokerIdsList() {
+		List<Integer> brokerIdsList = new ArrayList<Integer>();
+		for (SimEntity en : entities) {
+			if (en instanceof DatacenterBroker) {
+				brokerIdsList.add(en.getId());
+			}
+		}
+		return brokerIdsList;
+	}
+
+}
@@ -0,0 +1,511 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Log;
+
+/**
+ * SimulationMetrics counts what the kernel of a {@link SimulationContext} does while a simulation
+ * runs: the events processed for each tag and for each destination entity, the time spent in the
+ * {@link SimEntity#processEvent(SimEvent)} method of each entity, and the high-water marks of the
+ * future and deferred event queues. The metrics are disabled by default; once enabled with
+ * {@link CloudSim#enableMetrics()}, the counters are plain array increments.
+ * <p>
+ * A summary of the metrics can be printed periodically while the simulation runs, see
+ * {@link #setReportInterval(long)}, and at any time with {@link #getSummary(int)}.
+ * <p>
+ * In a parallel run, each logical process counts in its own metrics, which are added to these
+ * metrics when a summary is printed and when the simulation finishes; the queue high-water marks
+ * are then those of the largest queue of a logical process.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see SimulationContext#setMetricsEnabled(boolean)
+ */
+public class SimulationMetrics {
+
+	/** The number of tags counted in an array, from 0; the other tags are counted in a map. */
+	private static final int MAX_ARRAY_TAG = 1 << 16;
+
+	/** The number of entries of the summary tables. */
+	private static final int DEFAULT_TOP = 10;
+
+	/** The number of processed events. */
+	private long events = 0;
+
+	/** The number of processed events by tag, for the tags between 0 and MAX_ARRAY_TAG. */
+	private long[] tagEvents = new long[64];
+
+	/** The number of processed events by tag, for the other tags. */
+	private final Map<Integer, long[]> otherTagEvents = new HashMap<Integer, long[]>();
+
+	/** The number of processed events by destination entity id. */
+	private long[] entityEvents = new long[16];
+
+	/** The time spent processing events by entity id, in nanoseconds. */
+	private long[] entityTimes = new long[16];
+
+	/** The largest size of the future event queue. */
+	private int futureHighWaterMark = 0;
+
+	/** The largest size of the deferred event queue. */
+	private int deferredHighWaterMark = 0;
+
+	/** The wall-clock time at which the simulation started, in nanoseconds. */
+	private long startTime = -1;
+
+	/** The wall-clock time elapsed in the simulation runs that finished, in nanoseconds. */
+	private long elapsedTime = 0;
+
+	/** The period of the summaries printed while the simulation runs, in ms; 0 for none. */
+	private long reportInterval = 0;
+
+	/** The wall-clock time of the next summary, in nanoseconds. */
+	private long nextReport = Long.MAX_VALUE;
+
+	/** The stream of the periodic summaries, or <tt>null</tt> to print them to the {@link Log}. */
+	private PrintStream reportOutput = null;
+
+	/** The names of the entities by id, for the summaries. */
+	private String[] entityNames = new String[0];
+
+	/**
+	 * Counts a processed event, and updates the high-water marks of the queues.
+	 *
+	 * @param tag the tag of the event
+	 * @param destination the id of the destination entity, or a negative value if there is none
+	 * @param futureSize the size of the future event queue before the event was removed from it
+	 * @param deferredSize the size of the deferred event queue once the event was dispatched
+	 */
+	void eventProcessed(int tag, int destination, int futureSize, int deferredSize) {
+		events++;
+		if (tag >= 0 && tag < MAX_ARRAY_TAG) {
+			if (tag >= tagEvents.length) {
+				tagEvents = Arrays.copyOf(tagEvents, Math.min(MAX_ARRAY_TAG, Math.max(tag + 1,
+						tagEvents.length * 2)));
+			}
+			tagEvents[tag]++;
+		} else {
+			long[] count = otherTagEvents.get(tag);
+			if (count == null) {
+				count = new long[1];
+				otherTagEvents.put(tag, count);
+			}
+			count[0]++;
+		}
+
+		if (destination >= 0) {
+			ensureEntityCapacity(destination);
+			entityEvents[destination]++;
+		}
+
+		if (futureSize > futureHighWaterMark) {
+			futureHighWaterMark = futureSize;
+		}
+		if (deferredSize > deferredHighWaterMark) {
+			deferredHighWaterMark = deferredSize;
+		}
+	}
+
+	/**
+	 * Adds to the time spent by an entity processing events.
+	 *
+	 * @param entityId the id of the entity
+	 * @param nanos the time, in nanoseconds
+	 */
+	void addProcessingTime(int entityId, long nanos) {
+		ensureEntityCapacity(entityId);
+		entityTimes[entityId] += nanos;
+	}
+
+	/**
+	 * Grows the entity arrays so that they can hold an entity id.
+	 *
+	 * @param entityId the id of the entity
+	 */
+	private void ensureEntityCapacity(int entityId) {
+		if (entityId >= entityEvents.length) {
+			int length = Math.max(entityId + 1, entityEvents.length * 2);
+			entityEvents = Arrays.copyOf(entityEvents, length);
+			entityTimes = Arrays.copyOf(entityTimes, length);
+		}
+	}
+
+	/**
+	 * Adds the metrics of a logical process to these metrics and resets them.
+	 *
+	 * @param other the metrics of the logical process
+	 */
+	void drain(SimulationMetrics other) {
+		events += other.events;
+		for (int tag = 0; tag < other.tagEvents.length; tag++) {
+			if (other.tagEvents[tag] > 0) {
+				if (tag >= tagEvents.length) {
+					tagEvents = Arrays.copyOf(tagEvents, other.tagEvents.length);
+				}
+				tagEvents[tag] += other.tagEvents[tag];
+			}
+		}
+		for (Map.Entry<Integer, long[]> entry : other.otherTagEvents.entrySet()) {
+			long[] count = otherTagEvents.get(entry.getKey());
+			if (count == null) {
+				count = new long[1];
+				otherTagEvents.put(entry.getKey(), count);
+			}
+			count[0] += entry.getValue()[0];
+		}
+		for (int id = 0; id < other.entityEvents.length; id++) {
+			if (other.entityEvents[id] > 0 || other.entityTimes[id] > 0) {
+				ensureEntityCapacity(id);
+				entityEvents[id] += other.entityEvents[id];
+				entityTimes[id] += other.entityTimes[id];
+			}
+		}
+		futureHighWaterMark = Math.max(futureHighWaterMark, other.futureHighWaterMark);
+		deferredHighWaterMark = Math.max(deferredHighWaterMark, other.deferredHighWaterMark);
+		other.reset();
+	}
+
+	/**
+	 * Sets the names of the entities printed in the summaries.
+	 *
+	 * @param entities the entities of the simulation, by id
+	 */
+	void setEntityNames(List<SimEntity> entities) {
+		entityNames = new String[entities.size()];
+		for (int i = 0; i < entityNames.length; i++) {
+			entityNames[i] = entities.get(i).getName();
+		}
+	}
+
+	/**
+	 * Records the start of a simulation run.
+	 */
+	void runStarted() {
+		startTime = System.nanoTime();
+		nextReport = reportInterval > 0 ? startTime + reportInterval * 1000000 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Records the end of a simulation run.
+	 */
+	void runFinished() {
+		if (startTime >= 0) {
+			elapsedTime += System.nanoTime() - startTime;
+			startTime = -1;
+		}
+		nextReport = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Checks whether a periodic summary is due.
+	 *
+	 * @return <tt>true</tt> if a summary must be printed now
+	 */
+	boolean isReportDue() {
+		return System.nanoTime() >= nextReport;
+	}
+
+	/**
+	 * Prints a periodic summary of the metrics and schedules the next one.
+	 */
+	void report() {
+		String summary = getSummary(DEFAULT_TOP);
+		if (reportOutput != null) {
+			reportOutput.println(summary);
+		} else {
+			Log.printLine(summary);
+		}
+		nextReport = System.nanoTime() + reportInterval * 1000000;
+	}
+
+	/**
+	 * Resets all the counters.
+	 *
+	 * @pre $none
+	 * @post getNumEvents() == 0
+	 */
+	public void reset() {
+		events = 0;
+		Arrays.fill(tagEvents, 0);
+		otherTagEvents.clear();
+		Arrays.fill(entityEvents, 0);
+		Arrays.fill(entityTimes, 0);
+		futureHighWaterMark = 0;
+		deferredHighWaterMark = 0;
+		elapsedTime = 0;
+		if (startTime >= 0) {
+			startTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Gets the number of processed events.
+	 *
+	 * @return the number of events
+	 */
+	public long getNumEvents() {
+		return events;
+	}
+
+	/**
+	 * Gets the number of processed events with a tag.
+	 *
+	 * @param tag the tag
+	 * @return the number of events
+	 */
+	public long getNumEvents(int tag) {
+		if (tag >= 0 && tag < MAX_ARRAY_TAG) {
+			return tag < tagEvents.length ? tagEvents[tag] : 0;
+		}
+		long[] count = otherTagEvents.get(tag);
+		return count == null ? 0 : count[0];
+	}
+
+	/**
+	 * Gets the number of processed events of each tag, from the most to the least frequent.
+	 *
+	 * @return the number of events by tag
+	 */
+	public Map<Integer, Long> getEventsByTag() {
+		List<long[]> counts = new ArrayList<long[]>();
+		for (int tag = 0; tag < tagEvents.length; tag++) {
+			if (tagEvents[tag] > 0) {
+				counts.add(new long[] { tag, tagEvents[tag] });
+			}
+		}
+		for (Map.Entry<Integer, long[]> entry : otherTagEvents.entrySet()) {
+			counts.add(new long[] { entry.getKey(), entry.getValue()[0] });
+		}
+		return sortByCount(counts);
+	}
+
+	/**
+	 * Gets the number of processed events sent to an entity.
+	 *
+	 * @param entity the entity
+	 * @return the number of events
+	 */
+	public long getNumEvents(SimEntity entity) {
+		int id = entity.getId();
+		return id >= 0 && id < entityEvents.length ? entityEvents[id] : 0;
+	}
+
+	/**
+	 * Gets the number of processed events of each destination entity id, from the entity with
+	 * the most events to the entity with the least.
+	 *
+	 * @return the number of events by entity id
+	 */
+	public Map<Integer, Long> getEventsByEntity() {
+		List<long[]> counts = new ArrayList<long[]>();
+		for (int id = 0; id < entityEvents.length; id++) {
+			if (entityEvents[id] > 0) {
+				counts.add(new long[] { id, entityEvents[id] });
+			}
+		}
+		return sortByCount(counts);
+	}
+
+	/**
+	 * Gets the wall-clock time spent by an entity in its
+	 * {@link SimEntity#processEvent(SimEvent)} method.
+	 *
+	 * @param entity the entity
+	 * @return the time, in seconds
+	 */
+	public double getProcessingTime(SimEntity entity) {
+		int id = entity.getId();
+		return id >= 0 && id < entityTimes.length ? entityTimes[id] / 1e9 : 0;
+	}
+
+	/**
+	 * Gets the largest size reached by the future event queue.
+	 *
+	 * @return the high-water mark
+	 */
+	public int getFutureQueueHighWaterMark() {
+		return futureHighWaterMark;
+	}
+
+	/**
+	 * Gets the largest size reached by the deferred event queue.
+	 *
+	 * @return the high-water mark
+	 */
+	public int getDeferredQueueHighWaterMark() {
+		return deferredHighWaterMark;
+	}
+
+	/**
+	 * Gets the wall-clock time spent running the simulation since the metrics were reset.
+	 *
+	 * @return the time, in seconds
+	 */
+	public double getElapsedTime() {
+		long elapsed = elapsedTime;
+		if (startTime >= 0) {
+			elapsed += System.nanoTime() - startTime;
+		}
+		return elapsed / 1e9;
+	}
+
+	/**
+	 * Gets the number of events processed per second of wall-clock time.
+	 *
+	 * @return the event rate
+	 */
+	public double getEventsPerSecond() {
+		double elapsed = getElapsedTime();
+		return elapsed > 0 ? events / elapsed : 0;
+	}
+
+	/**
+	 * Sets the period of the summaries printed while the simulation runs.
+	 *
+	 * @param millis the period in milliseconds of wall-clock time; 0 prints no summary
+	 * @pre millis >= 0
+	 * @post $none
+	 */
+	public void setReportInterval(long millis) {
+		reportInterval = millis;
+		if (startTime >= 0) {
+			nextReport = millis > 0 ? System.nanoTime() + millis * 1000000 : Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Gets the period of the summaries printed while the simulation runs.
+	 *
+	 * @return the period in milliseconds; 0 if no summary is printed
+	 */
+	public long getReportInterval() {
+		return reportInterval;
+	}
+
+	/**
+	 * Sets the stream of the periodic summaries.
+	 *
+	 * @param reportOutput the stream, or <tt>null</tt> to print the summaries to the {@link Log}
+	 */
+	public void setReportOutput(PrintStream reportOutput) {
+		this.reportOutput = reportOutput;
+	}
+
+	/**
+	 * Gets a summary of the metrics, with the most frequent tags and destination entities.
+	 *
+	 * @param top the number of tags and entities listed
+	 * @return the summary
+	 * @pre top >= 0
+	 * @post $result != null
+	 */
+	public String getSummary(int top) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Simulation metrics: ").append(events).append(" events in ")
+				.append(String.format("%.3f", getElapsedTime())).append(" s (")
+				.append(Math.round(getEventsPerSecond())).append(" events/s), future queue high-water mark ")
+				.append(futureHighWaterMark).append(", deferred queue high-water mark ")
+				.append(deferredHighWaterMark);
+
+		sb.append(String.format("%n  Events by tag:"));
+		int n = 0;
+		for (Map.Entry<Integer, Long> entry : getEventsByTag().entrySet()) {
+			if (n++ == top) {
+				break;
+			}
+			sb.append(String.format("%n    %-40s %12d %6.2f%%", TagNames.get(entry.getKey()),
+					entry.getValue(), 100.0 * entry.getValue() / events));
+		}
+
+		sb.append(String.format("%n  Events by entity:"));
+		n = 0;
+		for (Map.Entry<Integer, Long> entry : getEventsByEntity().entrySet()) {
+			if (n++ == top) {
+				break;
+			}
+			int id = entry.getKey();
+			String name = id < entityNames.length ? entityNames[id] : "#" + id;
+			sb.append(String.format("%n    %-40s %12d %6.2f%% %10.3f s", name, entry.getValue(),
+					100.0 * entry.getValue() / events, entityTimes[id] / 1e9));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sorts pairs of a key and a count by decreasing count.
+	 *
+	 * @param counts the pairs
+	 * @return the counts by key, in decreasing order
+	 */
+	private static Map<Integer, Long> sortByCount(List<long[]> counts) {
+		Collections.sort(counts, new Comparator<long[]>() {
+
+			@Override
+			public int compare(long[] a, long[] b) {
+				return a[1] < b[1] ? 1 : a[1] > b[1] ? -1 : Long.compare(a[0], b[0]);
+			}
+		});
+		Map<Integer, Long> result = new LinkedHashMap<Integer, Long>();
+		for (long[] count : counts) {
+			result.put((int) count[0], count[1]);
+		}
+		return result;
+	}
+
+	/**
+	 * The names of the tags declared in {@link CloudSimTags}, loaded when a summary is first
+	 * printed.
+	 */
+	private static class TagNames {
+
+		/** The names by tag. */
+		private static final Map<Integer, String> NAMES = new HashMap<Integer, String>();
+
+		static {
+			for (Field field : CloudSimTags.class.getFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) && field.getType() == int.class) {
+					try {
+						int tag = field.getInt(null);
+						if (!NAMES.containsKey(tag)) {
+							NAMES.put(tag, field.getName());
+						}
+					} catch (IllegalAccessException e) {
+						// not a readable tag
+					}
+				}
+			}
+		}
+
+		/**
+		 * Gets the name of a tag.
+		 *
+		 * @param tag the tag
+		 * @return the name and value of the tag, or its value if it has no name
+		 */
+		static String get(int tag) {
+			String name = NAMES.get(tag);
+			return name == null ? String.valueOf(tag) : name + " (" + tag + ")";
+		}
+
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+
+/**
+ * SourceTagIndex maps a source entity and a tag to the most recently added event of the
+ * {@link FutureQueue} with that source and tag. It is an open addressing hash table with linear
+ * probing on primitive keys, so that indexing an event allocates nothing.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FutureQueue
+ */
+class SourceTagIndex {
+
+	/** The initial capacity of the table, a power of two. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The keys of the slots. */
+	private long[] keys = new long[INITIAL_CAPACITY];
+
+	/** The events of the slots, <tt>null</tt> for the free slots. */
+	private SimEvent[] events = new SimEvent[INITIAL_CAPACITY];
+
+	/** The number of used slots. */
+	private int size = 0;
+
+	/**
+	 * Gets the most recently added event with a source and a tag.
+	 *
+	 * @param source the id of the source entity
+	 * @param tag the tag
+	 * @return the event, or <tt>null</tt> if there is none
+	 */
+	SimEvent get(int source, int tag) {
+		long key = key(source, tag);
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); events[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return events[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the most recently added event with a source and a tag.
+	 *
+	 * @param source the id of the source entity
+	 * @param tag the tag
+	 * @param event the event
+	 * @return the previous event, or <tt>null</tt> if there was none
+	 * @pre event != null
+	 */
+	SimEvent put(int source, int tag, SimEvent event) {
+		long key = key(source, tag);
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; events[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				SimEvent previous = events[i];
+				events[i] = event;
+				return previous;
+			}
+		}
+		keys[i] = key;
+		events[i] = event;
+		if (++size > keys.length / 2) {
+			resize(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the entry of a source and a tag.
+	 *
+	 * @param source the id of the source entity
+	 * @param tag the tag
+	 */
+	void remove(int source, int tag) {
+		long key = key(source, tag);
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; events[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				break;
+			}
+		}
+		if (events[i] == null) {
+			return;
+		}
+
+		// shift back the entries of the probe sequence that follows the removed one
+		int free = i;
+		for (int j = (i + 1) & mask; events[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j], mask);
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				keys[free] = keys[j];
+				events[free] = events[j];
+				free = j;
+			}
+		}
+		events[free] = null;
+		size--;
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	void clear() {
+		Arrays.fill(events, null);
+		size = 0;
+	}
+
+	/**
+	 * Rehashes the entries in a table with a new capacity.
+	 *
+	 * @param capacity the new capacity, a power of two
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		SimEvent[] oldEvents = events;
+		keys = new long[capacity];
+		events = new SimEvent[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldEvents[j] != null) {
+				int i = slot(oldKeys[j], mask);
+				while (events[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				events[i] = oldEvents[j];
+			}
+		}
+	}
+
+	/**
+	 * Gets the key of a source entity and a tag.
+	 *
+	 * @param source the id of the source entity
+	 * @param tag the tag
+	 * @return the key
+	 */
+	private static long key(int source, int tag) {
+		return ((long) source << 32) | (tag & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the home slot of a key.
+	 *
+	 * @param key the key
+	 * @param mask the capacity of the table minus one
+	 * @return the slot
+	 */
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+
+}
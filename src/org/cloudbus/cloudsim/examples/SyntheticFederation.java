@@ -0,0 +1,419 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.examples;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSchedulerSpaceShared;
+import org.cloudbus.cloudsim.Datacenter;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.DatacenterCharacteristics;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmAllocationPolicySimple;
+import org.cloudbus.cloudsim.VmSchedulerTimeShared;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
+import org.cloudbus.cloudsim.distributions.ExponentialDistr;
+import org.cloudbus.cloudsim.distributions.UniformDistr;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.cloudbus.cloudsim.util.ScenarioFactory;
+
+/**
+ * SyntheticFederation generates a federation of brokers whose size is given by parameters instead
+ * of being read from a file. Each broker owns the same number of datacenters, each datacenter the
+ * same number of identical hosts, and each broker submits the same number of VMs and cloudlets.
+ * Cloudlet <tt>j</tt> of a broker is bound to its VM <tt>j % vmsPerBroker</tt>, as in
+ * {@link Example1}.
+ * <p>
+ * The cloudlet lengths are drawn from a uniform distribution, and the deadline of a cloudlet is
+ * its execution time on its VM multiplied by one plus a slack drawn from an exponential
+ * distribution. Both distributions are seeded from the seed of the scenario, so a given seed
+ * always generates the same federation; subclasses may override
+ * {@link #createLengthDistribution(long)} and {@link #createDeadlineSlackDistribution(long)} to
+ * use other distributions of the {@link org.cloudbus.cloudsim.distributions} package.
+ * <p>
+ * The generator keeps no state between two calls of {@link #createScenario(int, long)}, so it can
+ * be used by a {@link org.cloudbus.cloudsim.util.ReplicationRunner}.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class SyntheticFederation implements ScenarioFactory {
+
+	/** The number of brokers. */
+	private final int numBrokers;
+
+	/** The number of datacenters of each broker. */
+	private final int datacentersPerBroker;
+
+	/** The number of hosts of each datacenter. */
+	private final int hostsPerDatacenter;
+
+	/** The number of VMs submitted by each broker. */
+	private final int vmsPerBroker;
+
+	/** The number of cloudlets submitted by each broker. */
+	private final int cloudletsPerBroker;
+
+	/** The number of PEs of a host. */
+	private int hostPes = 4;
+
+	/** The MIPS rating of a PE of a host. */
+	private int hostPeMips = 1000;
+
+	/** The RAM of a host (MB). */
+	private int hostRam = 16384;
+
+	/** The bandwidth of a host. */
+	private int hostBw = 10000;
+
+	/** The storage of a host (MB). */
+	private long hostStorage = 1000000;
+
+	/** The MIPS rating of a VM. */
+	private double vmMips = 1000;
+
+	/** The RAM of a VM (MB). */
+	private int vmRam = 512;
+
+	/** The bandwidth of a VM. */
+	private long vmBw = 1000;
+
+	/** The image size of a VM (MB). */
+	private long vmSize = 10000;
+
+	/** The minimum length of a cloudlet (MI). */
+	private double minCloudletLength = 10000;
+
+	/** The maximum length of a cloudlet (MI). */
+	private double maxCloudletLength = 100000;
+
+	/** The mean slack of the deadlines, relative to the execution time of the cloudlets. */
+	private double meanDeadlineSlack = 1.0;
+
+	/** The partner estimate window of the brokers. */
+	private int partnerEstimateWindow = DatacenterBroker.DEFAULT_PARTNER_ESTIMATE_WINDOW;
+
+	/** The partner estimate batch delay of the brokers. */
+	private double partnerEstimateBatchDelay = DatacenterBroker.NO_PARTNER_ESTIMATE_BATCHING;
+
+	/** The partner estimate cache time to live of the brokers. */
+	private double partnerEstimateCacheTtl = DatacenterBroker.NO_PARTNER_ESTIMATE_CACHE;
+
+	/** The capacity digest period of the brokers. */
+	private double capacityDigestPeriod = DatacenterBroker.NO_CAPACITY_DIGEST;
+
+	/** The number of partners each broker sends a cloudlet to for estimation. */
+	private int partnerSelectionSize = 0;
+
+	/** The partner estimate timeout of the brokers. */
+	private double partnerEstimateTimeout = DatacenterBroker.NO_PARTNER_ESTIMATE_TIMEOUT;
+
+	/** The partner estimate decision margin of the brokers. */
+	private double partnerEstimateDecisionMargin = DatacenterBroker.NO_PARTNER_ESTIMATE_EARLY_DECISION;
+
+	/**
+	 * Creates a new SyntheticFederation object.
+	 *
+	 * @param numBrokers the number of brokers
+	 * @param datacentersPerBroker the number of datacenters of each broker
+	 * @param hostsPerDatacenter the number of hosts of each datacenter
+	 * @param vmsPerBroker the number of VMs submitted by each broker
+	 * @param cloudletsPerBroker the number of cloudlets submitted by each broker
+	 * @throws IllegalArgumentException if a size is not positive
+	 * @pre numBrokers > 0
+	 * @pre datacentersPerBroker > 0
+	 * @pre hostsPerDatacenter > 0
+	 * @pre vmsPerBroker > 0
+	 * @pre cloudletsPerBroker >= 0
+	 * @post $none
+	 */
+	public SyntheticFederation(int numBrokers, int datacentersPerBroker, int hostsPerDatacenter,
+			int vmsPerBroker, int cloudletsPerBroker) {
+		if (numBrokers <= 0 || datacentersPerBroker <= 0 || hostsPerDatacenter <= 0
+				|| vmsPerBroker <= 0 || cloudletsPerBroker < 0) {
+			throw new IllegalArgumentException("The sizes of the federation must be positive.");
+		}
+		this.numBrokers = numBrokers;
+		this.datacentersPerBroker = datacentersPerBroker;
+		this.hostsPerDatacenter = hostsPerDatacenter;
+		this.vmsPerBroker = vmsPerBroker;
+		this.cloudletsPerBroker = cloudletsPerBroker;
+	}
+
+	/**
+	 * Initialises CloudSim in the current context and creates the brokers, datacenters, hosts, VMs
+	 * and cloudlets of the federation.
+	 *
+	 * @param replication the index of the replication
+	 * @param seed the seed of the length and deadline distributions
+	 * @throws Exception if a datacenter cannot be created
+	 */
+	@Override
+	public void createScenario(int replication, long seed) throws Exception {
+		CloudSim.init(numBrokers, null, false);
+
+		ContinuousDistribution lengths = createLengthDistribution(seed);
+		ContinuousDistribution slacks = createDeadlineSlackDistribution(seed);
+		UtilizationModel utilizationModel = new UtilizationModelFull();
+
+		for (int i = 0; i < numBrokers; i++) {
+			DatacenterBroker broker = new DatacenterBroker("Broker_" + i);
+			broker.setPartnerEstimateWindow(partnerEstimateWindow);
+			broker.setPartnerEstimateBatchDelay(partnerEstimateBatchDelay);
+			broker.setPartnerEstimateCacheTtl(partnerEstimateCacheTtl);
+			broker.setCapacityDigestPeriod(capacityDigestPeriod);
+			broker.setPartnerSelectionSize(partnerSelectionSize);
+			broker.setPartnerEstimateTimeout(partnerEstimateTimeout);
+			broker.setPartnerEstimateDecisionMargin(partnerEstimateDecisionMargin);
+			for (int j = 0; j < datacentersPerBroker; j++) {
+				Datacenter datacenter = createDatacenter(broker.getName() + "---Datacenter_" + j);
+				broker.addDatacenter(datacenter.getId());
+			}
+
+			List<Vm> vmList = new ArrayList<Vm>(vmsPerBroker);
+			for (int k = 0; k < vmsPerBroker; k++) {
+				vmList.add(new Vm(k, broker.getId(), vmMips, 1, vmRam, vmBw, vmSize, "Xen",
+						new CloudletSchedulerSpaceShared()));
+			}
+			broker.submitVmList(vmList);
+
+			List<Cloudlet> cloudletList = new ArrayList<Cloudlet>(cloudletsPerBroker);
+			for (int k = 0; k < cloudletsPerBroker; k++) {
+				long length = (long) lengths.sample();
+				long deadline = (long) Math.ceil(length / vmMips * (1 + slacks.sample()));
+				Cloudlet cloudlet = new Cloudlet(k, length, 1, 300, 300, deadline,
+						utilizationModel, utilizationModel, utilizationModel);
+				cloudlet.setUserId(broker.getId());
+				cloudlet.setVmId(k % vmsPerBroker);
+				cloudletList.add(cloudlet);
+			}
+			broker.submitCloudletList(cloudletList);
+		}
+	}
+
+	/**
+	 * Creates the distribution of the cloudlet lengths, in MI. The default distribution is
+	 * uniform between the minimum and maximum lengths.
+	 *
+	 * @param seed the seed of the scenario
+	 * @return the distribution
+	 */
+	protected ContinuousDistribution createLengthDistribution(long seed) {
+		return new UniformDistr(minCloudletLength, maxCloudletLength, seed);
+	}
+
+	/**
+	 * Creates the distribution of the deadline slacks, relative to the execution time of the
+	 * cloudlets. The default distribution is exponential with the mean deadline slack.
+	 *
+	 * @param seed the seed of the scenario
+	 * @return the distribution
+	 */
+	protected ContinuousDistribution createDeadlineSlackDistribution(long seed) {
+		return new ExponentialDistr(new Random(seed).nextLong(), meanDeadlineSlack);
+	}
+
+	/**
+	 * Creates a datacenter with identical hosts.
+	 *
+	 * @param name the name of the datacenter
+	 * @return the datacenter
+	 * @throws Exception if the datacenter cannot be created
+	 */
+	protected Datacenter createDatacenter(String name) throws Exception {
+		List<Host> hostList = new ArrayList<Host>(hostsPerDatacenter);
+		for (int i = 0; i < hostsPerDatacenter; i++) {
+			List<Pe> peList = new ArrayList<Pe>(hostPes);
+			for (int j = 0; j < hostPes; j++) {
+				peList.add(new Pe(j, new PeProvisionerSimple(hostPeMips)));
+			}
+			hostList.add(new Host(i, new RamProvisionerSimple(hostRam), new BwProvisionerSimple(
+					hostBw), hostStorage, peList, new VmSchedulerTimeShared(peList)));
+		}
+
+		DatacenterCharacteristics characteristics = new DatacenterCharacteristics("x86", "Linux",
+				"Xen", hostList, 10.0, 3.0, 0.05, 0.001, 0.0);
+		return new Datacenter(name, characteristics, new VmAllocationPolicySimple(hostList),
+				new LinkedList<Storage>(), 0);
+	}
+
+	/**
+	 * Gets the total number of hosts of the federation.
+	 *
+	 * @return the number of hosts
+	 */
+	public long getNumHosts() {
+		return (long) numBrokers * datacentersPerBroker * hostsPerDatacenter;
+	}
+
+	/**
+	 * Gets the total number of VMs of the federation.
+	 *
+	 * @return the number of VMs
+	 */
+	public long getNumVms() {
+		return (long) numBrokers * vmsPerBroker;
+	}
+
+	/**
+	 * Gets the total number of cloudlets of the federation.
+	 *
+	 * @return the number of cloudlets
+	 */
+	public long getNumCloudlets() {
+		return (long) numBrokers * cloudletsPerBroker;
+	}
+
+	/**
+	 * Sets the configuration of the hosts.
+	 *
+	 * @param pes the number of PEs of a host
+	 * @param peMips the MIPS rating of a PE
+	 * @param ram the RAM of a host (MB)
+	 * @param bw the bandwidth of a host
+	 * @param storage the storage of a host (MB)
+	 * @pre pes > 0
+	 * @pre peMips > 0
+	 * @post $none
+	 */
+	public void setHostConfiguration(int pes, int peMips, int ram, int bw, long storage) {
+		hostPes = pes;
+		hostPeMips = peMips;
+		hostRam = ram;
+		hostBw = bw;
+		hostStorage = storage;
+	}
+
+	/**
+	 * Sets the configuration of the VMs, each of which has a single PE.
+	 *
+	 * @param mips the MIPS rating of a VM
+	 * @param ram the RAM of a VM (MB)
+	 * @param bw the bandwidth of a VM
+	 * @param size the image size of a VM (MB)
+	 * @pre mips > 0
+	 * @post $none
+	 */
+	public void setVmConfiguration(double mips, int ram, long bw, long size) {
+		vmMips = mips;
+		vmRam = ram;
+		vmBw = bw;
+		vmSize = size;
+	}
+
+	/**
+	 * Sets the range of the cloudlet lengths.
+	 *
+	 * @param min the minimum length (MI)
+	 * @param max the maximum length (MI)
+	 * @pre 0 < min && min <= max
+	 * @post $none
+	 */
+	public void setCloudletLengthRange(double min, double max) {
+		minCloudletLength = min;
+		maxCloudletLength = max;
+	}
+
+	/**
+	 * Sets the mean slack of the deadlines, relative to the execution time of the cloudlets.
+	 *
+	 * @param meanDeadlineSlack the mean slack
+	 * @pre meanDeadlineSlack > 0
+	 * @post $none
+	 */
+	public void setMeanDeadlineSlack(double meanDeadlineSlack) {
+		this.meanDeadlineSlack = meanDeadlineSlack;
+	}
+
+	/**
+	 * Sets the number of cloudlets whose partner estimation each broker can have in progress at
+	 * once.
+	 *
+	 * @param partnerEstimateWindow the estimation window
+	 * @see DatacenterBroker#setPartnerEstimateWindow(int)
+	 * @pre partnerEstimateWindow > 0
+	 * @post $none
+	 */
+	public void setPartnerEstimateWindow(int partnerEstimateWindow) {
+		this.partnerEstimateWindow = partnerEstimateWindow;
+	}
+
+	/**
+	 * Sets the time during which each broker accumulates the cloudlets to estimate before sending
+	 * them to its partners in one batch.
+	 *
+	 * @param partnerEstimateBatchDelay the batch delay, negative to send each cloudlet on its own
+	 * @see DatacenterBroker#setPartnerEstimateBatchDelay(double)
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateBatchDelay(double partnerEstimateBatchDelay) {
+		this.partnerEstimateBatchDelay = partnerEstimateBatchDelay;
+	}
+
+	/**
+	 * Sets the time during which each broker reuses the estimates of partner cloudlets by its
+	 * datacenters.
+	 *
+	 * @param partnerEstimateCacheTtl the time to live, negative to query the datacenters for
+	 *            every cloudlet
+	 * @see DatacenterBroker#setPartnerEstimateCacheTtl(double)
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateCacheTtl(double partnerEstimateCacheTtl) {
+		this.partnerEstimateCacheTtl = partnerEstimateCacheTtl;
+	}
+
+	/**
+	 * Sets the time between two publications of the capacity digest of each broker, and the
+	 * number of partners each broker sends a cloudlet to for estimation.
+	 *
+	 * @param capacityDigestPeriod the period, negative not to publish the digests
+	 * @param partnerSelectionSize the selection size, 0 for all the partners
+	 * @see DatacenterBroker#setCapacityDigestPeriod(double)
+	 * @see DatacenterBroker#setPartnerSelectionSize(int)
+	 * @pre capacityDigestPeriod != 0
+	 * @pre partnerSelectionSize >= 0
+	 * @post $none
+	 */
+	public void setPartnerSelection(double capacityDigestPeriod, int partnerSelectionSize) {
+		this.capacityDigestPeriod = capacityDigestPeriod;
+		this.partnerSelectionSize = partnerSelectionSize;
+	}
+
+	/**
+	 * Sets the time each broker waits for the estimates of its partners, and the margin before
+	 * the deadline with which an estimate is sent without waiting for the other partners.
+	 *
+	 * @param partnerEstimateTimeout the timeout, negative to wait for all the partners
+	 * @param partnerEstimateDecisionMargin the decision margin, negative to wait for all the
+	 *            partners
+	 * @see DatacenterBroker#setPartnerEstimateTimeout(double)
+	 * @see DatacenterBroker#setPartnerEstimateDecisionMargin(double)
+	 * @pre $none
+	 * @post $none
+	 */
+	public void setPartnerEstimateDecision(double partnerEstimateTimeout, double partnerEstimateDecisionMargin) {
+		this.partnerEstimateTimeout = partnerEstimateTimeout;
+		this.partnerEstimateDecisionMargin = partnerEstimateDecisionMargin;
+	}
+
+}
@@ -13,6 +13,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * CloudletList is a collection of operations on lists of Cloudlets.
@@ -38,6 +39,30 @@ public class CloudletList {
 		return null;
 	}
 
+	/**
+	 * Gets the by id, looking the cloudlet up in an index of the list by cloudlet id when one is
+	 * available. A cloudlet missing from the index, e.g. added to the list directly, is searched
+	 * in the list and then added to the index.
+	 * 
+	 * @param cloudletList the cloudlet list
+	 * @param index the cloudlets of the list by id, <tt>null</tt> to search the list only
+	 * @param id the id
+	 * @return the by id
+	 */
+	public static <T extends Cloudlet> T getById(List<T> cloudletList, IntObjectMap<T> index, int id) {
+		if (index == null) {
+			return getById(cloudletList, id);
+		}
+		T cloudlet = index.get(id);
+		if (cloudlet == null) {
+			cloudlet = getById(cloudletList, id);
+			if (cloudlet != null) {
+				index.put(id, cloudlet);
+			}
+		}
+		return cloudlet;
+	}
+
 	/**
 	 * Returns the position of the cloudlet with that id, if it exists. Otherwise -1.
 	 * @param cloudletList - the list of cloudlets.
@@ -11,6 +11,8 @@ package org.cloudbus.cloudsim.lists;
 import java.util.List;
 
 import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmTable;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * VmList is a collection of operations on lists of VMs.
@@ -38,6 +40,32 @@ public class VmList {
 		return null;
 	}
 
+	/**
+	 * Return a reference to a Vm object from its ID, looking it up in an index of the list by VM
+	 * ID when one is available. A VM missing from the index, e.g. added to the list directly, is
+	 * searched in the list and then added to the index.
+	 * 
+	 * @param vmList the vm list
+	 * @param index the VMs of the list by ID, <tt>null</tt> to search the list only
+	 * @param id ID of required VM
+	 * @return Vm with the given ID, $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	public static <T extends Vm> T getById(List<T> vmList, IntObjectMap<T> index, int id) {
+		if (index == null) {
+			return getById(vmList, id);
+		}
+		T vm = index.get(id);
+		if (vm == null) {
+			vm = getById(vmList, id);
+			if (vm != null) {
+				index.put(id, vm);
+			}
+		}
+		return vm;
+	}
+
 	/**
 	 * Return a reference to a Vm object from its ID and user ID.
 	 * 
@@ -57,4 +85,31 @@ public class VmList {
 		return null;
 	}
 
+	/**
+	 * Return a reference to a Vm object from its ID and user ID, looking it up in an index of the
+	 * list when one is available. A VM missing from the index, e.g. added to the list directly, is
+	 * searched in the list and then added to the index.
+	 * 
+	 * @param vmList the vm list
+	 * @param index the VMs of the list by user ID and VM ID, <tt>null</tt> to search the list only
+	 * @param id ID of required VM
+	 * @param userId the user ID
+	 * @return Vm with the given ID, $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	public static <T extends Vm> T getByIdAndUserId(List<T> vmList, VmTable<T> index, int id, int userId) {
+		if (index == null) {
+			return getByIdAndUserId(vmList, id, userId);
+		}
+		T vm = index.get(id, userId);
+		if (vm == null) {
+			vm = getByIdAndUserId(vmList, id, userId);
+			if (vm != null) {
+				index.put(vm, vm);
+			}
+		}
+		return vm;
+	}
+
 }
@@ -407,6 +407,7 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
 		usedPes -= rcl.getNumberOfPes();
+		cloudletFinished();
 	}
 
 	/**
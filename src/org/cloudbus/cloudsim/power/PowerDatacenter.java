@@ -234,7 +234,7 @@ public class PowerDatacenter extends Datacenter {
 		for (PowerHost host : this.<PowerHost> getHostList()) {
 			for (Vm vm : host.getCompletedVms()) {
 				getVmAllocationPolicy().deallocateHostForVm(vm);
-				getVmList().remove(vm);
+				vmDestroyed(vm);
 				Log.printLine("VM #" + vm.getId() + " has been deallocated from host #" + host.getId());
 			}
 		}
@@ -270,6 +270,16 @@ public class PowerDatacenter extends Datacenter {
 		setCloudletSubmitted(CloudSim.clock());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see cloudsim.Datacenter#processCloudletSubmitBatch(cloudsim.core.SimEvent, boolean)
+	 */
+	@Override
+	protected void processCloudletSubmitBatch(SimEvent ev, boolean ack) {
+		super.processCloudletSubmitBatch(ev, ack);
+		setCloudletSubmitted(CloudSim.clock());
+	}
+
 	/**
 	 * Gets the power.
 	 * 
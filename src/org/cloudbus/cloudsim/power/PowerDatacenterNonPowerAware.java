@@ -128,7 +128,7 @@ public class PowerDatacenterNonPowerAware extends PowerDatacenter {
 			for (PowerHost host : this.<PowerHost> getHostList()) {
 				for (Vm vm : host.getCompletedVms()) {
 					getVmAllocationPolicy().deallocateHostForVm(vm);
-					getVmList().remove(vm);
+					vmDestroyed(vm);
 					Log.printLine("VM #" + vm.getId() + " has been deallocated from host #" + host.getId());
 				}
 			}
@@ -8,10 +8,8 @@
 
 package org.cloudbus.cloudsim.provisioners;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * BwProvisionerSimple is a class that implements a simple best effort allocation policy: if there
@@ -23,8 +21,8 @@ import org.cloudbus.cloudsim.Vm;
  */
 public class BwProvisionerSimple extends BwProvisioner {
 
-	/** The bw table. */
-	private Map<String, Long> bwTable;
+	/** The bw table, by VM handle. */
+	private IntObjectMap<Long> bwTable;
 
 	/**
 	 * Instantiates a new bw provisioner simple.
@@ -33,7 +31,7 @@ public class BwProvisionerSimple extends BwProvisioner {
 	 */
 	public BwProvisionerSimple(long bw) {
 		super(bw);
-		setBwTable(new HashMap<String, Long>());
+		setBwTable(new IntObjectMap<Long>());
 	}
 
 	/*
@@ -46,7 +44,7 @@ public class BwProvisionerSimple extends BwProvisioner {
 
 		if (getAvailableBw() >= bw) {
 			setAvailableBw(getAvailableBw() - bw);
-			getBwTable().put(vm.getUid(), bw);
+			getBwTable().put(vm.getHandle(), bw);
 			vm.setCurrentAllocatedBw(getAllocatedBwForVm(vm));
 			return true;
 		}
@@ -61,8 +59,9 @@ public class BwProvisionerSimple extends BwProvisioner {
 	 */
 	@Override
 	public long getAllocatedBwForVm(Vm vm) {
-		if (getBwTable().containsKey(vm.getUid())) {
-			return getBwTable().get(vm.getUid());
+		Long bw = getBwTable().get(vm.getHandle());
+		if (bw != null) {
+			return bw;
 		}
 		return 0;
 	}
@@ -73,8 +72,8 @@ public class BwProvisionerSimple extends BwProvisioner {
 	 */
 	@Override
 	public void deallocateBwForVm(Vm vm) {
-		if (getBwTable().containsKey(vm.getUid())) {
-			long amountFreed = getBwTable().remove(vm.getUid());
+		Long amountFreed = getBwTable().remove(vm.getHandle());
+		if (amountFreed != null) {
 			setAvailableBw(getAvailableBw() + amountFreed);
 			vm.setCurrentAllocatedBw(0);
 		}
@@ -110,9 +109,9 @@ public class BwProvisionerSimple extends BwProvisioner {
 	/**
 	 * Gets the bw table.
 	 * 
-	 * @return the bw table
+	 * @return the bw table, by VM handle
 	 */
-	protected Map<String, Long> getBwTable() {
+	protected IntObjectMap<Long> getBwTable() {
 		return bwTable;
 	}
 
@@ -121,7 +120,7 @@ public class BwProvisionerSimple extends BwProvisioner {
 	 * 
 	 * @param bwTable the bw table
 	 */
-	protected void setBwTable(Map<String, Long> bwTable) {
+	protected void setBwTable(IntObjectMap<Long> bwTable) {
 		this.bwTable = bwTable;
 	}
 
@@ -55,15 +55,16 @@ public abstract class PeProvisioner {
 	/**
 	 * Allocates MIPS for a given VM.
 	 * 
-	 * @param vmUid the vm uid
+	 * @param vmHandle the vm handle
 	 * @param mips the mips
 	 * 
 	 * @return $true if the MIPS could be allocated; $false otherwise
 	 * 
 	 * @pre $none
 	 * @post $none
+	 * @see Vm#getHandle()
 	 */
-	public abstract boolean allocateMipsForVm(String vmUid, double mips);
+	public abstract boolean allocateMipsForVm(int vmHandle, double mips);
 
 	/**
 	 * Allocates MIPS for a given VM.
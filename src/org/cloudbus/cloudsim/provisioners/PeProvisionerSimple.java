@@ -9,11 +9,10 @@
 package org.cloudbus.cloudsim.provisioners;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * The Class PeProvisionerSimple.
@@ -23,8 +22,8 @@ import org.cloudbus.cloudsim.Vm;
  */
 public class PeProvisionerSimple extends PeProvisioner {
 
-	/** The pe table. */
-	private Map<String, List<Double>> peTable;
+	/** The pe table, by VM handle. */
+	private IntObjectMap<List<Double>> peTable;
 
 	/**
 	 * Creates the PeProvisionerSimple object.
@@ -36,7 +35,7 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 */
 	public PeProvisionerSimple(double availableMips) {
 		super(availableMips);
-		setPeTable(new HashMap<String, ArrayList<Double>>());
+		setPeTable(new IntObjectMap<List<Double>>());
 	}
 
 	/*
@@ -45,31 +44,29 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 */
 	@Override
 	public boolean allocateMipsForVm(Vm vm, double mips) {
-		return allocateMipsForVm(vm.getUid(), mips);
+		return allocateMipsForVm(vm.getHandle(), mips);
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see cloudsim.provisioners.PeProvisioner#allocateMipsForVm(java.lang.String, double)
+	 * @see cloudsim.provisioners.PeProvisioner#allocateMipsForVm(int, double)
 	 */
 	@Override
-	public boolean allocateMipsForVm(String vmUid, double mips) {
+	public boolean allocateMipsForVm(int vmHandle, double mips) {
 		if (getAvailableMips() < mips) {
 			return false;
 		}
 
-		List<Double> allocatedMips;
+		List<Double> allocatedMips = getPeTable().get(vmHandle);
 
-		if (getPeTable().containsKey(vmUid)) {
-			allocatedMips = getPeTable().get(vmUid);
-		} else {
+		if (allocatedMips == null) {
 			allocatedMips = new ArrayList<Double>();
+			getPeTable().put(vmHandle, allocatedMips);
 		}
 
 		allocatedMips.add(mips);
 
 		setAvailableMips(getAvailableMips() - mips);
-		getPeTable().put(vmUid, allocatedMips);
 
 		return true;
 	}
@@ -92,7 +89,7 @@ public class PeProvisionerSimple extends PeProvisioner {
 
 		setAvailableMips(getAvailableMips() + getTotalAllocatedMipsForVm(vm) - totalMipsToAllocate);
 
-		getPeTable().put(vm.getUid(), mips);
+		getPeTable().put(vm.getHandle(), mips);
 
 		return true;
 	}
@@ -115,9 +112,10 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 */
 	@Override
 	public double getAllocatedMipsForVmByVirtualPeId(Vm vm, int peId) {
-		if (getPeTable().containsKey(vm.getUid())) {
+		List<Double> allocatedMips = getPeTable().get(vm.getHandle());
+		if (allocatedMips != null) {
 			try {
-				return getPeTable().get(vm.getUid()).get(peId);
+				return allocatedMips.get(peId);
 			} catch (Exception e) {
 			}
 		}
@@ -130,10 +128,7 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 */
 	@Override
 	public List<Double> getAllocatedMipsForVm(Vm vm) {
-		if (getPeTable().containsKey(vm.getUid())) {
-			return getPeTable().get(vm.getUid());
-		}
-		return null;
+		return getPeTable().get(vm.getHandle());
 	}
 
 	/*
@@ -142,9 +137,10 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 */
 	@Override
 	public double getTotalAllocatedMipsForVm(Vm vm) {
-		if (getPeTable().containsKey(vm.getUid())) {
+		List<Double> allocatedMips = getPeTable().get(vm.getHandle());
+		if (allocatedMips != null) {
 			double totalAllocatedMips = 0.0;
-			for (double mips : getPeTable().get(vm.getUid())) {
+			for (double mips : allocatedMips) {
 				totalAllocatedMips += mips;
 			}
 			return totalAllocatedMips;
@@ -158,20 +154,20 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 */
 	@Override
 	public void deallocateMipsForVm(Vm vm) {
-		if (getPeTable().containsKey(vm.getUid())) {
-			for (double mips : getPeTable().get(vm.getUid())) {
+		List<Double> allocatedMips = getPeTable().remove(vm.getHandle());
+		if (allocatedMips != null) {
+			for (double mips : allocatedMips) {
 				setAvailableMips(getAvailableMips() + mips);
 			}
-			getPeTable().remove(vm.getUid());
 		}
 	}
 
 	/**
 	 * Gets the pe table.
 	 * 
-	 * @return the peTable
+	 * @return the peTable, by VM handle
 	 */
-	protected Map<String, List<Double>> getPeTable() {
+	protected IntObjectMap<List<Double>> getPeTable() {
 		return peTable;
 	}
 
@@ -180,9 +176,8 @@ public class PeProvisionerSimple extends PeProvisioner {
 	 * 
 	 * @param peTable the peTable to set
 	 */
-	@SuppressWarnings("unchecked")
-	protected void setPeTable(Map<String, ? extends List<Double>> peTable) {
-		this.peTable = (Map<String, List<Double>>) peTable;
+	protected void setPeTable(IntObjectMap<List<Double>> peTable) {
+		this.peTable = peTable;
 	}
 
 }
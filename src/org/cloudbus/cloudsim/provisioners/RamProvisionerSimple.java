@@ -8,10 +8,8 @@
 
 package org.cloudbus.cloudsim.provisioners;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * RamProvisionerSimple is an extension of RamProvisioner which uses a best-effort policy to
@@ -23,8 +21,8 @@ import org.cloudbus.cloudsim.Vm;
  */
 public class RamProvisionerSimple extends RamProvisioner {
 
-	/** The RAM table. */
-	private Map<String, Integer> ramTable;
+	/** The RAM table, by VM handle. */
+	private IntObjectMap<Integer> ramTable;
 
 	/**
 	 * Instantiates a new ram provisioner simple.
@@ -33,7 +31,7 @@ public class RamProvisionerSimple extends RamProvisioner {
 	 */
 	public RamProvisionerSimple(int availableRam) {
 		super(availableRam);
-		setRamTable(new HashMap<String, Integer>());
+		setRamTable(new IntObjectMap<Integer>());
 	}
 
 	/*
@@ -52,7 +50,7 @@ public class RamProvisionerSimple extends RamProvisioner {
 
 		if (getAvailableRam() >= ram) {
 			setAvailableRam(getAvailableRam() - ram);
-			getRamTable().put(vm.getUid(), ram);
+			getRamTable().put(vm.getHandle(), ram);
 			vm.setCurrentAllocatedRam(getAllocatedRamForVm(vm));
 			return true;
 		}
@@ -68,8 +66,9 @@ public class RamProvisionerSimple extends RamProvisioner {
 	 */
 	@Override
 	public int getAllocatedRamForVm(Vm vm) {
-		if (getRamTable().containsKey(vm.getUid())) {
-			return getRamTable().get(vm.getUid());
+		Integer ram = getRamTable().get(vm.getHandle());
+		if (ram != null) {
+			return ram;
 		}
 		return 0;
 	}
@@ -80,8 +79,8 @@ public class RamProvisionerSimple extends RamProvisioner {
 	 */
 	@Override
 	public void deallocateRamForVm(Vm vm) {
-		if (getRamTable().containsKey(vm.getUid())) {
-			int amountFreed = getRamTable().remove(vm.getUid());
+		Integer amountFreed = getRamTable().remove(vm.getHandle());
+		if (amountFreed != null) {
 			setAvailableRam(getAvailableRam() + amountFreed);
 			vm.setCurrentAllocatedRam(0);
 		}
@@ -115,9 +114,9 @@ public class RamProvisionerSimple extends RamProvisioner {
 	/**
 	 * Gets the ram table.
 	 * 
-	 * @return the ram table
+	 * @return the ram table, by VM handle
 	 */
-	protected Map<String, Integer> getRamTable() {
+	protected IntObjectMap<Integer> getRamTable() {
 		return ramTable;
 	}
 
@@ -126,7 +125,7 @@ public class RamProvisionerSimple extends RamProvisioner {
 	 * 
 	 * @param ramTable the ram table
 	 */
-	protected void setRamTable(Map<String, Integer> ramTable) {
+	protected void setRamTable(IntObjectMap<Integer> ramTable) {
 		this.ramTable = ramTable;
 	}
 
@@ -0,0 +1,238 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * IndexedIntHeap is a max-heap of the items 0 to <tt>capacity</tt> - 1, e.g. the indices of the
+ * hosts of a list, ordered by an <tt>int</tt> key. The heap keeps the position of each item, so
+ * the key of an item can be changed and an item removed in O(log n) time, and the item with the
+ * largest key is found in O(1) time. Of two items with the same key, the item with the smaller
+ * index comes first.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see org.cloudbus.cloudsim.VmAllocationPolicyIndexed
+ */
+public class IndexedIntHeap {
+
+	/** The marker of an item that is not in the heap. */
+	private static final int ABSENT = -1;
+
+	/** The items, in heap order. */
+	private final int[] heap;
+
+	/** The position of each item in the heap, {@link #ABSENT} if not in the heap. */
+	private final int[] positions;
+
+	/** The key of each item. */
+	private final int[] keys;
+
+	/** The number of items in the heap. */
+	private int size;
+
+	/**
+	 * Creates a new empty IndexedIntHeap object.
+	 *
+	 * @param capacity the number of items, the items being 0 to <tt>capacity</tt> - 1
+	 * @pre capacity >= 0
+	 * @post $none
+	 */
+	public IndexedIntHeap(int capacity) {
+		heap = new int[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, ABSENT);
+		keys = new int[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of items in the heap.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the heap has no item.
+	 *
+	 * @return <tt>true</tt> if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Checks whether an item is in the heap.
+	 *
+	 * @param item the item
+	 * @return <tt>true</tt> if the item is in the heap
+	 * @pre item >= 0 && item < capacity
+	 */
+	public boolean contains(int item) {
+		return positions[item] != ABSENT;
+	}
+
+	/**
+	 * Gets the key of an item.
+	 *
+	 * @param item the item
+	 * @return the key, as last set while the item was in the heap
+	 * @pre item >= 0 && item < capacity
+	 */
+	public int getKey(int item) {
+		return keys[item];
+	}
+
+	/**
+	 * Adds an item to the heap or, if it is in the heap, changes its key.
+	 *
+	 * @param item the item
+	 * @param key the key
+	 * @pre item >= 0 && item < capacity
+	 * @post contains(item)
+	 */
+	public void put(int item, int key) {
+		int position = positions[item];
+		if (position == ABSENT) {
+			keys[item] = key;
+			heap[size] = item;
+			positions[item] = size;
+			size++;
+			siftUp(size - 1);
+		} else {
+			int previous = keys[item];
+			keys[item] = key;
+			if (key > previous) {
+				siftUp(position);
+			} else if (key < previous) {
+				siftDown(position);
+			}
+		}
+	}
+
+	/**
+	 * Gets the item with the largest key.
+	 *
+	 * @return the item
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public int peek() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Takes the item with the largest key out of the heap.
+	 *
+	 * @return the item
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public int poll() {
+		int item = peek();
+		remove(item);
+		return item;
+	}
+
+	/**
+	 * Takes an item out of the heap.
+	 *
+	 * @param item the item
+	 * @return <tt>true</tt> if the item was in the heap
+	 * @pre item >= 0 && item < capacity
+	 * @post !contains(item)
+	 */
+	public boolean remove(int item) {
+		int position = positions[item];
+		if (position == ABSENT) {
+			return false;
+		}
+		positions[item] = ABSENT;
+		size--;
+		if (position != size) {
+			int last = heap[size];
+			heap[position] = last;
+			positions[last] = position;
+			siftUp(position);
+			siftDown(positions[last]);
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the item at a position up until its parent comes before it.
+	 *
+	 * @param position the position
+	 */
+	private void siftUp(int position) {
+		int item = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (!before(item, heap[parent])) {
+				break;
+			}
+			move(heap[parent], position);
+			position = parent;
+		}
+		move(item, position);
+	}
+
+	/**
+	 * Moves the item at a position down until it comes before its children.
+	 *
+	 * @param position the position
+	 */
+	private void siftDown(int position) {
+		int item = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], item)) {
+				break;
+			}
+			move(heap[child], position);
+			position = child;
+		}
+		move(item, position);
+	}
+
+	/**
+	 * Puts an item at a position of the heap.
+	 *
+	 * @param item the item
+	 * @param position the position
+	 */
+	private void move(int item, int position) {
+		heap[position] = item;
+		positions[item] = position;
+	}
+
+	/**
+	 * Checks whether an item comes before another: it has a larger key or, for the same key, a
+	 * smaller index.
+	 *
+	 * @param item the item
+	 * @param other the other item
+	 * @return <tt>true</tt> if the item comes first
+	 */
+	private boolean before(int item, int other) {
+		return keys[item] > keys[other] || (keys[item] == keys[other] && item < other);
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.Arrays;
+
+/**
+ * IntObjectMap is a map from primitive <tt>int</tt> keys to objects, used for the tables indexed by
+ * VM handle (see {@link org.cloudbus.cloudsim.Vm#getHandle()}) so that looking a VM up neither
+ * builds nor hashes a string and does not box its key.
+ * <p>
+ * The entries are kept in two dense arrays, in the order they were added, and found through an
+ * open-addressing index with linear probing. Removing an entry moves the last entry to its place.
+ * The entries can be visited without allocation with {@link #keyAt(int)} and
+ * {@link #valueAt(int)}, for indices from 0 to {@link #size()} - 1.
+ *
+ * @param <V> the type of the values
+ * @since CloudSim Toolkit 3.0
+ */
+public class IntObjectMap<V> {
+
+	/** The default number of entries the map holds before growing. */
+	private static final int DEFAULT_CAPACITY = 8;
+
+	/** The marker of an empty slot of the index. */
+	private static final int EMPTY = -1;
+
+	/** The keys of the entries. */
+	private int[] keys;
+
+	/** The values of the entries. */
+	private Object[] values;
+
+	/** The number of entries. */
+	private int size;
+
+	/** The index: the position of the entry of each slot, {@link #EMPTY} if none. */
+	private int[] slots;
+
+	/**
+	 * Creates a new empty IntObjectMap object.
+	 */
+	public IntObjectMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new empty IntObjectMap object.
+	 *
+	 * @param capacity the number of entries the map holds before growing
+	 * @pre capacity >= 0
+	 * @post $none
+	 */
+	public IntObjectMap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		keys = new int[capacity];
+		values = new Object[capacity];
+		int slotCount = Integer.highestOneBit(capacity * 2 - 1) * 2;
+		slots = new int[slotCount];
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the map has no entry.
+	 *
+	 * @return <tt>true</tt> if the map is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Checks whether the map has an entry for a key.
+	 *
+	 * @param key the key
+	 * @return <tt>true</tt> if the key is mapped
+	 */
+	public boolean containsKey(int key) {
+		return slots[findSlot(key)] != EMPTY;
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key the key
+	 * @return the value, <tt>null</tt> if the key is not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int position = slots[findSlot(key)];
+		return position == EMPTY ? null : (V) values[position];
+	}
+
+	/**
+	 * Maps a key to a value. A key already mapped keeps its place in the order of the entries.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return the previous value of the key, <tt>null</tt> if none
+	 * @pre $none
+	 * @post $none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		int slot = findSlot(key);
+		int position = slots[slot];
+		if (position != EMPTY) {
+			V previous = (V) values[position];
+			values[position] = value;
+			return previous;
+		}
+		if (size == keys.length) {
+			grow();
+			slot = findSlot(key);
+		}
+		keys[size] = key;
+		values[size] = value;
+		slots[slot] = size;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Removes the entry of a key. The last entry takes the place of the removed one.
+	 *
+	 * @param key the key
+	 * @return the value of the key, <tt>null</tt> if the key was not mapped
+	 * @pre $none
+	 * @post $none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = findSlot(key);
+		int position = slots[slot];
+		if (position == EMPTY) {
+			return null;
+		}
+		V value = (V) values[position];
+		deleteSlot(slot);
+
+		int last = size - 1;
+		if (position != last) {
+			keys[position] = keys[last];
+			values[position] = values[last];
+			slots[findSlot(keys[last])] = position;
+		}
+		values[last] = null;
+		size--;
+		return value;
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	public void clear() {
+		Arrays.fill(values, 0, size, null);
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * Gets the key of an entry.
+	 *
+	 * @param index the index of the entry, from 0 to {@link #size()} - 1
+	 * @return the key
+	 * @pre index >= 0 && index < size()
+	 */
+	public int keyAt(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return keys[index];
+	}
+
+	/**
+	 * Gets the value of an entry.
+	 *
+	 * @param index the index of the entry, from 0 to {@link #size()} - 1
+	 * @return the value
+	 * @pre index >= 0 && index < size()
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return (V) values[index];
+	}
+
+	/**
+	 * Finds the slot of a key: the slot of its entry if it is mapped, the empty slot where its
+	 * entry would go otherwise.
+	 *
+	 * @param key the key
+	 * @return the slot
+	 */
+	private int findSlot(int key) {
+		int mask = slots.length - 1;
+		int slot = hash(key) & mask;
+		while (slots[slot] != EMPTY && keys[slots[slot]] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Empties a slot, moving back the entries of the following slots that would no longer be
+	 * found, so that no probe sequence is broken.
+	 *
+	 * @param slot the slot
+	 */
+	private void deleteSlot(int slot) {
+		int mask = slots.length - 1;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (slots[next] == EMPTY) {
+				break;
+			}
+			int home = hash(keys[slots[next]]) & mask;
+			// the entry can move back if its home is not cyclically within (slot, next]
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				slots[slot] = slots[next];
+				slot = next;
+			}
+		}
+		slots[slot] = EMPTY;
+	}
+
+	/**
+	 * Doubles the capacity of the map and rebuilds the index.
+	 */
+	private void grow() {
+		int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		values = Arrays.copyOf(values, capacity);
+		slots = new int[slots.length * 2];
+		Arrays.fill(slots, EMPTY);
+		int mask = slots.length - 1;
+		for (int position = 0; position < size; position++) {
+			int slot = hash(keys[position]) & mask;
+			while (slots[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = position;
+		}
+	}
+
+	/**
+	 * Spreads the bits of a key, so that consecutive keys do not cluster.
+	 *
+	 * @param key the key
+	 * @return the hash
+	 */
+	private static int hash(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReplicationResult holds the outcome of one replication run by a {@link ReplicationRunner}.
+ * 
+ * @since CloudSim Toolkit 3.0
+ * @see ReplicationRunner
+ */
+public class ReplicationResult {
+
+	/** The index of the replication. */
+	private final int replication;
+
+	/** The random seed of the replication. */
+	private final long seed;
+
+	/** The simulation clock when the simulation finished. */
+	private double simulationTime;
+
+	/** The wall clock time taken by the replication, in seconds. */
+	private double wallTime;
+
+	/** The finish times of the cloudlets that were executed. */
+	private final List<Double> finishTimes = new ArrayList<Double>();
+
+	/** The number of cloudlets that missed their deadline. */
+	private int deadlineMisses;
+
+	/** The number of cloudlets sent to a partner broker for execution. */
+	private int partnerOffloads;
+
+	/** The energy consumed by the power datacenters, in W * sec. */
+	private double energy;
+
+	/** The log of the replication, or <tt>null</tt> if it was not captured. */
+	private String log;
+
+	/** The error that stopped the replication, or <tt>null</tt> if it completed. */
+	private Throwable error;
+
+	/**
+	 * Creates a new ReplicationResult object.
+	 * 
+	 * @param replication the index of the replication
+	 * @param seed the random seed of the replication
+	 */
+	public ReplicationResult(int replication, long seed) {
+		this.replication = replication;
+		this.seed = seed;
+	}
+
+	/**
+	 * Gets the index of the replication.
+	 * 
+	 * @return the index of the replication
+	 */
+	public int getReplication() {
+		return replication;
+	}
+
+	/**
+	 * Gets the random seed of the replication.
+	 * 
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gets the simulation clock when the simulation finished.
+	 * 
+	 * @return the simulation time
+	 */
+	public double getSimulationTime() {
+		return simulationTime;
+	}
+
+	/**
+	 * Sets the simulation clock when the simulation finished.
+	 * 
+	 * @param simulationTime the simulation time
+	 */
+	protected void setSimulationTime(double simulationTime) {
+		this.simulationTime = simulationTime;
+	}
+
+	/**
+	 * Gets the wall clock time taken by the replication.
+	 * 
+	 * @return the wall time, in seconds
+	 */
+	public double getWallTime() {
+		return wallTime;
+	}
+
+	/**
+	 * Sets the wall clock time taken by the replication.
+	 * 
+	 * @param wallTime the wall time, in seconds
+	 */
+	protected void setWallTime(double wallTime) {
+		this.wallTime = wallTime;
+	}
+
+	/**
+	 * Gets the finish times of the cloudlets that were executed.
+	 * 
+	 * @return the finish times
+	 */
+	public List<Double> getFinishTimes() {
+		return finishTimes;
+	}
+
+	/**
+	 * Gets the number of cloudlets that missed their deadline, including the ones that were not
+	 * executed.
+	 * 
+	 * @return the number of deadline misses
+	 */
+	public int getDeadlineMisses() {
+		return deadlineMisses;
+	}
+
+	/**
+	 * Sets the number of cloudlets that missed their deadline.
+	 * 
+	 * @param deadlineMisses the number of deadline misses
+	 */
+	protected void setDeadlineMisses(int deadlineMisses) {
+		this.deadlineMisses = deadlineMisses;
+	}
+
+	/**
+	 * Gets the number of cloudlets sent to a partner broker for execution.
+	 * 
+	 * @return the number of partner offloads
+	 */
+	public int getPartnerOffloads() {
+		return partnerOffloads;
+	}
+
+	/**
+	 * Sets the number of cloudlets sent to a partner broker for execution.
+	 * 
+	 * @param partnerOffloads the number of partner offloads
+	 */
+	protected void setPartnerOffloads(int partnerOffloads) {
+		this.partnerOffloads = partnerOffloads;
+	}
+
+	/**
+	 * Gets the energy consumed by the power datacenters.
+	 * 
+	 * @return the energy, in W * sec
+	 */
+	public double getEnergy() {
+		return energy;
+	}
+
+	/**
+	 * Sets the energy consumed by the power datacenters.
+	 * 
+	 * @param energy the energy, in W * sec
+	 */
+	protected void setEnergy(double energy) {
+		this.energy = energy;
+	}
+
+	/**
+	 * Gets the log of the replication.
+	 * 
+	 * @return the log, or <tt>null</tt> if it was not captured
+	 */
+	public String getLog() {
+		return log;
+	}
+
+	/**
+	 * Sets the log of the replication.
+	 * 
+	 * @param log the log
+	 */
+	protected void setLog(String log) {
+		this.log = log;
+	}
+
+	/**
+	 * Gets the error that stopped the replication.
+	 * 
+	 * @return the error, or <tt>null</tt> if the replication completed
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * Sets the error that stopped the replication.
+	 * 
+	 * @param error the error
+	 */
+	protected void setError(Throwable error) {
+		this.error = error;
+	}
+
+	/**
+	 * Checks whether the replication completed.
+	 * 
+	 * @return <tt>true</tt> if the replication completed, <tt>false</tt> otherwise
+	 */
+	public boolean isCompleted() {
+		return error == null;
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.power.PowerDatacenter;
+
+/**
+ * ReplicationRunner runs independent replications of a scenario in parallel, for instance to sweep
+ * a parameter or to average the results over several random seeds. Each replication is built by a
+ * {@link ScenarioFactory} in its own {@link SimulationContext}, and runs on a thread of a
+ * {@link ForkJoinPool}, so the replications do not share the event queues, the clock, the entities,
+ * the network topology or the log.
+ * <p>
+ * Static state kept outside the simulation context is still shared, so scenarios should not rely
+ * on it.
+ * 
+ * @since CloudSim Toolkit 3.0
+ * @see ScenarioFactory
+ * @see ReplicationResult
+ */
+public class ReplicationRunner {
+
+	/** The pool running the replications. */
+	private final ForkJoinPool pool;
+
+	/** Whether the log of each replication is captured, instead of being disabled. */
+	private boolean captureLog = false;
+
+	/**
+	 * Creates a new ReplicationRunner object that uses all the available processors.
+	 */
+	public ReplicationRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new ReplicationRunner object.
+	 * 
+	 * @param parallelism the maximum number of replications running at the same time
+	 * @pre parallelism > 0
+	 * @post $none
+	 */
+	public ReplicationRunner(int parallelism) {
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Checks whether the log of each replication is captured in its result.
+	 * 
+	 * @return <tt>true</tt> if the log is captured, <tt>false</tt> if it is disabled
+	 */
+	public boolean isCaptureLog() {
+		return captureLog;
+	}
+
+	/**
+	 * Sets whether the log of each replication is captured in its result. The log is disabled
+	 * otherwise.
+	 * 
+	 * @param captureLog <tt>true</tt> to capture the log, <tt>false</tt> to disable it
+	 */
+	public void setCaptureLog(boolean captureLog) {
+		this.captureLog = captureLog;
+	}
+
+	/**
+	 * Runs replications of a scenario, with consecutive seeds starting from a base seed.
+	 * 
+	 * @param factory the factory building the scenario
+	 * @param replications the number of replications
+	 * @param baseSeed the seed of the first replication
+	 * @return the results, in the order of the replications
+	 * @pre factory != null
+	 * @pre replications >= 0
+	 * @post $result.size() == replications
+	 */
+	public List<ReplicationResult> run(ScenarioFactory factory, int replications, long baseSeed) {
+		long[] seeds = new long[replications];
+		for (int i = 0; i < replications; i++) {
+			seeds[i] = baseSeed + i;
+		}
+		return run(factory, seeds);
+	}
+
+	/**
+	 * Runs one replication of a scenario for each seed.
+	 * 
+	 * @param factory the factory building the scenario
+	 * @param seeds the seeds of the replications
+	 * @return the results, in the order of the seeds
+	 * @pre factory != null
+	 * @pre seeds != null
+	 * @post $result.size() == seeds.length
+	 */
+	public List<ReplicationResult> run(final ScenarioFactory factory, long[] seeds) {
+		List<Callable<ReplicationResult>> tasks = new ArrayList<Callable<ReplicationResult>>();
+		for (int i = 0; i < seeds.length; i++) {
+			final int replication = i;
+			final long seed = seeds[i];
+			tasks.add(new Callable<ReplicationResult>() {
+
+				@Override
+				public ReplicationResult call() {
+					return runReplication(factory, replication, seed);
+				}
+			});
+		}
+
+		List<ReplicationResult> results = new ArrayList<ReplicationResult>();
+		for (Future<ReplicationResult> future : pool.invokeAll(tasks)) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the replications.", e);
+			} catch (ExecutionException e) {
+				// runReplication catches the errors of the scenario
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Shuts down the pool running the replications.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Builds and runs one replication in a new simulation context bound to the calling thread.
+	 * 
+	 * @param factory the factory building the scenario
+	 * @param replication the index of the replication
+	 * @param seed the seed of the replication
+	 * @return the result of the replication
+	 */
+	protected ReplicationResult runReplication(ScenarioFactory factory, int replication, long seed) {
+		ReplicationResult result = new ReplicationResult(replication, seed);
+		SimulationContext context = new SimulationContext();
+		ByteArrayOutputStream log = null;
+		if (isCaptureLog()) {
+			log = new ByteArrayOutputStream();
+			context.setLogOutput(log);
+			context.setLogDisabled(Boolean.FALSE);
+		} else {
+			context.setLogDisabled(Boolean.TRUE);
+		}
+
+		long start = System.nanoTime();
+		CloudSim.setContext(context);
+		try {
+			factory.createScenario(replication, seed);
+			// the entity list is cleared when the simulation finishes
+			List<SimEntity> entities = context.getEntityList();
+			result.setSimulationTime(context.startSimulation());
+			collectResults(entities, result);
+		} catch (Throwable e) {
+			result.setError(e);
+		} finally {
+			CloudSim.setContext(null);
+			result.setWallTime((System.nanoTime() - start) / 1e9);
+			if (log != null) {
+				result.setLog(log.toString());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the cloudlet, federation and energy metrics of a finished replication.
+	 * 
+	 * @param entities the entities of the replication
+	 * @param result the result to fill
+	 */
+	protected void collectResults(List<SimEntity> entities, ReplicationResult result) {
+		// a cloudlet executed by a partner is in the lists of both brokers; the cloudlets are kept
+		// in the order of the lists, so the results do not depend on identity hash codes
+		List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+		Set<Cloudlet> seen = Collections.newSetFromMap(new IdentityHashMap<Cloudlet, Boolean>());
+		int partnerOffloads = 0;
+		double energy = 0;
+		for (SimEntity entity : entities) {
+			if (entity instanceof DatacenterBroker) {
+				DatacenterBroker broker = (DatacenterBroker) entity;
+				for (Cloudlet cloudlet : broker.<Cloudlet> getCloudletSubmittedList()) {
+					if (seen.add(cloudlet)) {
+						cloudlets.add(cloudlet);
+					}
+				}
+				for (Cloudlet cloudlet : broker.<Cloudlet> getCloudletReceivedList()) {
+					if (seen.add(cloudlet)) {
+						cloudlets.add(cloudlet);
+					}
+				}
+				partnerOffloads += broker.getPartnerOffloads();
+			} else if (entity instanceof PowerDatacenter) {
+				energy += ((PowerDatacenter) entity).getPower();
+			}
+		}
+
+		int deadlineMisses = 0;
+		for (Cloudlet cloudlet : cloudlets) {
+			if (cloudlet.getCloudletStatus() == Cloudlet.SUCCESS) {
+				result.getFinishTimes().add(cloudlet.getFinishTime());
+				if (cloudlet.getFinishTime() > cloudlet.getDeadline()) {
+					deadlineMisses++;
+				}
+			} else {
+				deadlineMisses++;
+			}
+		}
+		result.setDeadlineMisses(deadlineMisses);
+		result.setPartnerOffloads(partnerOffloads);
+		result.setEnergy(energy);
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+/**
+ * This interface defines how a scenario is built for each replication run by a
+ * {@link ReplicationRunner}. When {@link #createScenario(int, long)} is called, the simulation
+ * context of the replication is the current context of the calling thread, so the implementation
+ * initialises CloudSim and creates the entities exactly as a single simulation would do, without
+ * starting the simulation.
+ * <p>
+ * Implementations must not keep state shared between replications, since several replications are
+ * built at the same time on different threads.
+ * 
+ * @since CloudSim Toolkit 3.0
+ * @see ReplicationRunner
+ */
+public interface ScenarioFactory {
+
+	/**
+	 * Initialises CloudSim and creates the datacenters, brokers, VMs and cloudlets of a
+	 * replication.
+	 * 
+	 * @param replication the index of the replication
+	 * @param seed the random seed of the replication
+	 * @throws Exception if the scenario cannot be created
+	 * @pre replication >= 0
+	 * @post $none
+	 */
+	void createScenario(int replication, long seed) throws Exception;
+
+}
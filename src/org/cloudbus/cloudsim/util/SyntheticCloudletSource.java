@@ -0,0 +1,151 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSource;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
+
+/**
+ * SyntheticCloudletSource generates an open-loop workload from random number generators: the
+ * times between two arrivals and the lengths of the cloudlets are sampled from distributions (see
+ * {@link org.cloudbus.cloudsim.distributions}), e.g. an {@link
+ * org.cloudbus.cloudsim.distributions.ExponentialDistr} of inter-arrival times for Poisson
+ * arrivals. Each cloudlet is created when the broker takes it, so the workload can be as long as
+ * needed without being held in memory.
+ * <p>
+ * The cloudlets are numbered from 0, have no input or output file, use their resources fully and
+ * all have the same number of PEs and deadline.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see org.cloudbus.cloudsim.DatacenterBroker#setCloudletSource(CloudletSource)
+ */
+public class SyntheticCloudletSource implements CloudletSource {
+
+	/** The number of cloudlets to generate. */
+	private final int cloudlets;
+
+	/** The distribution of the times between two arrivals. */
+	private final ContinuousDistribution interArrivalTime;
+
+	/** The distribution of the lengths of the cloudlets, in MI. */
+	private final ContinuousDistribution length;
+
+	/** The number of PEs of each cloudlet. */
+	private final int pesNumber;
+
+	/** The deadline of each cloudlet. */
+	private final long deadline;
+
+	/** The utilization model of the cloudlets. */
+	private final UtilizationModel utilizationModel;
+
+	/** The number of cloudlets generated. */
+	private int generated;
+
+	/** The arrival time of the next cloudlet. */
+	private double nextArrivalTime;
+
+	/**
+	 * Creates a new SyntheticCloudletSource object. The first cloudlet arrives after a first
+	 * inter-arrival time.
+	 *
+	 * @param cloudlets the number of cloudlets to generate
+	 * @param interArrivalTime the distribution of the times between two arrivals
+	 * @param length the distribution of the lengths of the cloudlets, in MI
+	 * @param pesNumber the number of PEs of each cloudlet
+	 * @param deadline the deadline of each cloudlet
+	 * @throws IllegalArgumentException if the number of cloudlets is negative, a distribution is
+	 *             <tt>null</tt> or the number of PEs is not positive
+	 * @pre cloudlets >= 0
+	 * @pre interArrivalTime != null
+	 * @pre length != null
+	 * @pre pesNumber > 0
+	 * @post $none
+	 */
+	public SyntheticCloudletSource(
+			int cloudlets,
+			ContinuousDistribution interArrivalTime,
+			ContinuousDistribution length,
+			int pesNumber,
+			long deadline) {
+		if (cloudlets < 0) {
+			throw new IllegalArgumentException("The number of cloudlets can't be negative.");
+		} else if (interArrivalTime == null || length == null) {
+			throw new IllegalArgumentException("The distributions can't be null.");
+		} else if (pesNumber <= 0) {
+			throw new IllegalArgumentException("The number of PEs must be > 0.");
+		}
+		this.cloudlets = cloudlets;
+		this.interArrivalTime = interArrivalTime;
+		this.length = length;
+		this.pesNumber = pesNumber;
+		this.deadline = deadline;
+		utilizationModel = new UtilizationModelFull();
+		generated = 0;
+		nextArrivalTime = sampleInterArrivalTime();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return generated < cloudlets;
+	}
+
+	@Override
+	public double getNextArrivalTime() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return nextArrivalTime;
+	}
+
+	@Override
+	public Cloudlet next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		long cloudletLength = Math.max(1, Math.round(length.sample()));
+		Cloudlet cloudlet = new Cloudlet(
+				generated,
+				cloudletLength,
+				pesNumber,
+				0,
+				0,
+				deadline,
+				utilizationModel,
+				utilizationModel,
+				utilizationModel);
+		generated++;
+		nextArrivalTime += sampleInterArrivalTime();
+		return cloudlet;
+	}
+
+	/**
+	 * Gets the number of cloudlets generated so far.
+	 *
+	 * @return the number of cloudlets generated
+	 */
+	public int getGenerated() {
+		return generated;
+	}
+
+	/**
+	 * Samples a time between two arrivals; a negative sample counts as 0.
+	 *
+	 * @return the inter-arrival time
+	 */
+	private double sampleInterArrivalTime() {
+		return Math.max(0, interArrivalTime.sample());
+	}
+
+}
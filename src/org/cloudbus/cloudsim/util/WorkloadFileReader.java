@@ -16,11 +16,13 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.NoSuchElementException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSource;
 import org.cloudbus.cloudsim.UtilizationModel;
 import org.cloudbus.cloudsim.UtilizationModelFull;
 
@@ -35,7 +37,8 @@ import org.cloudbus.cloudsim.UtilizationModelFull;
  * class <tt>each with a unique 
  *      	 entity name</tt>.
  * <li>If size of the trace file is huge or contains lots of traces please increase the JVM heap
- * size accordingly by using <tt>java -Xmx</tt> option when running the simulation.
+ * size accordingly by using <tt>java -Xmx</tt> option when running the simulation, or read the
+ * jobs lazily with {@link #getCloudletSource()}.
  * <li>The default job file size for sending to and receiving from a resource is
  * {@link gridsim.net.Link#DEFAULT_MTU}. However, you can specify the file size by using
  * {@link #setGridletFileSize(int)}.
@@ -98,6 +101,8 @@ public class WorkloadFileReader implements WorkloadModel {
 
 	private String[] fieldArray = null; // a temp array storing all the fields
 
+	private long lastSubmitTime = 0; // submit time of the last job extracted
+
 	/**
 	 * Create a new {@link WorkloadFileReader} object.
 	 * 
@@ -158,6 +163,21 @@ public class WorkloadFileReader implements WorkloadModel {
 		return jobs;
 	}
 
+	/**
+	 * Gets a source that reads the jobs from the file one at a time, as a broker takes them (see
+	 * {@link org.cloudbus.cloudsim.DatacenterBroker#setCloudletSource(CloudletSource)}), so that
+	 * the trace is never held in memory. The arrival time of a job is its submit time in the
+	 * trace. Each call opens the file again and gives a source that starts from the first job.
+	 * 
+	 * @return the cloudlet source
+	 * @throws IOException if the file could not be opened
+	 * @pre $none
+	 * @post $result != null
+	 */
+	public CloudletSource getCloudletSource() throws IOException {
+		return new TraceCloudletSource();
+	}
+
 	/**
 	 * Identifies the start of a comment line.
 	 * 
@@ -249,7 +269,8 @@ public class WorkloadFileReader implements WorkloadModel {
 	// ------------------- PRIVATE METHODS -------------------
 
 	/**
-	 * Creates a Gridlet with the given information and adds to the list
+	 * Creates a Gridlet with the given information. The user estimated run time, the wall-clock
+	 * limit of the job, is its deadline; a job without one has no deadline.
 	 * 
 	 * @param id a Gridlet ID
 	 * @param submitTime Gridlet's submit time
@@ -258,13 +279,14 @@ public class WorkloadFileReader implements WorkloadModel {
 	 * @param reqRunTime user estimated run time
 	 * @param userID user id
 	 * @param groupID user's group id
+	 * @return the Gridlet
 	 * @pre id >= 0
 	 * @pre submitTime >= 0
 	 * @pre runTime >= 0
 	 * @pre numProc > 0
 	 * @post $none
 	 */
-	private void createJob(
+	private Cloudlet createJob(
 			final int id,
 			final long submitTime,
 			final int runTime,
@@ -274,6 +296,7 @@ public class WorkloadFileReader implements WorkloadModel {
 			final int groupID) {
 		// create the cloudlet
 		final int len = runTime * rating;
+		final long deadline = reqRunTime > 0 ? reqRunTime : Long.MAX_VALUE;
 		UtilizationModel utilizationModel = new UtilizationModelFull();
 		final Cloudlet wgl = new Cloudlet(
 				id,
@@ -281,28 +304,31 @@ public class WorkloadFileReader implements WorkloadModel {
 				numProc,
 				0,
 				0,
+				deadline,
 				utilizationModel,
 				utilizationModel,
 				utilizationModel);
-		jobs.add(wgl);
+		return wgl;
 	}
 
 	/**
-	 * Extracts relevant information from a given array
+	 * Extracts relevant information from a given array and records the submit time of the job.
 	 * 
 	 * @param array an array of String
 	 * @param line a line number
+	 * @param jobs the number of jobs extracted before, to number the job if the trace does not
+	 * @return the Gridlet, <code>null</code> if the fields are invalid
 	 * @pre array != null
 	 * @pre line > 0
 	 */
-	private void extractField(final String[] array, final int line) {
+	private Cloudlet extractField(final String[] array, final int line, final int jobs) {
 		try {
 			Integer obj = null;
 
 			// get the job number
 			int id = 0;
 			if (JOB_NUM == IRRELEVANT) {
-				id = jobs.size() + 1;
+				id = jobs + 1;
 			} else {
 				obj = new Integer(array[JOB_NUM].trim());
 				id = obj.intValue();
@@ -345,9 +371,10 @@ public class WorkloadFileReader implements WorkloadModel {
 			if (numProc <= 0) {
 				numProc = 1;
 			}
-			createJob(id, submitTime, runTime, numProc, reqRunTime, userID, groupID);
+			lastSubmitTime = submitTime;
+			return createJob(id, submitTime, runTime, numProc, reqRunTime, userID, groupID);
 		} catch (final Exception e) {
-
+			return null;
 		}
 	}
 
@@ -356,14 +383,16 @@ public class WorkloadFileReader implements WorkloadModel {
 	 * 
 	 * @param line a line of string
 	 * @param lineNum a line number
+	 * @param jobs the number of jobs read before
+	 * @return the Gridlet of the line, <code>null</code> if the line is not a job
 	 * @pre line != null
 	 * @pre lineNum > 0
 	 * @post $none
 	 */
-	private void parseValue(final String line, final int lineNum) {
+	private Cloudlet parseValue(final String line, final int lineNum, final int jobs) {
 		// skip a comment line
 		if (line.startsWith(COMMENT)) {
-			return;
+			return null;
 		}
 
 		final String[] sp = line.split("\\s+"); // split the fields based on a
@@ -384,10 +413,41 @@ public class WorkloadFileReader implements WorkloadModel {
 		}
 
 		if (index == MAX_FIELD) {
-			extractField(fieldArray, lineNum);
+			return extractField(fieldArray, lineNum, jobs);
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the job of a line, if any, to the list of jobs.
+	 * 
+	 * @param line a line of string
+	 * @param lineNum a line number
+	 * @pre line != null
+	 * @pre lineNum > 0
+	 * @post $none
+	 */
+	private void addJob(final String line, final int lineNum) {
+		final Cloudlet job = parseValue(line, lineNum, jobs.size());
+		if (job != null) {
+			jobs.add(job);
 		}
 	}
 
+	/**
+	 * Opens a text or gzip file for reading one line at the time.
+	 * 
+	 * @param fl a file name
+	 * @return the reader
+	 * @throws IOException if the there was any error opening the file
+	 */
+	private BufferedReader openReader(final File fl) throws IOException {
+		if (fl.getName().endsWith(".gz")) {
+			return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(fl))));
+		}
+		return new BufferedReader(new InputStreamReader(new FileInputStream(fl)));
+	}
+
 	/**
 	 * Reads a text file one line at the time
 	 * 
@@ -405,7 +465,7 @@ public class WorkloadFileReader implements WorkloadModel {
 			// read one line at the time
 			int line = 1;
 			while (reader.ready()) {
-				parseValue(reader.readLine(), line);
+				addJob(reader.readLine(), line);
 				line++;
 			}
 
@@ -437,7 +497,7 @@ public class WorkloadFileReader implements WorkloadModel {
 			// read one line at the time
 			int line = 1;
 			while (reader.ready()) {
-				parseValue(reader.readLine(), line);
+				addJob(reader.readLine(), line);
 				line++;
 			}
 
@@ -477,7 +537,7 @@ public class WorkloadFileReader implements WorkloadModel {
 				// read one line at the time
 				int line = 1;
 				while (reader.ready()) {
-					parseValue(reader.readLine(), line);
+					addJob(reader.readLine(), line);
 					line++;
 				}
 
@@ -492,4 +552,129 @@ public class WorkloadFileReader implements WorkloadModel {
 
 		return success;
 	}
+
+	/**
+	 * A source that reads the jobs of the trace file one at a time. The next job is read ahead, so
+	 * that its submit time is known; the file is closed once the last job is read.
+	 */
+	private class TraceCloudletSource implements CloudletSource {
+
+		/** The zip file, <code>null</code> if the trace is not zipped. */
+		private ZipFile zipFile;
+
+		/** The entries of the zip file still to read. */
+		private Enumeration<? extends ZipEntry> zipEntries;
+
+		/** The reader of the current file or entry, <code>null</code> once the trace is read. */
+		private BufferedReader reader;
+
+		/** The number of the next line of the current file or entry. */
+		private int line;
+
+		/** The number of jobs read. */
+		private int jobs;
+
+		/** The next job, <code>null</code> once the trace is read. */
+		private Cloudlet next;
+
+		/** The submit time of the next job. */
+		private double nextSubmitTime;
+
+		/**
+		 * Opens the trace file and reads its first job.
+		 * 
+		 * @throws IOException if the file could not be opened or read
+		 */
+		TraceCloudletSource() throws IOException {
+			if (file.getName().endsWith(".zip")) {
+				zipFile = new ZipFile(file);
+				zipEntries = zipFile.entries();
+			} else {
+				reader = openReader(file);
+			}
+			if (fieldArray == null || fieldArray.length != MAX_FIELD) {
+				fieldArray = new String[MAX_FIELD];
+			}
+			readNext();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public double getNextArrivalTime() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			return nextSubmitTime;
+		}
+
+		@Override
+		public Cloudlet next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			final Cloudlet job = next;
+			try {
+				readNext();
+			} catch (final IOException e) {
+				// the jobs read so far are still run
+				next = null;
+				close();
+			}
+			return job;
+		}
+
+		/**
+		 * Reads the next job of the trace, moving to the next zip entry when an entry is read.
+		 * 
+		 * @throws IOException if the there was any error reading the file
+		 */
+		private void readNext() throws IOException {
+			next = null;
+			while (next == null) {
+				if (reader == null) {
+					if (zipEntries == null || !zipEntries.hasMoreElements()) {
+						close();
+						return;
+					}
+					reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(zipEntries
+							.nextElement())));
+					line = 1;
+				}
+				final String text = reader.readLine();
+				if (text == null) {
+					reader.close();
+					reader = null;
+					continue;
+				}
+				next = parseValue(text, line, jobs);
+				line++;
+			}
+			jobs++;
+			nextSubmitTime = Math.max(nextSubmitTime, lastSubmitTime);
+		}
+
+		/**
+		 * Closes the trace file.
+		 */
+		private void close() {
+			try {
+				if (reader != null) {
+					reader.close();
+				}
+				if (zipFile != null) {
+					zipFile.close();
+				}
+			} catch (final IOException e) {
+			}
+			reader = null;
+			zipFile = null;
+			zipEntries = null;
+		}
+
+	}
+
 }